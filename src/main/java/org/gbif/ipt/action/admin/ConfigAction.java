@@ -14,6 +14,7 @@ import org.gbif.ipt.utils.URLUtils;
 
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
 import java.util.List;
 
 import com.google.inject.Inject;
@@ -264,7 +265,7 @@ public class ConfigAction extends POSTAction {
    */
   private void updateAllAlternateIdentifiersForIPTURLToResource() {
     // collect all public resources
-    List<Resource> resources = resourceManager.list(PublicationStatus.PUBLIC);
+    List<Resource> resources = new ArrayList<Resource>(resourceManager.list(PublicationStatus.PUBLIC));
     resources.addAll(resourceManager.list(PublicationStatus.REGISTERED));
     // log
     if (!resources.isEmpty()) {
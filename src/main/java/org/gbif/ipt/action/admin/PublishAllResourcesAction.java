@@ -10,10 +10,13 @@ import org.gbif.ipt.service.admin.RegistrationManager;
 import org.gbif.ipt.service.manage.ResourceManager;
 import org.gbif.ipt.service.registry.RegistryManager;
 import org.gbif.ipt.struts2.SimpleTextProvider;
+import org.gbif.ipt.task.PublishingQueue;
 
 import java.math.BigDecimal;
 import java.util.Date;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import com.google.inject.Inject;
 import org.apache.log4j.Logger;
@@ -57,14 +60,17 @@ public class PublishAllResourcesAction extends BaseAction {
     }
 
     // kick off publishing for all resources, unless the resource has exceeded the maximum number of failed publications
+    Set<String> queued = new HashSet<String>();
     for (Resource resource : resources) {
       // next version number - the version of newly published eml/rtf/archive
       BigDecimal nextVersion = new BigDecimal(resource.getNextVersion().toPlainString());
       BigDecimal replacedVersion = new BigDecimal(resource.getEmlVersion().toPlainString());
       try {
         if (!resourceManager.hasMaxProcessFailures(resource)) {
-          // publish a new version of the resource - dwca gets published asynchronously
-          resourceManager.publish(resource, nextVersion, this);
+          // publish a new version of the resource - dwca gets queued behind publications of single resources
+          if (resourceManager.publish(resource, nextVersion, this, PublishingQueue.Priority.BULK)) {
+            queued.add(resource.getShortname());
+          }
         } else {
           addActionError(getText("publishing.skipping",
             new String[] {String.valueOf(resource.getNextVersion()), resource.getTitleAndShortname()}));
@@ -91,14 +97,11 @@ public class PublishAllResourcesAction extends BaseAction {
       }
     }
 
-    // wait around for all resources to finish publishing
-    // PublishingMonitor thread is running in the background completing asynchronous publishing tasks
-    while (resourceManager.getProcessFutures().size() > 0) {
-      try {
-        Thread.sleep(1000);
-      } catch (InterruptedException e) {
-        log.error("Thread waiting during publish all resources was interrupted", e);
-      }
+    // wait around for all resources queued to finish publishing
+    try {
+      resourceManager.getPublishingQueue().awaitCompletion(queued);
+    } catch (InterruptedException e) {
+      log.error("Thread waiting during publish all resources was interrupted", e);
     }
     // only display sinlge message: that publish all finished
     clearMessages();
@@ -0,0 +1,48 @@
+package org.gbif.ipt.action.admin;
+
+import org.gbif.ipt.action.BaseAction;
+import org.gbif.ipt.config.AppConfig;
+import org.gbif.ipt.service.admin.RegistrationManager;
+import org.gbif.ipt.service.manage.ResourceManager;
+import org.gbif.ipt.struts2.SimpleTextProvider;
+import org.gbif.ipt.task.PublishingQueue;
+
+import java.util.List;
+
+import com.google.inject.Inject;
+
+/**
+ * The Action responsible for showing the publishing queue to the admin: the DwC-A generation jobs running, and those
+ * waiting for a publishing thread in the order they are going to be started.
+ */
+public class PublishingQueueAction extends BaseAction {
+
+  private static final long serialVersionUID = 3702374418563915876L;
+
+  private final ResourceManager resourceManager;
+  private List<PublishingQueue.Job> running;
+  private List<PublishingQueue.Job> pending;
+
+  @Inject
+  public PublishingQueueAction(SimpleTextProvider textProvider, AppConfig cfg, RegistrationManager registrationManager,
+    ResourceManager resourceManager) {
+    super(textProvider, cfg, registrationManager);
+    this.resourceManager = resourceManager;
+  }
+
+  @Override
+  public String execute() {
+    PublishingQueue queue = resourceManager.getPublishingQueue();
+    running = queue.getRunning();
+    pending = queue.getPending();
+    return SUCCESS;
+  }
+
+  public List<PublishingQueue.Job> getRunning() {
+    return running;
+  }
+
+  public List<PublishingQueue.Job> getPending() {
+    return pending;
+  }
+}
@@ -108,6 +108,14 @@ public class MappingAction extends ManagerBaseAction {
       return;
     }
 
+    if (mapping.getFilter() != null) {
+      try {
+        mapping.getFilter().compile();
+      } catch (IllegalArgumentException e) {
+        addActionError(getText("manage.mapping.filter.invalid", new String[] {e.getMessage()}));
+      }
+    }
+
     ExtensionMappingValidator validator = new ExtensionMappingValidator();
     ValidationStatus v = validator.validate(mapping, resource, peek, columns);
     if (v != null && !v.isValid()) {
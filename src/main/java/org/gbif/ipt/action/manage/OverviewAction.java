@@ -492,7 +492,7 @@ public class OverviewAction extends ManagerBaseAction implements ReportHandler {
     if (u == null || !resource.getManagers().contains(u)) {
       addActionError(getText("manage.overview.manager.not.available", new String[] {id}));
     } else {
-      resource.getManagers().remove(u);
+      resource.removeManager(u);
       addActionMessage(getText("manage.overview.user.removed", new String[] {u.getName()}));
       saveResource();
       potentialManagers.add(u);
@@ -11,7 +11,6 @@ import org.gbif.ipt.service.manage.ResourceManager;
 import org.gbif.ipt.struts2.SimpleTextProvider;
 import org.gbif.ipt.utils.MapUtils;
 
-import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -44,9 +43,8 @@ public class HomeAction extends BaseAction {
   @Override
   public void prepare() {
     super.prepare();
+    // sorted alphabetically already
     resources = resourceManager.listPublishedPublicVersions();
-    // sort alphabetically
-    Collections.sort(resources);
 
     // Dataset core type list, derived from XML vocabulary
     types = new LinkedHashMap<String, String>();
@@ -56,6 +56,25 @@ public class AppConfig {
   public static final String ANALYTICS_KEY = "analytics.key";
   public static final String IPT_LATITUDE = "location.lat";
   public static final String IPT_LONGITUDE = "location.lon";
+  public static final String PUBLICATION_THREADS = "publication.threads";
+  public static final String PUBLICATION_INCREMENTAL = "publication.incremental";
+  public static final String PUBLICATION_COMPRESSION = "publication.compression";
+  public static final String PUBLICATION_MAX_PER_DATABASE = "publication.maxPerDatabase";
+  public static final String PUBLICATION_MAX_PER_DISK = "publication.maxPerDisk";
+  public static final String PUBLICATION_CHECKPOINT = "publication.checkpoint";
+  public static final String PUBLICATION_RESUME = "publication.resume";
+  public static final String STARTUP_THREADS = "startup.threads";
+  public static final String EML_CACHE_SIZE = "eml.cache.size";
+  public static final String STARTUP_SNAPSHOT = "startup.snapshot";
+  public static final String PERSISTENCE_WRITE_DELAY = "persistence.writeDelay";
+  public static final String SQL_POOL_SIZE = "sql.pool.size";
+  public static final String SQL_POOL_IDLE_TIMEOUT = "sql.pool.idleTimeout";
+  public static final String VALIDATION_MEMORY = "publication.validation.memory";
+  public static final String VALIDATION_SORT_CORE = "publication.validation.sortCore";
+  public static final String VALIDATION_SORT_THREADS = "publication.validation.sortThreads";
+  public static final String VALIDATION_SORT_COMPRESSED = "publication.validation.sortCompressed";
+  public static final String VALIDATION_INLINE = "publication.validation.inline";
+  public static final String VALIDATION_CORE_ID_REFERENCES = "publication.validation.coreIdReferences";
   private static final String PRODUCTION_TYPE_LOCKFILE = ".gbifreg";
   private Properties properties = new Properties();
   private static final Logger LOG = Logger.getLogger(AppConfig.class);
@@ -174,6 +193,147 @@ public class AppConfig {
     }
   }
 
+  /**
+   * @return maximum number of worker threads writing the data files of a single archive in parallel, defaulting to 1
+   * meaning data files are written one after another
+   */
+  public int getPublicationThreads() {
+    try {
+      return Math.max(1, Integer.parseInt(getProperty(PUBLICATION_THREADS)));
+    } catch (NumberFormatException e) {
+      return 1;
+    }
+  }
+
+  /**
+   * @return compression level of published archives, from 0 (no compression) to 9 (best compression), defaulting to
+   * -1 meaning the default compression level
+   */
+  public int getPublicationCompression() {
+    try {
+      int level = Integer.parseInt(getProperty(PUBLICATION_COMPRESSION));
+      return (level < 0 || level > 9) ? -1 : level;
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @return maximum number of resources published at the same time that read from the same SQL source database host,
+   * defaulting to 2. Less than 1 means unlimited.
+   */
+  public int getPublicationMaxPerDatabase() {
+    try {
+      return Integer.parseInt(getProperty(PUBLICATION_MAX_PER_DATABASE));
+    } catch (NumberFormatException e) {
+      return 2;
+    }
+  }
+
+  /**
+   * @return maximum number of resources published at the same time into the data directory disk, defaulting to 0
+   * meaning unlimited
+   */
+  public int getPublicationMaxPerDisk() {
+    try {
+      return Integer.parseInt(getProperty(PUBLICATION_MAX_PER_DISK));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
+  /**
+   * @return maximum number of connections open at the same time to each SQL source database (per JDBC URL and user),
+   * defaulting to 4. Pools are enlarged to the number of concurrent scans publications can run, see
+   * {@link #getPublicationMaxPerDatabase()} and {@link #getPublicationThreads()}.
+   */
+  public int getSqlPoolSize() {
+    try {
+      return Math.max(1, Integer.parseInt(getProperty(SQL_POOL_SIZE)));
+    } catch (NumberFormatException e) {
+      return 4;
+    }
+  }
+
+  /**
+   * @return time in seconds after which idle connections to SQL source databases get closed, defaulting to 300
+   */
+  public int getSqlPoolIdleTimeout() {
+    try {
+      return Math.max(1, Integer.parseInt(getProperty(SQL_POOL_IDLE_TIMEOUT)));
+    } catch (NumberFormatException e) {
+      return 300;
+    }
+  }
+
+  /**
+   * @return maximum number of bytes used to detect duplicate core record identifiers in memory, and to look up core
+   * record identifiers referred to by extension records, before spilling them to disk. Shared by both when they are
+   * done at the same time. Configured in megabytes, defaulting to 128.
+   */
+  public long getValidationMemory() {
+    try {
+      return Math.max(1, Long.parseLong(getProperty(VALIDATION_MEMORY))) * 1024 * 1024;
+    } catch (NumberFormatException e) {
+      return 128L * 1024 * 1024;
+    }
+  }
+
+  /**
+   * @return maximum number of threads sorting the core data file while validating an archive, defaulting to the
+   * number of processors but at most 4
+   */
+  public int getValidationSortThreads() {
+    try {
+      return Math.max(1, Integer.parseInt(getProperty(VALIDATION_SORT_THREADS)));
+    } catch (NumberFormatException e) {
+      return Math.min(4, Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  /**
+   * @return maximum number of threads loading the data directory when the IPT starts, defaulting to the number of
+   * processors but at most 4
+   */
+  public int getStartupThreads() {
+    try {
+      return Math.max(1, Integer.parseInt(getProperty(STARTUP_THREADS)));
+    } catch (NumberFormatException e) {
+      return Math.min(4, Runtime.getRuntime().availableProcessors());
+    }
+  }
+
+  /**
+   * @return true if resources that did not change since the last startup are restored from a snapshot, true by default
+   */
+  public boolean isStartupSnapshot() {
+    return !"false".equalsIgnoreCase(getProperty(STARTUP_SNAPSHOT));
+  }
+
+  /**
+   * @return maximum number of resources holding their metadata in memory, defaulting to 1000, or 0 meaning the
+   * metadata of all resources is held in memory
+   */
+  public int getEmlCacheSize() {
+    try {
+      return Math.max(0, Integer.parseInt(getProperty(EML_CACHE_SIZE)));
+    } catch (NumberFormatException e) {
+      return 1000;
+    }
+  }
+
+  /**
+   * @return milliseconds the writes of resource.xml and eml.xml files are delayed by, so that successive saves of a
+   * resource get written once, defaulting to 0 meaning files are written immediately
+   */
+  public long getPersistenceWriteDelay() {
+    try {
+      return Math.max(0, Long.parseLong(getProperty(PERSISTENCE_WRITE_DELAY)));
+    } catch (NumberFormatException e) {
+      return 0;
+    }
+  }
+
   public String getProperty(String key) {
     return properties.getProperty(key);
   }
@@ -314,6 +474,61 @@ public class AppConfig {
     return "true".equalsIgnoreCase(properties.getProperty(ARCHIVAL_MODE));
   }
 
+  /**
+   * @return true if data files whose sources and mappings did not change since the last published version should be
+   * reused from that version's archive instead of being regenerated
+   */
+  public boolean isIncrementalPublishing() {
+    return "true".equalsIgnoreCase(properties.getProperty(PUBLICATION_INCREMENTAL));
+  }
+
+  /**
+   * @return true if archives should be generated in the resource's directory, recording each completed stage and data
+   * file in a checkpoint, so that an interrupted publication can be resumed from the last completed data file
+   */
+  public boolean isPublicationCheckpoint() {
+    return "true".equalsIgnoreCase(properties.getProperty(PUBLICATION_CHECKPOINT));
+  }
+
+  /**
+   * @return true if publications interrupted by a restart should be resumed when resources are loaded. Defaults to
+   * true, only applies if checkpoints are recorded
+   */
+  public boolean isPublicationResume() {
+    return isPublicationCheckpoint() && !"false".equalsIgnoreCase(properties.getProperty(PUBLICATION_RESUME));
+  }
+
+  /**
+   * @return true if extension records should be checked to refer to existing core records when publishing. Defaults
+   * to true
+   */
+  public boolean isValidationCoreIdReferences() {
+    return !"false".equalsIgnoreCase(properties.getProperty(VALIDATION_CORE_ID_REFERENCES));
+  }
+
+  /**
+   * @return true if data files should be validated while they are written, instead of being read again once written.
+   * Defaults to true, unless duplicate core record identifiers are detected using a sorted copy of the core data file
+   */
+  public boolean isValidationInline() {
+    return !"false".equalsIgnoreCase(properties.getProperty(VALIDATION_INLINE)) && !isValidationSortCore();
+  }
+
+  /**
+   * @return true if the sorted runs written while sorting the core data file should be compressed
+   */
+  public boolean isValidationSortCompressed() {
+    return "true".equalsIgnoreCase(properties.getProperty(VALIDATION_SORT_COMPRESSED));
+  }
+
+  /**
+   * @return true if duplicate core record identifiers should be detected by comparing neighbours in a sorted copy of
+   * the core data file, instead of in a single pass over the unsorted file
+   */
+  public boolean isValidationSortCore() {
+    return "true".equalsIgnoreCase(properties.getProperty(VALIDATION_SORT_CORE));
+  }
+
   public boolean isGbifAnalytics() {
     return "true".equalsIgnoreCase(properties.getProperty(ANALYTICS_GBIF));
   }
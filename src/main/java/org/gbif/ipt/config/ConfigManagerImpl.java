@@ -21,8 +21,19 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.net.MalformedURLException;
 import java.net.URL;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import javax.servlet.http.HttpServletResponse;
 
+import com.google.common.base.Throwables;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
 import org.apache.commons.lang3.StringUtils;
@@ -164,31 +175,102 @@ public class ConfigManagerImpl extends BaseManager implements ConfigManager {
       }
     }
 
-    log.info("Loading user accounts ...");
-    userManager.load();
-
-    log.info("Loading vocabularies ...");
-    vocabManager.load();
-
-    log.info("Loading extensions ...");
-    extensionManager.load();
-
-    if (!dataDir.configFile(RegistrationManagerImpl.PERSISTENCE_FILE_V2).exists()) {
-      log.info("Perform 1-time event: migrate registration.xml into registration2.xml with passwords encrypted");
-      registrationManager.encryptRegistration();
+    // user accounts, vocabularies and extensions, and the registration do not depend on each other, so they are
+    // loaded at the same time, whereas resources refer to all of them
+    long started = System.currentTimeMillis();
+    Map<String, Long> durations = Collections.synchronizedMap(new LinkedHashMap<String, Long>());
+    final Phase users = new Phase("user accounts", durations) {
+      void load() {
+        userManager.load();
+      }
+    };
+    final Phase vocabularies = new Phase("vocabularies", durations) {
+      void load() {
+        vocabManager.load();
+      }
+    };
+    // extensions refer to vocabularies
+    final Phase extensions = new Phase("extensions", durations) {
+      void load() {
+        extensionManager.load();
+      }
+    };
+    final Phase registration = new Phase("registration configuration", durations) {
+      void load() {
+        if (!dataDir.configFile(RegistrationManagerImpl.PERSISTENCE_FILE_V2).exists()) {
+          log.info("Perform 1-time event: migrate registration.xml into registration2.xml with passwords encrypted");
+          registrationManager.encryptRegistration();
+        }
+        registrationManager.load();
+      }
+    };
+    ExecutorService loaders = Executors.newFixedThreadPool(Math.min(3, Math.max(1, cfg.getStartupThreads())));
+    try {
+      List<Future<?>> loading = new ArrayList<Future<?>>();
+      loading.add(loaders.submit(users));
+      loading.add(loaders.submit(new Runnable() {
+        public void run() {
+          vocabularies.call();
+          extensions.call();
+        }
+      }));
+      loading.add(loaders.submit(registration));
+      for (Future<?> future : loading) {
+        future.get();
+      }
+    } catch (ExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw new InvalidConfigException(TYPE.INVALID_DATA_DIR, "Interrupted while loading the data directory");
+    } finally {
+      loaders.shutdown();
     }
 
-    log.info("Loading registration configuration...");
-    registrationManager.load();
+    new Phase("resource configurations", durations) {
+      void load() {
+        resourceManager.load();
+      }
+    }.call();
 
-    log.info("Loading resource configurations ...");
-    resourceManager.load();
+    StringBuilder report = new StringBuilder("Loaded data directory in ");
+    report.append(System.currentTimeMillis() - started).append(" ms:");
+    synchronized (durations) {
+      for (Map.Entry<String, Long> phase : durations.entrySet()) {
+        report.append(' ').append(phase.getKey()).append(" (").append(phase.getValue()).append(" ms)");
+      }
+    }
+    log.info(report.toString());
 
     // start publishing monitor
     log.info("Starting Publishing Monitor...");
     publishingMonitor.start();
   }
 
+  /**
+   * A part of the data directory to load, recording how long loading it took.
+   */
+  private abstract class Phase implements Callable<Void> {
+
+    private final String name;
+    private final Map<String, Long> durations;
+
+    Phase(String name, Map<String, Long> durations) {
+      this.name = name;
+      this.durations = durations;
+    }
+
+    abstract void load();
+
+    public Void call() {
+      log.info("Loading " + name + " ...");
+      long start = System.currentTimeMillis();
+      load();
+      durations.put(name, System.currentTimeMillis() - start);
+      return null;
+    }
+  }
+
   private void reloadLogger() {
     LogFileAppender.LOGDIR = dataDir.loggingDir().getAbsolutePath();
     log.info("Setting logging dir to " + LogFileAppender.LOGDIR);
@@ -17,6 +17,7 @@
 package org.gbif.ipt.config;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 import com.google.inject.Singleton;
@@ -26,7 +27,8 @@ import org.apache.log4j.Logger;
 public class ConfigWarnings {
 
   private static final Logger LOG = Logger.getLogger(ConfigWarnings.class);
-  private final List<String> startupErrors = new ArrayList<String>();
+  // added to while the data directory is loaded by several threads
+  private final List<String> startupErrors = Collections.synchronizedList(new ArrayList<String>());
 
   public void addStartupError(Exception e) {
     if (e.getMessage() != null) {
@@ -32,6 +32,9 @@ public class DataDir {
   public static final String EML_XML_FILENAME = "eml.xml";
   public static final String DWCA_FILENAME = "dwca.zip";
   public static final String PUBLICATION_LOG_FILENAME = "publication.log";
+  public static final String DWCA_FINGERPRINTS_FILENAME = "dwca-fingerprints.properties";
+  public static final String PUBLICATION_CHECKPOINT_DIR = "publication-checkpoint";
+  public static final String RESOURCES_SNAPSHOT_FILENAME = "resources.snapshot";
   private static final Random RANDOM = new Random();
 
   private static Logger log = Logger.getLogger(DataDir.class);
@@ -242,6 +245,22 @@ public class DataDir {
     return dataFile(RESOURCES_DIR + "/" + resourceName + "/" + PUBLICATION_LOG_FILENAME);
   }
 
+  /**
+   * Retrieves the file storing the fingerprints of the data files in the last published DwC-A of a resource, used to
+   * reuse unchanged data files when publishing the next version.
+   */
+  public File resourceDwcaFingerprintsFile(@NotNull String resourceName) {
+    return dataFile(RESOURCES_DIR + "/" + resourceName + "/" + DWCA_FINGERPRINTS_FILENAME);
+  }
+
+  /**
+   * Retrieves the directory a resource's DwC-A is generated in when publication checkpoints are recorded, holding the
+   * checkpoint of an interrupted or failed publication.
+   */
+  public File resourcePublicationCheckpointDir(@NotNull String resourceName) {
+    return dataFile(RESOURCES_DIR + "/" + resourceName + "/" + PUBLICATION_CHECKPOINT_DIR);
+  }
+
   /**
    * Retrieves published RTF file for a specific version of a resource.
    *
@@ -330,6 +349,13 @@ public class DataDir {
     return dataFile(RESOURCES_DIR + "/" + resourceName + "/sources/" + sourceName + ".log");
   }
 
+  /**
+   * @return file holding the profile of a text file source, built when the source was analyzed
+   */
+  public File sourceProfileFile(String resourceName, String sourceName) {
+    return dataFile(RESOURCES_DIR + "/" + resourceName + "/sources/" + sourceName + ".profile");
+  }
+
   /**
    * Return a temporary directory with randomly-generated number added to name to uniquely identifier it.
    *
@@ -12,8 +12,12 @@
  ***************************************************************************/
 package org.gbif.ipt.config;
 
+import org.gbif.ipt.service.manage.ResourceManager;
+import org.gbif.ipt.service.manage.SourceManager;
 import org.gbif.ipt.xss.XSSFilter;
 
+import javax.servlet.ServletContextEvent;
+
 import com.google.inject.Guice;
 import com.google.inject.Injector;
 import com.google.inject.servlet.GuiceServletContextListener;
@@ -22,12 +26,14 @@ import com.google.inject.struts2.Struts2GuicePluginModule;
 
 public class IPTContextListener extends GuiceServletContextListener {
 
+  private Injector injector;
+
   /**
    * Ensure the injector is created when the web application is deployed.
    */
   @Override
   protected Injector getInjector() {
-    return Guice.createInjector(new ServletModule() {
+    injector = Guice.createInjector(new ServletModule() {
 
       @Override
       protected void configureServlets() {
@@ -35,6 +41,19 @@ public class IPTContextListener extends GuiceServletContextListener {
         super.configureServlets();
       }
     }, new Struts2GuicePluginModule(), new IPTModule());
+    return injector;
+  }
+
+  /**
+   * Release resources held across requests when the web application is undeployed.
+   */
+  @Override
+  public void contextDestroyed(ServletContextEvent servletContextEvent) {
+    if (injector != null) {
+      injector.getInstance(ResourceManager.class).shutdown();
+      injector.getInstance(SourceManager.class).shutdown();
+    }
+    super.contextDestroyed(servletContextEvent);
   }
 
 }
@@ -106,13 +106,135 @@ public class JdbcSupport {
     }
 
     public void enableLargeResultSet(Statement stmnt) throws SQLException {
+      enableLargeResultSet(stmnt, null);
+    }
+
+    /**
+     * Tunes a statement to stream large result sets instead of reading them into memory at once.
+     *
+     * @param stmnt statement not executed yet
+     * @param fetchSize number of rows fetched per round trip, or null for the default of 1000. Ignored for MySQL,
+     * which always streams row by row.
+     */
+    public void enableLargeResultSet(Statement stmnt, Integer fetchSize) throws SQLException {
       // force resultsset streaming for MYSQL only
       if (this.driver.startsWith("com.mysql")) {
         // see http://benjchristensen.com/2008/05/27/mysql-jdbc-memory-usage-on-large-resultset/
         stmnt.setFetchSize(Integer.MIN_VALUE);
       } else {
-        stmnt.setFetchSize(1000);
+        // PostgreSQL only uses a cursor honoring the fetch size outside of auto commit mode
+        if (this.driver.startsWith("org.postgresql")) {
+          stmnt.getConnection().setAutoCommit(false);
+        }
+        stmnt.setFetchSize(fetchSize == null || fetchSize < 1 ? 1000 : fetchSize);
+      }
+    }
+
+    /**
+     * Wraps a select statement, selecting a page of at most limit rows having a key, ordered by key (keyset
+     * pagination). The first page starts at the lowest key, every following page after the key bound as last
+     * parameter of the statement, i.e. the last key of the previous page. The key is selected again as last column,
+     * labeled ipt_key.
+     *
+     * @param sql select statement
+     * @param keyColumn unique key column returned by the select statement
+     * @param after true to select the rows after the key bound as last parameter, false to select the first page
+     * @param limit maximum number of rows selected
+     * @param selectList columns to select as built by {@link #selectList(List, String)}, or null for all columns
+     * @param condition condition rows must match in addition to the key, or null for none
+     *
+     * @return final sql string
+     */
+    public String addKeyPage(String sql, String keyColumn, boolean after, int limit, String selectList,
+      String condition) {
+      String select =
+        selectKeyed(sql, keyColumn, selectList, condition) + keyColumn + (after ? " > ?" : " IS NOT NULL") + " ORDER BY "
+        + keyColumn;
+      if (LIMIT_TYPE.TOP == limitType) {
+        return "SELECT TOP " + limit + select.substring("SELECT".length());
+      } else if (LIMIT_TYPE.ROWNUM == limitType) {
+        return "SELECT * FROM (" + select + ") WHERE rownum <= " + limit;
       }
+      return select + " LIMIT " + limit;
+    }
+
+    /**
+     * Wraps a select statement like {@link #addKeyPage(String, String, boolean, int, String, String)}, selecting all
+     * rows without a key instead.
+     *
+     * @param sql select statement
+     * @param keyColumn key column returned by the select statement
+     * @param selectList columns to select as built by {@link #selectList(List, String)}, or null for all columns
+     * @param condition condition rows must match in addition to the key, or null for none
+     *
+     * @return final sql string
+     */
+    public String addNullKey(String sql, String keyColumn, String selectList, String condition) {
+      return selectKeyed(sql, keyColumn, selectList, condition) + keyColumn + " IS NULL";
+    }
+
+    private String selectKeyed(String sql, String keyColumn, String selectList, String condition) {
+      return "SELECT " + (selectList == null ? "ipt_keyset.*" : selectList) + ", " + keyColumn + " AS ipt_key FROM ("
+             + stripSemicolon(sql) + ") ipt_keyset WHERE " + (condition == null ? "" : "(" + condition + ") AND ");
+    }
+
+    /**
+     * Wraps a select statement, selecting only some of its columns.
+     *
+     * @param sql select statement
+     * @param selectList columns to select as built by {@link #selectList(List, String)}
+     *
+     * @return final sql string
+     */
+    public String addProjection(String sql, String selectList) {
+      return addProjection(sql, selectList, null);
+    }
+
+    /**
+     * Wraps a select statement, selecting only some of its columns and rows.
+     *
+     * @param sql select statement
+     * @param selectList columns to select as built by {@link #selectList(List, String)}, or null for all columns
+     * @param condition condition rows must match, or null for none
+     *
+     * @return final sql string
+     */
+    public String addProjection(String sql, String selectList, String condition) {
+      return "SELECT " + (selectList == null ? "*" : selectList) + " FROM (" + stripSemicolon(sql) + ") ipt_projection"
+             + (condition == null ? "" : " WHERE " + condition);
+    }
+
+    /**
+     * MySQL copies a select statement wrapped by another one into a temporary table before returning any row, so
+     * wrapping a large statement to select fewer columns costs more than it saves.
+     *
+     * @return true if select statements can be wrapped by {@link #addProjection(String, String, String)} without
+     * copying them
+     */
+    public boolean isProjectionSupported() {
+      return !this.driver.startsWith("com.mysql");
+    }
+
+    /**
+     * @param columns labels of the columns to select
+     * @param quote string quoting identifiers, as returned by the database metadata
+     *
+     * @return comma separated list of quoted column labels
+     */
+    public String selectList(List<String> columns, String quote) {
+      StringBuilder sb = new StringBuilder();
+      for (String column : columns) {
+        if (sb.length() > 0) {
+          sb.append(", ");
+        }
+        sb.append(quote).append(column.replace(quote, quote + quote)).append(quote);
+      }
+      return sb.toString();
+    }
+
+    private String stripSemicolon(String sql) {
+      String trimmed = sql.trim();
+      return trimmed.endsWith(";") ? trimmed.substring(0, trimmed.length() - 1) : trimmed;
     }
 
     public String getDriver() {
@@ -1,20 +1,16 @@
 package org.gbif.ipt.config;
 
-import org.gbif.ipt.action.BaseAction;
 import org.gbif.ipt.model.Resource;
 import org.gbif.ipt.service.InvalidConfigException;
 import org.gbif.ipt.service.PublicationException;
 import org.gbif.ipt.service.admin.RegistrationManager;
 import org.gbif.ipt.service.manage.ResourceManager;
 import org.gbif.ipt.struts2.SimpleTextProvider;
+import org.gbif.ipt.task.PublishingQueue;
+import org.gbif.ipt.task.PublishingSchedule;
 
 import java.math.BigDecimal;
 import java.util.Date;
-import java.util.HashSet;
-import java.util.List;
-import java.util.Map;
-import java.util.Set;
-import java.util.concurrent.Future;
 import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.atomic.AtomicBoolean;
 
@@ -23,29 +19,28 @@ import com.google.inject.Singleton;
 import org.apache.log4j.Logger;
 
 /**
- * Class used to start a monitor thread which is responsible for auto-publishing resources when they are due,
- * and which ensures publication always finishes entirely.
+ * Class used to start a monitor thread which is responsible for auto-publishing resources when they are due. The
+ * thread sleeps until the next resource in the {@link PublishingSchedule} is due, rather than polling all resources.
  */
 @Singleton
 public class PublishingMonitor {
 
-  // 10 second interval
+  // longest wait for a free publishing thread, 10 seconds
   public static final int MONITOR_INTERVAL_MS = 10000;
   private static Thread monitorThread;
   private static final Logger LOG = Logger.getLogger(PublishingMonitor.class);
   private AtomicBoolean running;
   private final ResourceManager resourceManager;
-  private final BaseAction baseAction;
 
   @Inject
   public PublishingMonitor(SimpleTextProvider textProvider, AppConfig cfg, RegistrationManager registrationManager,
     ResourceManager resourceManager) {
     this.resourceManager = resourceManager;
-    baseAction = new BaseAction(textProvider, cfg, registrationManager);
   }
 
   /**
-   * Polls the queue and launches threads if possible.
+   * Waits for resources to become due for auto-publication, and launches their publication once a publishing thread is
+   * free. Publications finish by themselves as soon as their DwC-A has been generated.
    */
   @Singleton
   class QueueMonitor implements Runnable {
@@ -59,85 +54,89 @@ public class PublishingMonitor {
 
     public void run() {
       running.set(true);
+      PublishingSchedule schedule = resourceManager.getPublishingSchedule();
       while (running.get()) {
         try {
-          // monitor resources that are currently being published or have finished
-          Map<String, Future<Integer>> processFutures = resourceManager.getProcessFutures();
-          Set<String> shortNames = new HashSet<String>();
-          if (!processFutures.isEmpty()) {
-            // copy futures into new set, to avoid concurrent modification exception
-            shortNames.addAll(processFutures.keySet());
-            // in order for publishing to finish entirely, resourceManager.isLocked() must be called
-            for (String shortName : shortNames) {
-              resourceManager.isLocked(shortName, baseAction);
-            }
+          String shortname = schedule.takeDue();
+          Resource resource = resourceManager.get(shortname);
+          if (resource == null || resource.getNextPublished() == null) {
+            // deleted, or auto-publishing turned off in the meantime
+            continue;
           }
-
-          // might as well check if we can handle more publishing jobs
-          ThreadPoolExecutor executor = resourceManager.getExecutor();
-          if (executor.getMaximumPoolSize() - executor.getActiveCount() > 0) {
-            Date now = new Date();
-            List<Resource> resources = resourceManager.list();
-            for (Resource resource : resources) {
-              Date next = resource.getNextPublished();
-              BigDecimal nextVersion = new BigDecimal(resource.getNextVersion().toPlainString());
-              BigDecimal replacedVersion = new BigDecimal(resource.getEmlVersion().toPlainString());
-              if (next != null) {
-                // ensure resource is due to be auto-published
-                if (next.before(now)) {
-                  // ensure resource isn't already being published
-                  if (!shortNames.contains(resource.getShortname())) {
-                    // ensure resource has not exceeded the maximum number of publication failures
-                    if (!resourceManager.hasMaxProcessFailures(resource)) {
-                      try {
-                        LOG.debug("Monitor: " + resource.getTitleAndShortname() + " v# " + nextVersion.toPlainString()
-                                  + " due to be auto-published: " + next.toString());
-                        resourceManager.publish(resource, nextVersion, null);
-                      } catch (PublicationException e) {
-                        if (PublicationException.TYPE.LOCKED == e.getType()) {
-                          LOG.error("Monitor: " + resource.getTitleAndShortname()
-                            + " cannot be auto-published, because "
-                            + "it is currently being published");
-                        } else {
-                          // alert user publication failed
-                          LOG.error(
-                            "Publishing version #" + nextVersion.toPlainString() + " of resource "
-                              + resource.getTitleAndShortname()
-                              + " failed: " + e.getMessage());
-                          // restore the previous version since publication was unsuccessful
-                          resourceManager.restoreVersion(resource, nextVersion, replacedVersion, null);
-                          // keep track of how many failures on auto publication have happened
-                          resourceManager.getProcessFailures().put(resource.getShortname(), new Date());
-                        }
-                      } catch (InvalidConfigException e) {
-                        // with this type of error, the version cannot be rolled back - just alert user it failed
-                        LOG.error(
-                          "Publishing version #" + nextVersion.toPlainString() + "of resource " + resource.getShortname()
-                            + "failed:" + e.getMessage(), e);
-                      }
-
-                    } else {
-                      LOG.debug("Skipping auto-publication for [" + resource.getTitleAndShortname()
-                        + "] since it has exceeded the maximum number of failed publish attempts. Please try "
-                        + "to publish this resource individually to fix the problem(s)");
-                    }
-                  } else {
-                    LOG.debug("Skipping auto-publication for [" + resource.getTitleAndShortname()
+          Date next = resource.getNextPublished();
+          if (next.after(new Date())) {
+            // postponed in the meantime
+            schedule.schedule(shortname, next);
+            continue;
+          }
+          if (resourceManager.getProcessFutures().containsKey(shortname)) {
+            // gets rescheduled when the running publication finishes, or is cancelled
+            LOG.debug("Skipping auto-publication for [" + resource.getTitleAndShortname()
                       + "] since it is already in progress");
-                  }
-                }
-              }
+            continue;
+          }
+          // ensure resource has not exceeded the maximum number of publication failures
+          if (resourceManager.hasMaxProcessFailures(resource)) {
+            LOG.debug("Skipping auto-publication for [" + resource.getTitleAndShortname()
+                      + "] since it has exceeded the maximum number of failed publish attempts. Please try "
+                      + "to publish this resource individually to fix the problem(s)");
+            continue;
+          }
+          if (!hasCapacity()) {
+            // keep the resource first in line, and wait for a publication to finish
+            schedule.schedule(shortname, next);
+            long since = schedule.getChanges();
+            if (!hasCapacity()) {
+              schedule.awaitChange(since, MONITOR_INTERVAL_MS);
             }
+            continue;
           }
-
-          // just poll once every 'interval' milliseconds
-          Thread.sleep(MONITOR_INTERVAL_MS);
+          publish(resource, next);
         } catch (InterruptedException e) {
-          // should the thread have been interrupted, encountered when trying to sleep
-          LOG.error("Monitor thread has been interrupted!", e);
+          if (running.get()) {
+            LOG.error("Monitor thread has been interrupted!", e);
+          }
         }
       }
     }
+
+    /**
+     * @return true if fewer resources are being published than there are publishing threads
+     */
+    private boolean hasCapacity() {
+      ThreadPoolExecutor executor = resourceManager.getExecutor();
+      return resourceManager.getProcessFutures().size() < executor.getMaximumPoolSize();
+    }
+
+    private void publish(Resource resource, Date next) {
+      PublishingSchedule schedule = resourceManager.getPublishingSchedule();
+      BigDecimal nextVersion = new BigDecimal(resource.getNextVersion().toPlainString());
+      BigDecimal replacedVersion = new BigDecimal(resource.getEmlVersion().toPlainString());
+      try {
+        LOG.debug("Monitor: " + resource.getTitleAndShortname() + " v# " + nextVersion.toPlainString()
+                  + " due to be auto-published: " + next.toString());
+        resourceManager.publish(resource, nextVersion, null, PublishingQueue.Priority.SCHEDULED);
+      } catch (PublicationException e) {
+        if (PublicationException.TYPE.LOCKED == e.getType()) {
+          LOG.error("Monitor: " + resource.getTitleAndShortname() + " cannot be auto-published, because "
+                    + "it is currently being published");
+        } else {
+          // alert user publication failed
+          LOG.error("Publishing version #" + nextVersion.toPlainString() + " of resource "
+                    + resource.getTitleAndShortname() + " failed: " + e.getMessage());
+          // restore the previous version since publication was unsuccessful
+          resourceManager.restoreVersion(resource, nextVersion, replacedVersion, null);
+          // keep track of how many failures on auto publication have happened
+          resourceManager.getProcessFailures().put(resource.getShortname(), new Date());
+          schedule.retry(resource.getShortname());
+        }
+      } catch (InvalidConfigException e) {
+        // with this type of error, the version cannot be rolled back - just alert user it failed
+        LOG.error("Publishing version #" + nextVersion.toPlainString() + "of resource " + resource.getShortname()
+                  + "failed:" + e.getMessage(), e);
+        schedule.retry(resource.getShortname());
+      }
+    }
   }
 
   /**
@@ -169,6 +168,10 @@ public class PublishingMonitor {
    */
   public void stop() {
     running.set(false);
+    if (monitorThread != null) {
+      // wake the thread up, it waits for the next resource due
+      monitorThread.interrupt();
+    }
     monitorThread = null;
   }
 }
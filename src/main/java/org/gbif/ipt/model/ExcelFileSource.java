@@ -4,36 +4,24 @@ import org.gbif.ipt.utils.FileUtils;
 import org.gbif.utils.file.ClosableReportingIterator;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.util.Date;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 
 import com.google.common.collect.Lists;
 import com.google.common.collect.Maps;
 import com.google.common.collect.Sets;
 import org.apache.log4j.Logger;
-import org.apache.poi.hssf.usermodel.HSSFFormulaEvaluator;
-import org.apache.poi.hssf.usermodel.HSSFWorkbook;
-import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
-import org.apache.poi.ss.usermodel.Cell;
-import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.ss.usermodel.FormulaEvaluator;
-import org.apache.poi.ss.usermodel.Row;
-import org.apache.poi.ss.usermodel.Sheet;
-import org.apache.poi.ss.usermodel.Workbook;
-import org.apache.poi.ss.usermodel.WorkbookFactory;
-import org.apache.poi.xssf.usermodel.XSSFFormulaEvaluator;
-import org.apache.poi.xssf.usermodel.XSSFWorkbook;
 
 /**
  * Uses apache POI to parse excel spreadsheets.
  * A single file can have multiple sheets which each act as a separate source.
  * The same file can therefore be used for multiple ExcelFileSource instances.
- * POI usage example, see http://svn.apache.org/repos/asf/poi/trunk/src/examples/src/org/apache/poi/ss/examples/ToCSV.java
+ * Sheets are streamed row by row using the POI event APIs, so memory use does not depend on the size of a sheet.
+ * Formula cells are read using the result cached in the file, they are not evaluated again.
  */
 public class ExcelFileSource extends SourceBase implements FileSource {
 
@@ -87,18 +75,9 @@ public class ExcelFileSource extends SourceBase implements FileSource {
     this.sheetIdx = sheetIdx;
   }
 
-  private Workbook openBook() throws IOException {
-    LOG.info("Opening excel workbook [" + file.getName() + "]");
-    try {
-      FileInputStream fis = new FileInputStream(file);
-      return WorkbookFactory.create(fis);
-    } catch (InvalidFormatException e) {
-      throw new IOException("Cannot open invalid excel speadsheet", e);
-    }
-  }
-
-  private Sheet getSheet(Workbook book) throws IOException {
-    return book.getSheetAt(sheetIdx);
+  private ExcelSheetReader openSheet() throws IOException {
+    LOG.info("Opening sheet " + sheetIdx + " of excel workbook [" + file.getName() + "]");
+    return ExcelSheetReader.open(file, sheetIdx);
   }
 
   public int getRows() {
@@ -107,60 +86,68 @@ public class ExcelFileSource extends SourceBase implements FileSource {
 
   private class RowIterator implements ClosableReportingIterator<String[]> {
 
-    private final Sheet sheet;  // 0 based
-    private final Iterator<Row> iter;
+    private final ExcelSheetReader reader;
     private final int rowSize;
-    // DataFormatter displays data exactly as it appears in Excel
-    private final DataFormatter dataFormatter = new DataFormatter();
+    // row read ahead, null if there are no further rows
+    private String[] nextRow;
+    // sheet read error, thrown once the rows read before it are consumed
+    private IOException failure;
     private boolean rowError;
     private String errorMessage;
     private Exception exception;
-    // FormulaEvaluator evaluate any formula in Excel cell and returns result
-    private FormulaEvaluator formulaEvaluator;
-
-    RowIterator(ExcelFileSource source) throws IOException, InvalidFormatException {
-      Workbook book = openBook();
-      sheet = getSheet(book);
-      // instantiate the appropriate FormulaEvaluator, depending on whether workbook is .xls or .xlsx
-      formulaEvaluator = (book instanceof XSSFWorkbook) ? new XSSFFormulaEvaluator((XSSFWorkbook) book)
-        : new HSSFFormulaEvaluator((HSSFWorkbook) book);
-      iter = sheet.rowIterator();
-      rowSize = source.getColumns();
-    }
 
-    RowIterator(ExcelFileSource source, int skipRows) throws IOException, InvalidFormatException {
-      this(source);
-      while (skipRows > 0) {
-        iter.next();
-        skipRows--;
+    RowIterator(ExcelFileSource source, int skipRows) throws IOException {
+      reader = openSheet();
+      rowSize = source.getColumns();
+      try {
+        nextRow = reader.nextRow();
+        while (skipRows > 0 && nextRow != null) {
+          nextRow = reader.nextRow();
+          skipRows--;
+        }
+      } catch (IOException e) {
+        reader.close();
+        throw e;
       }
     }
 
     public void close() {
-      // nothing to do
+      reader.close();
     }
 
+    /**
+     * @throws IllegalStateException if the sheet could not be read further, so that a read error never looks like the
+     * end of the sheet
+     */
     public boolean hasNext() {
-      return iter.hasNext();
+      if (nextRow == null && failure != null) {
+        IOException e = failure;
+        failure = null;
+        throw new IllegalStateException("Cannot read excel source " + name + ": " + e.getMessage(), e);
+      }
+      return nextRow != null;
     }
 
     public String[] next() {
       //TODO: log empty or irregular rows, setting rowError to true and populating errorMessage
+      if (!hasNext()) {
+        throw new NoSuchElementException();
+      }
+      resetReportingIterator();
       String[] val = new String[rowSize];
-      if (hasNext()) {
-        resetReportingIterator();
-        try {
-          Row row = iter.next();
-          for (int i = 0; i < rowSize; i++) {
-            Cell c = row.getCell(i, Row.CREATE_NULL_AS_BLANK);
-            formulaEvaluator.evaluate(c);
-            val[i] = dataFormatter.formatCellValue(c, formulaEvaluator);
-          }
-        } catch (Exception e) {
-          LOG.debug("Exception caught: " + e.getMessage(), e);
-          exception = e;
-          errorMessage = e.getMessage();
-        }
+      for (int i = 0; i < rowSize; i++) {
+        // missing cells are blank
+        val[i] = (i < nextRow.length && nextRow[i] != null) ? nextRow[i] : "";
+      }
+      try {
+        nextRow = reader.nextRow();
+      } catch (IOException e) {
+        // the rows read so far are fine, the next call to hasNext fails
+        LOG.debug("Exception caught: " + e.getMessage(), e);
+        exception = e;
+        errorMessage = e.getMessage();
+        failure = e;
+        nextRow = null;
       }
       return val;
     }
@@ -204,11 +191,10 @@ public class ExcelFileSource extends SourceBase implements FileSource {
    * @return list of available sheets, keyed on sheet index
    */
   public Map<Integer, String> sheets() throws IOException {
-    Workbook book = openBook();
-    int cnt = book.getNumberOfSheets();
+    List<String> names = ExcelSheetReader.sheetNames(file);
     Map<Integer, String> sheets = Maps.newHashMap();
-    for (int x = 0; x < cnt; x++) {
-      sheets.put(x, book.getSheetName(x));
+    for (int x = 0; x < names.size(); x++) {
+      sheets.put(x, names.get(x));
     }
     return sheets;
   }
@@ -217,7 +203,12 @@ public class ExcelFileSource extends SourceBase implements FileSource {
     if (rows > 0) {
       try {
         if (ignoreHeaderLines > 0) {
-          return Lists.newArrayList(new RowIterator(this, ignoreHeaderLines - 1).next());
+          RowIterator iter = new RowIterator(this, ignoreHeaderLines - 1);
+          try {
+            return Lists.newArrayList(iter.next());
+          } finally {
+            iter.close();
+          }
 
         } else {
           List<String> columnList = Lists.newArrayList();
@@ -262,18 +253,25 @@ public class ExcelFileSource extends SourceBase implements FileSource {
 
   public Set<Integer> analyze() throws IOException {
     setFileSize(getFile().length());
-    // find row size
-    Workbook book = openBook();
-    Sheet sheet = getSheet(book);
-    setRows(sheet.getPhysicalNumberOfRows());
-
-    Iterator<Row> iter = sheet.rowIterator();
-    if (iter.hasNext()) {
-      setColumns(iter.next().getLastCellNum());
-      setReadable(true);
-    } else {
-      setColumns(0);
-      setReadable(false);
+    // stream the whole sheet once to count its rows, the first row gives the row size
+    ExcelSheetReader reader = openSheet();
+    try {
+      int count = 0;
+      String[] row = reader.nextRow();
+      if (row != null) {
+        setColumns(row.length);
+        setReadable(true);
+      } else {
+        setColumns(0);
+        setReadable(false);
+      }
+      while (row != null) {
+        count++;
+        row = reader.nextRow();
+      }
+      setRows(count);
+    } finally {
+      reader.close();
     }
 
     //TODO: report empty or irregular rows
@@ -0,0 +1,84 @@
+package org.gbif.ipt.model;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.List;
+
+/**
+ * Streams the rows of a single sheet of an excel spreadsheet, without loading the workbook into memory.
+ * Formula cells are read using the result cached in the file by the last application that saved it, they are never
+ * evaluated.
+ * </br>
+ * Only physical rows, i.e. rows present in the file, are returned. Cell values are formatted as excel displays them.
+ */
+abstract class ExcelSheetReader implements Closeable {
+
+  // all OOXML (.xlsx) files are zip files
+  private static final byte[] ZIP_SIGNATURE = {'P', 'K', 3, 4};
+
+  /**
+   * Opens a sheet of an .xls or .xlsx file, detecting the format from the file content.
+   *
+   * @param file excel file
+   * @param sheetIdx index of the sheet to read, zero based
+   *
+   * @return reader positioned before the first row of the sheet
+   *
+   * @throws IOException if the file cannot be read or does not have the sheet
+   */
+  static ExcelSheetReader open(File file, int sheetIdx) throws IOException {
+    return isXlsx(file) ? new XlsxSheetReader(file, sheetIdx) : new XlsSheetReader(file, sheetIdx);
+  }
+
+  /**
+   * @param file excel file
+   *
+   * @return names of all sheets in the workbook, in sheet index order
+   *
+   * @throws IOException if the file cannot be read
+   */
+  static List<String> sheetNames(File file) throws IOException {
+    return isXlsx(file) ? XlsxSheetReader.sheetNames(file) : XlsSheetReader.sheetNames(file);
+  }
+
+  private static boolean isXlsx(File file) throws IOException {
+    InputStream in = new FileInputStream(file);
+    try {
+      byte[] header = new byte[ZIP_SIGNATURE.length];
+      int read = 0;
+      while (read < header.length) {
+        int r = in.read(header, read, header.length - read);
+        if (r < 0) {
+          return false;
+        }
+        read += r;
+      }
+      for (int i = 0; i < header.length; i++) {
+        if (header[i] != ZIP_SIGNATURE[i]) {
+          return false;
+        }
+      }
+      return true;
+    } finally {
+      in.close();
+    }
+  }
+
+  /**
+   * Reads the next physical row of the sheet.
+   *
+   * @return formatted cell values indexed by column, as long as the last cell of the row. Columns without a cell are
+   * null. Returns null if there are no further rows.
+   *
+   * @throws IOException if the sheet cannot be read
+   */
+  abstract String[] nextRow() throws IOException;
+
+  /**
+   * Releases the file, never throwing an exception.
+   */
+  public abstract void close();
+}
@@ -14,27 +14,83 @@
 package org.gbif.ipt.model;
 
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 
-import org.apache.commons.lang3.StringUtils;
-
+import com.google.common.base.Objects;
+
+import static com.google.common.base.Objects.equal;
+
+/**
+ * Filter records of a source have to match to be published. A filter either compares a single column, or combines
+ * other filters in a group.
+ * </br>
+ * Values are trimmed before being compared. The comparators taking a parameter use it as follows:
+ * <ul>
+ * <li>Equals, NotEquals: the value compared to</li>
+ * <li>In: the values matching, separated by |</li>
+ * <li>StartsWith: the prefix matching</li>
+ * <li>Matches: a regular expression the whole value must match</li>
+ * <li>GreaterOrEquals, LessOrEquals: the number the value is compared to as a number, values that are not numbers
+ * never match</li>
+ * </ul>
+ * Filters are compiled into a {@link RecordPredicate} before being applied to many records.
+ */
 public class RecordFilter implements Serializable {
 
   public enum Comparator {
-    IsNULL, IsNotNULL, Equals, NotEquals
+    IsNULL, IsNotNULL, Equals, NotEquals, In, StartsWith, Matches, GreaterOrEquals, LessOrEquals
   }
 
   public enum FilterTime {
     AfterTranslation, BeforeTranslation
   }
 
+  /**
+   * How the filters of a group are combined.
+   */
+  public enum Operator {
+    AND, OR
+  }
+
+  /**
+   * Separates the values of the In comparator.
+   */
+  public static final String IN_SEPARATOR = "|";
+
   private static final long serialVersionUID = 98709027465L;
 
   private Comparator comparator;
   private Integer column;
   private String param;
   private FilterTime filterTime;
+  private Operator operator;
+  private List<RecordFilter> filters;
+
+  /**
+   * @return predicate matching the same records as this filter, matching all records if the filter is not complete
+   *
+   * @throws IllegalArgumentException if a parameter is not a valid number or regular expression
+   */
+  public RecordPredicate compile() {
+    return RecordPredicate.compile(this);
+  }
+
+  @Override
+  public boolean equals(Object other) {
+    if (this == other) {
+      return true;
+    }
+    if (!(other instanceof RecordFilter)) {
+      return false;
+    }
+    RecordFilter o = (RecordFilter) other;
+    return equal(comparator, o.comparator) && equal(column, o.column) && equal(param, o.param)
+           && equal(filterTime, o.filterTime) && equal(operator, o.operator)
+           && equal(isGroup() ? filters : null, o.isGroup() ? o.filters : null);
+  }
 
   public Integer getColumn() {
     return column;
@@ -55,33 +111,63 @@ public class RecordFilter implements Serializable {
     return filterTimes;
   }
 
+  /**
+   * @return filters of this group, empty if this filter compares a single column
+   */
+  public List<RecordFilter> getFilters() {
+    if (filters == null) {
+      filters = new ArrayList<RecordFilter>();
+    }
+    return filters;
+  }
+
+  /**
+   * @return how the filters of this group are combined, AND if not set
+   */
+  public Operator getOperator() {
+    return operator == null ? Operator.AND : operator;
+  }
+
   public String getParam() {
     return param;
   }
 
+  @Override
+  public int hashCode() {
+    return Objects.hashCode(comparator, column, param, filterTime, operator, isGroup() ? filters : null);
+  }
+
+  /**
+   * @return true if this filter is complete: a group with a complete filter, or a comparator and column
+   */
+  public boolean isActive() {
+    if (isGroup()) {
+      for (RecordFilter filter : filters) {
+        if (filter.isActive()) {
+          return true;
+        }
+      }
+      return false;
+    }
+    return column != null && comparator != null;
+  }
+
+  /**
+   * @return true if this filter combines other filters
+   */
+  public boolean isGroup() {
+    return filters != null && !filters.isEmpty();
+  }
+
   /**
+   * Compiles the filter for a single record, use {@link #compile()} for many records.
+   *
    * @param record values array representing record/row
    *
    * @return true if the record matches this filter criteria
    */
   public boolean matches(String[] record) {
-    if (record != null && comparator != null && column != null) {
-      String val = null;
-      if (column < record.length) {
-        val = StringUtils.trimToNull(record[column]);
-      }
-      switch (comparator) {
-        case IsNULL:
-          return val == null;
-        case IsNotNULL:
-          return val != null;
-        case Equals:
-          return val != null && val.equals(param);
-        case NotEquals:
-          return val == null || !val.equals(param);
-      }
-    }
-    return true;
+    return record == null || compile().matches(record);
   }
 
   public void setColumn(Integer column) {
@@ -96,12 +182,23 @@ public class RecordFilter implements Serializable {
     this.filterTime = filterTime;
   }
 
+  public void setFilters(List<RecordFilter> filters) {
+    this.filters = filters;
+  }
+
+  public void setOperator(Operator operator) {
+    this.operator = operator;
+  }
+
   public void setParam(String param) {
     this.param = param;
   }
 
   @Override
   public String toString() {
+    if (isGroup()) {
+      return getOperator() + " " + filters + " - filter time: " + filterTime;
+    }
     return "column: " + this.getColumn() + " - comparator: " + this.getComparator() + " - param: " + this.getParam()
       + " - filter time: " + filterTime;
   }
@@ -0,0 +1,398 @@
+package org.gbif.ipt.model;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * A {@link RecordFilter} compiled once, to be evaluated for every record of a source. Parameters are parsed when
+ * compiling, and values are compared without trimming them into new strings, so matching a record allocates no
+ * objects unless the filter compares numbers, or looks up a value having surrounding whitespace in a list.
+ * </br>
+ * Predicates matching a regular expression reuse their matcher, so a predicate must only be used by one thread at a
+ * time.
+ */
+public abstract class RecordPredicate {
+
+  /**
+   * Predicate of incomplete filters, matching all records.
+   */
+  private static final RecordPredicate ALL = new RecordPredicate() {
+    @Override
+    public boolean matches(String[] record) {
+      return true;
+    }
+
+    @Override
+    void addColumns(Set<Integer> columns) {
+      // no column read
+    }
+  };
+
+  /**
+   * @param record values array representing record/row
+   *
+   * @return true if the record matches the filter
+   */
+  public abstract boolean matches(String[] record);
+
+  abstract void addColumns(Set<Integer> columns);
+
+  /**
+   * @return indexes of the columns read by the predicate
+   */
+  public Set<Integer> getColumns() {
+    Set<Integer> columns = new HashSet<Integer>();
+    addColumns(columns);
+    return columns;
+  }
+
+  /**
+   * @return true if the predicate matches all records, as the filter is not complete
+   */
+  public boolean isAll() {
+    return this == ALL;
+  }
+
+  static RecordPredicate compile(RecordFilter filter) {
+    if (!filter.isActive()) {
+      return ALL;
+    }
+    if (filter.isGroup()) {
+      List<RecordPredicate> predicates = new ArrayList<RecordPredicate>();
+      for (RecordFilter f : filter.getFilters()) {
+        if (f.isActive()) {
+          predicates.add(compile(f));
+        }
+      }
+      RecordPredicate[] array = predicates.toArray(new RecordPredicate[predicates.size()]);
+      return filter.getOperator() == RecordFilter.Operator.OR ? new Or(array) : new And(array);
+    }
+
+    int column = filter.getColumn();
+    String param = filter.getParam();
+    switch (filter.getComparator()) {
+      case IsNULL:
+        return new IsNull(column);
+      case IsNotNULL:
+        return new IsNotNull(column);
+      case Equals:
+        return new Equals(column, param);
+      case NotEquals:
+        return new NotEquals(column, param);
+      case In:
+        return new In(column, param);
+      case StartsWith:
+        return new StartsWith(column, param);
+      case Matches:
+        return new Matches(column, param == null ? null : Pattern.compile(param));
+      case GreaterOrEquals:
+        return new Compares(column, number(param), true);
+      case LessOrEquals:
+        return new Compares(column, number(param), false);
+      default:
+        throw new IllegalArgumentException("Unsupported comparator " + filter.getComparator());
+    }
+  }
+
+  private static Double number(String param) {
+    if (param == null) {
+      return null;
+    }
+    try {
+      return Double.valueOf(param.trim());
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Filter parameter " + param + " is not a number", e);
+    }
+  }
+
+  /**
+   * @return values of an In comparison, as matched by its predicate
+   */
+  public static Set<String> inValues(String param) {
+    return param == null ? Collections.<String>emptySet() : new In(0, param).values;
+  }
+
+  private static class And extends RecordPredicate {
+
+    private final RecordPredicate[] predicates;
+
+    private And(RecordPredicate[] predicates) {
+      this.predicates = predicates;
+    }
+
+    @Override
+    public boolean matches(String[] record) {
+      for (RecordPredicate predicate : predicates) {
+        if (!predicate.matches(record)) {
+          return false;
+        }
+      }
+      return true;
+    }
+
+    @Override
+    void addColumns(Set<Integer> columns) {
+      for (RecordPredicate predicate : predicates) {
+        predicate.addColumns(columns);
+      }
+    }
+  }
+
+  private static class Or extends RecordPredicate {
+
+    private final RecordPredicate[] predicates;
+
+    private Or(RecordPredicate[] predicates) {
+      this.predicates = predicates;
+    }
+
+    @Override
+    public boolean matches(String[] record) {
+      for (RecordPredicate predicate : predicates) {
+        if (predicate.matches(record)) {
+          return true;
+        }
+      }
+      return false;
+    }
+
+    @Override
+    void addColumns(Set<Integer> columns) {
+      for (RecordPredicate predicate : predicates) {
+        predicate.addColumns(columns);
+      }
+    }
+  }
+
+  /**
+   * Compares the value of a single column, trimmed like {@link String#trim()}. Missing, null and blank values are
+   * null.
+   */
+  private abstract static class ColumnPredicate extends RecordPredicate {
+
+    private final int column;
+
+    private ColumnPredicate(int column) {
+      this.column = column;
+    }
+
+    @Override
+    public boolean matches(String[] record) {
+      String value = column >= 0 && column < record.length ? record[column] : null;
+      if (value == null) {
+        return matchesNull();
+      }
+      int start = 0;
+      int end = value.length();
+      while (start < end && value.charAt(start) <= ' ') {
+        start++;
+      }
+      while (end > start && value.charAt(end - 1) <= ' ') {
+        end--;
+      }
+      return start == end ? matchesNull() : matches(value, start, end);
+    }
+
+    /**
+     * @return true if a null value matches
+     */
+    abstract boolean matchesNull();
+
+    /**
+     * @param value value, not blank
+     * @param start index of the first character of the trimmed value
+     * @param end index after the last character of the trimmed value
+     *
+     * @return true if the trimmed value matches
+     */
+    abstract boolean matches(String value, int start, int end);
+
+    @Override
+    void addColumns(Set<Integer> columns) {
+      columns.add(column);
+    }
+  }
+
+  private static boolean regionEquals(String value, int start, int end, String param) {
+    return param != null && param.length() == end - start && value.regionMatches(start, param, 0, param.length());
+  }
+
+  private static class IsNull extends ColumnPredicate {
+
+    private IsNull(int column) {
+      super(column);
+    }
+
+    @Override
+    boolean matchesNull() {
+      return true;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      return false;
+    }
+  }
+
+  private static class IsNotNull extends ColumnPredicate {
+
+    private IsNotNull(int column) {
+      super(column);
+    }
+
+    @Override
+    boolean matchesNull() {
+      return false;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      return true;
+    }
+  }
+
+  private static class Equals extends ColumnPredicate {
+
+    private final String param;
+
+    private Equals(int column, String param) {
+      super(column);
+      this.param = param;
+    }
+
+    @Override
+    boolean matchesNull() {
+      return false;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      return regionEquals(value, start, end, param);
+    }
+  }
+
+  private static class NotEquals extends ColumnPredicate {
+
+    private final String param;
+
+    private NotEquals(int column, String param) {
+      super(column);
+      this.param = param;
+    }
+
+    @Override
+    boolean matchesNull() {
+      return true;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      return !regionEquals(value, start, end, param);
+    }
+  }
+
+  private static class In extends ColumnPredicate {
+
+    private final Set<String> values = new LinkedHashSet<String>();
+
+    private In(int column, String param) {
+      super(column);
+      if (param != null) {
+        for (String value : param.split(Pattern.quote(RecordFilter.IN_SEPARATOR))) {
+          if (!value.trim().isEmpty()) {
+            values.add(value.trim());
+          }
+        }
+      }
+    }
+
+    @Override
+    boolean matchesNull() {
+      return false;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      return values.contains(start == 0 && end == value.length() ? value : value.substring(start, end));
+    }
+  }
+
+  private static class StartsWith extends ColumnPredicate {
+
+    private final String prefix;
+
+    private StartsWith(int column, String prefix) {
+      super(column);
+      this.prefix = prefix;
+    }
+
+    @Override
+    boolean matchesNull() {
+      return false;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      return prefix != null && end - start >= prefix.length()
+             && value.regionMatches(start, prefix, 0, prefix.length());
+    }
+  }
+
+  private static class Matches extends ColumnPredicate {
+
+    private final Matcher matcher;
+
+    private Matches(int column, Pattern pattern) {
+      super(column);
+      this.matcher = pattern == null ? null : pattern.matcher("");
+    }
+
+    @Override
+    boolean matchesNull() {
+      return false;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      return matcher != null && matcher.reset(value).region(start, end).matches();
+    }
+  }
+
+  private static class Compares extends ColumnPredicate {
+
+    private final Double bound;
+    private final boolean greater;
+
+    private Compares(int column, Double bound, boolean greater) {
+      super(column);
+      this.bound = bound;
+      this.greater = greater;
+    }
+
+    @Override
+    boolean matchesNull() {
+      return false;
+    }
+
+    @Override
+    boolean matches(String value, int start, int end) {
+      if (bound == null) {
+        return false;
+      }
+      double number;
+      try {
+        // parsing ignores surrounding whitespace
+        number = Double.parseDouble(value);
+      } catch (NumberFormatException e) {
+        return false;
+      }
+      return greater ? number >= bound : number <= bound;
+    }
+  }
+}
@@ -14,6 +14,7 @@ import org.gbif.metadata.eml.Eml;
 import org.gbif.metadata.eml.MaintenanceUpdateFrequency;
 
 import java.io.Serializable;
+import java.lang.ref.WeakReference;
 import java.math.BigDecimal;
 import java.net.URI;
 import java.net.URISyntaxException;
@@ -53,13 +54,76 @@ public class Resource implements Serializable, Comparable<Resource> {
     OCCURRENCE, CHECKLIST, SAMPLINGEVENT, METADATA, OTHER
   }
 
+  /**
+   * Loads the EML of resources whose EML got released to save memory, and keeps track of which resources use their
+   * EML, see {@link Resource#releaseEml()}.
+   */
+  public interface EmlLoader {
+
+    /**
+     * Loads the EML of a resource as last saved, and sets it using {@link Resource#setEml(Eml)}.
+     *
+     * @param resource resource whose EML is not held in memory
+     *
+     * @return EML loaded
+     */
+    Eml load(Resource resource);
+
+    /**
+     * Called each time the EML of a resource is used, after loading it again if it was released or deferred. Must be
+     * cheap, as the EML is used all the time.
+     *
+     * @param resource resource whose EML is used
+     */
+    void used(Resource resource);
+  }
+
+  /**
+   * Keeps track of changes to the fields resources are listed by: status, creator, managers, organisation, registration,
+   * last modified date and version history.
+   */
+  public interface ListingListener {
+
+    /**
+     * Called after a field a resource is listed by changed.
+     *
+     * @param resource resource that changed
+     */
+    void listingChanged(Resource resource);
+  }
+
+  /**
+   * The few EML fields needed to list a resource, kept while its EML is released.
+   */
+  private static class EmlSummary {
+
+    private final String title;
+    private final String logoUrl;
+
+    private EmlSummary(Eml eml) {
+      this(eml.getTitle(), eml.getLogoUrl());
+    }
+
+    private EmlSummary(String title, String logoUrl) {
+      this.title = title;
+      this.logoUrl = logoUrl;
+    }
+  }
+
   private static Logger log = Logger.getLogger(Resource.class);
 
   private static final TermFactory TERM_FACTORY = TermFactory.instance();
 
   private static final long serialVersionUID = 3832626162173352190L;
+  // guards releasing the EML of resources, which never waits for anything else
+  private static final Object EML_LOCK = new Object();
   private String shortname; // unique
-  private Eml eml = new Eml();
+  private volatile Eml eml = new Eml();
+  // EML released to save memory, reused when needed again unless it got garbage collected since
+  private transient volatile WeakReference<Eml> releasedEml;
+  private transient volatile EmlSummary emlSummary;
+  private transient volatile EmlLoader emlLoader;
+  private transient volatile ListingListener listingListener;
   private String coreType;
   private String subtype;
   // update frequency
@@ -105,6 +169,18 @@ public class Resource implements Serializable, Comparable<Resource> {
   public void addManager(User manager) {
     if (manager != null) {
       this.managers.add(manager);
+      listingChanged();
+    }
+  }
+
+  /**
+   * Remove a manager.
+   *
+   * @param manager manager to remove
+   */
+  public void removeManager(User manager) {
+    if (managers.remove(manager)) {
+      listingChanged();
     }
   }
 
@@ -127,6 +203,7 @@ public class Resource implements Serializable, Comparable<Resource> {
     }
     if (!exists) {
       versionHistory.add(0, history);
+      listingChanged();
     }
   }
 
@@ -147,6 +224,7 @@ public class Resource implements Serializable, Comparable<Resource> {
           iter.remove();
         }
       }
+      listingChanged();
     }
   }
 
@@ -345,7 +423,97 @@ public class Resource implements Serializable, Comparable<Resource> {
   }
 
   public Eml getEml() {
-    return eml;
+    Eml current = eml;
+    EmlLoader loader = emlLoader;
+    if (loader != null) {
+      if (current == null) {
+        current = reloadEml(loader);
+      }
+      loader.used(this);
+    }
+    return current;
+  }
+
+  /**
+   * @return the EML released, provided it is still in use elsewhere, otherwise the EML loaded again
+   */
+  private synchronized Eml reloadEml(EmlLoader loader) {
+    Eml current;
+    synchronized (EML_LOCK) {
+      current = eml;
+      if (current == null && releasedEml != null) {
+        current = releasedEml.get();
+        if (current != null) {
+          eml = current;
+          releasedEml = null;
+          emlSummary = null;
+        }
+      }
+    }
+    return current == null ? loader.load(this) : current;
+  }
+
+  /**
+   * Releases the EML of this resource to save memory, keeping a summary of it for listings. It is loaded again by the
+   * EML loader the next time it is used. As long as the EML released is used elsewhere, that same EML is used again,
+   * so that changes made to it are never lost.
+   */
+  public void releaseEml() {
+    synchronized (EML_LOCK) {
+      if (eml != null && emlLoader != null) {
+        emlSummary = new EmlSummary(eml);
+        releasedEml = new WeakReference<Eml>(eml);
+        eml = null;
+      }
+    }
+  }
+
+  /**
+   * Leaves the EML of this resource to be loaded the first time it is used, keeping a summary of it for listings.
+   *
+   * @param emlLoader EML loader
+   * @param title resource title
+   * @param logoUrl resource logo URL
+   */
+  public void deferEml(EmlLoader emlLoader, @Nullable String title, @Nullable String logoUrl) {
+    synchronized (EML_LOCK) {
+      this.emlLoader = emlLoader;
+      eml = null;
+      releasedEml = null;
+      emlSummary = new EmlSummary(title, logoUrl);
+    }
+  }
+
+  /**
+   * @return true if the EML of this resource is held in memory, i.e. it was not released or it was used since
+   */
+  public boolean isEmlLoaded() {
+    return eml != null;
+  }
+
+  /**
+   * Sets the loader used to load the EML of this resource again once released.
+   *
+   * @param emlLoader EML loader, or null to never release the EML
+   */
+  public void setEmlLoader(@Nullable EmlLoader emlLoader) {
+    this.emlLoader = emlLoader;
+  }
+
+  /**
+   * Sets the listener told when a field this resource is listed by changes.
+   *
+   * @param listingListener listener, or null to stop telling anyone
+   */
+  public void setListingListener(@Nullable ListingListener listingListener) {
+    this.listingListener = listingListener;
+  }
+
+  private void listingChanged() {
+    ListingListener listener = listingListener;
+    if (listener != null) {
+      listener.listingChanged(this);
+    }
   }
 
   /**
@@ -355,7 +523,7 @@ public class Resource implements Serializable, Comparable<Resource> {
    */
   @NotNull
   public BigDecimal getEmlVersion() {
-    return (emlVersion == null) ? eml.getEmlVersion() : emlVersion;
+    return (emlVersion == null) ? getEml().getEmlVersion() : emlVersion;
   }
 
   /**
@@ -633,8 +801,29 @@ public class Resource implements Serializable, Comparable<Resource> {
   }
 
   public String getTitle() {
-    if (eml != null) {
-      return eml.getTitle();
+    EmlSummary summary = emlSummary;
+    if (eml == null && summary != null) {
+      return summary.title;
+    }
+    Eml current = getEml();
+    if (current != null) {
+      return current.getTitle();
+    }
+    return null;
+  }
+
+  /**
+   * @return URL of the resource logo, or null if there is none
+   */
+  @Nullable
+  public String getLogoUrl() {
+    EmlSummary summary = emlSummary;
+    if (eml == null && summary != null) {
+      return summary.logoUrl;
+    }
+    Eml current = getEml();
+    if (current != null) {
+      return current.getLogoUrl();
     }
     return null;
   }
@@ -647,9 +836,10 @@ public class Resource implements Serializable, Comparable<Resource> {
    */
   public String getTitleAndShortname() {
     StringBuilder sb = new StringBuilder();
-    if (eml != null) {
-      sb.append(eml.getTitle());
-      if (!shortname.equalsIgnoreCase(eml.getTitle())) {
+    if (eml != null || emlSummary != null) {
+      String title = getTitle();
+      sb.append(title);
+      if (!shortname.equalsIgnoreCase(title)) {
         sb.append(" (").append(shortname).append(")");
       }
     }
@@ -706,7 +896,8 @@ public class Resource implements Serializable, Comparable<Resource> {
    * @return true if the resource has been assigned a GBIF-supported license, false otherwise
    */
   public boolean isAssignedGBIFSupportedLicense() {
-    return eml.parseLicenseUrl() != null && Constants.GBIF_SUPPORTED_LICENSES.contains(eml.parseLicenseUrl());
+    Eml current = getEml();
+    return current.parseLicenseUrl() != null && Constants.GBIF_SUPPORTED_LICENSES.contains(current.parseLicenseUrl());
   }
 
   /**
@@ -736,6 +927,7 @@ public class Resource implements Serializable, Comparable<Resource> {
     this.created = created;
     if (modified == null) {
       modified = created;
+      listingChanged();
     }
   }
 
@@ -744,10 +936,15 @@ public class Resource implements Serializable, Comparable<Resource> {
     if (modifier == null) {
       modifier = creator;
     }
+    listingChanged();
   }
 
   public void setEml(Eml eml) {
-    this.eml = eml;
+    synchronized (EML_LOCK) {
+      this.eml = eml;
+      releasedEml = null;
+      emlSummary = null;
+    }
   }
 
   /**
@@ -771,13 +968,15 @@ public class Resource implements Serializable, Comparable<Resource> {
       }
     }
     emlVersion = v;
-    if (eml != null) {
-      eml.setEmlVersion(v);
+    Eml current = getEml();
+    if (current != null) {
+      current.setEmlVersion(v);
     }
   }
 
   public void setKey(UUID key) {
     this.key = key;
+    listingChanged();
   }
 
   public void setLastPublished(Date lastPublished) {
@@ -790,6 +989,7 @@ public class Resource implements Serializable, Comparable<Resource> {
 
   public void setManagers(Set<User> managers) {
     this.managers = managers;
+    listingChanged();
   }
 
   public void setMappings(List<ExtensionMapping> extensions) {
@@ -798,6 +998,7 @@ public class Resource implements Serializable, Comparable<Resource> {
 
   public void setModified(Date modified) {
     this.modified = modified;
+    listingChanged();
   }
 
   public void setModifier(User modifier) {
@@ -806,6 +1007,7 @@ public class Resource implements Serializable, Comparable<Resource> {
 
   public void setOrganisation(Organisation organisation) {
     this.organisation = organisation;
+    listingChanged();
   }
 
   public void setRecordsPublished(int recordsPublished) {
@@ -814,13 +1016,15 @@ public class Resource implements Serializable, Comparable<Resource> {
 
   public void setShortname(String shortname) {
     this.shortname = shortname;
-    if (eml != null && eml.getTitle() == null) {
-      eml.setTitle(shortname);
+    Eml current = getEml();
+    if (current != null && current.getTitle() == null) {
+      current.setTitle(shortname);
     }
   }
 
   public void setStatus(PublicationStatus status) {
     this.status = status;
+    listingChanged();
   }
 
   /**
@@ -853,8 +1057,9 @@ public class Resource implements Serializable, Comparable<Resource> {
   }
 
   public void setTitle(String title) {
-    if (eml != null) {
-      this.eml.setTitle(title);
+    Eml current = getEml();
+    if (current != null) {
+      current.setTitle(title);
     }
   }
 
@@ -900,6 +1105,7 @@ public class Resource implements Serializable, Comparable<Resource> {
 
   public void setVersionHistory(List<VersionHistory> versionHistory) {
     this.versionHistory = versionHistory;
+    listingChanged();
   }
 
   /**
@@ -1156,7 +1362,7 @@ public class Resource implements Serializable, Comparable<Resource> {
    * If the status of the DOI is unavailable, the resource DOI will be removed from the list.
    */
   public synchronized void updateAlternateIdentifierForDOI() {
-    Preconditions.checkNotNull(eml);
+    Eml eml = Preconditions.checkNotNull(getEml());
 
     if (doi != null) {
       // retrieve a list of the resource's alternate identifiers
@@ -1201,7 +1407,7 @@ public class Resource implements Serializable, Comparable<Resource> {
    * If the status of the DOI is unavailable or unreserved, the resource DOI will be unset as the citation identifier.
    */
   public synchronized void updateCitationIdentifierForDOI() {
-    Preconditions.checkNotNull(eml);
+    Eml eml = Preconditions.checkNotNull(getEml());
 
     if (doi != null) {
       // retrieve resource's citation identifier
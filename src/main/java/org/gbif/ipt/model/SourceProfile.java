@@ -0,0 +1,195 @@
+package org.gbif.ipt.model;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+/**
+ * Profile of the data in a text file source, built while the source gets analyzed: the number of rows, per column
+ * statistics and the first distinct values of each column, and a small sample of rows.
+ * </br>
+ * The profile is stored next to the source log, so that previews and value listings can be served without reading
+ * the source file again. A profile only stays valid as long as the file and the settings used to read it are the
+ * same.
+ */
+public class SourceProfile {
+
+  /**
+   * Maximum number of distinct values kept per column.
+   */
+  public static final int MAX_DISTINCT_VALUES = 1000;
+  /**
+   * Number of rows kept as sample, from the start of the source.
+   */
+  public static final int SAMPLE_ROWS = 10;
+
+  /**
+   * Statistics of a single column.
+   */
+  public static class ColumnProfile {
+
+    private int filled;
+    private int maxWidth;
+    // first distinct values, in order of appearance
+    private LinkedHashSet<String> values = new LinkedHashSet<String>();
+    private boolean complete = true;
+
+    private void add(@Nullable String value) {
+      if (value == null) {
+        return;
+      }
+      if (value.length() > 0) {
+        filled++;
+        maxWidth = Math.max(maxWidth, value.length());
+      }
+      if (complete && !values.contains(value)) {
+        if (values.size() < MAX_DISTINCT_VALUES) {
+          values.add(value);
+        } else {
+          complete = false;
+        }
+      }
+    }
+
+    /**
+     * @return number of rows with a non empty value in this column
+     */
+    public int getFilled() {
+      return filled;
+    }
+
+    /**
+     * @return length of the longest value in this column
+     */
+    public int getMaxWidth() {
+      return maxWidth;
+    }
+
+    /**
+     * @return true if all distinct values of this column are kept
+     */
+    public boolean isComplete() {
+      return complete;
+    }
+  }
+
+  private long lastModified;
+  private long fileSize;
+  private String settings;
+  private int rows;
+  private List<String> columns = new ArrayList<String>();
+  private List<ColumnProfile> columnProfiles = new ArrayList<ColumnProfile>();
+  private List<String[]> sample = new ArrayList<String[]>();
+
+  /**
+   * Creates an empty profile of a source, about to be analyzed.
+   */
+  public SourceProfile(TextFileSource source) {
+    File file = source.getFile();
+    lastModified = file.lastModified();
+    fileSize = file.length();
+    settings = settings(source);
+  }
+
+  private static String settings(TextFileSource source) {
+    return source.getEncoding() + '|' + source.getFieldsTerminatedBy() + '|' + source.getFieldsEnclosedBy() + '|'
+           + source.getIgnoreHeaderLines();
+  }
+
+  /**
+   * @return true if this profile describes the current file of the source, read with the current settings
+   */
+  public boolean isCurrent(TextFileSource source) {
+    File file = source.getFile();
+    return file != null && file.lastModified() == lastModified && file.length() == fileSize
+           && settings(source).equals(settings);
+  }
+
+  /**
+   * Adds a row read from the source.
+   */
+  public void add(String[] row) {
+    rows++;
+    if (sample.size() < SAMPLE_ROWS) {
+      sample.add(row.clone());
+    }
+    for (int i = 0; i < row.length; i++) {
+      while (columnProfiles.size() <= i) {
+        columnProfiles.add(new ColumnProfile());
+      }
+      columnProfiles.get(i).add(row[i]);
+    }
+  }
+
+  /**
+   * @return number of rows added
+   */
+  public int getRows() {
+    return rows;
+  }
+
+  public List<String> getColumns() {
+    return columns;
+  }
+
+  public void setColumns(List<String> columns) {
+    this.columns = new ArrayList<String>(columns);
+  }
+
+  /**
+   * @param column column index, zero based
+   *
+   * @return statistics of the column, or null if no row had a value in that column
+   */
+  @Nullable
+  public ColumnProfile getColumnProfile(int column) {
+    return column < columnProfiles.size() ? columnProfiles.get(column) : null;
+  }
+
+  /**
+   * @param column column index, zero based
+   *
+   * @return number of rows without a value in the column
+   */
+  public int getNulls(int column) {
+    ColumnProfile cp = getColumnProfile(column);
+    return cp == null ? rows : rows - cp.getFilled();
+  }
+
+  /**
+   * @return the first rows of the source, at most SAMPLE_ROWS
+   */
+  public List<String[]> getSample() {
+    return sample;
+  }
+
+  /**
+   * Lists the first distinct values of a column, as reading the source from the start would find them.
+   *
+   * @param column column index, zero based
+   * @param maxValues maximum number of values to return, all if less than 1
+   *
+   * @return distinct values, or null if the profile does not keep enough values to answer
+   */
+  @Nullable
+  public Set<String> distinctValues(int column, int maxValues) {
+    ColumnProfile cp = getColumnProfile(column);
+    if (cp == null) {
+      return new HashSet<String>();
+    }
+    if (!cp.complete && (maxValues < 1 || maxValues > cp.values.size())) {
+      return null;
+    }
+    Set<String> values = new HashSet<String>();
+    Iterator<String> iter = cp.values.iterator();
+    while (iter.hasNext() && (maxValues < 1 || values.size() < maxValues)) {
+      values.add(iter.next());
+    }
+    return values;
+  }
+}
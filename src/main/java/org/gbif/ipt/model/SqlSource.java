@@ -9,16 +9,37 @@ import org.gbif.ipt.config.JdbcSupport;
 public class SqlSource extends SourceBase {
 
   private String sql;
+  private String changeDetectionSql;
+  private Integer fetchSize;
+  private String keyColumn;
+  private Integer keyChunkSize;
   private JdbcSupport.JdbcInfo rdbms;
   private String host;
   private String database;
   private String username;
   private Password password = new Password();
 
+  /**
+   * Optional query returning a single row that changes whenever the data returned by the source sql changes, e.g.
+   * select max(modified), count(*) from occurrence. Used to detect if the source changed since it was last published.
+   *
+   * @return change detection query, or null if the source has none
+   */
+  public String getChangeDetectionSql() {
+    return changeDetectionSql;
+  }
+
   public String getDatabase() {
     return database;
   }
 
+  /**
+   * @return number of rows fetched per database round trip when reading all rows, or null for the database default
+   */
+  public Integer getFetchSize() {
+    return fetchSize;
+  }
+
   public String getHost() {
     return host;
   }
@@ -32,6 +53,23 @@ public class SqlSource extends SourceBase {
 
   }
 
+  /**
+   * Optional unique column returned by the sql, used to read all rows in key ordered pages, each page starting after
+   * the last key of the previous one (keyset pagination).
+   *
+   * @return key column, or null if rows are read with a single query
+   */
+  public String getKeyColumn() {
+    return keyColumn;
+  }
+
+  /**
+   * @return maximum number of rows read by a single page query in keyset pagination, or null for the default
+   */
+  public Integer getKeyChunkSize() {
+    return keyChunkSize;
+  }
+
   public String getPassword() {
     return password.password;
   }
@@ -61,14 +99,30 @@ public class SqlSource extends SourceBase {
     return username;
   }
 
+  public void setChangeDetectionSql(String changeDetectionSql) {
+    this.changeDetectionSql = changeDetectionSql;
+  }
+
   public void setDatabase(String database) {
     this.database = database;
   }
 
+  public void setFetchSize(Integer fetchSize) {
+    this.fetchSize = fetchSize;
+  }
+
   public void setHost(String host) {
     this.host = host;
   }
 
+  public void setKeyChunkSize(Integer keyChunkSize) {
+    this.keyChunkSize = keyChunkSize;
+  }
+
+  public void setKeyColumn(String keyColumn) {
+    this.keyColumn = keyColumn;
+  }
+
   public void setPassword(String password) {
     this.password.password = password;
   }
@@ -11,6 +11,7 @@ import java.util.Arrays;
 import java.util.Date;
 import java.util.List;
 import java.util.Set;
+import javax.annotation.Nullable;
 
 import org.apache.log4j.Logger;
 
@@ -101,19 +102,7 @@ public class TextFileSource extends SourceBase implements FileSource {
 
   public List<String> columns() {
     try {
-      CSVReader reader = getReader();
-      if (ignoreHeaderLines > 0) {
-        return Arrays.asList(reader.header);
-
-      } else {
-        List<String> columns = new ArrayList<String>();
-        // careful - the reader.header can be null. In this case set number of columns to 0
-        int numColumns = (reader.header == null) ? 0 : reader.header.length;
-        for (int x = 1; x <= numColumns; x++) {
-          columns.add("Column #" + x);
-        }
-        return columns;
-      }
+      return columns(getReader());
     } catch (IOException e) {
       LOG.warn("Cant read source " + getName(), e);
     }
@@ -121,6 +110,21 @@ public class TextFileSource extends SourceBase implements FileSource {
     return new ArrayList<String>();
   }
 
+  private List<String> columns(CSVReader reader) {
+    if (ignoreHeaderLines > 0) {
+      return Arrays.asList(reader.header);
+
+    } else {
+      List<String> columns = new ArrayList<String>();
+      // careful - the reader.header can be null. In this case set number of columns to 0
+      int numColumns = (reader.header == null) ? 0 : reader.header.length;
+      for (int x = 1; x <= numColumns; x++) {
+        columns.add("Column #" + x);
+      }
+      return columns;
+    }
+  }
+
   public void setFieldsEnclosedBy(String fieldsEnclosedBy) {
     this.fieldsEnclosedBy = fieldsEnclosedBy;
   }
@@ -162,15 +166,32 @@ public class TextFileSource extends SourceBase implements FileSource {
   }
 
   public Set<Integer> analyze() throws IOException {
+    return analyze(null);
+  }
+
+  /**
+   * Analyzes the source, adding all rows read to a profile in the same pass.
+   *
+   * @param profile profile to build, or null if none is needed
+   *
+   * @return line numbers of empty lines
+   */
+  public Set<Integer> analyze(@Nullable SourceProfile profile) throws IOException {
     setFileSize(getFile().length());
 
     CSVReader reader = getReader();
     while (reader.hasNext()) {
-      reader.next();
+      String[] row = reader.next();
+      if (profile != null && row != null) {
+        profile.add(row);
+      }
     }
     setColumns(reader.header == null ? 0 : reader.header.length);
     setRows(reader.getReadRows());
     setReadable(true);
+    if (profile != null) {
+      profile.setColumns(columns(reader));
+    }
     return reader.getEmptyLines();
   }
 
@@ -0,0 +1,287 @@
+package org.gbif.ipt.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.SortedSet;
+import java.util.TreeSet;
+
+import org.apache.log4j.Logger;
+import org.apache.poi.hssf.eventusermodel.FormatTrackingHSSFListener;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.poifs.filesystem.DirectoryNode;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.usermodel.Cell;
+
+/**
+ * Streams the rows of an .xls sheet by pulling the BIFF records of the workbook one by one, so only the current block
+ * of rows is held in memory. The shared strings and cell formats of the workbook are kept, as cells refer to them by
+ * index.
+ * </br>
+ * Sheets are stored one after the other, so the records of all sheets before the one read are skipped.
+ */
+class XlsSheetReader extends ExcelSheetReader {
+
+  private static final Logger LOG = Logger.getLogger(XlsSheetReader.class);
+  // names of the workbook stream, as written by different excel versions
+  private static final String[] WORKBOOK_ENTRY_NAMES = {"Workbook", "WORKBOOK", "BOOK", "Book"};
+
+  private final NPOIFSFileSystem fs;
+  private final RecordFactoryInputStream records;
+  private final FormatTrackingHSSFListener formats = new FormatTrackingHSSFListener(null);
+  private SSTRecord sst;
+  // substreams nest, e.g. charts embedded in a worksheet
+  private int depth;
+  private boolean ended;
+  // row being read, and its cells
+  private int rowNum = -1;
+  private final List<String> cells = new ArrayList<String>();
+  // column of a formula cell whose cached string result follows in a separate record
+  private int stringResultCol = -1;
+  // rows declared by row records ahead of their cells, some of which might have no cells at all
+  private final SortedSet<Integer> declaredRows = new TreeSet<Integer>();
+  private final LinkedList<String[]> completed = new LinkedList<String[]>();
+
+  XlsSheetReader(File file, int sheetIdx) throws IOException {
+    fs = openFileSystem(file);
+    try {
+      records = new RecordFactoryInputStream(openWorkbookStream(fs), false);
+      if (!skipToSheet(sheetIdx)) {
+        throw new IOException("Excel spreadsheet has no sheet " + sheetIdx);
+      }
+    } catch (IOException e) {
+      close();
+      throw e;
+    } catch (RuntimeException e) {
+      close();
+      throw new IOException("Cannot open invalid excel spreadsheet", e);
+    }
+  }
+
+  private static NPOIFSFileSystem openFileSystem(File file) throws IOException {
+    try {
+      return new NPOIFSFileSystem(file, true);
+    } catch (RuntimeException e) {
+      throw new IOException("Cannot open invalid excel spreadsheet", e);
+    }
+  }
+
+  private static InputStream openWorkbookStream(NPOIFSFileSystem fs) throws IOException {
+    DirectoryNode root = fs.getRoot();
+    for (String name : WORKBOOK_ENTRY_NAMES) {
+      if (root.hasEntry(name)) {
+        return root.createDocumentInputStream(name);
+      }
+    }
+    throw new IOException("Cannot open invalid excel spreadsheet without workbook");
+  }
+
+  static List<String> sheetNames(File file) throws IOException {
+    NPOIFSFileSystem fs = openFileSystem(file);
+    try {
+      RecordFactoryInputStream records = new RecordFactoryInputStream(openWorkbookStream(fs), false);
+      List<String> names = new ArrayList<String>();
+      Record rec = records.nextRecord();
+      // sheets are listed in the workbook globals, which end with the first EOF record
+      while (rec != null && !(rec instanceof EOFRecord)) {
+        if (rec instanceof BoundSheetRecord) {
+          names.add(((BoundSheetRecord) rec).getSheetname());
+        }
+        rec = records.nextRecord();
+      }
+      return names;
+    } catch (RuntimeException e) {
+      throw new IOException("Cannot open invalid excel spreadsheet", e);
+    } finally {
+      closeQuietly(fs);
+    }
+  }
+
+  /**
+   * Reads the workbook globals and skips all sheets before the one to read.
+   *
+   * @return true if positioned at the start of the sheet, false if the workbook has no such sheet
+   */
+  private boolean skipToSheet(int sheetIdx) {
+    // the workbook globals are substream 0, followed by one substream per sheet
+    int substream = -1;
+    Record rec = records.nextRecord();
+    while (rec != null) {
+      if (rec instanceof BOFRecord) {
+        depth++;
+        if (depth == 1) {
+          substream++;
+          if (substream == sheetIdx + 1) {
+            return true;
+          }
+        }
+      } else if (rec instanceof EOFRecord) {
+        depth--;
+      } else if (substream == 0) {
+        if (rec instanceof SSTRecord) {
+          sst = (SSTRecord) rec;
+        }
+        formats.processRecordInternally(rec);
+      }
+      rec = records.nextRecord();
+    }
+    return false;
+  }
+
+  String[] nextRow() throws IOException {
+    try {
+      while (completed.isEmpty() && !ended) {
+        Record rec = records.nextRecord();
+        if (rec == null) {
+          endSheet();
+        } else {
+          process(rec);
+        }
+      }
+    } catch (RuntimeException e) {
+      throw new IOException("Cannot read excel sheet after row " + (rowNum + 1) + ": " + e.getMessage(), e);
+    }
+    return completed.poll();
+  }
+
+  private void process(Record rec) {
+    if (rec instanceof BOFRecord) {
+      depth++;
+    } else if (rec instanceof EOFRecord) {
+      depth--;
+      if (depth == 0) {
+        endSheet();
+      }
+    } else if (depth > 1) {
+      // records of embedded charts
+    } else if (rec instanceof RowRecord) {
+      declaredRows.add(((RowRecord) rec).getRowNumber());
+    } else if (rec instanceof StringRecord) {
+      if (stringResultCol >= 0) {
+        cells.set(stringResultCol, ((StringRecord) rec).getString());
+        stringResultCol = -1;
+      }
+    } else if (rec instanceof CellValueRecordInterface) {
+      CellValueRecordInterface cell = (CellValueRecordInterface) rec;
+      stringResultCol = -1;
+      setCell(cell.getRow(), cell.getColumn(), format(cell));
+    }
+  }
+
+  /**
+   * Formats a cell value as excel displays it, using the cached result of formula cells.
+   */
+  private String format(CellValueRecordInterface cell) {
+    if (cell instanceof NumberRecord) {
+      return formats.formatNumberDateCell(cell);
+    }
+    if (cell instanceof LabelSSTRecord) {
+      return sst.getString(((LabelSSTRecord) cell).getSSTIndex()).getString();
+    }
+    if (cell instanceof LabelRecord) {
+      return ((LabelRecord) cell).getValue();
+    }
+    if (cell instanceof BoolErrRecord) {
+      BoolErrRecord be = (BoolErrRecord) cell;
+      return be.isBoolean() ? format(be.getBooleanValue()) : ErrorEval.getText(be.getErrorValue());
+    }
+    if (cell instanceof FormulaRecord) {
+      FormulaRecord formula = (FormulaRecord) cell;
+      switch (formula.getCachedResultType()) {
+        case Cell.CELL_TYPE_NUMERIC:
+          return formats.formatNumberDateCell(formula);
+        case Cell.CELL_TYPE_BOOLEAN:
+          return format(formula.getCachedBooleanValue());
+        case Cell.CELL_TYPE_ERROR:
+          return ErrorEval.getText(formula.getCachedErrorValue());
+        default:
+          // non empty string results follow in a string record
+          stringResultCol = formula.getColumn();
+          return "";
+      }
+    }
+    // blank cells
+    return "";
+  }
+
+  private static String format(boolean value) {
+    return value ? "TRUE" : "FALSE";
+  }
+
+  private void setCell(int row, int col, String value) {
+    if (row != rowNum) {
+      completeRow();
+      startRow(row);
+    }
+    while (cells.size() <= col) {
+      cells.add(null);
+    }
+    cells.set(col, value);
+  }
+
+  private void completeRow() {
+    if (rowNum >= 0) {
+      completed.add(cells.toArray(new String[cells.size()]));
+      cells.clear();
+    }
+  }
+
+  private void startRow(int row) {
+    // declared rows between the last row and this one have no cells
+    Iterator<Integer> iter = declaredRows.iterator();
+    while (iter.hasNext()) {
+      int declared = iter.next();
+      if (declared > row) {
+        break;
+      }
+      iter.remove();
+      if (declared < row && declared > rowNum) {
+        completed.add(new String[0]);
+      }
+    }
+    rowNum = row;
+  }
+
+  private void endSheet() {
+    if (!ended) {
+      completeRow();
+      for (Integer declared : declaredRows) {
+        if (declared > rowNum) {
+          completed.add(new String[0]);
+        }
+      }
+      declaredRows.clear();
+      ended = true;
+    }
+  }
+
+  private static void closeQuietly(NPOIFSFileSystem fs) {
+    try {
+      fs.close();
+    } catch (IOException e) {
+      LOG.debug("Excel spreadsheet could not be closed: " + e.getMessage());
+    }
+  }
+
+  public void close() {
+    closeQuietly(fs);
+  }
+}
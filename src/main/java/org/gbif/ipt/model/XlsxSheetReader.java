@@ -0,0 +1,271 @@
+package org.gbif.ipt.model;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.log4j.Logger;
+import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackageAccess;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.xssf.eventusermodel.XSSFReader;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+import org.xml.sax.SAXException;
+
+/**
+ * Streams the rows of an .xlsx sheet by pulling the events of its XML part, so only the current row is held in memory.
+ * The shared strings and styles of the workbook are loaded once, as cells refer to them by index.
+ */
+class XlsxSheetReader extends ExcelSheetReader {
+
+  private static final Logger LOG = Logger.getLogger(XlsxSheetReader.class);
+  private static final String GENERAL_FORMAT = "General";
+
+  private final OPCPackage pkg;
+  private final ReadOnlySharedStringsTable strings;
+  private final StylesTable styles;
+  private final InputStream sheet;
+  private final XMLStreamReader xml;
+  // DataFormatter displays data exactly as it appears in Excel
+  private final DataFormatter dataFormatter = new DataFormatter();
+  private int lastRowNum = -1;
+
+  XlsxSheetReader(File file, int sheetIdx) throws IOException {
+    pkg = openPackage(file);
+    try {
+      XSSFReader reader = new XSSFReader(pkg);
+      strings = new ReadOnlySharedStringsTable(pkg);
+      styles = reader.getStylesTable();
+      sheet = openSheet(reader, sheetIdx);
+      xml = newInputFactory().createXMLStreamReader(sheet);
+    } catch (OpenXML4JException e) {
+      pkg.revert();
+      throw new IOException("Cannot open invalid excel spreadsheet", e);
+    } catch (SAXException e) {
+      pkg.revert();
+      throw new IOException("Cannot read shared strings of excel spreadsheet", e);
+    } catch (XMLStreamException e) {
+      pkg.revert();
+      throw new IOException("Cannot read sheet " + sheetIdx + " of excel spreadsheet", e);
+    } catch (IOException e) {
+      pkg.revert();
+      throw e;
+    }
+  }
+
+  private static OPCPackage openPackage(File file) throws IOException {
+    try {
+      return OPCPackage.open(file.getPath(), PackageAccess.READ);
+    } catch (OpenXML4JException e) {
+      throw new IOException("Cannot open invalid excel spreadsheet", e);
+    }
+  }
+
+  static List<String> sheetNames(File file) throws IOException {
+    OPCPackage pkg = openPackage(file);
+    try {
+      List<String> names = new ArrayList<String>();
+      XSSFReader.SheetIterator iter = (XSSFReader.SheetIterator) new XSSFReader(pkg).getSheetsData();
+      while (iter.hasNext()) {
+        iter.next().close();
+        names.add(iter.getSheetName());
+      }
+      return names;
+    } catch (OpenXML4JException e) {
+      throw new IOException("Cannot open invalid excel spreadsheet", e);
+    } finally {
+      pkg.revert();
+    }
+  }
+
+  private static InputStream openSheet(XSSFReader reader, int sheetIdx) throws IOException, OpenXML4JException {
+    Iterator<InputStream> iter = reader.getSheetsData();
+    for (int idx = 0; iter.hasNext(); idx++) {
+      InputStream in = iter.next();
+      if (idx == sheetIdx) {
+        return in;
+      }
+      in.close();
+    }
+    throw new IOException("Excel spreadsheet has no sheet " + sheetIdx);
+  }
+
+  private static XMLInputFactory newInputFactory() {
+    XMLInputFactory factory = XMLInputFactory.newInstance();
+    // never resolve entities of untrusted uploads
+    factory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+    factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+    factory.setProperty(XMLInputFactory.IS_COALESCING, true);
+    return factory;
+  }
+
+  String[] nextRow() throws IOException {
+    try {
+      while (xml.hasNext()) {
+        if (xml.next() == XMLStreamConstants.START_ELEMENT && "row".equals(xml.getLocalName())) {
+          return readRow();
+        }
+      }
+      return null;
+    } catch (XMLStreamException e) {
+      throw new IOException("Cannot read excel sheet after row " + (lastRowNum + 1) + ": " + e.getMessage(), e);
+    } catch (RuntimeException e) {
+      // invalid cell references, numbers or string indices
+      throw new IOException("Cannot read excel sheet after row " + (lastRowNum + 1) + ": " + e.getMessage(), e);
+    }
+  }
+
+  /**
+   * Reads all cells of the row element the reader is positioned on.
+   */
+  private String[] readRow() throws XMLStreamException {
+    String r = xml.getAttributeValue(null, "r");
+    lastRowNum = r == null ? lastRowNum + 1 : Integer.parseInt(r) - 1;
+    List<String> values = new ArrayList<String>();
+    int lastCol = -1;
+    while (xml.hasNext()) {
+      int event = xml.next();
+      if (event == XMLStreamConstants.START_ELEMENT && "c".equals(xml.getLocalName())) {
+        String ref = xml.getAttributeValue(null, "r");
+        lastCol = ref == null ? lastCol + 1 : column(ref);
+        String value = readCell(xml.getAttributeValue(null, "t"), xml.getAttributeValue(null, "s"));
+        while (values.size() <= lastCol) {
+          values.add(null);
+        }
+        values.set(lastCol, value == null ? "" : value);
+      } else if (event == XMLStreamConstants.END_ELEMENT && "row".equals(xml.getLocalName())) {
+        break;
+      }
+    }
+    return values.toArray(new String[values.size()]);
+  }
+
+  /**
+   * Reads the cell element the reader is positioned on. The value element of formula cells holds the cached result.
+   */
+  private String readCell(String type, String style) throws XMLStreamException {
+    String value = null;
+    StringBuilder inline = null;
+    int depth = 0;
+    while (xml.hasNext()) {
+      int event = xml.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        String name = xml.getLocalName();
+        if ("v".equals(name)) {
+          value = xml.getElementText();
+        } else if ("is".equals(name)) {
+          inline = new StringBuilder();
+          depth++;
+        } else if ("t".equals(name) && inline != null) {
+          inline.append(xml.getElementText());
+        } else if ("rPh".equals(name)) {
+          // phonetic runs are not displayed
+          skipElement();
+        } else {
+          depth++;
+        }
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        if (depth == 0) {
+          break;
+        }
+        depth--;
+      }
+    }
+    return format(type, style, value, inline);
+  }
+
+  private void skipElement() throws XMLStreamException {
+    int depth = 1;
+    while (depth > 0 && xml.hasNext()) {
+      int event = xml.next();
+      if (event == XMLStreamConstants.START_ELEMENT) {
+        depth++;
+      } else if (event == XMLStreamConstants.END_ELEMENT) {
+        depth--;
+      }
+    }
+  }
+
+  private String format(String type, String style, String value, StringBuilder inline) {
+    if ("inlineStr".equals(type)) {
+      return inline == null ? value : inline.toString();
+    }
+    if (value == null) {
+      return null;
+    }
+    if ("s".equals(type)) {
+      return strings.getEntryAt(Integer.parseInt(value));
+    }
+    if ("b".equals(type)) {
+      return "0".equals(value) ? "FALSE" : "TRUE";
+    }
+    if ("str".equals(type) || "e".equals(type) || "d".equals(type)) {
+      return value;
+    }
+    return formatNumber(value, style);
+  }
+
+  private String formatNumber(String value, String style) {
+    int formatIndex = 0;
+    String formatString = null;
+    XSSFCellStyle cellStyle = null;
+    if (styles != null) {
+      if (style != null) {
+        cellStyle = styles.getStyleAt(Integer.parseInt(style));
+      } else if (styles.getNumCellStyles() > 0) {
+        cellStyle = styles.getStyleAt(0);
+      }
+    }
+    if (cellStyle != null) {
+      formatIndex = cellStyle.getDataFormat();
+      formatString = cellStyle.getDataFormatString();
+    }
+    if (formatString == null) {
+      formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+    }
+    if (formatString == null) {
+      formatString = GENERAL_FORMAT;
+    }
+    return dataFormatter.formatRawCellContents(Double.parseDouble(value), formatIndex, formatString);
+  }
+
+  /**
+   * @return zero based column index of a cell reference like AB12
+   */
+  static int column(String ref) {
+    int col = 0;
+    for (int i = 0; i < ref.length(); i++) {
+      char c = ref.charAt(i);
+      if (c < 'A' || c > 'Z') {
+        break;
+      }
+      col = col * 26 + (c - 'A' + 1);
+    }
+    return col - 1;
+  }
+
+  public void close() {
+    try {
+      xml.close();
+    } catch (XMLStreamException e) {
+      LOG.debug("Excel sheet reader could not be closed: " + e.getMessage());
+    }
+    try {
+      sheet.close();
+    } catch (IOException e) {
+      LOG.debug("Excel sheet could not be closed: " + e.getMessage());
+    }
+    pkg.revert();
+  }
+}
@@ -161,7 +161,7 @@ public class UserAccountManagerImpl extends BaseManager implements UserAccountMa
       // finally remove user from internal hash and resource managers or update role if its a resource creator
       // remove from resource managers
       for (Resource r : resourceManager.list(remUser)) {
-        r.getManagers().remove(remUser);
+        r.removeManager(remUser);
         resourceManager.save(r);
       }
       // update resource creator
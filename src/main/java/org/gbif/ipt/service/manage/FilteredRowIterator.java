@@ -0,0 +1,16 @@
+package org.gbif.ipt.service.manage;
+
+import org.gbif.utils.file.ClosableReportingIterator;
+
+/**
+ * Iterator over the rows of a source that can leave out rows not matching a record filter while reading the source,
+ * e.g. in the query of a SQL source. Rows returned can still fail to match the filter, so the filter needs to be
+ * applied to them as before.
+ */
+public interface FilteredRowIterator extends ClosableReportingIterator<String[]> {
+
+  /**
+   * @return true if rows not matching the filter are left out, false if all rows of the source are returned
+   */
+  boolean isFiltered();
+}
@@ -13,6 +13,8 @@ import org.gbif.ipt.service.InvalidConfigException;
 import org.gbif.ipt.service.InvalidFilenameException;
 import org.gbif.ipt.service.PublicationException;
 import org.gbif.ipt.service.manage.impl.ResourceManagerImpl;
+import org.gbif.ipt.task.PublishingQueue;
+import org.gbif.ipt.task.PublishingSchedule;
 import org.gbif.ipt.task.StatusReport;
 
 import java.io.File;
@@ -126,17 +128,19 @@ public interface ResourceManager {
   boolean isLocked(String shortname);
 
   /**
-   * Returns the latest resources ,ordered by last modified date.
+   * Returns the latest resources that are not private, ordered by last modified date.
+   * </br>
+   * Lists of resources returned by this manager are immutable, and only reflect changes to resources once saved.
    *
-   * @param startPage start page
+   * @param startPage start page, starting at 1
    * @param pageSize  page size
    *
-   * @return list of resources, or an empty list if none were found
+   * @return page of resources, or an empty list if none were found
    */
   List<Resource> latest(int startPage, int pageSize);
 
   /**
-   * list all resources in the IPT.
+   * list all resources in the IPT, ordered by shortname.
    *
    * @return list of resources, or an empty list if none were found
    */
@@ -171,6 +175,15 @@ public interface ResourceManager {
    */
   List<Resource> list(User user);
 
+  /**
+   * list all resources owned by a given organisation.
+   *
+   * @param organisation Organisation
+   *
+   * @return list of resources, or an empty list if none were found
+   */
+  List<Resource> list(Organisation organisation);
+
   /**
    * Load all configured resources from the datadir into memory.
    * We do not keep the EML or mapping configuration in memory for all resources, but we
@@ -194,6 +207,23 @@ public interface ResourceManager {
    */
   boolean publish(Resource resource, BigDecimal version, @Nullable BaseAction action) throws PublicationException;
 
+  /**
+   * Publishes a new version of a resource like {@link #publish(Resource, BigDecimal, BaseAction)}, queueing its DwC-A
+   * generation job with the given priority.
+   *
+   * @param resource Resource
+   * @param version  version number of eml/rft/archive to be published
+   * @param action   the action to use for logging messages to
+   * @param priority priority of the DwC-A generation job in the publishing queue
+   *
+   * @return true if a new asynchronous DwC-A generation job has been issued which requires some mapped data
+   *
+   * @throws PublicationException if resource was already registered
+   * @throws InvalidConfigException if resource or metadata could not be saved
+   */
+  boolean publish(Resource resource, BigDecimal version, @Nullable BaseAction action,
+    PublishingQueue.Priority priority) throws PublicationException;
+
   /**
    * Registers the resource with the GBIF Registry. Instead of registering a new resource, the resource can instead
    * update an existing registered resource if a UUID corresponding to an existing registered resource (owned by the
@@ -220,6 +250,11 @@ public interface ResourceManager {
    */
   void saveEml(Resource resource) throws InvalidConfigException;
 
+  /**
+   * Writes the resource files still pending. Called when the web application is stopped.
+   */
+  void shutdown();
+
   /**
    * Return status report of current task either running or on queue for the requested resource or null if none exists.
    *
@@ -326,6 +361,22 @@ public interface ResourceManager {
    */
   ListMultimap<String, Date> getProcessFailures();
 
+  /**
+   * Return the schedule of auto-publications, holding the next published date of each resource that uses
+   * auto-publishing. It is kept up to date whenever a next published date changes, and retries failed
+   * auto-publications.
+   *
+   * @return the auto-publication schedule
+   */
+  PublishingSchedule getPublishingSchedule();
+
+  /**
+   * Return the publishing queue, holding the DwC-A generation jobs waiting for a publishing thread and those running.
+   *
+   * @return the publishing queue
+   */
+  PublishingQueue getPublishingQueue();
+
   /**
    * Check if the maximum number of publish event failures has occurred for a resource.
    *
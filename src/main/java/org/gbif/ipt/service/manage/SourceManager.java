@@ -1,6 +1,7 @@
 package org.gbif.ipt.service.manage;
 
 import org.gbif.ipt.model.FileSource;
+import org.gbif.ipt.model.RecordFilter;
 import org.gbif.ipt.model.Resource;
 import org.gbif.ipt.model.Source;
 import org.gbif.ipt.service.ImportException;
@@ -69,6 +70,21 @@ public interface SourceManager {
    */
   boolean delete(Resource resource, Source source);
 
+  /**
+   * Computes a fingerprint of the data a source currently holds, which changes whenever its data changes. File
+   * sources are fingerprinted by their size, modification date, content hash and reader settings. SQL sources can
+   * only be fingerprinted if they have a change detection query, whose result is fingerprinted together with the
+   * connection and sql.
+   *
+   * @param source source
+   *
+   * @return fingerprint of the source, or null if the source cannot tell whether its data changed
+   *
+   * @throws SourceException if the source could not be read
+   */
+  @Nullable
+  String fingerprint(Source source) throws SourceException;
+
   /**
    * Retrieves a set of unique string values used in a given column of a source.
    * The maximum number of distinct values can be restricted.
@@ -92,6 +108,11 @@ public interface SourceManager {
    */
   List<String[]> peek(Source source, int rows);
 
+  /**
+   * Closes all pooled connections to SQL source databases. Called when the web application is stopped.
+   */
+  void shutdown();
+
   /**
    * Create a ClosableReportingIterator iterator for a source.
    *
@@ -101,4 +122,31 @@ public interface SourceManager {
    */
   ClosableReportingIterator<String[]> rowIterator(Source source) throws SourceException;
 
+  /**
+   * Create a ClosableReportingIterator iterator for a source, reading only some of its columns. Rows returned have
+   * all columns of the source, with null values for the columns not read. SQL sources only select the columns read,
+   * file sources are always read completely.
+   *
+   * @param source source
+   * @param columns zero based indexes of the columns to read, or null to read all columns
+   *
+   * @return a ClosableReportingIterator for a source
+   */
+  ClosableReportingIterator<String[]> rowIterator(Source source, @Nullable Set<Integer> columns)
+    throws SourceException;
+
+  /**
+   * Create a ClosableReportingIterator iterator for a source like {@link #rowIterator(Source, Set)}, letting the
+   * source leave out rows not matching a filter where it can. If it does, the iterator returned is a
+   * {@link FilteredRowIterator} reporting so. Rows returned still need to be matched against the filter.
+   *
+   * @param source source
+   * @param columns zero based indexes of the columns to read, or null to read all columns
+   * @param filter filter the rows used must match, or null to read all rows
+   *
+   * @return a ClosableReportingIterator for a source
+   */
+  ClosableReportingIterator<String[]> rowIterator(Source source, @Nullable Set<Integer> columns,
+    @Nullable RecordFilter filter) throws SourceException;
+
 }
@@ -0,0 +1,99 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.model.Resource;
+import org.gbif.metadata.eml.Eml;
+
+import javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.cache.RemovalListener;
+import com.google.common.cache.RemovalNotification;
+
+/**
+ * Keeps the EML of a bounded number of resources in memory. Once more resources have used their EML, the EML of the
+ * least recently used ones is released, keeping only a summary for listings, and loaded again the next time it is
+ * used. Safe to use from multiple threads.
+ * </br>
+ * Resources holding their EML are kept in an access ordered cache, so using an EML only records the access, and
+ * releasing the least recently used one never scans the others. There is no lock shared by all resources.
+ */
+class EmlCache implements Resource.EmlLoader {
+
+  // loads the EML as last saved and sets it on the resource
+  private final Function<Resource, Eml> loader;
+  // resources holding their EML by lower case shortname
+  private final Cache<String, Resource> held;
+
+  /**
+   * @param capacity maximum number of resources holding their EML in memory
+   * @param loader loads the EML of a resource as last saved, and sets it on the resource
+   */
+  EmlCache(int capacity, Function<Resource, Eml> loader) {
+    this.loader = loader;
+    held = CacheBuilder.newBuilder().maximumSize(Math.max(1, capacity))
+      .removalListener(new RemovalListener<String, Resource>() {
+        public void onRemoval(RemovalNotification<String, Resource> notification) {
+          // resources removed explicitly or replaced keep their EML
+          if (notification.wasEvicted() && notification.getValue() != null) {
+            notification.getValue().releaseEml();
+          }
+        }
+      }).build();
+  }
+
+  /**
+   * Starts keeping track of the EML of a resource, which gets released once it was not used for long enough.
+   *
+   * @param resource resource
+   */
+  void add(Resource resource) {
+    resource.setEmlLoader(this);
+    // records it as used just now
+    resource.getEml();
+  }
+
+  /**
+   * Starts keeping track of the EML of a resource without loading it, until it is first used.
+   *
+   * @param resource resource
+   * @param title resource title, for listings
+   * @param logoUrl resource logo URL, for listings
+   */
+  void addDeferred(Resource resource, @Nullable String title, @Nullable String logoUrl) {
+    resource.deferEml(this, title, logoUrl);
+  }
+
+  /**
+   * Stops keeping track of the EML of a resource, e.g. because it was deleted.
+   *
+   * @param shortname resource shortname
+   */
+  void remove(String shortname) {
+    held.invalidate(shortname.toLowerCase());
+  }
+
+  void clear() {
+    held.invalidateAll();
+  }
+
+  /**
+   * @return number of resources holding their EML in memory
+   */
+  int size() {
+    return (int) held.size();
+  }
+
+  public Eml load(Resource resource) {
+    return loader.apply(resource);
+  }
+
+  public void used(Resource resource) {
+    String key = resource.getShortname().toLowerCase();
+    // looking it up records the access, only an EML held again gets added, releasing the least recently used
+    if (held.getIfPresent(key) != resource) {
+      held.put(key, resource);
+    }
+  }
+}
@@ -0,0 +1,364 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.model.Organisation;
+import org.gbif.ipt.model.Resource;
+import org.gbif.ipt.model.User;
+import org.gbif.ipt.model.VersionHistory;
+import org.gbif.ipt.model.voc.PublicationStatus;
+
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.SortedSet;
+import java.util.TreeSet;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Function;
+import com.google.common.base.Objects;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Iterables;
+import com.google.common.collect.Ordering;
+
+/**
+ * All resources held in memory, looked up by shortname, and indexed by publication status, by the users allowed to
+ * manage them, by organisation and by last modified date. Safe to use from multiple threads.
+ * </br>
+ * Each index is kept sorted and updated in place whenever a resource is added, updated or removed, remembering the
+ * keys a resource was indexed under so that it can be found again once they changed. Resources added tell the catalog
+ * themselves when a field they are indexed by changes, see {@link Resource.ListingListener}. Lists handed out are
+ * immutable copies of an index, made the first time they are needed after that index changed, and then shared by all
+ * callers until it changes again.
+ */
+class ResourceCatalog implements Resource.ListingListener {
+
+  private static final Function<Entry, Resource> RESOURCE = new Function<Entry, Resource>() {
+    public Resource apply(Entry entry) {
+      return entry.resource;
+    }
+  };
+
+  private static final Ordering<Entry> BY_SHORTNAME = Ordering.<Resource>natural().onResultOf(RESOURCE);
+
+  // most recently modified first, never modified last
+  private static final Ordering<Entry> LATEST =
+    Ordering.<Date>natural().reverse().nullsLast().onResultOf(new Function<Entry, Date>() {
+      public Date apply(Entry entry) {
+        return entry.modified;
+      }
+    }).compound(BY_SHORTNAME);
+
+  /**
+   * A resource together with the keys it is indexed under, as of when it was last added or updated.
+   */
+  private static class Entry {
+
+    private final Resource resource;
+    @Nullable
+    private final PublicationStatus status;
+    // emails of creator and managers
+    private final Set<String> users = new LinkedHashSet<String>();
+    @Nullable
+    private final UUID organisation;
+    @Nullable
+    private final Date modified;
+    private final boolean publishedPublicVersion;
+
+    private Entry(Resource resource) {
+      this.resource = resource;
+      status = resource.getStatus();
+      if (resource.getCreator() != null && resource.getCreator().getEmail() != null) {
+        users.add(resource.getCreator().getEmail());
+      }
+      for (User m : resource.getManagers()) {
+        if (m != null && m.getEmail() != null) {
+          users.add(m.getEmail());
+        }
+      }
+      organisation = resource.getOrganisation() == null ? null : resource.getOrganisation().getKey();
+      modified = resource.getModified() == null ? null : new Date(resource.getModified().getTime());
+      publishedPublicVersion = isPublishedPublicVersion(resource);
+    }
+
+    /**
+     * If a resource is registered with GBIF without having a VersionHistory, it was published before v2.2 and is
+     * assumed to be public.
+     *
+     * @return true if the last published version of a resource was public
+     */
+    private static boolean isPublishedPublicVersion(Resource r) {
+      List<VersionHistory> history = r.getVersionHistory();
+      if (!history.isEmpty()) {
+        PublicationStatus status = history.get(0).getPublicationStatus();
+        return !PublicationStatus.DELETED.equals(status) && !PublicationStatus.PRIVATE.equals(status);
+      }
+      return r.isRegistered();
+    }
+  }
+
+  /**
+   * Sorted entries, with the list of their resources made when first needed.
+   */
+  private static class Index {
+
+    private final SortedSet<Entry> entries;
+    private ImmutableList<Resource> list;
+
+    private Index(Comparator<Entry> order) {
+      entries = new TreeSet<Entry>(order);
+    }
+
+    private void add(Entry entry) {
+      if (entries.add(entry)) {
+        list = null;
+      }
+    }
+
+    private void remove(Entry entry) {
+      if (entries.remove(entry)) {
+        list = null;
+      }
+    }
+
+    private ImmutableList<Resource> list() {
+      if (list == null) {
+        list = ImmutableList.copyOf(Iterables.transform(entries, RESOURCE));
+      }
+      return list;
+    }
+  }
+
+  /**
+   * Indexes by key, each ordered by shortname. Keys without any entry left are dropped.
+   */
+  private static class GroupedIndex<K> {
+
+    private final Map<K, Index> groups = new HashMap<K, Index>();
+
+    private void add(K key, Entry entry) {
+      Index index = groups.get(key);
+      if (index == null) {
+        index = new Index(BY_SHORTNAME);
+        groups.put(key, index);
+      }
+      index.add(entry);
+    }
+
+    private void remove(K key, Entry entry) {
+      Index index = groups.get(key);
+      if (index != null) {
+        index.remove(entry);
+        if (index.entries.isEmpty()) {
+          groups.remove(key);
+        }
+      }
+    }
+
+    private List<Resource> list(K key) {
+      Index index = groups.get(key);
+      return index == null ? ImmutableList.<Resource>of() : index.list();
+    }
+  }
+
+  // by lower case shortname, read without locking
+  private final ConcurrentMap<String, Entry> resources = new ConcurrentHashMap<String, Entry>();
+  // indexes, guarded by this
+  private final Index all = new Index(BY_SHORTNAME);
+  private final GroupedIndex<PublicationStatus> byStatus = new GroupedIndex<PublicationStatus>();
+  private final GroupedIndex<String> byUser = new GroupedIndex<String>();
+  private final GroupedIndex<UUID> byOrganisation = new GroupedIndex<UUID>();
+  // resources that are not private
+  private final Index latest = new Index(LATEST);
+  private final Index publishedPublicVersions = new Index(BY_SHORTNAME);
+
+  /**
+   * Adds a resource, replacing any resource with the same shortname, or updates its indexes if added already.
+   *
+   * @param resource resource
+   */
+  synchronized void add(Resource resource) {
+    Entry entry = new Entry(resource);
+    Entry replaced = resources.put(resource.getShortname().toLowerCase(), entry);
+    if (replaced == null) {
+      index(entry);
+    } else if (replaced.resource == resource) {
+      reindex(replaced, entry);
+    } else {
+      unindex(replaced);
+      replaced.resource.setListingListener(null);
+      index(entry);
+    }
+    resource.setListingListener(this);
+  }
+
+  /**
+   * Updates the indexes of a resource, if it was added.
+   *
+   * @param resource resource that changed
+   */
+  synchronized void update(Resource resource) {
+    String key = resource.getShortname().toLowerCase();
+    Entry current = resources.get(key);
+    if (current != null && current.resource == resource) {
+      Entry entry = new Entry(resource);
+      resources.put(key, entry);
+      reindex(current, entry);
+    }
+  }
+
+  public void listingChanged(Resource resource) {
+    update(resource);
+  }
+
+  /**
+   * @param shortname resource shortname
+   */
+  synchronized void remove(String shortname) {
+    Entry removed = resources.remove(shortname.toLowerCase());
+    if (removed != null) {
+      unindex(removed);
+      removed.resource.setListingListener(null);
+    }
+  }
+
+  synchronized void clear() {
+    for (Entry entry : resources.values()) {
+      unindex(entry);
+      entry.resource.setListingListener(null);
+    }
+    resources.clear();
+  }
+
+  /**
+   * @param shortname resource shortname, compared ignoring case
+   *
+   * @return resource, or null if there is none with this shortname
+   */
+  @Nullable
+  Resource get(String shortname) {
+    Entry entry = resources.get(shortname.toLowerCase());
+    return entry == null ? null : entry.resource;
+  }
+
+  /**
+   * @param shortname resource shortname, compared ignoring case
+   *
+   * @return true if there is a resource with this shortname
+   */
+  boolean contains(String shortname) {
+    return resources.containsKey(shortname.toLowerCase());
+  }
+
+  /**
+   * @return all resources, ordered by shortname
+   */
+  synchronized List<Resource> list() {
+    return all.list();
+  }
+
+  /**
+   * @return resources having a publication status, ordered by shortname
+   */
+  synchronized List<Resource> list(PublicationStatus status) {
+    return byStatus.list(status);
+  }
+
+  /**
+   * @return resources created or managed by a user, ordered by shortname
+   */
+  synchronized List<Resource> listByUser(User user) {
+    return byUser.list(user.getEmail());
+  }
+
+  /**
+   * @return resources owned by an organisation, ordered by shortname
+   */
+  synchronized List<Resource> list(Organisation organisation) {
+    return organisation.getKey() == null ? ImmutableList.<Resource>of() : byOrganisation.list(organisation.getKey());
+  }
+
+  /**
+   * @return resources that are not private, most recently modified first
+   */
+  synchronized List<Resource> latest() {
+    return latest.list();
+  }
+
+  /**
+   * @return resources whose last published version was public, ordered by shortname
+   */
+  synchronized List<Resource> listPublishedPublicVersions() {
+    return publishedPublicVersions.list();
+  }
+
+  private void index(Entry entry) {
+    all.add(entry);
+    if (entry.status != null) {
+      byStatus.add(entry.status, entry);
+    }
+    for (String email : entry.users) {
+      byUser.add(email, entry);
+    }
+    if (entry.organisation != null) {
+      byOrganisation.add(entry.organisation, entry);
+    }
+    if (entry.status != PublicationStatus.PRIVATE) {
+      latest.add(entry);
+    }
+    if (entry.publishedPublicVersion) {
+      publishedPublicVersions.add(entry);
+    }
+  }
+
+  /**
+   * Moves a resource to the keys it is indexed under now, leaving indexes whose key did not change untouched. Entries
+   * ordered by shortname stay where they are, as the shortname of a resource never changes.
+   */
+  private void reindex(Entry from, Entry to) {
+    if (from.status != null && from.status != to.status) {
+      byStatus.remove(from.status, from);
+    }
+    for (String email : from.users) {
+      if (!to.users.contains(email)) {
+        byUser.remove(email, from);
+      }
+    }
+    if (from.organisation != null && !from.organisation.equals(to.organisation)) {
+      byOrganisation.remove(from.organisation, from);
+    }
+    if (from.status != PublicationStatus.PRIVATE
+        && (to.status == PublicationStatus.PRIVATE || !Objects.equal(from.modified, to.modified))) {
+      latest.remove(from);
+    }
+    if (from.publishedPublicVersion && !to.publishedPublicVersion) {
+      publishedPublicVersions.remove(from);
+    }
+    // adds only what is not indexed already
+    index(to);
+  }
+
+  private void unindex(Entry entry) {
+    all.remove(entry);
+    if (entry.status != null) {
+      byStatus.remove(entry.status, entry);
+    }
+    for (String email : entry.users) {
+      byUser.remove(email, entry);
+    }
+    if (entry.organisation != null) {
+      byOrganisation.remove(entry.organisation, entry);
+    }
+    if (entry.status != PublicationStatus.PRIVATE) {
+      latest.remove(entry);
+    }
+    if (entry.publishedPublicVersion) {
+      publishedPublicVersions.remove(entry);
+    }
+  }
+}
@@ -28,6 +28,7 @@ import org.gbif.ipt.model.FileSource;
 import org.gbif.ipt.model.Ipt;
 import org.gbif.ipt.model.Organisation;
 import org.gbif.ipt.model.PropertyMapping;
+import org.gbif.ipt.model.RecordFilter;
 import org.gbif.ipt.model.Resource;
 import org.gbif.ipt.model.Resource.CoreRowType;
 import org.gbif.ipt.model.Source;
@@ -60,12 +61,15 @@ import org.gbif.ipt.service.admin.VocabulariesManager;
 import org.gbif.ipt.service.manage.ResourceManager;
 import org.gbif.ipt.service.manage.SourceManager;
 import org.gbif.ipt.service.registry.RegistryManager;
-import org.gbif.ipt.struts2.RequireManagerInterceptor;
 import org.gbif.ipt.struts2.SimpleTextProvider;
 import org.gbif.ipt.task.Eml2Rtf;
 import org.gbif.ipt.task.GenerateDwca;
 import org.gbif.ipt.task.GenerateDwcaFactory;
 import org.gbif.ipt.task.GeneratorException;
+import org.gbif.ipt.task.PublicationCheckpoint;
+import org.gbif.ipt.task.PublishingQueue;
+import org.gbif.ipt.task.PublishingQueue.Priority;
+import org.gbif.ipt.task.PublishingSchedule;
 import org.gbif.ipt.task.ReportHandler;
 import org.gbif.ipt.task.StatusReport;
 import org.gbif.ipt.task.TaskMessage;
@@ -79,6 +83,7 @@ import org.gbif.metadata.eml.KeywordSet;
 import org.gbif.utils.file.CompressionUtil;
 import org.gbif.utils.file.CompressionUtil.UnsupportedCompressionType;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileNotFoundException;
@@ -87,6 +92,7 @@ import java.io.FilenameFilter;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
@@ -98,26 +104,37 @@ import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Lock;
 import javax.annotation.Nullable;
 import javax.xml.parsers.ParserConfigurationException;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Function;
 import com.google.common.base.Preconditions;
 import com.google.common.base.Splitter;
 import com.google.common.base.Strings;
+import com.google.common.base.Throwables;
 import com.google.common.collect.ArrayListMultimap;
 import com.google.common.collect.Iterables;
 import com.google.common.collect.ListMultimap;
+import com.google.common.collect.Multimaps;
 import com.google.common.io.Files;
 import com.google.inject.Inject;
 import com.google.inject.Singleton;
@@ -125,6 +142,7 @@ import com.lowagie.text.Document;
 import com.lowagie.text.DocumentException;
 import com.lowagie.text.rtf.RtfWriter2;
 import com.thoughtworks.xstream.XStream;
+import com.thoughtworks.xstream.XStreamException;
 import org.apache.commons.io.FileUtils;
 import org.apache.log4j.Level;
 import org.xml.sax.SAXException;
@@ -132,19 +150,34 @@ import org.xml.sax.SAXException;
 @Singleton
 public class ResourceManagerImpl extends BaseManager implements ResourceManager, ReportHandler {
 
-  // key=shortname in lower case, value=resource
-  private Map<String, Resource> resources = new HashMap<String, Resource>();
+  // resources by shortname, indexed for listing them
+  private final ResourceCatalog resources = new ResourceCatalog();
+  // bounds the number of resources holding their EML in memory, or null to hold the EML of all resources
+  private final EmlCache emlCache;
+  // writes the files of each resource one at a time, optionally delayed to write successive saves once
+  private final ResourceWriter resourceWriter;
   public static final String PERSISTENCE_FILE = "resource.xml";
   private static final int MAX_PROCESS_FAILURES = 3;
+  // number of slowest resources logged once all resources are loaded
+  private static final int SLOWEST_REPORTED = 5;
+  private static final Comparator<Map.Entry<String, Long>> SLOWEST_FIRST = new Comparator<Map.Entry<String, Long>>() {
+    public int compare(Map.Entry<String, Long> o1, Map.Entry<String, Long> o2) {
+      return o2.getValue().compareTo(o1.getValue());
+    }
+  };
   private final XStream xstream = new XStream();
   private SourceManager sourceManager;
   private ExtensionManager extensionManager;
   private RegistryManager registryManager;
   private ThreadPoolExecutor executor;
   private GenerateDwcaFactory dwcaFactory;
-  private Map<String, Future<Integer>> processFutures = new HashMap<String, Future<Integer>>();
-  private ListMultimap<String, Date> processFailures = ArrayListMultimap.create();
-  private Map<String, StatusReport> processReports = new HashMap<String, StatusReport>();
+  // jobs finish on executor threads, so these are accessed concurrently
+  private ConcurrentMap<String, Future<Integer>> processFutures = new ConcurrentHashMap<String, Future<Integer>>();
+  private ListMultimap<String, Date> processFailures =
+    Multimaps.synchronizedListMultimap(ArrayListMultimap.<String, Date>create());
+  private Map<String, StatusReport> processReports = new ConcurrentHashMap<String, StatusReport>();
+  private final PublishingSchedule publishingSchedule = new PublishingSchedule();
+  private final PublishingQueue publishingQueue;
   private Eml2Rtf eml2Rtf;
   private VocabulariesManager vocabManager;
   private SimpleTextProvider textProvider;
@@ -165,14 +198,25 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     this.eml2Rtf = eml2Rtf;
     this.vocabManager = vocabManager;
     this.executor = (ThreadPoolExecutor) Executors.newFixedThreadPool(cfg.getMaxThreads());
+    this.publishingQueue = new PublishingQueue(executor, cfg.getMaxThreads(), cfg.getPublicationMaxPerDatabase(),
+      cfg.getPublicationMaxPerDisk());
     defineXstreamMapping(userConverter, orgConverter, extensionConverter, conceptTermConverter, jdbcInfoConverter,
       passwordConverter);
     this.textProvider = textProvider;
     this.registrationManager = registrationManager;
+    this.resourceWriter = new ResourceWriter(cfg.getPersistenceWriteDelay());
+    this.emlCache = cfg.getEmlCacheSize() > 0 ? new EmlCache(cfg.getEmlCacheSize(), new Function<Resource, Eml>() {
+      public Eml apply(Resource resource) {
+        return reloadEml(resource);
+      }
+    }) : null;
   }
 
   private void addResource(Resource res) {
-    resources.put(res.getShortname().toLowerCase(), res);
+    resources.add(res);
+    if (emlCache != null) {
+      emlCache.add(res);
+    }
   }
 
   public boolean cancelPublishing(String shortname, BaseAction action) {
@@ -183,8 +227,9 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
       // cancel job, even if it's running
       canceled = f.cancel(true);
       if (canceled) {
-        // remove process from locking list
-        processFutures.remove(shortname);
+        // remove process from locking list, and from the queue in case it has not started yet
+        processFutures.remove(shortname, f);
+        publishingQueue.remove(shortname);
       } else {
         log.warn("Canceling publication of resource " + shortname + " failed");
       }
@@ -344,7 +389,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     try {
 
       // shortname supplied is unique?
-      if (resources.containsKey(shortname)) {
+      if (resources.contains(shortname)) {
         throw new AlreadyExistingException();
       }
 
@@ -441,7 +486,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
       // convert short name to lower case
       String lower = shortname.toLowerCase();
       // check if existing already
-      if (resources.containsKey(lower)) {
+      if (resources.contains(lower)) {
         throw new AlreadyExistingException();
       }
       res = new Resource();
@@ -580,6 +625,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     xstream.alias("sqlsource", SqlSource.class);
     xstream.alias("mapping", ExtensionMapping.class);
     xstream.alias("field", PropertyMapping.class);
+    xstream.alias("filter", RecordFilter.class);
     xstream.alias("versionhistory", VersionHistory.class);
     xstream.alias("doi", DOI.class);
 
@@ -621,29 +667,93 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
 
     // remove from data dir?
     if (remove) {
+      // drop writes still pending, which would otherwise recreate the resource directory
+      resourceWriter.discard(resource.getShortname());
       FileUtils.forceDelete(dataDir.resourceFile(resource, ""));
       // remove object
-      resources.remove(resource.getShortname().toLowerCase());
+      resources.remove(resource.getShortname());
+      if (emlCache != null) {
+        emlCache.remove(resource.getShortname());
+      }
+      publishingSchedule.unschedule(resource.getShortname());
     }
   }
 
   /**
-   * @see #isLocked(String, BaseAction) for removing jobs from internal maps
+   * @see #finishPublishing(String, Future, BaseAction) for removing jobs from internal maps
    */
-  private void generateDwca(Resource resource) {
+  private void generateDwca(Resource resource, @Nullable User user, Priority priority) {
     // use threads to run in the background as sql sources might take a long time
     GenerateDwca worker = dwcaFactory.create(resource, this);
-    Future<Integer> f = executor.submit(worker);
-    processFutures.put(resource.getShortname(), f);
+    PublishingTask task = new PublishingTask(resource.getShortname(), worker);
+    // register the job before it starts, so that its completion always finds it
+    processFutures.put(resource.getShortname(), task);
+    // jobs are accounted to the user publishing, or to the resource creator for auto-publication
+    User owner = user == null ? resource.getCreator() : user;
+    publishingQueue
+      .submit(resource.getShortname(), owner == null ? null : owner.getEmail(), priority, publishingHosts(resource),
+        task);
     // make sure we have at least a first report for this resource
     worker.report();
   }
 
+  /**
+   * @return keys of the database hosts the resource's mapped sources are read from, and of the disk its archive is
+   * written to
+   */
+  private Set<String> publishingHosts(Resource resource) {
+    Set<String> hosts = new HashSet<String>();
+    for (ExtensionMapping mapping : resource.getMappings()) {
+      if (mapping.getSource() instanceof SqlSource) {
+        hosts.add(PublishingQueue.databaseKey(((SqlSource) mapping.getSource()).getHost()));
+      }
+    }
+    File resourcesDir = dataDir.dataFile(DataDir.RESOURCES_DIR);
+    if (resourcesDir != null) {
+      hosts.add(PublishingQueue.diskKey(resourcesDir));
+    }
+    return hosts;
+  }
+
+  /**
+   * DwC-A generation job, which finishes the publication as soon as the archive has been generated instead of waiting
+   * for the next status check.
+   */
+  private class PublishingTask extends FutureTask<Integer> {
+
+    private final String shortname;
+
+    private PublishingTask(String shortname, GenerateDwca worker) {
+      super(worker);
+      this.shortname = shortname;
+    }
+
+    @Override
+    protected void done() {
+      try {
+        if (!isCancelled()) {
+          finishPublishing(shortname, this);
+        } else {
+          // the monitor took the resource off the schedule when it became due, and a cancelled job never finishes
+          Resource resource = get(shortname);
+          if (resource != null && resource.getNextPublished() != null) {
+            publishingSchedule.schedule(shortname, resource.getNextPublished());
+          }
+        }
+      } catch (RuntimeException e) {
+        log.error("Finishing publication of resource " + shortname + " failed: " + e.getMessage(), e);
+      } finally {
+        // a publication slot is free again
+        publishingSchedule.signal();
+      }
+    }
+  }
+
   public Resource get(String shortname) {
     if (shortname == null) {
       return null;
     }
-    return resources.get(shortname.toLowerCase());
+    return resources.get(shortname);
   }
 
   private ExtensionMapping importMappings(ActionLogger alog, ArchiveFile af, Source source) {
@@ -693,177 +803,382 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
 
   public boolean isEmlExisting(String shortName) {
     File emlFile = dataDir.resourceEmlFile(shortName);
-    return emlFile.exists();
+    return emlFile.exists() || resourceWriter.isPending(shortName, DataDir.EML_XML_FILENAME);
   }
 
   public boolean isLocked(String shortname, BaseAction action) {
-    if (processFutures.containsKey(shortname)) {
-      Resource resource = get(shortname);
-      BigDecimal version = resource.getEmlVersion();
+    Future<Integer> f = processFutures.get(shortname);
+    if (f == null) {
+      return false;
+    }
+    // is listed as locked but task might be finished, check
+    if (f.isDone()) {
+      finishPublishing(shortname, f, action);
+      return false;
+    }
+    return true;
+  }
 
-      // is listed as locked but task might be finished, check
-      Future<Integer> f = processFutures.get(shortname);
-      // if this task finished
-      if (f.isDone()) {
-        // remove process from locking list immediately! Fixes Issue 1141
-        processFutures.remove(shortname);
-        boolean succeeded = false;
-        String reasonFailed = null;
-        Throwable cause = null;
-        try {
-          // retrieve resource record count (number of records published in DwC-A)
-          Integer recordCount = f.get();
-          // set number of records published
-          resource.setRecordsPublished(recordCount);
-          // finish publication (update registration, persist resource changes)
-          publishEnd(resource, action, version);
-          // important: indicate publishing finished successfully!
-          succeeded = true;
-        } catch (ExecutionException e) {
-          // getCause holds the actual exception our callable (GenerateDwca) threw
-          cause = e.getCause();
-          if (cause instanceof GeneratorException) {
-            reasonFailed = action.getText("dwca.failed", new String[] {shortname, cause.getMessage()});
-          } else if (cause instanceof InterruptedException) {
-            reasonFailed = action.getText("dwca.interrupted", new String[] {shortname, cause.getMessage()});
-          } else {
-            reasonFailed = action.getText("dwca.failed", new String[] {shortname, cause.getMessage()});
-          }
-        } catch (InterruptedException e) {
-          reasonFailed = action.getText("dwca.interrupted", new String[] {shortname, e.getMessage()});
-          cause = e;
-        } catch (PublicationException e) {
-          reasonFailed = action.getText("publishing.error", new String[] {e.getType().toString(), e.getMessage()});
-          cause = e;
-          // this type of exception happens outside GenerateDwca - so add reason to StatusReport
-          getTaskMessages(shortname).add(new TaskMessage(Level.ERROR, reasonFailed));
-        } finally {
-          // if publication was successful..
-          if (succeeded) {
-            // update StatusReport on publishing page
-            String msg =
-              action.getText("publishing.success", new String[] {version.toPlainString(), resource.getShortname()});
-            StatusReport updated = new StatusReport(true, msg, getTaskMessages(shortname));
-            processReports.put(shortname, updated);
-          } else {
-            // alert user publication failed
-            String msg =
-              action.getText("publishing.failed", new String[] {version.toPlainString(), shortname, reasonFailed});
-            action.addActionError(msg);
-
-            // update StatusReport on publishing page
-            if (cause != null) {
-              StatusReport updated = new StatusReport(new Exception(cause), msg, getTaskMessages(shortname));
-              processReports.put(shortname, updated);
-            }
+  /**
+   * Finishes the publication of a resource whose DwC-A generation job is done: on success the publication gets
+   * completed, otherwise the previous version is restored and the failure recorded. Called by the job itself when it
+   * completes, and by status checks. Only the caller removing the job from the locking list finishes it, so each job
+   * gets finished exactly once.
+   *
+   * @param shortname resource shortname
+   * @param f         DwC-A generation job, which must be done
+   * @param action    action to report messages to
+   */
+  private void finishPublishing(String shortname, Future<Integer> f, BaseAction action) {
+    // remove process from locking list immediately! Fixes Issue 1141
+    if (!processFutures.remove(shortname, f) || f.isCancelled()) {
+      return;
+    }
+    Resource resource = get(shortname);
+    if (resource == null) {
+      log.warn("Resource " + shortname + " was removed while being published");
+      return;
+    }
+    BigDecimal version = resource.getEmlVersion();
+    boolean succeeded = false;
+    String reasonFailed = null;
+    Throwable cause = null;
+    try {
+      // retrieve resource record count (number of records published in DwC-A)
+      Integer recordCount = f.get();
+      // set number of records published
+      resource.setRecordsPublished(recordCount);
+      // finish publication (update registration, persist resource changes)
+      publishEnd(resource, action, version);
+      // important: indicate publishing finished successfully!
+      succeeded = true;
+    } catch (ExecutionException e) {
+      // getCause holds the actual exception our callable (GenerateDwca) threw
+      cause = e.getCause();
+      if (cause instanceof GeneratorException) {
+        reasonFailed = action.getText("dwca.failed", new String[] {shortname, cause.getMessage()});
+      } else if (cause instanceof InterruptedException) {
+        reasonFailed = action.getText("dwca.interrupted", new String[] {shortname, cause.getMessage()});
+      } else {
+        reasonFailed = action.getText("dwca.failed", new String[] {shortname, cause.getMessage()});
+      }
+    } catch (InterruptedException e) {
+      reasonFailed = action.getText("dwca.interrupted", new String[] {shortname, e.getMessage()});
+      cause = e;
+    } catch (PublicationException e) {
+      reasonFailed = action.getText("publishing.error", new String[] {e.getType().toString(), e.getMessage()});
+      cause = e;
+      // this type of exception happens outside GenerateDwca - so add reason to StatusReport
+      getTaskMessages(shortname).add(new TaskMessage(Level.ERROR, reasonFailed));
+    } finally {
+      // if publication was successful..
+      if (succeeded) {
+        // update StatusReport on publishing page
+        String msg =
+          action.getText("publishing.success", new String[] {version.toPlainString(), resource.getShortname()});
+        StatusReport updated = new StatusReport(true, msg, getTaskMessages(shortname));
+        processReports.put(shortname, updated);
+      } else {
+        // alert user publication failed
+        String msg =
+          action.getText("publishing.failed", new String[] {version.toPlainString(), shortname, reasonFailed});
+        action.addActionError(msg);
 
-            // the previous version needs to be rolled back
-            restoreVersion(resource, version, resource.getReplacedEmlVersion(), action);
+        // update StatusReport on publishing page
+        if (cause != null) {
+          StatusReport updated = new StatusReport(new Exception(cause), msg, getTaskMessages(shortname));
+          processReports.put(shortname, updated);
+        }
 
-            // keep track of how many failures on auto publication have happened
-            processFailures.put(resource.getShortname(), new Date());
-          }
+        // the previous version needs to be rolled back
+        restoreVersion(resource, version, resource.getReplacedEmlVersion(), action);
+
+        // keep track of how many failures on auto publication have happened
+        processFailures.put(resource.getShortname(), new Date());
+
+        // try auto-publishing again later
+        if (resource.getNextPublished() != null) {
+          publishingSchedule.retry(shortname);
         }
-        return false;
       }
-      return true;
     }
-    return false;
   }
 
   public boolean isLocked(String shortname) {
-    return isLocked(shortname, new BaseAction(textProvider, cfg, registrationManager));
+    Future<Integer> f = processFutures.get(shortname);
+    if (f == null) {
+      return false;
+    }
+    if (f.isDone()) {
+      finishPublishing(shortname, f);
+      return false;
+    }
+    return true;
   }
 
-  public List<Resource> latest(int startPage, int pageSize) {
-    List<Resource> resourceList = new ArrayList<Resource>();
-    for (Resource resource : resources.values()) {
-      if (!resource.getStatus().equals(PublicationStatus.PRIVATE)) {
-        resourceList.add(resource);
+  /**
+   * Finishes the publication of a resource when no user action is there to report messages to, e.g. once the job
+   * completes. Messages, warnings and errors reported while finishing it, like registration updates or the rollback of
+   * a failed version, are added to the messages of the resource's StatusReport instead, so that the publishing page
+   * shows them.
+   *
+   * @param shortname resource shortname
+   * @param f         DwC-A generation job, which must be done
+   */
+  private void finishPublishing(String shortname, Future<Integer> f) {
+    BaseAction action = new BaseAction(textProvider, cfg, registrationManager);
+    finishPublishing(shortname, f, action);
+    StatusReport report = processReports.get(shortname);
+    if (report != null) {
+      List<TaskMessage> messages = report.getMessages();
+      for (String msg : action.getActionMessages()) {
+        messages.add(new TaskMessage(Level.INFO, msg));
       }
-    }
-    Collections.sort(resourceList, new Comparator<Resource>() {
-
-      public int compare(Resource r1, Resource r2) {
-        if (r1 == null || r1.getModified() == null) {
-          return 1;
-        }
-        if (r2 == null || r2.getModified() == null) {
-          return -1;
-        }
-        if (r1.getModified().before(r2.getModified())) {
-          return 1;
-        } else {
-          return -1;
+      for (String msg : action.getActionWarnings()) {
+        messages.add(new TaskMessage(Level.WARN, msg));
+      }
+      for (String msg : action.getActionErrors()) {
+        // a failed publication is the state of the report already
+        if (!msg.equals(report.getState())) {
+          messages.add(new TaskMessage(Level.ERROR, msg));
         }
       }
-    });
-    return resourceList;
+    }
+  }
+
+  public List<Resource> latest(int startPage, int pageSize) {
+    List<Resource> latest = resources.latest();
+    int from = Math.min(latest.size(), Math.max(0, startPage - 1) * pageSize);
+    return latest.subList(from, Math.min(latest.size(), from + pageSize));
   }
 
   public List<Resource> list() {
-    return new ArrayList<Resource>(resources.values());
+    return resources.list();
   }
 
   public List<Resource> list(PublicationStatus status) {
-    List<Resource> result = new ArrayList<Resource>();
-    for (Resource r : resources.values()) {
-      if (r.getStatus() == status) {
-        result.add(r);
-      }
-    }
-    return result;
+    return resources.list(status);
   }
 
   public List<Resource> listPublishedPublicVersions() {
-    List<Resource> result = new ArrayList<Resource>();
-    for (Resource r : resources.values()) {
-      List<VersionHistory> history = r.getVersionHistory();
-      if (!history.isEmpty()) {
-        VersionHistory latestVersion = history.get(0);
-        if (!latestVersion.getPublicationStatus().equals(PublicationStatus.DELETED) && !latestVersion
-          .getPublicationStatus().equals(PublicationStatus.PRIVATE)) {
-          result.add(r);
-        }
-      } else if (r.isRegistered()) { // for backwards compatibility with resources published prior to v2.2
-        result.add(r);
-      }
-    }
-    return result;
+    return resources.listPublishedPublicVersions();
   }
 
   public List<Resource> list(User user) {
-    List<Resource> result = new ArrayList<Resource>();
-    // select basedon user rights - for testing return all resources for now
-    for (Resource res : resources.values()) {
-      if (RequireManagerInterceptor.isAuthorized(user, res)) {
-        result.add(res);
-      }
+    if (user.hasAdminRights()) {
+      return resources.list();
+    }
+    // even resource creators need still to be managers, see RequireManagerInterceptor
+    if (user.hasManagerRights()) {
+      return resources.listByUser(user);
     }
-    return result;
+    return Collections.emptyList();
+  }
+
+  public List<Resource> list(Organisation organisation) {
+    return resources.list(organisation);
   }
 
   public int load() {
     File resourcesDir = dataDir.dataFile(DataDir.RESOURCES_DIR);
+    // resources are read from disk again
+    resourceWriter.flushAll();
     resources.clear();
+    if (emlCache != null) {
+      emlCache.clear();
+    }
     int counter = 0;
     File[] files = resourcesDir.listFiles();
     if (files != null) {
-      for (File resourceDir : files) {
+      counter = loadResources(files);
+    } else {
+      log.info("Data directory does not hold a resources directory: " + dataDir.dataFile(""));
+    }
+    // schedule auto-publication of the resources loaded
+    publishingSchedule.clear();
+    for (Resource resource : resources.list()) {
+      publishingSchedule.schedule(resource.getShortname(), resource.getNextPublished());
+    }
+    // resume publications interrupted by a restart
+    if (cfg.isPublicationResume()) {
+      for (Resource resource : resources.list()) {
+        resumePublishing(resource);
+      }
+    }
+    return counter;
+  }
+
+  /**
+   * Loads resources from their directories, using as many threads as configured for startup. How long loading took is
+   * logged, together with the slowest resources to load. Unless turned off, resources that did not change since the
+   * last startup are restored from its snapshot, and a new snapshot is written once all resources are loaded.
+   *
+   * @param resourceDirs resource directories, other files are ignored
+   *
+   * @return number of resources loaded
+   */
+  private int loadResources(File[] resourceDirs) {
+    long started = System.currentTimeMillis();
+    File snapshotFile = dataDir.configFile(DataDir.RESOURCES_SNAPSHOT_FILENAME);
+    final ResourceSnapshot previous = cfg.isStartupSnapshot() ? ResourceSnapshot.read(snapshotFile) : null;
+    final ResourceSnapshot next = cfg.isStartupSnapshot() ? new ResourceSnapshot() : null;
+    final AtomicInteger restored = new AtomicInteger();
+    int threads = Math.max(1, cfg.getStartupThreads());
+    ExecutorService loaders = Executors.newFixedThreadPool(threads);
+    // load time in milliseconds, by shortname
+    Map<String, Long> durations = new HashMap<String, Long>();
+    try {
+      Map<String, Future<Long>> loading = new LinkedHashMap<String, Future<Long>>();
+      for (final File resourceDir : resourceDirs) {
         if (resourceDir.isDirectory()) {
-          try {
-            addResource(loadFromDir(resourceDir));
-            counter++;
-          } catch (InvalidConfigException e) {
-            log.error("Cant load resource " + resourceDir.getName(), e);
+          loading.put(resourceDir.getName(), loaders.submit(new Callable<Long>() {
+            public Long call() {
+              long start = System.currentTimeMillis();
+              if (loadResource(resourceDir, previous, next)) {
+                restored.incrementAndGet();
+              }
+              return System.currentTimeMillis() - start;
+            }
+          }));
+        }
+      }
+      for (Map.Entry<String, Future<Long>> entry : loading.entrySet()) {
+        try {
+          durations.put(entry.getKey(), entry.getValue().get());
+        } catch (ExecutionException e) {
+          if (e.getCause() instanceof InvalidConfigException) {
+            log.error("Cant load resource " + entry.getKey(), e.getCause());
+          } else {
+            throw Throwables.propagate(e.getCause());
           }
         }
       }
-      log.info("Loaded " + counter + " resources into memory altogether.");
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      log.error("Interrupted while loading resources, only " + durations.size() + " resources were loaded");
+    } finally {
+      loaders.shutdownNow();
+    }
+    log.info("Loaded " + durations.size() + " resources into memory altogether in "
+             + (System.currentTimeMillis() - started) + " ms using " + threads + " thread(s), " + restored.get()
+             + " of them restored from the snapshot of the last startup.");
+    if (next != null) {
+      next.write(snapshotFile);
+    }
+    if (!durations.isEmpty()) {
+      List<Map.Entry<String, Long>> slowest = new ArrayList<Map.Entry<String, Long>>(durations.entrySet());
+      Collections.sort(slowest, SLOWEST_FIRST);
+      StringBuilder sb = new StringBuilder("Slowest resources to load:");
+      for (Map.Entry<String, Long> entry : slowest.subList(0, Math.min(SLOWEST_REPORTED, slowest.size()))) {
+        sb.append(' ').append(entry.getKey()).append(" (").append(entry.getValue()).append(" ms)");
+      }
+      log.info(sb.toString());
+    }
+    return durations.size();
+  }
+
+  /**
+   * Loads a resource from its directory, or restores it from the snapshot of the last startup if neither its
+   * resource.xml nor its eml.xml file changed since. The resource is added to the snapshot of this startup.
+   *
+   * @param resourceDir resource directory
+   * @param previous snapshot of the last startup, or null to always load the resource from its directory
+   * @param next snapshot of this startup, or null
+   *
+   * @return true if the resource was restored from the snapshot
+   */
+  private boolean loadResource(File resourceDir, @Nullable ResourceSnapshot previous, @Nullable ResourceSnapshot next) {
+    String shortname = resourceDir.getName();
+    File cfgFile = dataDir.resourceFile(shortname, PERSISTENCE_FILE);
+    File emlFile = dataDir.resourceEmlFile(shortname);
+    // stated before loading, so that changes made while loading are noticed next time
+    ResourceSnapshot.Entry stated = new ResourceSnapshot.Entry(cfgFile, emlFile);
+    ResourceSnapshot.Entry entry = previous == null ? null : previous.get(shortname);
+    if (entry != null && entry.isCurrent(cfgFile, emlFile) && restoreFromSnapshot(shortname, entry)) {
+      if (next != null) {
+        next.put(shortname, entry);
+      }
+      return true;
+    }
+    Resource resource = loadFromDir(resourceDir);
+    if (next != null) {
+      next.put(shortname, stated.loaded(xstream.toXML(resource), resource.getTitle(), resource.getLogoUrl()));
+    }
+    addResource(resource);
+    return false;
+  }
+
+  /**
+   * Restores a resource from the snapshot of the last startup, as it was after being loaded from its directory. Its
+   * metadata is only read once used, unless the metadata of all resources is held in memory.
+   *
+   * @param shortname resource shortname
+   * @param entry snapshot entry of the resource
+   *
+   * @return true if the resource was restored, false if it has to be loaded from its directory instead, e.g. because an
+   * extension it is mapped to is not installed anymore
+   */
+  private boolean restoreFromSnapshot(String shortname, ResourceSnapshot.Entry entry) {
+    Resource resource;
+    try {
+      resource = (Resource) xstream.fromXML(entry.getXml());
+    } catch (XStreamException e) {
+      log.warn("Cannot restore resource " + shortname + " from snapshot: " + e.getMessage());
+      return false;
+    }
+    resource.getManagers().remove(null);
+    for (ExtensionMapping ext : resource.getMappings()) {
+      Extension x = ext.getExtension();
+      if (x == null || extensionManager.get(x.getRowType()) == null) {
+        return false;
+      }
+    }
+    resource.setShortname(shortname);
+    for (Source src : resource.getSources()) {
+      src.setResource(resource);
+      if (src instanceof FileSource) {
+        FileSource frSrc = (FileSource) src;
+        frSrc.setFile(dataDir.sourceFile(resource, frSrc));
+      }
+    }
+    if (emlCache == null) {
+      loadEml(resource);
+      syncEmlWithResource(resource);
+      addResource(resource);
     } else {
-      log.info("Data directory does not hold a resources directory: " + dataDir.dataFile(""));
+      resources.add(resource);
+      emlCache.addDeferred(resource, entry.getTitle(), entry.getLogoUrl());
+    }
+    log.debug("Restored resource configuration for " + shortname);
+    return true;
+  }
+
+  /**
+   * Resumes the publication of a resource that was interrupted, e.g. by a restart, if it recorded a checkpoint. The
+   * resource gets published again, and the data files completed before the interruption are resumed instead of being
+   * generated again.
+   *
+   * @param resource resource
+   */
+  private void resumePublishing(Resource resource) {
+    PublicationCheckpoint checkpoint =
+      PublicationCheckpoint.load(dataDir.resourcePublicationCheckpointDir(resource.getShortname()));
+    if (!checkpoint.isInterrupted() || isLocked(resource.getShortname())) {
+      return;
+    }
+    BigDecimal version = new BigDecimal(resource.getNextVersion().toPlainString());
+    BigDecimal replacedVersion = new BigDecimal(resource.getEmlVersion().toPlainString());
+    log.info("Resuming publication of resource " + resource.getShortname() + " as version #" + version.toPlainString()
+             + ", interrupted at stage " + checkpoint.getStage() + " with " + checkpoint.getCompletedDataFiles()
+             + " data file(s) completed");
+    try {
+      publish(resource, version, null, Priority.SCHEDULED);
+    } catch (PublicationException e) {
+      log.error("Resuming publication of resource " + resource.getShortname() + " failed: " + e.getMessage(), e);
+      restoreVersion(resource, version, replacedVersion, null);
+    } catch (InvalidConfigException e) {
+      log.error("Resuming publication of resource " + resource.getShortname() + " failed: " + e.getMessage(), e);
     }
-    return counter;
   }
 
   /**
@@ -879,6 +1194,21 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     resource.setEml(eml);
   }
 
+  /**
+   * Loads the metadata of a resource again, after it was released from memory. It is brought in sync with the resource
+   * just like when the resource was first loaded.
+   *
+   * @param resource resource
+   *
+   * @return EML loaded
+   */
+  private Eml reloadEml(Resource resource) {
+    loadEml(resource);
+    syncEmlWithResource(resource);
+    log.debug("Reloaded EML of resource " + resource.getShortname());
+    return resource.getEml();
+  }
+
   /**
    * Calls loadFromDir(File, ActionLogger), inserting a new instance of ActionLogger.
    *
@@ -1160,6 +1490,13 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
 
   public boolean publish(Resource resource, BigDecimal version, BaseAction action)
     throws PublicationException, InvalidConfigException {
+    return publish(resource, version, action, Priority.MANUAL);
+  }
+
+  public boolean publish(Resource resource, BigDecimal version, BaseAction action, Priority priority)
+    throws PublicationException, InvalidConfigException {
+    // keep the action of the user publishing, before a null action gets replaced
+    BaseAction publisher = action;
     // prevent null action from being handled
     if (action == null) {
       action = new BaseAction(textProvider, cfg, registrationManager);
@@ -1173,7 +1510,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     // (re)generate dwca asynchronously
     boolean dwca = false;
     if (resource.hasMappedData()) {
-      generateDwca(resource);
+      generateDwca(resource, publisher == null ? null : publisher.getCurrentUser(), priority);
       dwca = true;
     } else {
       // set number of records published
@@ -1609,8 +1946,9 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
       resource.getEml().getCitation().setCitation(citation);
     }
 
-    // save all changes to Eml
+    // save all changes to Eml, written now to get published
     saveEml(resource);
+    resourceWriter.flush(resource.getShortname());
 
     // create versioned eml file
     File trunkFile = dataDir.resourceEmlFile(resource.getShortname());
@@ -1822,7 +2160,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
   @VisibleForTesting
   protected List<String> detectDuplicateUsesOfUUID(UUID candidate, String shortname) {
     ListMultimap<UUID, String> duplicateUses = ArrayListMultimap.create();
-    for (Resource other : resources.values()) {
+    for (Resource other : resources.list()) {
       // only resources having a different shortname should be matched against
       if (!other.getShortname().equalsIgnoreCase(shortname)) {
         // are there public resources with this alternate identifier?
@@ -1871,7 +2209,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     return ls;
   }
 
-  public synchronized void report(String shortname, StatusReport report) {
+  public void report(String shortname, StatusReport report) {
     processReports.put(shortname, report);
   }
 
@@ -1883,7 +2221,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
    * @param version  version of resource published
    * @param action   action
    */
-  protected synchronized void saveVersionHistory(Resource resource, BigDecimal version, BaseAction action) {
+  protected void saveVersionHistory(Resource resource, BigDecimal version, BaseAction action) {
     VersionHistory versionHistory = new VersionHistory(version, new Date(), resource.getStatus());
     // DOI
     versionHistory.setDoi(resource.getDoi());
@@ -1898,27 +2236,66 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     if (modifiedBy != null) {
       versionHistory.setModifiedBy(modifiedBy);
     }
-    resource.addVersionHistory(versionHistory);
+    Lock lock = resourceWriter.lock(resource.getShortname());
+    lock.lock();
+    try {
+      resource.addVersionHistory(versionHistory);
+    } finally {
+      lock.unlock();
+    }
   }
 
-  public synchronized void save(Resource resource) throws InvalidConfigException {
-    File cfgFile = dataDir.resourceFile(resource, PERSISTENCE_FILE);
+  public void save(Resource resource) throws InvalidConfigException {
+    final File cfgFile = dataDir.resourceFile(resource, PERSISTENCE_FILE);
+    // held until written, so that saves of the resource are written in the order they were made
+    Lock lock = resourceWriter.lock(resource.getShortname());
+    lock.lock();
+    try {
+      // serialized now, as the resource may change before it gets written
+      final String xml = xstream.toXML(resource);
+      resourceWriter.write(resource.getShortname(), PERSISTENCE_FILE, new Runnable() {
+        public void run() {
+          writeConfig(cfgFile, xml);
+        }
+      });
+    } finally {
+      lock.unlock();
+    }
+    // add to internal map
+    addResource(resource);
+  }
+
+  /**
+   * Writes the configuration of a resource next to its resource.xml file first, replacing the file once complete and
+   * synced to disk so that it is never left half written.
+   *
+   * @param cfgFile resource.xml file
+   * @param xml     resource configuration
+   *
+   * @throws InvalidConfigException if the file could not be written
+   */
+  private void writeConfig(File cfgFile, String xml) throws InvalidConfigException {
+    File tmp = new File(cfgFile.getParentFile(), cfgFile.getName() + ".tmp");
     Writer writer = null;
     try {
       // make sure resource dir exists
       FileUtils.forceMkdir(cfgFile.getParentFile());
       // persist data
-      writer = org.gbif.ipt.utils.FileUtils.startNewUtf8File(cfgFile);
-      xstream.toXML(resource, writer);
-      // add to internal map
-      addResource(resource);
+      FileOutputStream out = new FileOutputStream(tmp);
+      writer = new BufferedWriter(new OutputStreamWriter(out, org.gbif.ipt.utils.FileUtils.UTF8));
+      writer.write(xml);
+      writer.flush();
+      out.getFD().sync();
+      // closed before replacing the file, failing if not all was written
+      writer.close();
+      writer = null;
+      org.gbif.ipt.utils.FileUtils.replaceFile(tmp, cfgFile);
     } catch (IOException e) {
       log.error(e);
       throw new InvalidConfigException(TYPE.CONFIG_WRITE, "Can't write mapping configuration");
     } finally {
-      if (writer != null) {
-        closeWriter(writer);
-      }
+      closeWriter(writer);
+      FileUtils.deleteQuietly(tmp);
     }
   }
 
@@ -1926,18 +2303,40 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
    * (non-Javadoc)
    * @see org.gbif.ipt.service.manage.ResourceManager#save(java.lang.String, org.gbif.metadata.eml.Eml)
    */
-  public synchronized void saveEml(Resource resource) throws InvalidConfigException {
+  public void saveEml(final Resource resource) throws InvalidConfigException {
     // update EML with latest resource basics (version and GUID)
     syncEmlWithResource(resource);
     // set modified date
     resource.setModified(new Date());
+    resources.update(resource);
     // save into data dir
-    File emlFile = dataDir.resourceEmlFile(resource.getShortname());
-    // Locale.US it's used because uses '.' as the decimal separator
-    EmlUtils.writeWithLocale(emlFile, resource, Locale.US);
+    final File emlFile = dataDir.resourceEmlFile(resource.getShortname());
+    // held until written, so that saves of the EML are written in the order they were made
+    Lock lock = resourceWriter.lock(resource.getShortname());
+    lock.lock();
+    try {
+      final Eml eml = resource.getEml();
+      // serialized now, as the EML may change before it gets written. Locale.US it's used because uses '.' as the
+      // decimal separator
+      final String xml = EmlUtils.toXmlWithLocale(resource, eml, Locale.US);
+      resourceWriter.write(resource.getShortname(), DataDir.EML_XML_FILENAME, new Runnable() {
+        // held until written, so that a released EML is not loaded again from the file before
+        private final Eml held = eml;
+
+        public void run() {
+          EmlUtils.write(emlFile, resource, xml);
+        }
+      });
+    } finally {
+      lock.unlock();
+    }
     log.debug("Updated EML file for " + resource);
   }
 
+  public void shutdown() {
+    resourceWriter.shutdown();
+  }
+
   public StatusReport status(String shortname) {
     isLocked(shortname);
     return processReports.get(shortname);
@@ -2087,6 +2486,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
 
         // set next published date
         resource.setNextPublished(nextPublished);
+        publishingSchedule.schedule(resource.getShortname(), nextPublished);
 
         // log
         log.debug("The next publication date is: " + nextPublished.toString());
@@ -2112,6 +2512,7 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
       resource.setUpdateFrequency(null);
       // clear next published date
       resource.setNextPublished(null);
+      publishingSchedule.unschedule(resource.getShortname());
       log.debug("Auto-publishing turned off");
       // save change to resource
       save(resource);
@@ -2171,6 +2572,14 @@ public class ResourceManagerImpl extends BaseManager implements ResourceManager,
     return processFailures;
   }
 
+  public PublishingSchedule getPublishingSchedule() {
+    return publishingSchedule;
+  }
+
+  public PublishingQueue getPublishingQueue() {
+    return publishingQueue;
+  }
+
   public boolean hasMaxProcessFailures(Resource resource) {
     if (processFailures.containsKey(resource.getShortname())) {
       List<Date> failures = processFailures.get(resource.getShortname());
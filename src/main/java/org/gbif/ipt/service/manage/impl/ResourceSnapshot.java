@@ -0,0 +1,236 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Snapshot of all resources as they were loaded from the data directory, stored in a single compressed file. Each
+ * resource is stored with its configuration after the legacy migrations were applied, a summary of its metadata, and
+ * the size and modification date of its resource.xml and eml.xml files. As long as these files did not change since,
+ * a resource can be restored from the snapshot instead of being loaded from its directory, without reading its
+ * metadata until it is used.
+ * </br>
+ * Safe to add entries from multiple threads.
+ */
+class ResourceSnapshot {
+
+  /**
+   * A resource as it was loaded, together with the state of the files it was loaded from.
+   */
+  static class Entry {
+
+    private final long resourceModified;
+    private final long resourceLength;
+    private final long emlModified;
+    private final long emlLength;
+    // resource configuration, as saved in resource.xml
+    private final String xml;
+    private final String title;
+    private final String logoUrl;
+
+    /**
+     * States the files of a resource, before loading it.
+     *
+     * @param resourceFile resource.xml file
+     * @param emlFile eml.xml file
+     */
+    Entry(File resourceFile, File emlFile) {
+      this(resourceFile.lastModified(), resourceFile.length(), emlFile.lastModified(), emlFile.length(), null, null,
+        null);
+    }
+
+    private Entry(long resourceModified, long resourceLength, long emlModified, long emlLength, String xml,
+      @Nullable String title, @Nullable String logoUrl) {
+      this.resourceModified = resourceModified;
+      this.resourceLength = resourceLength;
+      this.emlModified = emlModified;
+      this.emlLength = emlLength;
+      this.xml = xml;
+      this.title = title;
+      this.logoUrl = logoUrl;
+    }
+
+    /**
+     * @param xml configuration of the resource loaded
+     * @param title title of the resource loaded
+     * @param logoUrl logo URL of the resource loaded
+     *
+     * @return entry of the resource loaded from the files stated
+     */
+    Entry loaded(String xml, @Nullable String title, @Nullable String logoUrl) {
+      return new Entry(resourceModified, resourceLength, emlModified, emlLength, xml, title, logoUrl);
+    }
+
+    /**
+     * @return true if both files are in the same state as when the resource was loaded
+     */
+    boolean isCurrent(File resourceFile, File emlFile) {
+      return resourceFile.lastModified() == resourceModified && resourceFile.length() == resourceLength
+             && emlFile.lastModified() == emlModified && emlFile.length() == emlLength;
+    }
+
+    String getXml() {
+      return xml;
+    }
+
+    @Nullable
+    String getTitle() {
+      return title;
+    }
+
+    @Nullable
+    String getLogoUrl() {
+      return logoUrl;
+    }
+  }
+
+  private static final Logger LOG = Logger.getLogger(ResourceSnapshot.class);
+  // change whenever the format changes, so that older snapshots are ignored
+  private static final int FORMAT_VERSION = 1;
+  // files changed more recently cannot be told apart from files changed again within the same timestamp
+  private static final long SETTLED_MILLIS = 2000;
+
+  // by shortname
+  private final Map<String, Entry> entries = new ConcurrentHashMap<String, Entry>();
+
+  /**
+   * Reads a snapshot. A missing, outdated or unreadable snapshot is treated as empty, so that all resources simply get
+   * loaded from their directories.
+   *
+   * @param file snapshot file
+   *
+   * @return snapshot read, never null
+   */
+  static ResourceSnapshot read(File file) {
+    ResourceSnapshot snapshot = new ResourceSnapshot();
+    if (file.exists()) {
+      DataInputStream in = null;
+      try {
+        in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(FileUtils.openInputStream(file))));
+        if (in.readInt() == FORMAT_VERSION) {
+          for (int i = in.readInt(); i > 0; i--) {
+            String shortname = in.readUTF();
+            long resourceModified = in.readLong();
+            long resourceLength = in.readLong();
+            long emlModified = in.readLong();
+            long emlLength = in.readLong();
+            String title = readNullable(in);
+            String logoUrl = readNullable(in);
+            byte[] xml = new byte[in.readInt()];
+            in.readFully(xml);
+            snapshot.entries.put(shortname,
+              new Entry(resourceModified, resourceLength, emlModified, emlLength, new String(xml, Charsets.UTF_8),
+                title, logoUrl));
+          }
+        } else {
+          LOG.info("Ignoring resource snapshot written by another IPT version: " + file.getAbsolutePath());
+        }
+      } catch (IOException e) {
+        LOG.warn("Cannot read resource snapshot " + file.getAbsolutePath() + ": " + e.getMessage());
+        snapshot.entries.clear();
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    return snapshot;
+  }
+
+  /**
+   * @param shortname resource shortname
+   *
+   * @return entry of the resource, or null if there is none
+   */
+  @Nullable
+  Entry get(String shortname) {
+    return entries.get(shortname);
+  }
+
+  /**
+   * Adds the entry of a resource, unless its files changed too recently to notice them changing again by their
+   * modification date.
+   *
+   * @param shortname resource shortname
+   * @param entry entry of the resource
+   */
+  void put(String shortname, Entry entry) {
+    long settled = System.currentTimeMillis() - SETTLED_MILLIS;
+    if (entry.resourceModified < settled && entry.emlModified < settled) {
+      entries.put(shortname, entry);
+    }
+  }
+
+  /**
+   * @return number of resources in the snapshot
+   */
+  int size() {
+    return entries.size();
+  }
+
+  /**
+   * Writes the snapshot, replacing the file in one go so that it is never left half written. Failing to write it is
+   * only logged, since it just means resources are loaded from their directories.
+   *
+   * @param file snapshot file
+   */
+  void write(File file) {
+    File tmp = new File(file.getParentFile(), file.getName() + ".tmp");
+    try {
+      DataOutputStream out =
+        new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(FileUtils.openOutputStream(tmp))));
+      try {
+        out.writeInt(FORMAT_VERSION);
+        Map<String, Entry> copy = new HashMap<String, Entry>(entries);
+        out.writeInt(copy.size());
+        for (Map.Entry<String, Entry> e : copy.entrySet()) {
+          Entry entry = e.getValue();
+          out.writeUTF(e.getKey());
+          out.writeLong(entry.resourceModified);
+          out.writeLong(entry.resourceLength);
+          out.writeLong(entry.emlModified);
+          out.writeLong(entry.emlLength);
+          writeNullable(out, entry.title);
+          writeNullable(out, entry.logoUrl);
+          byte[] xml = entry.xml.getBytes(Charsets.UTF_8);
+          out.writeInt(xml.length);
+          out.write(xml);
+        }
+      } finally {
+        out.close();
+      }
+      if (!tmp.renameTo(file)) {
+        FileUtils.deleteQuietly(file);
+        FileUtils.moveFile(tmp, file);
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot write resource snapshot " + file.getAbsolutePath() + ": " + e.getMessage());
+      FileUtils.deleteQuietly(tmp);
+    }
+  }
+
+  @Nullable
+  private static String readNullable(DataInputStream in) throws IOException {
+    return in.readBoolean() ? in.readUTF() : null;
+  }
+
+  private static void writeNullable(DataOutputStream out, @Nullable String value) throws IOException {
+    out.writeBoolean(value != null);
+    if (value != null) {
+      out.writeUTF(value);
+    }
+  }
+}
@@ -0,0 +1,225 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+
+/**
+ * Writes the files of resources, holding a lock per resource so that files of the same resource are written one at a
+ * time while different resources are written concurrently.
+ * </br>
+ * Writes can be delayed, so that a resource saved several times within the delay has each of its files written only
+ * once, as last saved. Writes still pending are done on demand, e.g. before a file gets published, and when the IPT is
+ * stopped. A delayed write failing is logged, and tried again after the delay unless it was saved again meanwhile.
+ */
+class ResourceWriter {
+
+  /**
+   * A write pending, with the number of times it was tried.
+   */
+  private static class Pending {
+
+    private final Runnable write;
+    private final int attempts;
+
+    Pending(Runnable write, int attempts) {
+      this.write = write;
+      this.attempts = attempts;
+    }
+  }
+
+  private static final Logger LOG = Logger.getLogger(ResourceWriter.class);
+  // delayed writes failing more often are given up
+  private static final int MAX_ATTEMPTS = 3;
+
+  private final long delay;
+  // does the delayed writes, or null when writing immediately
+  private final ScheduledExecutorService scheduler;
+  // by lower case shortname
+  private final ConcurrentMap<String, Lock> locks = new ConcurrentHashMap<String, Lock>();
+  // delayed writes not done yet, by lower case shortname and file name
+  private final ConcurrentMap<String, Pending> pending = new ConcurrentHashMap<String, Pending>();
+
+  /**
+   * @param delay milliseconds writes are delayed by, or 0 to write immediately
+   */
+  ResourceWriter(long delay) {
+    this.delay = delay;
+    this.scheduler = delay > 0 ? Executors.newSingleThreadScheduledExecutor(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("resource-writer-%d").build()) : null;
+  }
+
+  /**
+   * @param shortname resource shortname
+   *
+   * @return lock held while writing the files of the resource
+   */
+  Lock lock(String shortname) {
+    String key = shortname.toLowerCase();
+    Lock lock = locks.get(key);
+    if (lock == null) {
+      Lock created = new ReentrantLock();
+      lock = locks.putIfAbsent(key, created);
+      if (lock == null) {
+        lock = created;
+      }
+    }
+    return lock;
+  }
+
+  /**
+   * Writes a file of a resource, immediately unless writes are delayed. A delayed write replaces the write of the same
+   * file still pending.
+   *
+   * @param shortname resource shortname
+   * @param filename name of the file written
+   * @param write writes the file, throwing an unchecked exception if it failed
+   */
+  void write(String shortname, String filename, Runnable write) {
+    if (scheduler == null) {
+      Lock lock = lock(shortname);
+      lock.lock();
+      try {
+        write.run();
+      } finally {
+        lock.unlock();
+      }
+    } else {
+      schedule(key(shortname, filename), new Pending(write, 0), true);
+    }
+  }
+
+  /**
+   * @param shortname resource shortname
+   * @param filename name of the file
+   *
+   * @return true if a write of the file is pending
+   */
+  boolean isPending(String shortname, String filename) {
+    return pending.containsKey(key(shortname, filename));
+  }
+
+  /**
+   * Writes the files of a resource still pending now, waiting for a write of the resource in progress.
+   *
+   * @param shortname resource shortname
+   */
+  void flush(String shortname) {
+    String prefix = key(shortname, "");
+    for (String key : pending.keySet()) {
+      if (key.startsWith(prefix)) {
+        flush(key, false);
+      }
+    }
+  }
+
+  /**
+   * Writes all files still pending now.
+   */
+  void flushAll() {
+    for (String key : pending.keySet()) {
+      flush(key, false);
+    }
+  }
+
+  /**
+   * Drops the writes of a resource still pending, waiting for a write of the resource in progress, e.g. because the
+   * resource gets deleted.
+   *
+   * @param shortname resource shortname
+   */
+  void discard(String shortname) {
+    String prefix = key(shortname, "");
+    Lock lock = lock(shortname);
+    lock.lock();
+    try {
+      for (String key : pending.keySet()) {
+        if (key.startsWith(prefix)) {
+          pending.remove(key);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Writes all files still pending and stops delaying writes. Called when the web application is stopped.
+   */
+  void shutdown() {
+    if (scheduler != null) {
+      scheduler.shutdown();
+      for (String key : pending.keySet()) {
+        flush(key, true);
+      }
+    }
+  }
+
+  /**
+   * Schedules the write of a file, unless a write of the file is scheduled already.
+   *
+   * @param key key of the file
+   * @param write write to schedule
+   * @param replace true to replace the write pending, false to keep it
+   */
+  private void schedule(final String key, Pending write, boolean replace) {
+    Pending previous = replace ? pending.put(key, write) : pending.putIfAbsent(key, write);
+    // writes replacing one pending are done when that one was scheduled for
+    if (previous == null) {
+      try {
+        scheduler.schedule(new Runnable() {
+          public void run() {
+            flush(key, true);
+          }
+        }, delay, TimeUnit.MILLISECONDS);
+      } catch (RejectedExecutionException e) {
+        // stopped already
+        flush(key, true);
+      }
+    }
+  }
+
+  /**
+   * Does the write of a file pending, if it was not done yet.
+   *
+   * @param key key of the file
+   * @param delayed true if the write was scheduled, so that failures are logged instead of thrown
+   */
+  private void flush(String key, boolean delayed) {
+    Lock lock = lock(key.substring(0, key.indexOf('/')));
+    lock.lock();
+    try {
+      Pending write = pending.remove(key);
+      if (write != null) {
+        try {
+          write.write.run();
+        } catch (RuntimeException e) {
+          int attempts = write.attempts + 1;
+          if (attempts < MAX_ATTEMPTS && !scheduler.isShutdown()) {
+            LOG.warn("Writing " + key + " failed, trying again: " + e.getMessage(), e);
+            schedule(key, new Pending(write.write, attempts), false);
+          } else {
+            LOG.error("Writing " + key + " failed " + attempts + " times, giving up: " + e.getMessage(), e);
+          }
+          if (!delayed) {
+            throw e;
+          }
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  private static String key(String shortname, String filename) {
+    return shortname.toLowerCase() + "/" + filename;
+  }
+}
@@ -21,8 +21,10 @@ import org.gbif.ipt.config.AppConfig;
 import org.gbif.ipt.config.DataDir;
 import org.gbif.ipt.model.ExcelFileSource;
 import org.gbif.ipt.model.FileSource;
+import org.gbif.ipt.model.RecordFilter;
 import org.gbif.ipt.model.Resource;
 import org.gbif.ipt.model.Source;
+import org.gbif.ipt.model.SourceProfile;
 import org.gbif.ipt.model.SqlSource;
 import org.gbif.ipt.model.TextFileSource;
 import org.gbif.ipt.service.AlreadyExistingException;
@@ -30,16 +32,23 @@ import org.gbif.ipt.service.BaseManager;
 import org.gbif.ipt.service.ImportException;
 import org.gbif.ipt.service.InvalidFilenameException;
 import org.gbif.ipt.service.SourceException;
+import org.gbif.ipt.service.manage.FilteredRowIterator;
 import org.gbif.ipt.service.manage.SourceManager;
 import org.gbif.utils.file.ClosableIterator;
 import org.gbif.utils.file.ClosableReportingIterator;
 
+import java.io.BufferedReader;
 import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.Reader;
+import java.io.Writer;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
 import java.sql.SQLException;
@@ -47,21 +56,36 @@ import java.sql.SQLWarning;
 import java.sql.Statement;
 import java.util.ArrayList;
 import java.util.Date;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 import java.util.regex.Pattern;
+import javax.annotation.Nullable;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Charsets;
+import com.google.common.base.Strings;
 import com.google.common.collect.Lists;
 import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
 import com.google.inject.Inject;
+import com.google.inject.Singleton;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang3.StringUtils;
 
+@Singleton
 public class SourceManagerImpl extends BaseManager implements SourceManager {
 
   private static class ColumnIterator implements ClosableIterator<Object> {
@@ -100,6 +124,7 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
     private final Connection conn;
     private final Statement stmt;
     private final ResultSet rs;
+    private final SqlValueReader values;
     private final int column;
     private boolean hasNext;
     private final String sourceName;
@@ -121,11 +146,18 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
      */
     private SqlColumnIterator(SqlSource source, int column, String sql) throws SQLException {
       this.conn = getDbConnection(source);
-      this.stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-      source.getRdbms().enableLargeResultSet(this.stmt);
-      this.column = column + 1;
-      this.rs = stmt.executeQuery(sql);
-      this.hasNext = rs.next();
+      try {
+        this.stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+        source.getRdbms().enableLargeResultSet(this.stmt);
+        this.column = column;
+        this.rs = stmt.executeQuery(sql);
+        this.values = new SqlValueReader(rs.getMetaData());
+        this.hasNext = rs.next();
+      } catch (SQLException e) {
+        // return the pooled connection, the iterator will never be closed
+        conn.close();
+        throw e;
+      }
       sourceName = source.getName();
     }
 
@@ -152,7 +184,7 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
         try {
           // forward rs cursor
           hasNext = rs.next();
-          val = rs.getString(column);
+          val = values.read(rs, column);
         } catch (SQLException e2) {
           hasNext = false;
         }
@@ -165,25 +197,70 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
     }
   }
 
-  private class SqlRowIterator implements ClosableReportingIterator<String[]> {
+  private class SqlRowIterator implements FilteredRowIterator {
 
     private final Connection conn;
     private final Statement stmt;
     private final ResultSet rs;
+    private final SqlValueReader values;
+    private final SqlProjection projection;
     private boolean hasNext;
     private final String sourceName;
-    private final int rowSize;
     private boolean rowError;
     private String errorMessage;
     private Exception exception;
 
-    SqlRowIterator(SqlSource source) throws SQLException {
+    /**
+     * @param source SQL source
+     * @param columns indexes of the columns to read, or null to read all columns
+     * @param filter filter to leave out rows not matching it already in the database, or null to read all rows
+     */
+    SqlRowIterator(SqlSource source, @Nullable Set<Integer> columns, @Nullable RecordFilter filter)
+      throws SQLException {
       this.conn = getDbConnection(source);
-      this.stmt = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
-      source.getRdbms().enableLargeResultSet(this.stmt);
-      this.rs = stmt.executeQuery(source.getSql());
-      this.rowSize = rs.getMetaData().getColumnCount();
-      this.hasNext = rs.next();
+      try {
+        SqlProjection projected = null;
+        if (columns != null || filter != null) {
+          projected = SqlProjection.of(source, conn, columns, filter, source.getRdbms().isProjectionSupported());
+        }
+        Statement statement = null;
+        ResultSet result = null;
+        if (projected != null && (projected.getSelectList() != null || projected.isFiltered())) {
+          try {
+            statement = projected.prepare(conn, source.getRdbms()
+              .addProjection(source.getSql(), projected.getSelectList(), projected.getCondition()));
+            source.getRdbms().enableLargeResultSet(statement, source.getFetchSize());
+            result = ((PreparedStatement) statement).executeQuery();
+          } catch (SQLException e) {
+            // not all sql can be wrapped, e.g. SQL Server and Sybase reject ORDER BY in a derived table
+            log.warn("Cannot select only some columns or rows of sql source " + source.getName()
+                     + ", reading all of them: " + e.getMessage());
+            if (statement != null) {
+              statement.close();
+            }
+            statement = null;
+            // a failed statement aborts the transaction in some databases, e.g. PostgreSQL
+            if (!conn.getAutoCommit()) {
+              conn.rollback();
+            }
+            projected = projected.unwrapped();
+          }
+        }
+        if (result == null) {
+          statement = conn.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+          source.getRdbms().enableLargeResultSet(statement, source.getFetchSize());
+          result = statement.executeQuery(source.getSql());
+        }
+        this.stmt = statement;
+        this.rs = result;
+        this.values = new SqlValueReader(rs.getMetaData());
+        this.projection = projected == null ? SqlProjection.all(values.getColumnCount()) : projected;
+        this.hasNext = rs.next();
+      } catch (SQLException e) {
+        // return the pooled connection, the iterator will never be closed
+        conn.close();
+        throw e;
+      }
       sourceName = source.getName();
       this.rowError = false;
     }
@@ -206,16 +283,12 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
     }
 
     public String[] next() {
-      String[] val = new String[rowSize];
+      String[] val = new String[projection.getWidth()];
       if (hasNext) {
         try {
           resetReportingIterator();
-          int gotTo = 0; // field reached in row
           try {
-            for (int i = 1; i <= rowSize; i++) {
-              val[i - 1] = rs.getString(i);
-              gotTo = i;
-            }
+            projection.read(rs, values, val);
           } catch (SQLException exOnRow) {
             log.debug("Exception caught reading row: " + exOnRow.getMessage(), exOnRow);
             rowError = true;
@@ -227,8 +300,10 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
             msg.append(exOnRow.getMessage());
             msg.append("\n");
             msg.append("Row: ");
-            for (int i = 0; i < gotTo; i++) {
-              msg.append("[").append(val[i]).append("]");
+            for (String v : val) {
+              if (v != null) {
+                msg.append("[").append(v).append("]");
+              }
             }
             errorMessage = msg.toString();
           } finally {
@@ -259,6 +334,10 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
       // unsupported
     }
 
+    public boolean isFiltered() {
+      return projection.isFiltered();
+    }
+
     public boolean hasRowError() {
       return rowError;
     }
@@ -276,12 +355,21 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
   private static final int FETCH_SIZE = 10;
   // the maximum time in seconds that a driver will wait while attempting to connect to a database
   private static final int CONNECTION_TIMEOUT_SECS = 5;
+  // the maximum time in seconds to wait for a pooled connection, when all connections to a database are in use
+  private static final int POOL_WAIT_SECS = 30;
+  // the maximum time in seconds between closing idle pooled connections
+  private static final int POOL_EVICTION_SECS = 60;
 
   private static final String ACCEPTED_FILE_NAMES = "[\\w.\\-\\s\\)\\(]+";
 
   // Allowed characters in file names: alpha-numeric characters, plus ".", "-", "_", ")", "(", and " "
   private Pattern acceptedPattern = Pattern.compile(ACCEPTED_FILE_NAMES);
 
+  // connection pools to SQL source databases, keyed on JDBC URL, user and password hash
+  private final Map<String, SqlConnectionPool> connectionPools = new HashMap<String, SqlConnectionPool>();
+  private ScheduledExecutorService poolEvictor;
+  private final Gson gson = new Gson();
+
   @Inject
   public SourceManagerImpl(AppConfig cfg, DataDir dataDir) {
     super(cfg, dataDir);
@@ -438,12 +526,21 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
   private String analyze(FileSource src) {
     BufferedWriter logWriter = null;
     File logFile = dataDir.sourceLogFile(src.getResource().getShortname(), src.getName());
+    File profileFile = dataDir.sourceProfileFile(src.getResource().getShortname(), src.getName());
     try {
       FileUtils.deleteQuietly(logFile);
+      FileUtils.deleteQuietly(profileFile);
 
       Set<Integer> emptyLines;
       try {
-        emptyLines = src.analyze();
+        if (src instanceof TextFileSource) {
+          // profile the source in the same pass
+          SourceProfile profile = new SourceProfile((TextFileSource) src);
+          emptyLines = ((TextFileSource) src).analyze(profile);
+          saveProfile(profileFile, profile);
+        } else {
+          emptyLines = src.analyze();
+        }
       } catch (IOException e) {
         return e.getMessage();
       }
@@ -473,6 +570,52 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
     return null;
   }
 
+  private void saveProfile(@Nullable File profileFile, SourceProfile profile) {
+    if (profileFile == null) {
+      return;
+    }
+    Writer writer = null;
+    try {
+      writer = new BufferedWriter(new OutputStreamWriter(FileUtils.openOutputStream(profileFile), Charsets.UTF_8));
+      gson.toJson(profile, writer);
+    } catch (IOException e) {
+      // an incomplete profile is ignored when read
+      log.warn("Cant write source profile file " + profileFile.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(writer);
+    }
+  }
+
+  /**
+   * @return the profile of a text file source, or null if there is none or it does not describe the current file
+   */
+  @Nullable
+  private SourceProfile loadProfile(Source source) {
+    if (!(source instanceof TextFileSource) || source.getResource() == null) {
+      return null;
+    }
+    File profileFile = dataDir.sourceProfileFile(source.getResource().getShortname(), source.getName());
+    if (profileFile == null || !profileFile.exists()) {
+      return null;
+    }
+    Reader reader = null;
+    try {
+      reader = new BufferedReader(new InputStreamReader(FileUtils.openInputStream(profileFile), Charsets.UTF_8));
+      SourceProfile profile = gson.fromJson(reader, SourceProfile.class);
+      if (profile != null && profile.isCurrent((TextFileSource) source)) {
+        return profile;
+      }
+      log.debug("Profile of source " + source.getName() + " is outdated, reading source file instead");
+    } catch (IOException e) {
+      log.warn("Cant read source profile file " + profileFile.getAbsolutePath(), e);
+    } catch (JsonParseException e) {
+      log.warn("Invalid source profile file " + profileFile.getAbsolutePath(), e);
+    } finally {
+      IOUtils.closeQuietly(reader);
+    }
+    return null;
+  }
+
   /*
    * (non-Javadoc)
    * @see org.gbif.ipt.service.manage.SourceManager#columns(org.gbif.ipt.model.SourceBase)
@@ -485,6 +628,10 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
     if (source instanceof SqlSource) {
       return columns((SqlSource) source);
     }
+    SourceProfile profile = loadProfile(source);
+    if (profile != null) {
+      return new ArrayList<String>(profile.getColumns());
+    }
     return ((FileSource) source).columns();
   }
 
@@ -555,9 +702,10 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
 
     resource.deleteSource(source);
     if (source instanceof TextFileSource) {
-      // also delete source data file
+      // also delete source data file and its profile
       TextFileSource fs = (TextFileSource) source;
       fs.getFile().delete();
+      FileUtils.deleteQuietly(dataDir.sourceProfileFile(resource.getShortname(), source.getName()));
     }
     if (source instanceof ExcelFileSource) {
       // also delete source data file if no further source uses it
@@ -577,48 +725,241 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
     return true;
   }
 
+  public String fingerprint(Source source) throws SourceException {
+    if (source == null) {
+      return null;
+    }
+    if (source instanceof SqlSource) {
+      return fingerprint((SqlSource) source);
+    }
+    return fingerprint((FileSource) source);
+  }
+
+  private String fingerprint(FileSource source) throws SourceException {
+    File file = source.getFile();
+    if (file == null || !file.exists()) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(file.length()).append('|').append(file.lastModified()).append('|');
+    try {
+      sb.append(Files.hash(file, Hashing.md5()).toString());
+    } catch (IOException e) {
+      throw new SourceException("Can't read source file " + file.getAbsolutePath() + " to fingerprint it: "
+                                + e.getMessage());
+    }
+    // reader settings change the rows read from an unchanged file
+    sb.append('|').append(source.getEncoding()).append('|').append(source.getMultiValueFieldsDelimitedBy());
+    if (source instanceof TextFileSource) {
+      TextFileSource ts = (TextFileSource) source;
+      sb.append('|').append(ts.getFieldsTerminatedBy()).append('|').append(ts.getFieldsEnclosedBy()).append('|')
+        .append(ts.getIgnoreHeaderLines());
+    } else if (source instanceof ExcelFileSource) {
+      ExcelFileSource es = (ExcelFileSource) source;
+      sb.append('|').append(es.getSheetIdx()).append('|').append(es.getIgnoreHeaderLines());
+    }
+    return sb.toString();
+  }
+
+  private String fingerprint(SqlSource source) throws SourceException {
+    String changeSql = StringUtils.trimToNull(source.getChangeDetectionSql());
+    if (changeSql == null) {
+      return null;
+    }
+    StringBuilder sb = new StringBuilder();
+    sb.append(source.getJdbcUrl()).append('|').append(source.getUsername()).append('|').append(source.getSql())
+      .append('|').append(source.getMultiValueFieldsDelimitedBy());
+    Connection con = null;
+    Statement stmt = null;
+    ResultSet rs = null;
+    try {
+      con = getDbConnection(source);
+      if (con == null) {
+        return null;
+      }
+      stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+      rs = stmt.executeQuery(changeSql);
+      // only the first row is used, all of its columns
+      if (rs.next()) {
+        int max = rs.getMetaData().getColumnCount();
+        for (int idx = 1; idx <= max; idx++) {
+          sb.append('|').append(rs.getString(idx));
+        }
+      }
+    } catch (SQLException e) {
+      throw new SourceException("Can't execute change detection sql of source " + source.getName() + ": "
+                                + e.getMessage());
+    } finally {
+      // close result set, statement, and connection in that order
+      if (rs != null) {
+        try {
+          rs.close();
+        } catch (SQLException e) {
+          log.error("ResultSet could not be closed: " + e.getMessage(), e);
+        }
+      }
+      if (stmt != null) {
+        try {
+          stmt.close();
+        } catch (SQLException e) {
+          log.error("Statement could not be closed: " + e.getMessage(), e);
+        }
+      }
+      if (con != null) {
+        try {
+          con.close();
+        } catch (SQLException e) {
+          log.error("Connection could not be closed: " + e.getMessage(), e);
+        }
+      }
+    }
+    return sb.toString();
+  }
+
+  /**
+   * Borrows a connection to the source database from its connection pool. Closing the connection returns it to the
+   * pool.
+   *
+   * @return connection, or null if the source has no database configured
+   */
   private Connection getDbConnection(SqlSource source) throws SQLException {
-    Connection conn = null;
-    // try to connect to db via simple JDBC
     if (source.getHost() != null && source.getJdbcUrl() != null && source.getJdbcDriver() != null) {
-      try {
-        DriverManager.setLoginTimeout(CONNECTION_TIMEOUT_SECS);
-        Class.forName(source.getJdbcDriver());
-        conn = DriverManager.getConnection(source.getJdbcUrl(), source.getUsername(), source.getPassword());
-
-        // If a SQLWarning object is available, log its
-        // warning(s). There may be multiple warnings chained.
-
-        SQLWarning warn = conn.getWarnings();
-        while (warn != null) {
-          log.warn("SQLWarning: state=" + warn.getSQLState() + ", message=" + warn.getMessage() + ", vendor=" + warn
-            .getErrorCode());
-          warn = warn.getNextWarning();
-        }
-      } catch (java.lang.ClassNotFoundException e) {
-        String msg =
-          String
-            .format(
-              "Couldnt load JDBC driver to create new external datasource connection with JDBC Class=%s and URL=%s. Error: %s",
-              source.getJdbcDriver(), source.getJdbcUrl(), e.getMessage());
-        log.warn(msg, e);
-        throw new SQLException(msg, e);
-      } catch (Exception e) {
-        String msg = String
-          .format("Couldnt create new external datasource connection with JDBC Class=%s, URL=%s, user=%s. Error: %s",
-            source.getJdbcDriver(), source.getJdbcUrl(), source.getUsername(), e.getMessage());
-        log.warn(msg, e);
-        throw new SQLException(msg);
+      return connectionPool(source).borrow();
+    }
+    return null;
+  }
+
+  /**
+   * Retrieves the connection pool shared by all sources connecting to the same database as the same user, creating it
+   * on first use. The password is part of the pool key too, so that a source with a wrong password never gets
+   * connections opened with another source's password.
+   */
+  private SqlConnectionPool connectionPool(SqlSource source) {
+    final String driver = source.getJdbcDriver();
+    final String url = source.getJdbcUrl();
+    final String user = source.getUsername();
+    final String password = source.getPassword();
+    String key = url + "|" + user + "|"
+                 + Hashing.md5().hashString(Strings.nullToEmpty(password), Charsets.UTF_8).toString();
+    synchronized (connectionPools) {
+      SqlConnectionPool pool = connectionPools.get(key);
+      if (pool == null) {
+        pool = new SqlConnectionPool(url + " as " + user, new SqlConnectionPool.ConnectionFactory() {
+          public Connection connect() throws SQLException {
+            return openDbConnection(driver, url, user, password);
+          }
+        }, poolSize(), cfg.getSqlPoolIdleTimeout() * 1000L, POOL_WAIT_SECS * 1000L);
+        connectionPools.put(key, pool);
+        startPoolEviction();
       }
+      return pool;
+    }
+  }
+
+  /**
+   * Every data file of a publication written in parallel scans its source over a connection of its own, and several
+   * resources reading from the same database get published at the same time. The pool is sized to hold all of these
+   * scans plus one connection for previews, so that a publication never times out waiting for a connection taken by
+   * another one. The configured pool size is used if larger, or if publications per database are unlimited.
+   *
+   * @return maximum number of connections of a pool
+   */
+  private int poolSize() {
+    int size = Math.max(1, cfg.getSqlPoolSize());
+    if (cfg.getPublicationMaxPerDatabase() > 0) {
+      size = Math.max(size, cfg.getPublicationMaxPerDatabase() * cfg.getPublicationThreads() + 1);
+    }
+    return size;
+  }
+
+  /**
+   * Periodically closes connections that have been idle for too long, in all pools. Must be called holding the
+   * connectionPools lock.
+   */
+  private void startPoolEviction() {
+    if (poolEvictor == null) {
+      poolEvictor = Executors.newSingleThreadScheduledExecutor(
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sql-pool-evictor-%d").build());
+      long period = Math.max(1, Math.min(cfg.getSqlPoolIdleTimeout(), POOL_EVICTION_SECS));
+      poolEvictor.scheduleWithFixedDelay(new Runnable() {
+        public void run() {
+          List<SqlConnectionPool> pools;
+          synchronized (connectionPools) {
+            pools = new ArrayList<SqlConnectionPool>(connectionPools.values());
+          }
+          for (SqlConnectionPool pool : pools) {
+            pool.evictIdle();
+            log.debug("SQL connection pool " + pool);
+          }
+        }
+      }, period, period, TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Opens a new physical connection to a database via simple JDBC.
+   */
+  private Connection openDbConnection(String driver, String url, String user, String password) throws SQLException {
+    Connection conn;
+    try {
+      DriverManager.setLoginTimeout(CONNECTION_TIMEOUT_SECS);
+      Class.forName(driver);
+      conn = DriverManager.getConnection(url, user, password);
+
+      // If a SQLWarning object is available, log its
+      // warning(s). There may be multiple warnings chained.
+
+      SQLWarning warn = conn.getWarnings();
+      while (warn != null) {
+        log.warn("SQLWarning: state=" + warn.getSQLState() + ", message=" + warn.getMessage() + ", vendor=" + warn
+          .getErrorCode());
+        warn = warn.getNextWarning();
+      }
+    } catch (java.lang.ClassNotFoundException e) {
+      String msg =
+        String
+          .format(
+            "Couldnt load JDBC driver to create new external datasource connection with JDBC Class=%s and URL=%s. Error: %s",
+            driver, url, e.getMessage());
+      log.warn(msg, e);
+      throw new SQLException(msg, e);
+    } catch (Exception e) {
+      String msg = String
+        .format("Couldnt create new external datasource connection with JDBC Class=%s, URL=%s, user=%s. Error: %s",
+          driver, url, user, e.getMessage());
+      log.warn(msg, e);
+      throw new SQLException(msg);
     }
     return conn;
   }
 
+  public void shutdown() {
+    synchronized (connectionPools) {
+      for (SqlConnectionPool pool : connectionPools.values()) {
+        log.info("Closing SQL connection pool " + pool);
+        pool.close();
+      }
+      connectionPools.clear();
+      if (poolEvictor != null) {
+        poolEvictor.shutdownNow();
+        poolEvictor = null;
+      }
+    }
+  }
+
   /*
    * (non-Javadoc)
    * @see org.gbif.ipt.service.manage.SourceManager#inspectColumn(org.gbif.ipt.model.SourceBase, int, int)
    */
   public Set<String> inspectColumn(Source source, int column, int maxValues, int maxRows) throws SourceException {
+    // file sources are always read completely, so the profile answers as long as it kept enough distinct values
+    SourceProfile profile = loadProfile(source);
+    if (profile != null) {
+      Set<String> values = profile.distinctValues(column, maxValues);
+      if (values != null) {
+        return values;
+      }
+    }
     Set<String> values = new HashSet<String>();
     ClosableIterator<Object> iter = null;
     try {
@@ -673,6 +1014,16 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
 
   private List<String[]> peek(FileSource source, int rows) {
     List<String[]> preview = Lists.newArrayList();
+    SourceProfile profile = loadProfile(source);
+    if (profile != null && (rows <= profile.getSample().size() || profile.getRows() == profile.getSample().size())) {
+      for (String[] row : profile.getSample()) {
+        if (rows-- <= 0) {
+          break;
+        }
+        preview.add(row);
+      }
+      return preview;
+    }
     if (source != null) {
       try {
         Iterator<String[]> iter = source.rowIterator();
@@ -702,12 +1053,13 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
             stmt.setFetchSize(rows);
         }
         rs = stmt.executeQuery(source.getSqlLimited(rows + 1));
+        SqlValueReader values = new SqlValueReader(rs.getMetaData());
         // loop over result
         while (rows > 0 && rs.next()) {
           rows--;
           String[] row = new String[source.getColumns()];
           for (int idx = 0; idx < source.getColumns(); idx++) {
-            row[idx] = rs.getString(idx + 1);
+            row[idx] = values.read(rs, idx);
           }
           preview.add(row);
         }
@@ -742,14 +1094,38 @@ public class SourceManagerImpl extends BaseManager implements SourceManager {
   }
 
   public ClosableReportingIterator<String[]> rowIterator(Source source) throws SourceException {
+    return rowIterator(source, null);
+  }
+
+  public ClosableReportingIterator<String[]> rowIterator(Source source, @Nullable Set<Integer> columns)
+    throws SourceException {
+    return rowIterator(source, columns, null);
+  }
+
+  public ClosableReportingIterator<String[]> rowIterator(Source source, @Nullable Set<Integer> columns,
+    @Nullable RecordFilter filter) throws SourceException {
     if (source == null) {
       return null;
     }
     try {
       if (source instanceof SqlSource) {
-        return new SqlRowIterator((SqlSource) source);
+        SqlSource ss = (SqlSource) source;
+        // keyset pagination reads pages over a single pooled connection, like a single query
+        if (StringUtils.trimToNull(ss.getKeyColumn()) != null && ss.getHost() != null && ss.getJdbcUrl() != null
+            && ss.getJdbcDriver() != null) {
+          SqlKeysetRowIterator pages = new SqlKeysetRowIterator(ss, connectionPool(ss), columns, filter);
+          try {
+            // pages wrap the sql, which not all sql allows, e.g. ORDER BY in SQL Server and Sybase
+            pages.hasNext();
+            return pages;
+          } catch (IllegalStateException e) {
+            log.warn("Cannot read sql source " + ss.getName() + " in key ordered pages, reading it in a single "
+                     + "query: " + e.getMessage());
+          }
+        }
+        return new SqlRowIterator(ss, columns, filter);
       }
-      // both excel and file implement FileSource
+      // both excel and file implement FileSource, and are read completely by their own parsers
       return ((FileSource) source).rowIterator();
 
     } catch (Exception e) {
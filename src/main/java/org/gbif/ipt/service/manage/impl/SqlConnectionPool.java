@@ -0,0 +1,290 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.log4j.Logger;
+
+/**
+ * A bounded pool of connections to a single database, as a single user. Connections handed out are closed by the
+ * caller as usual, which returns them to the pool instead of closing them.
+ * </br>
+ * Idle connections are validated before being handed out again, and closed once idle for longer than the idle
+ * timeout. When all connections are in use, callers wait for one to be returned up to the connection timeout.
+ */
+class SqlConnectionPool {
+
+  /**
+   * Opens new physical connections to the database.
+   */
+  interface ConnectionFactory {
+
+    Connection connect() throws SQLException;
+  }
+
+  private static final Logger LOG = Logger.getLogger(SqlConnectionPool.class);
+  // the maximum time in seconds a connection validation may take
+  private static final int VALIDATION_TIMEOUT_SECS = 2;
+
+  private static class IdleConnection {
+
+    private final Connection connection;
+    private final long since = System.currentTimeMillis();
+
+    private IdleConnection(Connection connection) {
+      this.connection = connection;
+    }
+  }
+
+  private final String name;
+  private final ConnectionFactory factory;
+  private final int maxSize;
+  private final long idleTimeoutMs;
+  private final long waitTimeoutMs;
+  private final Semaphore permits;
+  // most recently returned connections first
+  private final LinkedList<IdleConnection> idle = new LinkedList<IdleConnection>();
+  private volatile boolean closed;
+
+  // metrics
+  private final AtomicLong created = new AtomicLong();
+  private final AtomicLong borrowed = new AtomicLong();
+  private final AtomicLong reused = new AtomicLong();
+  private final AtomicLong evicted = new AtomicLong();
+  private final AtomicLong invalid = new AtomicLong();
+  private final AtomicLong waited = new AtomicLong();
+
+  /**
+   * @param name name of the pool used for logging, e.g. the JDBC URL and user
+   * @param factory opens new connections
+   * @param maxSize maximum number of connections open at the same time
+   * @param idleTimeoutMs time after which an idle connection gets closed
+   * @param waitTimeoutMs maximum time to wait for a connection when all are in use
+   */
+  SqlConnectionPool(String name, ConnectionFactory factory, int maxSize, long idleTimeoutMs, long waitTimeoutMs) {
+    this.name = name;
+    this.factory = factory;
+    this.maxSize = maxSize;
+    this.idleTimeoutMs = idleTimeoutMs;
+    this.waitTimeoutMs = waitTimeoutMs;
+    this.permits = new Semaphore(maxSize, true);
+  }
+
+  /**
+   * Hands out a connection, reusing a valid idle connection when there is one. The connection must be closed by the
+   * caller to return it to the pool.
+   *
+   * @return connection
+   *
+   * @throws SQLException if no connection became available in time, or a new connection could not be opened
+   */
+  Connection borrow() throws SQLException {
+    if (closed) {
+      throw new SQLException("Connection pool " + name + " has been closed");
+    }
+    if (!permits.tryAcquire()) {
+      waited.incrementAndGet();
+      try {
+        if (!permits.tryAcquire(waitTimeoutMs, TimeUnit.MILLISECONDS)) {
+          throw new SQLException("Timed out waiting for a free connection to " + name + ", all " + maxSize
+                                 + " connections are in use");
+        }
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new SQLException("Interrupted waiting for a free connection to " + name);
+      }
+    }
+    try {
+      Connection con = takeIdle();
+      if (con == null) {
+        con = factory.connect();
+        if (con == null) {
+          throw new SQLException("No connection could be opened to " + name);
+        }
+        created.incrementAndGet();
+      } else {
+        reused.incrementAndGet();
+      }
+      borrowed.incrementAndGet();
+      return wrap(con);
+    } catch (SQLException e) {
+      permits.release();
+      throw e;
+    } catch (RuntimeException e) {
+      permits.release();
+      throw e;
+    }
+  }
+
+  /**
+   * @return most recently returned idle connection that is still valid, or null if there is none
+   */
+  private Connection takeIdle() {
+    while (true) {
+      IdleConnection candidate;
+      synchronized (idle) {
+        candidate = idle.poll();
+      }
+      if (candidate == null) {
+        return null;
+      }
+      if (isExpired(candidate, System.currentTimeMillis())) {
+        evicted.incrementAndGet();
+        closeQuietly(candidate.connection);
+      } else if (isValid(candidate.connection)) {
+        return candidate.connection;
+      } else {
+        invalid.incrementAndGet();
+        closeQuietly(candidate.connection);
+      }
+    }
+  }
+
+  /**
+   * Returns a connection to the pool, resetting any transaction left open. Broken connections get closed instead.
+   */
+  private void giveBack(Connection con) {
+    try {
+      boolean reusable = !closed && !con.isClosed();
+      if (reusable && !con.getAutoCommit()) {
+        con.rollback();
+        con.setAutoCommit(true);
+      }
+      if (reusable) {
+        con.clearWarnings();
+        synchronized (idle) {
+          idle.addFirst(new IdleConnection(con));
+        }
+      } else {
+        closeQuietly(con);
+      }
+    } catch (SQLException e) {
+      LOG.debug("Discarding connection to " + name + " that could not be reset: " + e.getMessage());
+      invalid.incrementAndGet();
+      closeQuietly(con);
+    } finally {
+      permits.release();
+    }
+  }
+
+  /**
+   * Closes all connections that have been idle for longer than the idle timeout.
+   */
+  void evictIdle() {
+    long now = System.currentTimeMillis();
+    synchronized (idle) {
+      Iterator<IdleConnection> iter = idle.iterator();
+      while (iter.hasNext()) {
+        IdleConnection candidate = iter.next();
+        if (isExpired(candidate, now)) {
+          iter.remove();
+          evicted.incrementAndGet();
+          closeQuietly(candidate.connection);
+        }
+      }
+    }
+  }
+
+  /**
+   * @return true if no connections are in use or idle
+   */
+  boolean isEmpty() {
+    synchronized (idle) {
+      return idle.isEmpty() && permits.availablePermits() == maxSize;
+    }
+  }
+
+  /**
+   * Closes all idle connections, and any connection in use once it is returned.
+   */
+  void close() {
+    closed = true;
+    synchronized (idle) {
+      for (IdleConnection candidate : idle) {
+        closeQuietly(candidate.connection);
+      }
+      idle.clear();
+    }
+    LOG.debug("Closed connection pool " + this);
+  }
+
+  private boolean isExpired(IdleConnection candidate, long now) {
+    return now - candidate.since > idleTimeoutMs;
+  }
+
+  private boolean isValid(Connection con) {
+    try {
+      return con.isValid(VALIDATION_TIMEOUT_SECS);
+    } catch (SQLException e) {
+      return false;
+    } catch (AbstractMethodError e) {
+      // pre JDBC 4 driver, cannot validate
+      try {
+        return !con.isClosed();
+      } catch (SQLException e1) {
+        return false;
+      }
+    }
+  }
+
+  private void closeQuietly(Connection con) {
+    try {
+      con.close();
+    } catch (SQLException e) {
+      LOG.debug("Connection to " + name + " could not be closed: " + e.getMessage());
+    }
+  }
+
+  /**
+   * Wraps a connection, so that closing it returns it to the pool. Closing it more than once has no further effect.
+   */
+  private Connection wrap(final Connection con) {
+    return (Connection) Proxy.newProxyInstance(SqlConnectionPool.class.getClassLoader(),
+      new Class<?>[] {Connection.class}, new InvocationHandler() {
+
+        private boolean returned;
+
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+          String methodName = method.getName();
+          if ("close".equals(methodName) && method.getParameterTypes().length == 0) {
+            if (!returned) {
+              returned = true;
+              giveBack(con);
+            }
+            return null;
+          }
+          if ("isClosed".equals(methodName) && method.getParameterTypes().length == 0) {
+            return returned || con.isClosed();
+          }
+          if (returned) {
+            throw new SQLException("Connection has been returned to the pool already");
+          }
+          try {
+            return method.invoke(con, args);
+          } catch (InvocationTargetException e) {
+            throw e.getCause();
+          }
+        }
+      });
+  }
+
+  @Override
+  public String toString() {
+    int idleSize;
+    synchronized (idle) {
+      idleSize = idle.size();
+    }
+    return name + " [in use=" + (maxSize - permits.availablePermits()) + ", idle=" + idleSize + ", max=" + maxSize
+           + ", borrowed=" + borrowed.get() + ", created=" + created.get() + ", reused=" + reused.get() + ", evicted="
+           + evicted.get() + ", invalid=" + invalid.get() + ", waited=" + waited.get() + "]";
+  }
+}
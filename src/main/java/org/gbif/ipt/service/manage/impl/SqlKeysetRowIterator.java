@@ -0,0 +1,267 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.model.RecordFilter;
+import org.gbif.ipt.model.SqlSource;
+import org.gbif.ipt.service.manage.FilteredRowIterator;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executors;
+import javax.annotation.Nullable;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.ListeningExecutorService;
+import com.google.common.util.concurrent.MoreExecutors;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import org.apache.log4j.Logger;
+
+/**
+ * Iterates over all rows of a SQL source using keyset pagination: the source sql is wrapped in queries selecting a
+ * page of rows ordered by a unique key column, each page starting after the last key of the previous page. Every page
+ * query can use an index on the key however far the iteration got, and sparse keys never cause empty queries. Rows are
+ * returned ordered by key, followed by all rows without a key, so the order is stable across runs.
+ * </br>
+ * The next page is read ahead over the same pooled connection while the rows of the current page are consumed, by a
+ * daemon thread shared by all iterators. An iterator never reads more than one page at a time, so at most two pages
+ * are held in memory per iterator, the one consumed and the one read ahead: the key chunk size bounds the memory used.
+ * </br>
+ * A page that cannot be read fails the iteration: {@link #hasNext()} throws an IllegalStateException, so that a
+ * failed read never looks like the end of the data.
+ * </br>
+ * If only some columns are projected, or a record filter is given, pages select only those columns and the rows
+ * possibly matching the filter, see {@link SqlProjection}.
+ */
+class SqlKeysetRowIterator implements FilteredRowIterator {
+
+  /**
+   * Rows of a page, with the key of the last row.
+   */
+  private static class Page {
+
+    private final List<String[]> rows;
+    // false for the page of rows without a key
+    private final boolean keyed;
+    private final Object lastKey;
+    // true if there may be further rows having a key
+    private final boolean more;
+
+    private Page(List<String[]> rows, boolean keyed, @Nullable Object lastKey, boolean more) {
+      this.rows = rows;
+      this.keyed = keyed;
+      this.lastKey = lastKey;
+      this.more = more;
+    }
+  }
+
+  private static final Logger LOG = Logger.getLogger(SqlKeysetRowIterator.class);
+  private static final int DEFAULT_KEY_CHUNK_SIZE = 1000;
+  // reads the pages of all iterators, each using at most one thread at a time
+  private static final ListeningExecutorService READERS = MoreExecutors.listeningDecorator(Executors
+    .newCachedThreadPool(new ThreadFactoryBuilder().setDaemon(true).setNameFormat("sql-page-reader-%d").build()));
+
+  private final SqlSource source;
+  private final Connection con;
+  private final int pageSize;
+  // null if all columns and rows are read
+  private final SqlProjection projection;
+  // page being read ahead, or null once all pages were read
+  private ListenableFuture<Page> next;
+  private Iterator<String[]> current;
+  private boolean closed;
+  private String errorMessage;
+  private Exception exception;
+
+  /**
+   * @param source SQL source having a key column
+   * @param pool connection pool of the source database, a single connection is used while iterating
+   * @param columns indexes of the columns to read, or null to read all columns
+   * @param filter filter to leave out rows not matching it already in the database, or null to read all rows
+   *
+   * @throws SQLException if no connection could be borrowed, or the column labels could not be read
+   */
+  SqlKeysetRowIterator(SqlSource source, SqlConnectionPool pool, @Nullable Set<Integer> columns,
+    @Nullable RecordFilter filter) throws SQLException {
+    this.source = source;
+    this.pageSize = (source.getKeyChunkSize() == null || source.getKeyChunkSize() < 1) ? DEFAULT_KEY_CHUNK_SIZE
+      : source.getKeyChunkSize();
+    this.con = pool.borrow();
+    try {
+      // pages are wrapped already, so selecting fewer columns or rows does not cost an extra copy on any database
+      projection = (columns == null && filter == null) ? null : SqlProjection.of(source, con, columns, filter, true);
+    } catch (SQLException e) {
+      con.close();
+      throw e;
+    } catch (RuntimeException e) {
+      con.close();
+      throw e;
+    }
+    next = READERS.submit(new PageReader(null, true));
+    LOG.debug("Reading sql source " + source.getName() + " in key ordered pages of " + pageSize + " rows");
+  }
+
+  /**
+   * Reads a page of rows over the connection of the iterator.
+   */
+  private class PageReader implements Callable<Page> {
+
+    private final Object after;
+    private final boolean keyed;
+
+    /**
+     * @param after key the page starts after, or null for the first page
+     * @param keyed true to read rows having a key, false to read all rows without a key
+     */
+    private PageReader(@Nullable Object after, boolean keyed) {
+      this.after = after;
+      this.keyed = keyed;
+    }
+
+    public Page call() throws SQLException {
+      String selectList = projection == null ? null : projection.getSelectList();
+      String condition = projection == null ? null : projection.getCondition();
+      String sql = keyed ? source.getRdbms()
+        .addKeyPage(source.getSql(), source.getKeyColumn(), after != null, pageSize + 1, selectList, condition)
+        : source.getRdbms().addNullKey(source.getSql(), source.getKeyColumn(), selectList, condition);
+      PreparedStatement stmt = projection == null ? con
+        .prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY) : projection.prepare(con, sql);
+      ResultSet rs = null;
+      try {
+        if (after != null) {
+          int params = projection == null ? 0 : projection.getParams().size();
+          stmt.setObject(params + 1, after);
+        }
+        source.getRdbms().enableLargeResultSet(stmt, source.getFetchSize());
+        rs = stmt.executeQuery();
+        SqlValueReader values = new SqlValueReader(rs.getMetaData());
+        // the key is selected last
+        int keyIndex = values.getColumnCount();
+        SqlProjection projected = projection == null ? SqlProjection.all(keyIndex - 1) : projection;
+        List<String[]> rows = new ArrayList<String[]>();
+        Object lastKey = null;
+        while (rs.next()) {
+          Object key = rs.getObject(keyIndex);
+          if (keyed && rows.size() == pageSize) {
+            // the extra row only tells whether the next page could skip rows sharing the last key
+            if (key != null && key.equals(lastKey)) {
+              throw new SQLException("Key column " + source.getKeyColumn() + " of sql source " + source.getName()
+                                     + " is not unique, several rows have key " + key);
+            }
+            return new Page(rows, true, lastKey, true);
+          }
+          String[] row = new String[projected.getWidth()];
+          projected.read(rs, values, row);
+          rows.add(row);
+          lastKey = key;
+        }
+        return new Page(rows, keyed, lastKey, false);
+      } finally {
+        if (rs != null) {
+          rs.close();
+        }
+        stmt.close();
+      }
+    }
+  }
+
+  public boolean hasNext() {
+    while (current == null || !current.hasNext()) {
+      if (next == null) {
+        return false;
+      }
+      Page page;
+      try {
+        page = next.get();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        throw fail(cause instanceof Exception ? (Exception) cause : e);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw fail(e);
+      }
+      // read the next page while this one is consumed, rows without a key come last
+      if (page.more) {
+        next = READERS.submit(new PageReader(page.lastKey, true));
+      } else if (page.keyed) {
+        next = READERS.submit(new PageReader(null, false));
+      } else {
+        next = null;
+      }
+      current = page.rows.iterator();
+    }
+    return true;
+  }
+
+  public String[] next() {
+    if (!hasNext()) {
+      throw new NoSuchElementException();
+    }
+    return current.next();
+  }
+
+  /**
+   * Reports a page that could not be read, and stops reading.
+   *
+   * @return exception to throw
+   */
+  private IllegalStateException fail(Exception e) {
+    LOG.debug("Exception caught reading page of sql source " + source.getName() + ": " + e.getMessage(), e);
+    exception = e;
+    errorMessage = e.getMessage();
+    close();
+    return new IllegalStateException("Cannot read sql source " + source.getName() + ": " + e.getMessage(), e);
+  }
+
+  public void remove() {
+    // unsupported
+  }
+
+  public void close() {
+    if (!closed) {
+      closed = true;
+      Runnable release = new Runnable() {
+        public void run() {
+          try {
+            con.close();
+          } catch (SQLException e) {
+            LOG.error("Cant close iterator for sql source " + source.getName(), e);
+          }
+        }
+      };
+      if (next == null) {
+        release.run();
+      } else {
+        // the connection is returned once a page still being read is done, it must not be used by two threads
+        next.addListener(release, MoreExecutors.directExecutor());
+      }
+    }
+    next = null;
+    current = Collections.<String[]>emptyList().iterator();
+  }
+
+  public boolean isFiltered() {
+    return projection != null && projection.isFiltered();
+  }
+
+  public boolean hasRowError() {
+    // pages are read completely, or not at all
+    return false;
+  }
+
+  public String getErrorMessage() {
+    return errorMessage;
+  }
+
+  public Exception getException() {
+    return exception;
+  }
+}
@@ -0,0 +1,366 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.model.RecordFilter;
+import org.gbif.ipt.model.RecordPredicate;
+import org.gbif.ipt.model.SqlSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * The columns and rows of a SQL source read by a row iterator. Rows keep all columns of the source, with null values
+ * for the columns not projected, so that the column indexes of mappings stay valid.
+ * </br>
+ * If the labels of the source columns are unique, the projection is pushed into the sql, so that only the projected
+ * columns are transferred from the database. Otherwise all columns are transferred, but only the projected ones are
+ * read.
+ * </br>
+ * A record filter is pushed into the sql the same way, as a condition every row matching the filter also matches. The
+ * condition is looser than the filter where databases differ, e.g. in comparing case or trimming whitespace, so the
+ * filter still needs to be applied to the rows read.
+ */
+class SqlProjection {
+
+  private static final Logger LOG = Logger.getLogger(SqlProjection.class);
+  private static final char LIKE_ESCAPE = '!';
+  // longer lists are matched while reading only, to keep the sql short
+  private static final int MAX_IN_VALUES = 100;
+
+  private final int width;
+  // column indexes in rows
+  private final int[] columns;
+  // column indexes in the result set, matching the column indexes in rows
+  private final int[] resultColumns;
+  private final String selectList;
+  private final String condition;
+  private final List<Object> params;
+
+  private SqlProjection(int width, int[] columns, int[] resultColumns, String selectList, String condition,
+    List<Object> params) {
+    this.width = width;
+    this.columns = columns;
+    this.resultColumns = resultColumns;
+    this.selectList = selectList;
+    this.condition = condition;
+    this.params = params;
+  }
+
+  /**
+   * @param width number of columns of the source
+   *
+   * @return projection reading all columns of the source
+   */
+  static SqlProjection all(int width) {
+    int[] columns = new int[width];
+    for (int i = 0; i < width; i++) {
+      columns[i] = i;
+    }
+    return new SqlProjection(width, columns, columns, null, null, Collections.<Object>emptyList());
+  }
+
+  /**
+   * Reads the column labels and types of a source, and projects it to some of its columns and rows.
+   *
+   * @param source SQL source
+   * @param con connection to the source database
+   * @param projected indexes of the columns to read, or null for all columns. Indexes beyond the last column are
+   * ignored
+   * @param filter filter rows must match, or null for all rows
+   * @param pushDown true if the projection and filter may be pushed into the sql, if the column labels allow it
+   *
+   * @return projection reading only the projected columns
+   *
+   * @throws SQLException if the column labels could not be read
+   */
+  static SqlProjection of(SqlSource source, Connection con, @Nullable Set<Integer> projected,
+    @Nullable RecordFilter filter, boolean pushDown) throws SQLException {
+    List<String> labels = new ArrayList<String>();
+    List<Integer> types = new ArrayList<Integer>();
+    Statement stmt = con.createStatement(ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    try {
+      ResultSet rs = stmt.executeQuery(source.getSqlLimited(1));
+      try {
+        ResultSetMetaData meta = rs.getMetaData();
+        for (int i = 1; i <= meta.getColumnCount(); i++) {
+          labels.add(meta.getColumnLabel(i));
+          types.add(meta.getColumnType(i));
+        }
+      } finally {
+        rs.close();
+      }
+    } finally {
+      stmt.close();
+    }
+
+    int width = labels.size();
+    List<Integer> read = new ArrayList<Integer>();
+    for (int column = 0; column < width; column++) {
+      if (projected == null || projected.contains(column)) {
+        read.add(column);
+      }
+    }
+    int[] columns = new int[read.size()];
+    List<String> readLabels = new ArrayList<String>();
+    for (int i = 0; i < columns.length; i++) {
+      columns[i] = read.get(i);
+      readLabels.add(labels.get(columns[i]));
+    }
+
+    String quote = StringUtils.trimToNull(con.getMetaData().getIdentifierQuoteString());
+    if (!pushDown || quote == null || !isUnique(labels)) {
+      LOG.debug("Reading all " + width + " columns of sql source " + source.getName() + ", converting "
+                + columns.length);
+      return new SqlProjection(width, columns, columns, null, null, Collections.<Object>emptyList());
+    }
+
+    List<Object> params = new ArrayList<Object>();
+    String condition = null;
+    if (filter != null && filter.getFilterTime() != RecordFilter.FilterTime.AfterTranslation) {
+      List<String> quoted = new ArrayList<String>();
+      for (String label : labels) {
+        quoted.add(source.getRdbms().selectList(Collections.singletonList(label), quote));
+      }
+      condition = condition(filter, quoted, types, params);
+    }
+    if (projected == null || columns.length == 0) {
+      // select all columns, keeping their indexes
+      LOG.debug("Reading all " + width + " columns of sql source " + source.getName() + ", converting "
+                + columns.length);
+      return new SqlProjection(width, columns, columns, null, condition, params);
+    }
+    int[] resultColumns = new int[columns.length];
+    for (int i = 0; i < columns.length; i++) {
+      resultColumns[i] = i;
+    }
+    LOG.debug("Reading " + columns.length + " of " + width + " columns of sql source " + source.getName());
+    return new SqlProjection(width, columns, resultColumns, source.getRdbms().selectList(readLabels, quote),
+      condition, params);
+  }
+
+  /**
+   * Builds a condition matched by every row matching a filter, as far as the filter can be expressed the same way for
+   * all databases:
+   * <ul>
+   * <li>conditions of a group that cannot be expressed are left out if the group is combined by AND, an OR group is
+   * only expressed if all its conditions are</li>
+   * <li>equals, in and starts with become LIKE conditions on character columns, as values are trimmed before being
+   * compared</li>
+   * <li>greater or equals and less or equals are expressed for numeric columns only</li>
+   * <li>not equals and regular expressions are never expressed, as databases differ in comparing case and in regular
+   * expression syntax</li>
+   * </ul>
+   *
+   * @param filter filter to push down, applied before translation
+   * @param columns quoted labels of all columns
+   * @param types types of all columns
+   * @param params list to add the parameters of the condition to
+   *
+   * @return condition using bound parameters, or null if the filter cannot be pushed down
+   */
+  @Nullable
+  static String condition(RecordFilter filter, List<String> columns, List<Integer> types, List<Object> params) {
+    if (!filter.isActive()) {
+      return null;
+    }
+    if (filter.isGroup()) {
+      int mark = params.size();
+      List<String> conditions = new ArrayList<String>();
+      for (RecordFilter f : filter.getFilters()) {
+        if (f.isActive()) {
+          String condition = condition(f, columns, types, params);
+          if (condition != null) {
+            conditions.add("(" + condition + ")");
+          } else if (filter.getOperator() == RecordFilter.Operator.OR) {
+            params.subList(mark, params.size()).clear();
+            return null;
+          }
+        }
+      }
+      return conditions.isEmpty() ? null : StringUtils.join(conditions, " " + filter.getOperator() + " ");
+    }
+
+    if (filter.getColumn() < 0 || filter.getColumn() >= columns.size()) {
+      return null;
+    }
+    String column = columns.get(filter.getColumn());
+    int sqlType = types.get(filter.getColumn());
+    String param = filter.getParam();
+    switch (filter.getComparator()) {
+      case IsNotNULL:
+        return column + " IS NOT NULL";
+      case IsNULL:
+        // blank strings count as null too, but cannot be matched the same way by all databases
+        return SqlValueReader.isTyped(sqlType) ? column + " IS NULL" : null;
+      case Equals:
+      case StartsWith:
+        return SqlValueReader.isText(sqlType) && !StringUtils.isEmpty(param) ? like(column, param, params) : null;
+      case In:
+        Set<String> values = RecordPredicate.inValues(param);
+        if (!SqlValueReader.isText(sqlType) || values.isEmpty() || values.size() > MAX_IN_VALUES) {
+          return null;
+        }
+        List<String> likes = new ArrayList<String>();
+        for (String value : values) {
+          likes.add(like(column, value, params));
+        }
+        return StringUtils.join(likes, " OR ");
+      case GreaterOrEquals:
+      case LessOrEquals:
+        return SqlValueReader.isNumeric(sqlType) ? compare(column, param,
+          filter.getComparator() == RecordFilter.Comparator.GreaterOrEquals, params) : null;
+      default:
+        return null;
+    }
+  }
+
+  /**
+   * @return condition matching values containing the parameter
+   */
+  private static String like(String column, String param, List<Object> params) {
+    params.add("%" + escapeLike(param) + "%");
+    return column + " LIKE ? ESCAPE '" + LIKE_ESCAPE + "'";
+  }
+
+  /**
+   * Values are compared as doubles when filtering, so the bound is moved by one double, as values rounding to the
+   * bound match too.
+   *
+   * @return condition comparing numbers, or null if the parameter is not a finite number
+   */
+  @Nullable
+  private static String compare(String column, @Nullable String param, boolean greater, List<Object> params) {
+    if (param == null) {
+      return null;
+    }
+    double bound;
+    try {
+      bound = Double.parseDouble(param);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (Double.isNaN(bound) || Double.isInfinite(bound)) {
+      return null;
+    }
+    bound = Math.nextAfter(bound, greater ? Double.NEGATIVE_INFINITY : Double.POSITIVE_INFINITY);
+    params.add(BigDecimal.valueOf(bound));
+    return column + (greater ? " >= ?" : " <= ?");
+  }
+
+  private static String escapeLike(String value) {
+    StringBuilder sb = new StringBuilder();
+    for (char c : value.toCharArray()) {
+      if (c == LIKE_ESCAPE || c == '%' || c == '_') {
+        sb.append(LIKE_ESCAPE);
+      }
+      sb.append(c);
+    }
+    return sb.toString();
+  }
+
+  /**
+   * @return true if all labels are given and distinct, ignoring case
+   */
+  private static boolean isUnique(List<String> labels) {
+    Set<String> distinct = new HashSet<String>();
+    for (String label : labels) {
+      if (StringUtils.isEmpty(label) || !distinct.add(label.toLowerCase())) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * @return projection converting the same columns of the unchanged source sql, which selects all columns and rows
+   */
+  SqlProjection unwrapped() {
+    return new SqlProjection(width, columns, columns, null, null, Collections.<Object>emptyList());
+  }
+
+  /**
+   * @return quoted columns to select, or null if all columns are selected
+   */
+  String getSelectList() {
+    return selectList;
+  }
+
+  /**
+   * @return condition rows are selected by, using bound parameters, or null if all rows are selected
+   */
+  String getCondition() {
+    return condition;
+  }
+
+  /**
+   * @return parameters of the condition, in order
+   */
+  List<Object> getParams() {
+    return params;
+  }
+
+  /**
+   * @return true if rows not matching the filter are left out
+   */
+  boolean isFiltered() {
+    return condition != null;
+  }
+
+  /**
+   * Prepares a statement selecting the projected columns and rows of a sql statement.
+   *
+   * @param con connection to the source database
+   * @param sql sql statement, wrapped with the select list and condition
+   *
+   * @return statement, with the parameters of the condition bound
+   *
+   * @throws SQLException if the statement could not be prepared
+   */
+  PreparedStatement prepare(Connection con, String sql) throws SQLException {
+    PreparedStatement stmt = con.prepareStatement(sql, ResultSet.TYPE_FORWARD_ONLY, ResultSet.CONCUR_READ_ONLY);
+    for (int i = 0; i < params.size(); i++) {
+      Object param = params.get(i);
+      if (param instanceof BigDecimal) {
+        stmt.setBigDecimal(i + 1, (BigDecimal) param);
+      } else {
+        stmt.setString(i + 1, (String) param);
+      }
+    }
+    return stmt;
+  }
+
+  /**
+   * @return number of columns of the source
+   */
+  int getWidth() {
+    return width;
+  }
+
+  /**
+   * Reads the projected columns of the current result set row.
+   *
+   * @param rs result set of the source sql, or of the sql wrapped with the select list
+   * @param values reader of the result set
+   * @param row row to read into, having the width of the source. Values read before an exception is thrown remain
+   *
+   * @throws SQLException if a value could not be read
+   */
+  void read(ResultSet rs, SqlValueReader values, String[] row) throws SQLException {
+    for (int i = 0; i < columns.length; i++) {
+      row[columns[i]] = values.read(rs, resultColumns[i]);
+    }
+  }
+}
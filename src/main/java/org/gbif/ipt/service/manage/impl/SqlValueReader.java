@@ -0,0 +1,220 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.text.DateFormat;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+
+/**
+ * Reads the values of a result set as strings, using the column types of its metadata to pick a type specific way of
+ * reading each column. This avoids locale dependent conversions done by some drivers, and makes the string values
+ * deterministic:
+ * <ul>
+ * <li>integers are written in plain decimal notation, big integers without overflowing unsigned ones</li>
+ * <li>decimals are written in plain notation, never using an exponent</li>
+ * <li>single precision floating point numbers are written with the digits of a float, not those of the double it
+ * widens to</li>
+ * <li>dates, times and timestamps are written in ISO 8601 format, e.g. 2015-06-01T10:15:30</li>
+ * </ul>
+ * All other types are read as strings by the driver, as are booleans (e.g. t and f in PostgreSQL) and times and
+ * timestamps with a time zone, keeping their offset, so that the values existing filters and translations expect are
+ * unchanged.
+ * </br>
+ * A reader holds date formatters per column and must only be used by one thread at a time.
+ */
+class SqlValueReader {
+
+  private enum Kind {
+    STRING, INTEGER, DECIMAL, REAL, FLOATING, BOOLEAN, DATE, TIME, TIMESTAMP
+  }
+
+  private static final String ISO_DATE = "yyyy-MM-dd";
+  private static final String ISO_TIME = "HH:mm:ss";
+  private static final String ISO_TIMESTAMP = "yyyy-MM-dd'T'HH:mm:ss";
+  private static final String ISO_TIMESTAMP_MILLIS = "yyyy-MM-dd'T'HH:mm:ss.SSS";
+  private static final int NANOS_PER_MILLI = 1000000;
+
+  private final Kind[] kinds;
+  private final DateFormat[] formats;
+  private final DateFormat[] millisFormats;
+
+  /**
+   * @param meta metadata of the result set to read
+   *
+   * @throws SQLException if the metadata could not be read
+   */
+  SqlValueReader(ResultSetMetaData meta) throws SQLException {
+    int columns = meta.getColumnCount();
+    kinds = new Kind[columns];
+    formats = new DateFormat[columns];
+    millisFormats = new DateFormat[columns];
+    for (int i = 0; i < columns; i++) {
+      kinds[i] = kind(meta.getColumnType(i + 1));
+      if ((kinds[i] == Kind.TIME || kinds[i] == Kind.TIMESTAMP) && isZoned(meta.getColumnTypeName(i + 1))) {
+        // e.g. PostgreSQL reports timestamptz as TIMESTAMP, whose java representation has no offset
+        kinds[i] = Kind.STRING;
+      }
+      if (kinds[i] == Kind.DATE) {
+        formats[i] = new SimpleDateFormat(ISO_DATE);
+      } else if (kinds[i] == Kind.TIME) {
+        formats[i] = new SimpleDateFormat(ISO_TIME);
+      } else if (kinds[i] == Kind.TIMESTAMP) {
+        formats[i] = new SimpleDateFormat(ISO_TIMESTAMP);
+        millisFormats[i] = new SimpleDateFormat(ISO_TIMESTAMP_MILLIS);
+      }
+    }
+  }
+
+  private static Kind kind(int sqlType) {
+    switch (sqlType) {
+      case Types.TINYINT:
+      case Types.SMALLINT:
+      case Types.INTEGER:
+        return Kind.INTEGER;
+      // unsigned big integers (MySQL) overflow a long
+      case Types.BIGINT:
+      case Types.DECIMAL:
+      case Types.NUMERIC:
+        return Kind.DECIMAL;
+      case Types.REAL:
+        return Kind.REAL;
+      case Types.FLOAT:
+      case Types.DOUBLE:
+        return Kind.FLOATING;
+      case Types.BOOLEAN:
+        return Kind.BOOLEAN;
+      case Types.DATE:
+        return Kind.DATE;
+      case Types.TIME:
+        return Kind.TIME;
+      case Types.TIMESTAMP:
+        return Kind.TIMESTAMP;
+      default:
+        return Kind.STRING;
+    }
+  }
+
+  /**
+   * @param typeName database specific column type name, possibly null
+   *
+   * @return true if the type name denotes a time or timestamp with a time zone or offset
+   */
+  private static boolean isZoned(String typeName) {
+    if (typeName == null) {
+      return false;
+    }
+    String name = typeName.toLowerCase();
+    return name.endsWith("tz") || name.contains("zone") || name.contains("offset");
+  }
+
+  /**
+   * @param sqlType column type, see {@link Types}
+   *
+   * @return true if values of the type are read as numbers, booleans or dates, and are therefore never blank
+   */
+  static boolean isTyped(int sqlType) {
+    return kind(sqlType) != Kind.STRING;
+  }
+
+  /**
+   * @param sqlType column type, see {@link Types}
+   *
+   * @return true if values of the type are read as numbers
+   */
+  static boolean isNumeric(int sqlType) {
+    Kind kind = kind(sqlType);
+    return kind == Kind.INTEGER || kind == Kind.DECIMAL || kind == Kind.REAL || kind == Kind.FLOATING;
+  }
+
+  /**
+   * @param sqlType column type, see {@link Types}
+   *
+   * @return true if values of the type are character strings that can be compared using LIKE
+   */
+  static boolean isText(int sqlType) {
+    switch (sqlType) {
+      case Types.CHAR:
+      case Types.VARCHAR:
+      case Types.LONGVARCHAR:
+      case Types.NCHAR:
+      case Types.NVARCHAR:
+      case Types.LONGNVARCHAR:
+        return true;
+      default:
+        return false;
+    }
+  }
+
+  /**
+   * @return number of columns in the result set
+   */
+  int getColumnCount() {
+    return kinds.length;
+  }
+
+  /**
+   * Reads the value of a column in the current row.
+   *
+   * @param rs result set positioned on a row
+   * @param column column to read, zero based
+   *
+   * @return string value, or null if the value is SQL NULL
+   *
+   * @throws SQLException if the value could not be read
+   */
+  String read(ResultSet rs, int column) throws SQLException {
+    int idx = column + 1;
+    switch (kinds[column]) {
+      case INTEGER:
+        long l = rs.getLong(idx);
+        return rs.wasNull() ? null : Long.toString(l);
+      case DECIMAL:
+        BigDecimal bd = rs.getBigDecimal(idx);
+        return bd == null ? null : bd.toPlainString();
+      case REAL:
+        float f = rs.getFloat(idx);
+        return rs.wasNull() ? null : plain(Float.toString(f), Float.isNaN(f) || Float.isInfinite(f));
+      case FLOATING:
+        double d = rs.getDouble(idx);
+        return rs.wasNull() ? null : plain(Double.toString(d), Double.isNaN(d) || Double.isInfinite(d));
+      case BOOLEAN:
+        // as written by the driver, like all previous versions did
+        return rs.getString(idx);
+      case DATE:
+        return format(formats[column], rs.getDate(idx));
+      case TIME:
+        return format(formats[column], rs.getTime(idx));
+      case TIMESTAMP:
+        Timestamp ts = rs.getTimestamp(idx);
+        // fractions of seconds are written as milliseconds, if there are any
+        if (ts != null && ts.getNanos() >= NANOS_PER_MILLI) {
+          return format(millisFormats[column], ts);
+        }
+        return format(formats[column], ts);
+      default:
+        return rs.getString(idx);
+    }
+  }
+
+  private static String format(DateFormat format, Date date) {
+    return date == null ? null : format.format(date);
+  }
+
+  /**
+   * Rewrites a floating point number formatted by Float.toString or Double.toString without an exponent.
+   *
+   * @param s formatted number
+   * @param special true if the number is not a number or infinite
+   */
+  private static String plain(String s, boolean special) {
+    if (s.indexOf('E') < 0 || special) {
+      return s;
+    }
+    return new BigDecimal(s).toPlainString();
+  }
+}
@@ -0,0 +1,121 @@
+package org.gbif.ipt.task;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.io.Files;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Bundles the files of a DwC-A into its zip while the archive is still being generated. Each file added gets
+ * compressed by a background thread, in the order files were added, so that compressing finished data files overlaps
+ * with writing the next ones and with validating the archive.
+ * </br>
+ * The zip is written to a temporary file next to the final archive, and only renamed to it once complete, so that the
+ * final archive is never seen half written.
+ */
+class ArchiveBundler {
+
+  private static final Logger LOG = Logger.getLogger(ArchiveBundler.class);
+  private static final String PART_SUFFIX = ".part";
+
+  private final File target;
+  private final File part;
+  private final ZipOutputStream zip;
+  private final ExecutorService compressor = Executors.newSingleThreadExecutor();
+  private final List<Future<File>> entries = new ArrayList<Future<File>>();
+
+  /**
+   * @param target final archive file
+   * @param compressionLevel zip compression level, 0-9 or -1 for the default level
+   *
+   * @throws IOException if the temporary zip file could not be created
+   */
+  ArchiveBundler(File target, int compressionLevel) throws IOException {
+    this.target = target;
+    this.part = new File(target.getParentFile(), target.getName() + PART_SUFFIX);
+    FileUtils.forceMkdir(target.getParentFile());
+    zip = new ZipOutputStream(new BufferedOutputStream(new FileOutputStream(part)));
+    zip.setLevel(compressionLevel);
+  }
+
+  /**
+   * Adds a complete file to the archive. The file is compressed in the background, and must not be modified anymore.
+   *
+   * @param file file to add, using its name as zip entry name
+   */
+  void add(final File file) {
+    entries.add(compressor.submit(new Callable<File>() {
+      public File call() throws Exception {
+        zip.putNextEntry(new ZipEntry(file.getName()));
+        Files.copy(file, zip);
+        zip.closeEntry();
+        return file;
+      }
+    }));
+  }
+
+  /**
+   * Waits until all files added were compressed, completes the zip and moves it to the final archive file, replacing
+   * any existing archive.
+   *
+   * @return final archive file
+   *
+   * @throws IOException if any file could not be compressed, or the zip could not be moved
+   * @throws InterruptedException if the thread was interrupted while waiting for compression
+   */
+  File finish() throws IOException, InterruptedException {
+    try {
+      for (Future<File> entry : entries) {
+        entry.get();
+      }
+    } catch (ExecutionException e) {
+      Throwable cause = e.getCause();
+      if (cause instanceof IOException) {
+        throw (IOException) cause;
+      }
+      throw new IOException("Failed to compress archive file: " + cause.getMessage(), cause);
+    } finally {
+      compressor.shutdown();
+    }
+    zip.close();
+    // renaming within the same directory replaces the archive atomically, unless the platform refuses to replace
+    if (!part.renameTo(target)) {
+      FileUtils.deleteQuietly(target);
+      if (!part.renameTo(target)) {
+        throw new IOException("Failed to move bundled archive to " + target.getAbsolutePath());
+      }
+    }
+    return target;
+  }
+
+  /**
+   * Stops compressing and deletes the incomplete zip. The final archive file is left untouched.
+   */
+  void abort() {
+    compressor.shutdownNow();
+    try {
+      compressor.awaitTermination(10, TimeUnit.SECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+    IOUtils.closeQuietly(zip);
+    if (part.exists() && !part.delete()) {
+      LOG.warn("Failed to delete incomplete archive " + part.getAbsolutePath());
+    }
+  }
+}
@@ -0,0 +1,172 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.Properties;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Fingerprints of the data files in a published DwC-A, stored next to the resource's archives. A fingerprint
+ * identifies everything a data file was generated from: its extension, the fingerprints of its sources, and the
+ * configuration of its mappings. A data file with the same fingerprint as one in the last published archive can be
+ * copied from that archive, instead of being generated again.
+ */
+class DataFileFingerprints {
+
+  private static final Logger LOG = Logger.getLogger(DataFileFingerprints.class);
+  private static final String VERSION_KEY = "archive.version";
+  private static final String FILE_SUFFIX = ".file";
+  private static final String RECORDS_SUFFIX = ".records";
+
+  private final BigDecimal version;
+  private final Properties fingerprints;
+
+  private DataFileFingerprints(@Nullable BigDecimal version, Properties fingerprints) {
+    this.version = version;
+    this.fingerprints = fingerprints;
+  }
+
+  /**
+   * @return new fingerprints, for an archive being generated
+   */
+  static DataFileFingerprints empty() {
+    return new DataFileFingerprints(null, new Properties());
+  }
+
+  /**
+   * Loads the fingerprints of a published archive. Missing or unreadable fingerprints are treated as empty, so that
+   * all data files simply get generated again.
+   *
+   * @param file fingerprints file
+   *
+   * @return fingerprints loaded, never null
+   */
+  static DataFileFingerprints load(@Nullable File file) {
+    Properties props = new Properties();
+    if (file == null || !file.exists()) {
+      return empty();
+    }
+    InputStream in = null;
+    try {
+      in = FileUtils.openInputStream(file);
+      props.load(in);
+      String version = StringUtils.trimToNull(props.getProperty(VERSION_KEY));
+      return new DataFileFingerprints(version == null ? null : new BigDecimal(version), props);
+    } catch (IOException e) {
+      LOG.warn("Cannot read data file fingerprints " + file.getAbsolutePath() + ": " + e.getMessage());
+    } catch (NumberFormatException e) {
+      LOG.warn("Invalid archive version in data file fingerprints " + file.getAbsolutePath());
+    } finally {
+      IOUtils.closeQuietly(in);
+    }
+    return empty();
+  }
+
+  /**
+   * @return version of the archive these fingerprints belong to, or null if unknown
+   */
+  @Nullable
+  BigDecimal getVersion() {
+    return version;
+  }
+
+  /**
+   * @param fingerprint data file fingerprint
+   *
+   * @return name of the data file inside the archive having this fingerprint, or null if there is none
+   */
+  @Nullable
+  String getFileName(String fingerprint) {
+    return fingerprints.getProperty(fingerprint + FILE_SUFFIX);
+  }
+
+  /**
+   * @param fingerprint data file fingerprint
+   *
+   * @return number of records in the data file having this fingerprint, or -1 if unknown
+   */
+  int getRecords(String fingerprint) {
+    try {
+      return Integer.parseInt(fingerprints.getProperty(fingerprint + RECORDS_SUFFIX));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Adds the fingerprint of a data file.
+   *
+   * @param fingerprint data file fingerprint
+   * @param fileName name of the data file inside the archive
+   * @param records number of records in the data file
+   */
+  synchronized void add(String fingerprint, String fileName, int records) {
+    fingerprints.setProperty(fingerprint + FILE_SUFFIX, fileName);
+    fingerprints.setProperty(fingerprint + RECORDS_SUFFIX, String.valueOf(records));
+  }
+
+  /**
+   * Copies the data file having this fingerprint out of an archive.
+   *
+   * @param fingerprint data file fingerprint
+   * @param archive archive the data file is copied from
+   * @param target file the data file is copied to
+   *
+   * @return true if the data file was copied, false if the archive does not contain it
+   *
+   * @throws IOException if the archive could not be read, or the target file written
+   */
+  boolean extract(String fingerprint, File archive, File target) throws IOException {
+    String fileName = getFileName(fingerprint);
+    if (fileName == null || !archive.exists()) {
+      return false;
+    }
+    ZipFile zip = new ZipFile(archive);
+    try {
+      ZipEntry entry = zip.getEntry(fileName);
+      if (entry == null) {
+        return false;
+      }
+      InputStream in = zip.getInputStream(entry);
+      OutputStream out = new FileOutputStream(target);
+      try {
+        IOUtils.copyLarge(in, out);
+      } finally {
+        IOUtils.closeQuietly(in);
+        out.close();
+      }
+      return true;
+    } finally {
+      zip.close();
+    }
+  }
+
+  /**
+   * Writes the fingerprints of an archive.
+   *
+   * @param file fingerprints file
+   * @param archiveVersion version of the archive the fingerprints belong to
+   *
+   * @throws IOException if the file could not be written
+   */
+  synchronized void save(File file, BigDecimal archiveVersion) throws IOException {
+    fingerprints.setProperty(VERSION_KEY, archiveVersion.toPlainString());
+    OutputStream out = FileUtils.openOutputStream(file);
+    try {
+      fingerprints.store(out, "Fingerprints of the data files in DwC-A version " + archiveVersion.toPlainString());
+    } finally {
+      out.close();
+    }
+  }
+}
@@ -0,0 +1,179 @@
+package org.gbif.ipt.task;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.common.base.Strings;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Detects duplicate record identifiers in a single pass over a data file, without sorting it. Identifiers are compared
+ * case insensitively, in exactly the same way as {@link String#equalsIgnoreCase(String)} does. Empty identifiers are
+ * ignored.
+ * </br>
+ * Identifiers are kept in memory until their estimated size exceeds the memory budget. From then on, all identifiers
+ * are spilled to partition files by hash, and the partitions are checked one at a time once all identifiers were
+ * added. Each identifier occurring n times is counted as n-1 duplicates, the same as comparing neighbours in a sorted
+ * file does.
+ * </br>
+ * Instances are not thread safe.
+ */
+class DuplicateIdDetector implements Closeable {
+
+  /**
+   * Gets notified of every duplicate identifier found.
+   */
+  interface Listener {
+
+    /**
+     * @param id identifier that was found before, in its original case
+     */
+    void duplicate(String id);
+  }
+
+  private static final int PARTITIONS = 64;
+  // rough heap cost of a single identifier held in a HashSet, not counting its characters
+  private static final int ENTRY_OVERHEAD_BYTES = 80;
+
+  private final long memoryBudget;
+  private final File spillDir;
+  private final Listener listener;
+  private Set<String> ids = new HashSet<String>();
+  private long memoryUsed;
+  private Writer[] partitions;
+  private int duplicates;
+
+  /**
+   * @param memoryBudget maximum number of bytes used to keep identifiers in memory
+   * @param spillDir directory to create for partition files, only if the memory budget gets exceeded. It is deleted
+   * when the detector is closed.
+   * @param listener notified of every duplicate identifier found
+   */
+  DuplicateIdDetector(long memoryBudget, File spillDir, Listener listener) {
+    this.memoryBudget = memoryBudget;
+    this.spillDir = spillDir;
+    this.listener = listener;
+  }
+
+  /**
+   * Adds the identifier of the next record. Duplicates are reported straight away while all identifiers fit in
+   * memory, otherwise only when finishing.
+   *
+   * @param id record identifier
+   *
+   * @throws IOException if the identifier could not be spilled to its partition file
+   */
+  void add(String id) throws IOException {
+    if (Strings.isNullOrEmpty(id)) {
+      return;
+    }
+    if (partitions != null) {
+      spill(id);
+      return;
+    }
+    String key = fold(id);
+    if (ids.add(key)) {
+      memoryUsed += ENTRY_OVERHEAD_BYTES + 2L * key.length();
+      if (memoryUsed > memoryBudget) {
+        startSpilling();
+      }
+    } else {
+      duplicates++;
+      listener.duplicate(id);
+    }
+  }
+
+  /**
+   * Checks the partition files, if any, for duplicates.
+   *
+   * @return total number of duplicate identifiers found
+   *
+   * @throws IOException if the partition files could not be read
+   * @throws InterruptedException if the thread was interrupted while checking partitions
+   */
+  int finish() throws IOException, InterruptedException {
+    if (partitions == null) {
+      return duplicates;
+    }
+    for (Writer writer : partitions) {
+      writer.close();
+    }
+    for (int i = 0; i < PARTITIONS; i++) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException("Interrupted while checking partitions for duplicate identifiers");
+      }
+      Set<String> partitionIds = new HashSet<String>();
+      BufferedReader reader = org.gbif.utils.file.FileUtils.getUtf8Reader(partitionFile(i));
+      try {
+        String id;
+        while ((id = reader.readLine()) != null) {
+          if (!partitionIds.add(fold(id))) {
+            duplicates++;
+            listener.duplicate(id);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return duplicates;
+  }
+
+  /**
+   * Closes and deletes all partition files.
+   */
+  public void close() {
+    if (partitions != null) {
+      for (Writer writer : partitions) {
+        IOUtils.closeQuietly(writer);
+      }
+      FileUtils.deleteQuietly(spillDir);
+    }
+    ids = null;
+  }
+
+  /**
+   * Moves all identifiers held in memory into the partition files. Their folded form gets spilled, which compares the
+   * same as their original.
+   */
+  private void startSpilling() throws IOException {
+    FileUtils.forceMkdir(spillDir);
+    partitions = new Writer[PARTITIONS];
+    for (int i = 0; i < PARTITIONS; i++) {
+      partitions[i] = org.gbif.utils.file.FileUtils.startNewUtf8File(partitionFile(i));
+    }
+    for (String key : ids) {
+      spill(key);
+    }
+    ids = null;
+  }
+
+  private void spill(String id) throws IOException {
+    String key = fold(id);
+    Writer writer = partitions[(key.hashCode() & Integer.MAX_VALUE) % PARTITIONS];
+    writer.write(id);
+    writer.write('\n');
+  }
+
+  private File partitionFile(int partition) {
+    return new File(spillDir, "ids-" + partition + ".txt");
+  }
+
+  /**
+   * Folds the case of an identifier, so that two identifiers are equal ignoring case exactly when their folded forms
+   * are equal.
+   */
+  static String fold(String id) {
+    char[] chars = id.toCharArray();
+    for (int i = 0; i < chars.length; i++) {
+      chars[i] = Character.toLowerCase(Character.toUpperCase(chars[i]));
+    }
+    return new String(chars);
+  }
+}
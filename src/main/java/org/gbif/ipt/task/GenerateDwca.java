@@ -17,40 +17,62 @@ import org.gbif.ipt.config.DataDir;
 import org.gbif.ipt.model.Extension;
 import org.gbif.ipt.model.ExtensionMapping;
 import org.gbif.ipt.model.ExtensionProperty;
+import org.gbif.ipt.model.FileSource;
 import org.gbif.ipt.model.PropertyMapping;
 import org.gbif.ipt.model.RecordFilter;
+import org.gbif.ipt.model.RecordPredicate;
 import org.gbif.ipt.model.Resource;
+import org.gbif.ipt.model.Source;
+import org.gbif.ipt.service.SourceException;
 import org.gbif.ipt.service.admin.VocabulariesManager;
+import org.gbif.ipt.service.manage.FilteredRowIterator;
 import org.gbif.ipt.service.manage.SourceManager;
 import org.gbif.ipt.utils.MapUtils;
+import org.gbif.ipt.utils.ParallelFileSorter;
 import org.gbif.utils.file.ClosableReportingIterator;
-import org.gbif.utils.file.CompressionUtil;
 import org.gbif.utils.text.LineComparator;
 
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileFilter;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.io.Writer;
 import java.math.BigDecimal;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.UUID;
 import java.util.concurrent.Callable;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Pattern;
 import javax.annotation.Nullable;
 
+import com.google.common.base.Charsets;
 import com.google.common.base.Strings;
 import com.google.common.collect.ImmutableSet;
 import com.google.common.collect.Ordering;
+import com.google.common.hash.Hashing;
+import com.google.common.io.Files;
 import com.google.inject.Inject;
 import com.google.inject.assistedinject.Assisted;
 import org.apache.commons.io.FileUtils;
@@ -65,30 +87,179 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     WAITING, STARTED, DATAFILES, METADATA, BUNDLING, COMPLETED, ARCHIVING, VALIDATING, CANCELLED, FAILED
   }
 
+  /**
+   * A single data file of the archive, written from one or more extension mappings (segments) that are all mapped to
+   * the same extension. Record counts are shared by all segments, which may be written by different worker threads.
+   */
+  private static class DataFile {
+
+    private final Extension extension;
+    private final List<ExtensionMapping> mappings;
+    private final ArchiveFile af;
+    private final List<ExtensionProperty> propertyList;
+    // total column count is equal to id column + mapped columns
+    private final int totalColumns;
+    private final File file;
+    private final AtomicInteger records = new AtomicInteger();
+    private final AtomicInteger recordsSkipped = new AtomicInteger();
+    // fingerprint of everything the data file is generated from, null if it cannot be fingerprinted
+    private String fingerprint;
+    // key the data file is recorded by in the publication checkpoint, null if checkpoints are not recorded
+    private String checkpointKey;
+    // true if the data file was copied from the last published archive, or resumed, instead of being generated
+    private boolean reused;
+    // validation done while the data file is written, null if it gets validated once written
+    private DataFileChecks checks;
+
+    private DataFile(Extension extension, List<ExtensionMapping> mappings, ArchiveFile af,
+      List<ExtensionProperty> propertyList, File file) {
+      this.extension = extension;
+      this.mappings = mappings;
+      this.af = af;
+      this.propertyList = propertyList;
+      this.totalColumns = 1 + propertyList.size();
+      this.file = file;
+    }
+
+    /**
+     * @param mapping one of the mappings writing to this data file
+     *
+     * @return index ordered list of all output columns apart from id column
+     */
+    private PropertyMapping[] inputColumns(ExtensionMapping mapping) {
+      PropertyMapping[] inCols = new PropertyMapping[totalColumns];
+      for (ArchiveField f : af.getFields().values()) {
+        if (f.getIndex() != null && f.getIndex() > ID_COLUMN_INDEX) {
+          inCols[f.getIndex()] = mapping.getField(f.getTerm().qualifiedName());
+        }
+      }
+      return inCols;
+    }
+  }
+
+  /**
+   * Validation of a data file done while it is written, from the values of each line written, so that the data file
+   * does not need to be read again once written. Only the results are reported when validating the archive.
+   * </br>
+   * Lines of a data file can be written by several worker threads, so all checks are synchronized.
+   */
+  private class DataFileChecks implements Closeable {
+
+    // null if the core record identifier is not validated
+    private final DuplicateIdDetector duplicateIds;
+    // null if core record identifiers are not collected for checking extension records refer to them
+    private final OrphanIdDetector coreIds;
+    // output column of basisOfRecord, -1 if basisOfRecord is not validated
+    private final int basisOfRecordIndex;
+    private int recordsWithNoId;
+    private int recordsWithNoBasisOfRecord;
+    private int recordsWithNonMatchingBasisOfRecord;
+    private int recordsWithAmbiguousBasisOfRecord;
+
+    private DataFileChecks(@Nullable DuplicateIdDetector duplicateIds, @Nullable OrphanIdDetector coreIds,
+      int basisOfRecordIndex) {
+      this.duplicateIds = duplicateIds;
+      this.coreIds = coreIds;
+      this.basisOfRecordIndex = basisOfRecordIndex;
+    }
+
+    /**
+     * Checks the line just written.
+     *
+     * @param plan plan the line was written with
+     * @param source name of the source the line was read from
+     * @param line line number of the row in the source
+     *
+     * @throws IOException if the identifier could not be kept for detecting duplicates or orphans
+     */
+    private synchronized void check(RowPlan plan, String source, int line) throws IOException {
+      String id = duplicateIds != null || coreIds != null ? plan.getWrittenValue(ID_COLUMN_INDEX) : null;
+      if (duplicateIds != null) {
+        if (id == null) {
+          recordsWithNoId++;
+        } else {
+          duplicateIds.add(id);
+        }
+      }
+      if (coreIds != null) {
+        coreIds.addCoreId(id);
+      }
+      if (basisOfRecordIndex > ID_COLUMN_INDEX) {
+        String bor = plan.getWrittenValue(basisOfRecordIndex);
+        // check basisOfRecord exists
+        if (bor == null) {
+          recordsWithNoBasisOfRecord++;
+        }
+        // check basisOfRecord matches vocabulary (lower case comparison). E.g. specimen matches Specimen are equal
+        else if (!basisOfRecords.containsKey(bor.toLowerCase())) {
+          writePublicationLogMessage("Line #" + line + " of source " + source + " has basisOfRecord [" + bor
+                                     + "] that does not match the Darwin Core Type Vocabulary");
+          recordsWithNonMatchingBasisOfRecord++;
+        }
+        // check basisOfRecord matches ambiguous "occurrence" (lower case comparison)
+        else if (bor.equalsIgnoreCase("occurrence")) {
+          recordsWithAmbiguousBasisOfRecord++;
+        }
+      }
+    }
+
+    /**
+     * @return number of duplicate identifiers, including those that did not fit in memory
+     */
+    private synchronized int finishDuplicateIds() throws IOException, InterruptedException {
+      if (duplicateIds == null) {
+        return 0;
+      }
+      try {
+        return duplicateIds.finish();
+      } finally {
+        duplicateIds.close();
+      }
+    }
+
+    public synchronized void close() {
+      if (duplicateIds != null) {
+        duplicateIds.close();
+      }
+      if (coreIds != null) {
+        coreIds.close();
+      }
+    }
+  }
+
   private static final Pattern escapeChars = Pattern.compile("[\t\n\r]");
   private final Resource resource;
   private int coreRecords = 0;
   private Archive archive;
   private File dwcaFolder;
-  // status reporting
-  private int currRecords = 0;
-  private int currRecordsSkipped = 0;
-  private String currExtension;
-  private STATE state = STATE.WAITING;
+  // status reporting: data files currently being written
+  private final List<DataFile> activeDataFiles = new CopyOnWriteArrayList<DataFile>();
+  private volatile STATE state = STATE.WAITING;
   private final SourceManager sourceManager;
   private final VocabulariesManager vocabManager;
   private Map<String, String> basisOfRecords;
-  private Exception exception;
+  private volatile Exception exception;
   private AppConfig cfg;
+  // incremental publishing: data file fingerprints of the last published and of the generated archive
+  private DataFileFingerprints previousFingerprints;
+  private DataFileFingerprints fingerprints;
+  // checkpoint recording completed stages and data files, null if checkpoints are not recorded
+  private PublicationCheckpoint checkpoint;
+  // names of data files reused from the last published archive, that are already known to be valid
+  private final Set<String> reusedDataFiles = new HashSet<String>();
+  // validation done while writing data files, by data file name
+  private final Map<String, DataFileChecks> dataFileChecks = new HashMap<String, DataFileChecks>();
+  // compresses files into the archive while it is being generated, null when only previewing data files
+  private ArchiveBundler bundler;
   private static final int ID_COLUMN_INDEX = 0;
   public static final String CHARACTER_ENCODING = "UTF-8";
   private static final TermFactory TERM_FACTORY = TermFactory.instance();
   private static final String SORTED_FILE_PREFIX = "sorted_";
-  private static final org.gbif.utils.file.FileUtils GBIF_FILE_UTILS = new org.gbif.utils.file.FileUtils();
   public static final String CANCELLED_STATE_MSG = "Archive generation cancelled";
   public static final String ID_COLUMN_NAME = "id";
   public static final String TEXT_FILE_EXTENSION = ".txt";
   public static final String WILDCARD_CHARACTER = "*";
+  private static final String SEGMENTS_DIR = "segments";
 
   public static final Set<DwcTerm> DWC_MULTI_VALUE_TERMS = ImmutableSet.of(DwcTerm.recordedBy, DwcTerm.preparations,
     DwcTerm.associatedMedia, DwcTerm.associatedReferences, DwcTerm.associatedSequences, DwcTerm.associatedTaxa,
@@ -134,11 +305,64 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       return;
     }
 
-    // update reporting
-    currRecords = 0;
-    currRecordsSkipped = 0;
+    DataFile dataFile = prepareDataFile(mappings);
+    writeDataFile(dataFile, rowLimit);
+    finishDataFile(dataFile);
+  }
+
+  /**
+   * Writes a prepared data file: its header line, followed by the records of each of its mappings in turn.
+   *
+   * @param dataFile prepared data file
+   * @param rowLimit maximum number of rows to write
+   * @throws InterruptedException if the thread was interrupted
+   * @throws IOException if problems occurred while persisting new data files
+   * @throws GeneratorException if any problem was encountered writing data file
+   */
+  private void writeDataFile(DataFile dataFile, @Nullable Integer rowLimit)
+    throws IOException, InterruptedException, GeneratorException {
+    // open new file writer for single data file
+    Writer writer = org.gbif.utils.file.FileUtils.startNewUtf8File(dataFile.file);
+
+    // ready to go though each mapping and dump the data
+    addMessage(Level.INFO, "Start writing data file for " + dataFile.extension.getTitle());
+    activeDataFiles.add(dataFile);
+    try {
+      // write header line 1 time only to file
+      writeHeaderLine(dataFile.propertyList, dataFile.totalColumns, dataFile.af, writer);
+      for (ExtensionMapping m : dataFile.mappings) {
+        // write data (records) to file
+        dumpData(writer, dataFile.inputColumns(m), m, rowLimit, resource.getDoi(), dataFile);
+      }
+    } catch (IOException e) {
+      // some error writing this file, report
+      log.error("Fatal DwC-A Generator Error encountered while writing header line to data file", e);
+      // set last error report!
+      setState(e);
+      throw new GeneratorException("Error writing header line to data file", e);
+    } finally {
+      writer.close();
+      activeDataFiles.remove(dataFile);
+    }
+  }
+
+  /**
+   * Prepares a single data file for a list of extension mappings that must all be mapped to the same extension: the
+   * archive file descriptor is built, its fields ordered, and a unique file name is reserved in the DwC-A folder.
+   * </br>
+   * Name reservation creates the (empty) file, so this must always be called from the generator's own thread.
+   *
+   * @param mappings list of ExtensionMapping
+   *
+   * @return prepared data file, nothing written to it yet
+   *
+   * @throws IllegalArgumentException if not all mappings are mapped to the same extension
+   * @throws IOException if the data file could not be created
+   * @throws GeneratorException if the mappings use conflicting multi-value delimiters
+   */
+  private DataFile prepareDataFile(List<ExtensionMapping> mappings)
+    throws IOException, IllegalArgumentException, GeneratorException {
     Extension ext = mappings.get(0).getExtension();
-    currExtension = ext.getTitle();
 
     // verify that all mappings share this extension
     for (ExtensionMapping m : mappings) {
@@ -167,69 +391,59 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     // reassign indexes ordered by Extension
     assignIndexesOrderedByExtension(propertyList, af);
 
-    // total column count is equal to id column + mapped columns
-    int totalColumns = 1 + propertyList.size();
-
     // create file name from extension name, with incremental suffix to resolve name conflicts (e.g. taxon.txt,
     // taxon2.txt, taxon3.txt)
     String extensionName = (ext.getName() == null) ? "f" : ext.getName().toLowerCase().replaceAll("\\s", "_");
     String fn = createFileName(dwcaFolder, extensionName);
 
-    // open new file writer for single data file
-    File dataFile = new File(dwcaFolder, fn);
-    Writer writer = org.gbif.utils.file.FileUtils.startNewUtf8File(dataFile);
+    // reserve the file name, so that data files prepared later cannot claim it
+    File file = new File(dwcaFolder, fn);
+    FileUtils.touch(file);
     // add source file location
-    af.addLocation(dataFile.getName());
+    af.addLocation(file.getName());
 
-    // ready to go though each mapping and dump the data
-    addMessage(Level.INFO, "Start writing data file for " + currExtension);
-    try {
-      boolean headerWritten = false;
-      for (ExtensionMapping m : mappings) {
-        // prepare index ordered list of all output columns apart from id column
-        PropertyMapping[] inCols = new PropertyMapping[totalColumns];
-        for (ArchiveField f : af.getFields().values()) {
-          if (f.getIndex() != null && f.getIndex() > ID_COLUMN_INDEX) {
-            inCols[f.getIndex()] = m.getField(f.getTerm().qualifiedName());
-          }
-        }
-
-        // write header line 1 time only to file
-        if (!headerWritten) {
-          writeHeaderLine(propertyList, totalColumns, af, writer);
-          headerWritten = true;
-        }
+    return new DataFile(ext, mappings, af, propertyList, file);
+  }
 
-        // write data (records) to file
-        dumpData(writer, inCols, m, totalColumns, rowLimit, resource.getDoi());
-        // remember core record number
-        if (resource.getCoreRowType().equalsIgnoreCase(ext.getRowType())) {
-          coreRecords = currRecords;
-        }
-      }
-    } catch (IOException e) {
-      // some error writing this file, report
-      log.error("Fatal DwC-A Generator Error encountered while writing header line to data file", e);
-      // set last error report!
-      setState(e);
-      throw new GeneratorException("Error writing header line to data file", e);
-    } finally {
-      writer.close();
+  /**
+   * Adds a fully written data file to the archive, and reports how many records were written to it.
+   *
+   * @param dataFile data file written
+   */
+  private void finishDataFile(DataFile dataFile) {
+    String title = dataFile.extension.getTitle();
+    int records = dataFile.records.get();
+    int recordsSkipped = dataFile.recordsSkipped.get();
+
+    // add archive file to archive, and remember core record number
+    if (resource.getCoreRowType().equalsIgnoreCase(dataFile.extension.getRowType())) {
+      archive.setCore(dataFile.af);
+      coreRecords = records;
+    } else {
+      archive.addExtension(dataFile.af);
+    }
+    if (fingerprints != null && dataFile.fingerprint != null) {
+      fingerprints.add(dataFile.fingerprint, dataFile.file.getName(), records);
+    }
+    if (checkpoint != null && dataFile.checkpointKey != null) {
+      checkpoint.completed(dataFile.checkpointKey, dataFile.fingerprint, dataFile.file, records);
+    }
+    // the data file is complete, start compressing it
+    if (bundler != null) {
+      bundler.add(dataFile.file);
     }
 
-    // add archive file to archive
-    if (resource.getCoreRowType().equalsIgnoreCase(ext.getRowType())) {
-      archive.setCore(af);
-    } else {
-      archive.addExtension(af);
+    if (dataFile.reused) {
+      addMessage(Level.INFO, "Data file reused for " + title + " with " + records + " records");
+      return;
     }
 
     // final reporting
-    addMessage(Level.INFO, "Data file written for " + currExtension + " with " + currRecords + " records and "
-      + totalColumns + " columns");
+    addMessage(Level.INFO, "Data file written for " + title + " with " + records + " records and "
+      + dataFile.totalColumns + " columns");
     // how many records were skipped?
-    if (currRecordsSkipped > 0) {
-      addMessage(Level.WARN, "!!! " + currRecordsSkipped + " records were skipped for " + currExtension
+    if (recordsSkipped > 0) {
+      addMessage(Level.WARN, "!!! " + recordsSkipped + " records were skipped for " + title
         + " due to errors interpreting line");
     }
   }
@@ -271,9 +485,10 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     checkForInterruption();
     setState(STATE.METADATA);
     try {
-      FileUtils.copyFile(dataDir.resourceEmlFile(resource.getShortname()), new File(dwcaFolder,
-        DataDir.EML_XML_FILENAME));
+      File eml = new File(dwcaFolder, DataDir.EML_XML_FILENAME);
+      FileUtils.copyFile(dataDir.resourceEmlFile(resource.getShortname()), eml);
       archive.setMetadataLocation(DataDir.EML_XML_FILENAME);
+      bundler.add(eml);
     } catch (IOException e) {
       throw new GeneratorException("Problem occurred while adding EML file to DwC-A folder", e);
     }
@@ -306,8 +521,8 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
   }
 
   /**
-   * Zips the DwC-A folder. A temp version is created first, and when successful, it it moved into the resource's
-   * data directory.
+   * Completes the zipped DwC-A. Its files were compressed as they were written into a temp version in the resource's
+   * data directory, which when successful replaces the versioned DwC-A.
    * 
    * @throws GeneratorException if DwC-A could not be zipped or moved
    * @throws InterruptedException if executing thread was interrupted
@@ -315,30 +530,11 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
   private void bundleArchive() throws GeneratorException, InterruptedException {
     checkForInterruption();
     setState(STATE.BUNDLING);
-    File zip = null;
-    BigDecimal version = resource.getEmlVersion();
     try {
-      // create zip
-      zip = dataDir.tmpFile("dwca", ".zip");
-      CompressionUtil.zipDir(dwcaFolder, zip);
-      if (zip.exists()) {
-        // move to data dir with versioned name
-        File versionedFile = dataDir.resourceDwcaFile(resource.getShortname(), version);
-        if (versionedFile.exists()) {
-          FileUtils.forceDelete(versionedFile);
-        }
-        FileUtils.moveFile(zip, versionedFile);
-      } else {
-        throw new GeneratorException("Archive bundling failed: temp archive not created: " + zip.getAbsolutePath());
-      }
+      // all files were added to the archive already, wait for the remaining ones to be compressed
+      bundler.finish();
     } catch (IOException e) {
       throw new GeneratorException("Problem occurred while bundling DwC-A", e);
-    } finally {
-      // cleanup zip directory, if compression was incomplete for example due to Exception
-      // if moving zip to data dir was successful, it won't exist any more and cleanup will be skipped
-      if (zip != null && zip.exists()) {
-        FileUtils.deleteQuietly(zip);
-      }
     }
     // final reporting
     addMessage(Level.INFO, "Archive has been compressed");
@@ -361,11 +557,20 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       Archive arch = ArchiveFactory.openArchive(dwcaFolder);
       // populate basisOfRecord lookup HashMap
       loadBasisOfRecordMapFromVocabulary();
-      // perform validation on core file (includes core ID and basisOfRecord validation)
-      validateCoreDataFile(arch);
+      // perform validation on core file (includes core ID and basisOfRecord validation), unless it was reused from
+      // the last published archive in which case it was validated already
+      if (reusedDataFiles.contains(arch.getCore().getLocation())) {
+        addMessage(Level.INFO, "Core data file was reused from the last published version, skipping its validation");
+        if (isEventCore(arch)) {
+          validateEventCore(arch);
+        }
+      } else {
+        validateCoreDataFile(arch);
+      }
       // perform validation on extension files (includes basisOfRecord validation)
       if (!arch.getExtensions().isEmpty()) {
         validateExtensionDataFiles(arch.getExtensions());
+        validateCoreIdReferences(arch);
       }
     } catch (IOException e) {
       throw new GeneratorException("Problem occurred while validating DwC-A", e);
@@ -376,23 +581,23 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
 
   /**
    * Sort the core data file of a Darwin Core Archive by its ID column (always index 0 or 1st column). Sorting is case
-   * sensitive.
+   * insensitive, and uses several threads and a bounded amount of memory.
    * 
    * @param arch Archive
    * @return the core data file of the Archive sorted by its ID column 0
    * @throws IOException if the sort fails for whatever reason
+   * @throws InterruptedException if the thread was interrupted while sorting
    */
-  private File sortCoreDataFile(Archive arch) throws IOException {
+  private File sortCoreDataFile(Archive arch) throws IOException, InterruptedException {
     // retrieve the core file
     File unsorted = arch.getCore().getLocationFile();
 
     // create a new file that will store the records sorted by ID
     File sorted = new File(unsorted.getParentFile(), SORTED_FILE_PREFIX + unsorted.getName());
-    // get the ignore column rows, delimiter, enclosed by, newline character
+    // get the ignore column rows, delimiter, enclosed by
     int headerLines = arch.getCore().getIgnoreHeaderLines();
     String columnDelimiter = arch.getCore().getFieldsTerminatedBy();
     Character enclosedBy = arch.getCore().getFieldsEnclosedBy();
-    String newlineDelimiter = arch.getCore().getLinesTerminatedBy();
 
     // keep track of how long the sort takes
     long time = System.currentTimeMillis();
@@ -400,9 +605,9 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     // sort by ID column: always index 0
     LineComparator lineComparator =
       new LineComparator(ID_COLUMN_INDEX, columnDelimiter, enclosedBy, IGNORE_CASE_COMPARATOR);
-    GBIF_FILE_UTILS
-      .sort(unsorted, sorted, CHARACTER_ENCODING, ID_COLUMN_INDEX, columnDelimiter, enclosedBy, newlineDelimiter,
-        headerLines, lineComparator, true);
+    new ParallelFileSorter(cfg.getValidationSortThreads(), cfg.getValidationMemory(), cfg.isValidationSortCompressed())
+      .sort(unsorted, sorted, CHARACTER_ENCODING, headerLines, lineComparator,
+        ParallelFileSorter.ignoreCaseKey(columnDelimiter, enclosedBy));
     log.debug(
       "Finished sorting core file in " + String.valueOf((System.currentTimeMillis() - time) / 1000) + " secs, check: "
         + sorted.getAbsoluteFile().toString());
@@ -424,8 +629,8 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
   private void validateExtensionDataFiles(Set<ArchiveFile> extensions)
     throws InterruptedException, GeneratorException, IOException {
     for (ArchiveFile extension: extensions) {
-      // validate extensions with occurrence rowType
-      if (extension.getRowType().equals(DwcTerm.Occurrence)) {
+      // validate extensions with occurrence rowType, unless reused from the last published archive
+      if (extension.getRowType().equals(DwcTerm.Occurrence) && !reusedDataFiles.contains(extension.getLocation())) {
         // populate basisOfRecord lookup HashMap
         loadBasisOfRecordMapFromVocabulary();
         // do BoR validation
@@ -434,6 +639,131 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     }
   }
 
+  /**
+   * Validate each extension record refers to an existing core record by its core ID. Extension records that don't
+   * (orphans) are counted and logged, since they get dropped when the archive is indexed, but do not fail validation.
+   * </br>
+   * Core IDs are collected while the core data file is written if it is validated inline, otherwise read from the
+   * core data file. The core IDs of extension records are then read from each extension data file.
+   *
+   * @param arch Archive, having extensions
+   *
+   * @throws GeneratorException if a data file could not be read
+   * @throws InterruptedException if the thread was interrupted
+   * @throws IOException if core IDs could not be kept in or read from partition files
+   */
+  private void validateCoreIdReferences(Archive arch) throws GeneratorException, InterruptedException, IOException {
+    if (!cfg.isValidationCoreIdReferences()) {
+      return;
+    }
+    final List<ArchiveFile> extensions = new ArrayList<ArchiveFile>(arch.getExtensions());
+    boolean reused = reusedDataFiles.contains(arch.getCore().getLocation());
+    for (ArchiveFile extension : extensions) {
+      reused = reused && reusedDataFiles.contains(extension.getLocation());
+    }
+    if (reused) {
+      writePublicationLogMessage("All data files were reused from the last published version, skipping checking "
+                                 + "extension records refer to core records");
+      return;
+    }
+
+    addMessage(Level.INFO, "Validating that each extension record refers to an existing core record."
+                           + " Depending on the number of records, this can take a while.");
+    DataFileChecks checks = dataFileChecks.get(arch.getCore().getLocation());
+    OrphanIdDetector orphans = checks == null ? null : checks.coreIds;
+    try {
+      if (orphans == null) {
+        orphans = new OrphanIdDetector(cfg.getValidationMemory(), dataDir.tmpFile("coreids", ""));
+        addIds(arch.getCore(), orphans, -1);
+      }
+      final int[] recordsOrphaned = new int[extensions.size()];
+      orphans.checkExtensions(new OrphanIdDetector.Listener() {
+        public void orphan(int extension, String coreId) {
+          recordsOrphaned[extension]++;
+          writePublicationLogMessage("Orphaned record found in " + extensions.get(extension).getTitle()
+                                     + ": core ID [" + coreId + "] does not exist");
+        }
+      });
+      for (int i = 0; i < extensions.size(); i++) {
+        addIds(extensions.get(i), orphans, i);
+      }
+      orphans.finish();
+
+      for (int i = 0; i < extensions.size(); i++) {
+        String title = extensions.get(i).getTitle();
+        if (recordsOrphaned[i] > 0) {
+          addMessage(Level.WARN, String.valueOf(recordsOrphaned[i]) + " line(s) in " + title + " refer to a core ID "
+                                 + "that does not exist, and will be ignored when the archive is indexed");
+        } else {
+          writePublicationLogMessage("All lines in " + title + " refer to an existing core ID");
+        }
+      }
+    } finally {
+      if (orphans != null) {
+        orphans.close();
+      }
+    }
+  }
+
+  /**
+   * Adds the IDs of all records of a data file (column 0) to an orphan detector.
+   *
+   * @param archiveFile core or extension data file
+   * @param orphans orphan detector
+   * @param extension index of the extension, or -1 for adding core IDs
+   *
+   * @throws GeneratorException if the data file could not be read
+   * @throws InterruptedException if the thread was interrupted
+   */
+  private void addIds(ArchiveFile archiveFile, OrphanIdDetector orphans, int extension)
+    throws GeneratorException, InterruptedException {
+    ClosableReportingIterator<String[]> iter = null;
+    int line = 0;
+    try {
+      iter = archiveFile.getCSVReader().iterator();
+      while (iter.hasNext()) {
+        line++;
+        if (line % 1000 == 0) {
+          checkForInterruption(line);
+          reportIfNeeded();
+        }
+        String[] record = iter.next();
+        if (record == null || record.length == 0) {
+          continue;
+        }
+        // Exception on reading row was encountered
+        if (iter.hasRowError() && iter.getException() != null) {
+          throw new GeneratorException(
+            "A fatal error was encountered while trying to validate " + archiveFile.getTitle() + " : " + iter
+              .getErrorMessage(), iter.getException());
+        }
+        if (extension < 0) {
+          orphans.addCoreId(record[ID_COLUMN_INDEX]);
+        } else {
+          orphans.addExtensionId(extension, record[ID_COLUMN_INDEX]);
+        }
+      }
+    } catch (InterruptedException e) {
+      // set last error report!
+      setState(e);
+      throw e;
+    } catch (Exception e) {
+      // some error validating this file, report
+      log.error("Exception caught while validating archive", e);
+      // set last error report!
+      setState(e);
+      throw new GeneratorException("Error while validating archive occurred on line " + line, e);
+    } finally {
+      if (iter != null) {
+        // Exception on advancing cursor was encountered?
+        if (!iter.hasRowError() && iter.getErrorMessage() != null) {
+          writePublicationLogMessage("Error reading data: " + iter.getErrorMessage());
+        }
+        iter.close();
+      }
+    }
+  }
+
   /**
    * Populate basisOfRecords map from XML vocabulary, used to validate basisOfRecord values.
    */
@@ -462,6 +792,15 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     Term basisOfRecord = TERM_FACTORY.findTerm(Constants.DWC_BASIS_OF_RECORD);
 
     if (archiveFile.hasTerm(basisOfRecord)) {
+      // the data file was validated while it was written, only the results remain to be reported
+      DataFileChecks checks = dataFileChecks.get(archiveFile.getLocation());
+      if (checks != null) {
+        addMessage(Level.INFO, archiveFile.getTitle() + " was validated while it was written");
+        summarizeBasisOfRecordValidation(checks.recordsWithNoBasisOfRecord, checks.recordsWithNonMatchingBasisOfRecord,
+          checks.recordsWithAmbiguousBasisOfRecord);
+        return;
+      }
+
       addMessage(Level.INFO, "Validating " + archiveFile.getTitle() + ": basisOfRecord must always be present and its "
                              + "value must match the Darwin Core Type Vocabulary."
                              + " Depending on the number of records, this can take a while.");
@@ -588,6 +927,21 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     // or b) the core file has rowType occurrence, in which case mandatory term basisOfRecord must be validated
     if (arch.getCore().hasTerm(coreIdTerm) || isOccurrenceCore(arch)) {
 
+      // the core data file was validated while it was written, only the results remain to be reported
+      DataFileChecks checks = dataFileChecks.get(arch.getCore().getLocation());
+      if (checks != null) {
+        addMessage(Level.INFO, "Core data file was validated while it was written");
+        int recordsWithDuplicateId = checks.finishDuplicateIds();
+        if (arch.getCore().hasTerm(coreIdTerm)) {
+          summarizeIdValidation(checks.recordsWithNoId, recordsWithDuplicateId);
+        }
+        if (isOccurrenceCore(arch)) {
+          summarizeBasisOfRecordValidation(checks.recordsWithNoBasisOfRecord,
+            checks.recordsWithNonMatchingBasisOfRecord, checks.recordsWithAmbiguousBasisOfRecord);
+        }
+        return;
+      }
+
       if (arch.getCore().hasTerm(coreIdTerm)) {
         addMessage(Level.INFO, "Validating the core record ID " + coreIdTerm + " is always present and unique. "
                                + "Depending on the number of records, this can take a while.");
@@ -602,11 +956,26 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
         basisOfRecordIndex = arch.getCore().getField(basisOfRecord).getIndex();
       }
 
-      // create a new core data file sorted by ID column 0
-      File sortedCore = sortCoreDataFile(arch);
+      // duplicate IDs are either found comparing neighbours in a new core data file sorted by ID column 0, or in a
+      // single pass over the core data file
+      File sortedCore = null;
+      DuplicateIdDetector duplicateIds = null;
+      File coreFile;
+      if (cfg.isValidationSortCore()) {
+        sortedCore = sortCoreDataFile(arch);
+        coreFile = sortedCore;
+      } else {
+        coreFile = arch.getCore().getLocationFile();
+        duplicateIds = new DuplicateIdDetector(cfg.getValidationMemory(), dataDir.tmpFile("ids", ""),
+          new DuplicateIdDetector.Listener() {
+            public void duplicate(String id) {
+              writePublicationLogMessage("Duplicate id found: " + id);
+            }
+          });
+      }
 
-      // create an iterator on the new sorted core data file
-      CSVReader reader = CSVReaderFactory.build(sortedCore, CHARACTER_ENCODING, arch.getCore().getFieldsTerminatedBy(),
+      // create an iterator on the core data file
+      CSVReader reader = CSVReaderFactory.build(coreFile, CHARACTER_ENCODING, arch.getCore().getFieldsTerminatedBy(),
         arch.getCore().getFieldsEnclosedBy(), arch.getCore().getIgnoreHeaderLines());
 
       // id related metrics
@@ -651,7 +1020,9 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
               }
 
               // check id is unique, using case insensitive comparison. E.g. FISHES:1 and fishes:1 are equal
-              if (!Strings.isNullOrEmpty(lastId) && !Strings.isNullOrEmpty(id)) {
+              if (duplicateIds != null) {
+                duplicateIds.add(id);
+              } else if (!Strings.isNullOrEmpty(lastId) && !Strings.isNullOrEmpty(id)) {
                 if (id.equalsIgnoreCase(lastId)) {
                   writePublicationLogMessage("Duplicate id found: " + id);
                   recordsWithDuplicateId++;
@@ -682,6 +1053,10 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
             }
           }
         }
+        // check for duplicates that did not fit in memory
+        if (duplicateIds != null) {
+          recordsWithDuplicateId = duplicateIds.finish();
+        }
       } catch (InterruptedException e) {
         // set last error report!
         setState(e);
@@ -704,33 +1079,14 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
         if (sortedCore != null) {
           FileUtils.deleteQuietly(sortedCore);
         }
+        if (duplicateIds != null) {
+          duplicateIds.close();
+        }
       }
 
       if (arch.getCore().hasTerm(coreIdTerm)) {
-        // add empty ids user message
-        if (recordsWithNoId > 0) {
-          addMessage(Level.ERROR, String.valueOf(recordsWithNoId) + " line(s) missing an ID");
-        } else {
-          writePublicationLogMessage("No lines are missing an ID");
-        }
-
-        // add duplicate ids user message
-        if (recordsWithDuplicateId > 0) {
-          addMessage(Level.ERROR, String.valueOf(recordsWithDuplicateId)
-                                  + " line(s) having a duplicate ID (please note comparisons are case insensitive)");
-        } else {
-          writePublicationLogMessage("No lines have duplicate IDs");
-        }
-
-        // if there was 1 or more records missing an ID, or having a duplicate ID, validation fails
-        if (recordsWithNoId == 0 && recordsWithDuplicateId == 0) {
-          addMessage(Level.INFO, "Validated: each line has an ID, and each ID is unique");
-        } else {
-          addMessage(Level.ERROR,
-            "Archive validation failed, because not every row has a unique ID (please note comparisons are case insensitive)");
-          throw new GeneratorException("Can't validate DwC-A for resource " + resource.getShortname()
-                                       + ". Each row must have an ID, and each ID must be unique (please note comparisons are case insensitive)");
-        }
+        // finish reporting
+        summarizeIdValidation(recordsWithNoId, recordsWithDuplicateId);
       }
 
       if (isOccurrenceCore(arch)) {
@@ -745,6 +1101,41 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     }
   }
 
+  /**
+   * Report core record ID validation.
+   *
+   * @param recordsWithNoId number of records with no ID
+   * @param recordsWithDuplicateId number of records with an ID that was found before
+   *
+   * @throws GeneratorException if any record has no ID, or a duplicate ID
+   */
+  private void summarizeIdValidation(int recordsWithNoId, int recordsWithDuplicateId) throws GeneratorException {
+    // add empty ids user message
+    if (recordsWithNoId > 0) {
+      addMessage(Level.ERROR, String.valueOf(recordsWithNoId) + " line(s) missing an ID");
+    } else {
+      writePublicationLogMessage("No lines are missing an ID");
+    }
+
+    // add duplicate ids user message
+    if (recordsWithDuplicateId > 0) {
+      addMessage(Level.ERROR, String.valueOf(recordsWithDuplicateId)
+                              + " line(s) having a duplicate ID (please note comparisons are case insensitive)");
+    } else {
+      writePublicationLogMessage("No lines have duplicate IDs");
+    }
+
+    // if there was 1 or more records missing an ID, or having a duplicate ID, validation fails
+    if (recordsWithNoId == 0 && recordsWithDuplicateId == 0) {
+      addMessage(Level.INFO, "Validated: each line has an ID, and each ID is unique");
+    } else {
+      addMessage(Level.ERROR,
+        "Archive validation failed, because not every row has a unique ID (please note comparisons are case insensitive)");
+      throw new GeneratorException("Can't validate DwC-A for resource " + resource.getShortname()
+                                   + ". Each row must have an ID, and each ID must be unique (please note comparisons are case insensitive)");
+    }
+  }
+
   /**
    * Check if event core has an occurrence mapping, with at least one associated occurrence.
    *
@@ -853,10 +1244,23 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       // initial reporting
       addMessage(Level.INFO, "Archive generation started for version #" + String.valueOf(resource.getEmlVersion()));
 
-      // create a temp dir to copy all dwca files to
-      dwcaFolder = dataDir.tmpDir();
+      // create a temp dir to copy all dwca files to, or generate them in the checkpoint directory
+      if (cfg.isPublicationCheckpoint()) {
+        checkpoint =
+          PublicationCheckpoint.load(dataDir.resourcePublicationCheckpointDir(resource.getShortname()));
+        dwcaFolder = checkpoint.start(resource.getEmlVersion());
+      } else {
+        dwcaFolder = dataDir.tmpDir();
+      }
       archive = new Archive();
 
+      // incremental publishing: remember what the data files of the last published archive were generated from
+      if (cfg.isIncrementalPublishing()) {
+        previousFingerprints =
+          DataFileFingerprints.load(dataDir.resourceDwcaFingerprintsFile(resource.getShortname()));
+        fingerprints = DataFileFingerprints.empty();
+      }
+
       // create data files
       createDataFiles();
 
@@ -872,6 +1276,9 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       // zip archive and copy to resource folder
       bundleArchive();
 
+      // incremental publishing: remember what the data files of this archive were generated from
+      saveFingerprints();
+
       // reporting
       addMessage(Level.INFO, "Archive version #" + String.valueOf(resource.getEmlVersion()) + " generated successfully!");
 
@@ -903,8 +1310,20 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       writeFailureToPublicationLog(e);
       throw new GeneratorException(e);
     } finally {
-      // cleanup temp dir that was used to store dwca files
-      if (dwcaFolder != null && dwcaFolder.exists()) {
+      // cleanup incomplete zip, if bundling did not complete for example due to Exception
+      if (bundler != null && !completed()) {
+        bundler.abort();
+      }
+      // cleanup identifiers kept for validation
+      for (DataFileChecks checks : dataFileChecks.values()) {
+        checks.close();
+      }
+      // cleanup temp dir that was used to store dwca files, unless a failed publication left data files to resume
+      if (checkpoint != null && state == STATE.FAILED) {
+        checkpoint.failed();
+      } else if (checkpoint != null) {
+        checkpoint.delete();
+      } else if (dwcaFolder != null && dwcaFolder.exists()) {
         FileUtils.deleteQuietly(dwcaFolder);
       }
       // ensure publication log writer is closed
@@ -959,21 +1378,450 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
         || resource.getCoreMappings().get(0).getSource() == null) {
       throw new GeneratorException("Core is not mapped");
     }
-    for (Extension ext : resource.getMappedExtensions()) {
-      report();
-      try {
-        addDataFile(resource.getMappings(ext.getRowType()), null);
-      } catch (IOException e) {
-        throw new GeneratorException("Problem occurred while writing data file", e);
-      } catch (IllegalArgumentException e) {
-        throw new GeneratorException("Problem occurred while writing data file", e);
+    int threads = cfg.getPublicationThreads();
+    try {
+      // the zip is built directly in the resource folder with versioned name, compressing data files once written
+      bundler = new ArchiveBundler(dataDir.resourceDwcaFile(resource.getShortname(), resource.getEmlVersion()),
+        cfg.getPublicationCompression());
+      if (threads > 1 || hasSharedSources()) {
+        createDataFilesInSegments(threads);
+      } else {
+        for (Extension ext : resource.getMappedExtensions()) {
+          report();
+          checkForInterruption();
+          DataFile dataFile = prepareDataFile(resource.getMappings(ext.getRowType()));
+          if (!resumeDataFile(dataFile) && !reuseDataFile(dataFile)) {
+            startChecks(dataFile);
+            writeDataFile(dataFile, null);
+          }
+          finishDataFile(dataFile);
+        }
       }
+    } catch (IOException e) {
+      throw new GeneratorException("Problem occurred while writing data file", e);
+    } catch (IllegalArgumentException e) {
+      throw new GeneratorException("Problem occurred while writing data file", e);
+    }
+    // data files completed by the previous publication but no longer part of this one are not needed anymore
+    if (checkpoint != null) {
+      checkpoint.discardNotResumed();
     }
     // final reporting
     addMessage(Level.INFO, "All data files completed");
     report();
   }
 
+  /**
+   * Starts validating a data file while it is written, unless configured to validate data files once written. The
+   * core record identifier is validated if it is mapped in the core, and basisOfRecord if it is mapped in a data file
+   * with occurrence rowType.
+   *
+   * @param dataFile prepared data file, about to be written
+   */
+  private void startChecks(DataFile dataFile) {
+    if (!cfg.isValidationInline()) {
+      return;
+    }
+    boolean core = resource.getCoreRowType().equalsIgnoreCase(dataFile.extension.getRowType());
+    boolean checkDuplicates = core && dataFile.af.hasTerm(AppConfig.coreIdTerm(resource.getCoreRowType()));
+    boolean collectCoreIds =
+      core && cfg.isValidationCoreIdReferences() && resource.getMappedExtensions().size() > 1;
+    // both detectors hold the core ids at the same time, so they share the memory
+    long memory = (checkDuplicates && collectCoreIds) ? cfg.getValidationMemory() / 2 : cfg.getValidationMemory();
+    DuplicateIdDetector duplicateIds = null;
+    if (checkDuplicates) {
+      duplicateIds = new DuplicateIdDetector(memory, dataDir.tmpFile("ids", ""),
+        new DuplicateIdDetector.Listener() {
+          public void duplicate(String id) {
+            writePublicationLogMessage("Duplicate id found: " + id);
+          }
+        });
+    }
+    OrphanIdDetector coreIds = null;
+    if (collectCoreIds) {
+      coreIds = new OrphanIdDetector(memory, dataDir.tmpFile("coreids", ""));
+    }
+    int basisOfRecordIndex = -1;
+    Term basisOfRecord = TERM_FACTORY.findTerm(Constants.DWC_BASIS_OF_RECORD);
+    if (DwcTerm.Occurrence.equals(dataFile.af.getRowType()) && dataFile.af.hasTerm(basisOfRecord)) {
+      // populate basisOfRecord lookup HashMap, before any worker thread uses it
+      loadBasisOfRecordMapFromVocabulary();
+      basisOfRecordIndex = dataFile.af.getField(basisOfRecord).getIndex();
+    }
+    dataFile.checks = new DataFileChecks(duplicateIds, coreIds, basisOfRecordIndex);
+    dataFileChecks.put(dataFile.file.getName(), dataFile.checks);
+  }
+
+  /**
+   * @return true if the same source is mapped more than once, e.g. to the core and to an extension
+   */
+  private boolean hasSharedSources() {
+    Set<Source> sources = new HashSet<Source>();
+    for (ExtensionMapping mapping : resource.getMappings()) {
+      if (!sources.add(mapping.getSource())) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Create data files using a pool of worker threads. Each mapping is written to its own segment file. All mappings
+   * reading from the same source are written by a single worker from a single scan of the source, so that a large
+   * file or an expensive query mapped to the core and several extensions is only read once. Different sources are
+   * scanned concurrently.
+   * </br>
+   * Once all segments are written, each data file is assembled by appending its segments after the header line in
+   * mapping order, so the output is the same as writing the data files one after another. A data file written from a
+   * single mapping is its own segment: it is written in place, header line first, and never copied.
+   *
+   * @param threads maximum number of worker threads
+   *
+   * @throws GeneratorException if any data file could not be written
+   * @throws InterruptedException if the thread was interrupted, in which case all workers get interrupted too
+   * @throws IOException if the segments could not be assembled into data files
+   */
+  private void createDataFilesInSegments(int threads) throws GeneratorException, InterruptedException, IOException {
+    // file names get reserved on this thread, in the order extensions are mapped
+    List<DataFile> dataFiles = new ArrayList<DataFile>();
+    for (Extension ext : resource.getMappedExtensions()) {
+      dataFiles.add(prepareDataFile(resource.getMappings(ext.getRowType())));
+    }
+
+    File segmentsDir = new File(dwcaFolder, SEGMENTS_DIR);
+    FileUtils.forceMkdir(segmentsDir);
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    try {
+      // one segment per mapping of data files having several mappings, kept in data file and mapping order
+      List<File> segments = new ArrayList<File>();
+      int mappings = 0;
+      // segments grouped by the source they are written from, in order of first use
+      Map<Source, List<Segment>> scans = new LinkedHashMap<Source, List<Segment>>();
+      for (DataFile dataFile : dataFiles) {
+        if (resumeDataFile(dataFile) || reuseDataFile(dataFile)) {
+          continue;
+        }
+        startChecks(dataFile);
+        addMessage(Level.INFO, "Start writing data file for " + dataFile.extension.getTitle());
+        activeDataFiles.add(dataFile);
+        boolean single = dataFile.mappings.size() == 1;
+        for (int i = 0; i < dataFile.mappings.size(); i++) {
+          ExtensionMapping mapping = dataFile.mappings.get(i);
+          File segment = single ? dataFile.file : new File(segmentsDir, dataFile.file.getName() + "." + i);
+          if (!single) {
+            segments.add(segment);
+          }
+          List<Segment> scan = scans.get(mapping.getSource());
+          if (scan == null) {
+            scan = new ArrayList<Segment>();
+            scans.put(mapping.getSource(), scan);
+          }
+          scan.add(new Segment(dataFile, mapping, segment, single));
+          mappings++;
+        }
+      }
+      List<Future<Void>> futures = new ArrayList<Future<Void>>();
+      for (Map.Entry<Source, List<Segment>> scan : scans.entrySet()) {
+        futures.add(workers.submit(new ScanWriter(scan.getKey(), scan.getValue())));
+      }
+      addMessage(Level.INFO, "Writing " + mappings + " mapping(s) from " + scans.size() + " source(s) to "
+                             + dataFiles.size() + " data file(s) using up to " + threads + " threads");
+
+      // wait for all scans, reporting progress while doing so
+      for (Future<Void> future : futures) {
+        awaitScan(future);
+      }
+
+      // assemble data files: header line, followed by segments in mapping order
+      Iterator<File> segmentIter = segments.iterator();
+      for (DataFile dataFile : dataFiles) {
+        if (dataFile.reused || dataFile.mappings.size() == 1) {
+          finishDataFile(dataFile);
+          continue;
+        }
+        Writer writer = org.gbif.utils.file.FileUtils.startNewUtf8File(dataFile.file);
+        try {
+          writeHeaderLine(dataFile.propertyList, dataFile.totalColumns, dataFile.af, writer);
+        } finally {
+          writer.close();
+        }
+        OutputStream out = new FileOutputStream(dataFile.file, true);
+        try {
+          for (int i = 0; i < dataFile.mappings.size(); i++) {
+            File segment = segmentIter.next();
+            Files.copy(segment, out);
+            FileUtils.deleteQuietly(segment);
+          }
+        } finally {
+          out.close();
+        }
+        finishDataFile(dataFile);
+      }
+    } finally {
+      workers.shutdownNow();
+      activeDataFiles.clear();
+      // segments must never be included in the dwca directory when compressed
+      FileUtils.deleteQuietly(segmentsDir);
+    }
+  }
+
+  /**
+   * Waits for a single source scan to be written by a worker thread, reporting progress every second.
+   *
+   * @param future scan being written
+   *
+   * @throws GeneratorException if the worker failed writing the segments of the scan
+   * @throws InterruptedException if the thread was interrupted, or the worker was interrupted
+   */
+  private void awaitScan(Future<Void> future) throws GeneratorException, InterruptedException {
+    while (true) {
+      checkForInterruption();
+      try {
+        future.get(1, TimeUnit.SECONDS);
+        return;
+      } catch (TimeoutException e) {
+        reportIfNeeded();
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof GeneratorException) {
+          throw (GeneratorException) cause;
+        } else if (cause instanceof InterruptedException) {
+          throw (InterruptedException) cause;
+        }
+        throw new GeneratorException("Problem occurred while writing data file", cause);
+      }
+    }
+  }
+
+  /**
+   * The segment file a single mapping of a data file is written to.
+   */
+  private static class Segment {
+
+    private final DataFile dataFile;
+    private final ExtensionMapping mapping;
+    private final File file;
+    // true if the segment is the data file itself, starting with the header line
+    private final boolean whole;
+
+    private Segment(DataFile dataFile, ExtensionMapping mapping, File file, boolean whole) {
+      this.dataFile = dataFile;
+      this.mapping = mapping;
+      this.file = file;
+      this.whole = whole;
+    }
+  }
+
+  /**
+   * Writes the segments of all mappings reading from one source, from a single scan of the source, executed by a
+   * worker thread.
+   */
+  private class ScanWriter implements Callable<Void> {
+
+    private final Source source;
+    private final List<Segment> segments;
+
+    private ScanWriter(Source source, List<Segment> segments) {
+      this.source = source;
+      this.segments = segments;
+    }
+
+    public Void call() throws Exception {
+      List<Writer> writers = new ArrayList<Writer>();
+      try {
+        List<MappingDump> dumps = new ArrayList<MappingDump>();
+        for (Segment segment : segments) {
+          Writer writer = org.gbif.utils.file.FileUtils.startNewUtf8File(segment.file);
+          writers.add(writer);
+          if (segment.whole) {
+            DataFile dataFile = segment.dataFile;
+            writeHeaderLine(dataFile.propertyList, dataFile.totalColumns, dataFile.af, writer);
+          }
+          dumps.add(new MappingDump(writer, segment.dataFile.inputColumns(segment.mapping), segment.mapping, null,
+            resource.getDoi(), segment.dataFile));
+        }
+        scan(source, dumps);
+      } finally {
+        for (Writer writer : writers) {
+          writer.close();
+        }
+      }
+      return null;
+    }
+  }
+
+  /**
+   * Publication checkpoints: resumes a prepared data file completed by the previous publication, which got interrupted
+   * or failed. A data file is resumed if its mappings and the names, sizes and modification dates of its source files
+   * did not change since. If the fingerprint of its sources' contents was recorded, the contents must not have changed
+   * either, otherwise the previous publication must have been publishing the same version. Sources are only read to
+   * fingerprint them if there is a data file to resume. Any problem resuming it is reported, and the data file simply
+   * gets generated again.
+   *
+   * @param dataFile prepared data file
+   *
+   * @return true if the data file was resumed, false if it must be generated
+   */
+  private boolean resumeDataFile(DataFile dataFile) {
+    if (checkpoint == null) {
+      return false;
+    }
+    String title = dataFile.extension.getTitle();
+    try {
+      dataFile.checkpointKey = fingerprint(dataFile, false);
+      int records = checkpoint.getRecords(dataFile.checkpointKey);
+      if (records < 0) {
+        return false;
+      }
+      String recorded = checkpoint.getFingerprint(dataFile.checkpointKey);
+      if (recorded != null) {
+        dataFile.fingerprint = fingerprint(dataFile, true);
+        if (!recorded.equals(dataFile.fingerprint)) {
+          addMessage(Level.INFO, "Data file for " + title + " is not resumed, because its sources changed");
+          return false;
+        }
+      } else {
+        BigDecimal version = checkpoint.getVersion(dataFile.checkpointKey);
+        if (version == null || version.compareTo(resource.getEmlVersion()) != 0) {
+          return false;
+        }
+      }
+      if (!checkpoint.resume(dataFile.checkpointKey, dataFile.file)) {
+        return false;
+      }
+      // the header line was written too
+      dataFile.af.setIgnoreHeaderLines(1);
+      dataFile.records.set(records);
+      dataFile.reused = true;
+      addMessage(Level.INFO, "Data file for " + title + " was completed before the previous publication was "
+                             + "interrupted, resuming it");
+      return true;
+    } catch (IOException e) {
+      addMessage(Level.WARN, "Data file for " + title + " cannot be resumed: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Incremental publishing: copies a prepared data file from the last published archive, if neither the sources nor
+   * the mappings it is generated from changed since. Any problem reusing it is reported, and the data file simply
+   * gets generated again.
+   *
+   * @param dataFile prepared data file
+   *
+   * @return true if the data file was reused, false if it must be generated
+   */
+  private boolean reuseDataFile(DataFile dataFile) {
+    if (fingerprints == null) {
+      return false;
+    }
+    String title = dataFile.extension.getTitle();
+    try {
+      if (dataFile.fingerprint == null) {
+        dataFile.fingerprint = fingerprint(dataFile, true);
+      }
+      if (dataFile.fingerprint == null) {
+        addMessage(Level.INFO, "Data file for " + title + " cannot be reused, because not all of its sources can "
+                               + "detect changes");
+        return false;
+      }
+      BigDecimal previousVersion = previousFingerprints.getVersion();
+      int records = previousFingerprints.getRecords(dataFile.fingerprint);
+      if (previousVersion == null || records < 0) {
+        return false;
+      }
+      File previousArchive = dataDir.resourceDwcaFile(resource.getShortname(), previousVersion);
+      if (!previousFingerprints.extract(dataFile.fingerprint, previousArchive, dataFile.file)) {
+        return false;
+      }
+      // the header line was copied too
+      dataFile.af.setIgnoreHeaderLines(1);
+      dataFile.records.set(records);
+      dataFile.reused = true;
+      reusedDataFiles.add(dataFile.file.getName());
+      addMessage(Level.INFO, "Data file for " + title + " unchanged since version #" + previousVersion.toPlainString()
+                             + ", reusing it");
+      return true;
+    } catch (IOException e) {
+      addMessage(Level.WARN, "Data file for " + title + " cannot be reused: " + e.getMessage());
+      return false;
+    }
+  }
+
+  /**
+   * Fingerprints everything a data file is generated from: its columns, and for each of its mappings the source
+   * fingerprint, id column, filter and property mappings including translations.
+   * </br>
+   * Without source contents, sources are identified by name instead, and source files by their size and modification
+   * date too, which needs no reading.
+   *
+   * @param dataFile prepared data file
+   * @param sourceContents true if the contents of the sources should be fingerprinted
+   *
+   * @return fingerprint of the data file, or null if any of its sources cannot be fingerprinted
+   *
+   * @throws SourceException if any of its sources could not be read
+   */
+  @Nullable
+  private String fingerprint(DataFile dataFile, boolean sourceContents) throws SourceException {
+    StringBuilder sb = new StringBuilder();
+    sb.append(dataFile.extension.getRowType());
+    for (ExtensionProperty property : dataFile.propertyList) {
+      sb.append('|').append(property.getQualname());
+    }
+    for (ExtensionMapping m : dataFile.mappings) {
+      String source = sourceContents ? sourceManager.fingerprint(m.getSource()) : identify(m.getSource());
+      if (source == null) {
+        return null;
+      }
+      sb.append('\n').append(source).append('|').append(m.getIdColumn()).append('|').append(m.getIdSuffix())
+        .append('|').append(m.getFilter());
+      if (m.isDoiUsedForDatasetId()) {
+        sb.append('|').append(resource.getDoi());
+      }
+      // property mappings are held in a set, so order them first
+      Map<String, PropertyMapping> fields = new TreeMap<String, PropertyMapping>();
+      for (PropertyMapping pm : m.getFields()) {
+        fields.put(pm.getTerm().qualifiedName(), pm);
+      }
+      for (PropertyMapping pm : fields.values()) {
+        sb.append('\n').append(pm.getTerm().qualifiedName()).append('|').append(pm.getIndex()).append('|')
+          .append(pm.getDefaultValue());
+        if (pm.getTranslation() != null) {
+          sb.append('|').append(new TreeMap<String, String>(pm.getTranslation()));
+        }
+      }
+    }
+    return Hashing.md5().hashString(sb, Charsets.UTF_8).toString();
+  }
+
+  /**
+   * @return name of a source, followed by the size and modification date of its file if it has one
+   */
+  private static String identify(Source source) {
+    if (source instanceof FileSource && ((FileSource) source).getFile() != null) {
+      File file = ((FileSource) source).getFile();
+      return source.getName() + '|' + file.length() + '|' + file.lastModified();
+    }
+    return source.getName();
+  }
+
+  /**
+   * Incremental publishing: stores the fingerprints of the data files in the archive just published, so that the
+   * next version can reuse those that did not change. Failing to store them is only reported, since it just means
+   * the next version generates all data files again.
+   */
+  private void saveFingerprints() {
+    if (fingerprints == null) {
+      return;
+    }
+    try {
+      fingerprints.save(dataDir.resourceDwcaFingerprintsFile(resource.getShortname()), resource.getEmlVersion());
+    } catch (IOException e) {
+      addMessage(Level.WARN, "Data file fingerprints could not be saved: " + e.getMessage());
+    }
+  }
+
   /**
    * Create meta.xml file.
    * 
@@ -984,7 +1832,9 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     checkForInterruption();
     setState(STATE.METADATA);
     try {
-      MetaDescriptorWriter.writeMetaFile(new File(dwcaFolder, "meta.xml"), archive);
+      File meta = new File(dwcaFolder, "meta.xml");
+      MetaDescriptorWriter.writeMetaFile(meta, archive);
+      bundler.add(meta);
     } catch (IOException e) {
       throw new GeneratorException("Meta.xml file could not be written", e);
     }
@@ -1009,7 +1859,7 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       case STARTED:
         return "Starting archive generation";
       case DATAFILES:
-        return "Processing record " + currRecords + " for data file <em>" + currExtension + "</em>";
+        return dataFilesState();
       case METADATA:
         return "Creating metadata files";
       case BUNDLING:
@@ -1029,40 +1879,276 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     }
   }
 
+  /**
+   * @return state of all data files currently being written, e.g. "Processing record 1000 for data file Occurrence"
+   */
+  private String dataFilesState() {
+    List<String> states = new ArrayList<String>();
+    for (DataFile dataFile : activeDataFiles) {
+      states.add("Processing record " + dataFile.records.get() + " for data file <em>" + dataFile.extension.getTitle()
+                 + "</em>");
+    }
+    return states.isEmpty() ? "Processing data files" : StringUtils.join(states, ", ");
+  }
+
   /**
    * Write data file for mapping.
    *
    * @param writer file writer for single data file
    * @param inCols index ordered list of all output columns apart from id column
    * @param mapping mapping
-   * @param dataFileRowSize number of columns in data file
    * @param rowLimit maximum number of rows to write
+   * @param dataFile data file the mapping is written to, whose record counts get updated
    * @throws GeneratorException if there was an error writing data file for mapping.
    * @throws InterruptedException if the thread was interrupted
    */
-  private void dumpData(Writer writer, PropertyMapping[] inCols, ExtensionMapping mapping, int dataFileRowSize,
-    @Nullable Integer rowLimit, @Nullable DOI doi)
+  private void dumpData(Writer writer, PropertyMapping[] inCols, ExtensionMapping mapping, @Nullable Integer rowLimit,
+    @Nullable DOI doi, DataFile dataFile)
     throws GeneratorException, InterruptedException {
-    final String idSuffix = StringUtils.trimToEmpty(mapping.getIdSuffix());
-    final RecordFilter filter = mapping.getFilter();
-    // get maximum column index to check incoming rows for correctness
-    int maxColumnIndex = mapping.getIdColumn() == null ? -1 : mapping.getIdColumn();
-    for (PropertyMapping pm : mapping.getFields()) {
-      if (pm.getIndex() != null && maxColumnIndex < pm.getIndex()) {
-        maxColumnIndex = pm.getIndex();
+    scan(mapping.getSource(),
+      Collections.singletonList(new MappingDump(writer, inCols, mapping, rowLimit, doi, dataFile)));
+  }
+
+  /**
+   * Writes the records of one extension mapping, row by row, as they are read from the mapping's source: the row
+   * filter, id column and translations of the mapping are applied, and counts of skipped rows kept for reporting.
+   */
+  private class MappingDump {
+
+    private final Writer writer;
+    private final ExtensionMapping mapping;
+    private final DataFile dataFile;
+    private final String idSuffix;
+    private final RecordFilter filter;
+    // filter compiled once, null if the filter is not applied
+    private final RecordPredicate predicate;
+    private final Integer idColumn;
+    private final RowPlan plan;
+    private final Integer rowLimit;
+    private final int maxColumnIndex;
+    // source columns read: mapped columns, id column and filter columns
+    private final Set<Integer> columns = new HashSet<Integer>();
+    private int recordsWithError;
+    private int linesWithWrongColumnNumber;
+    private int recordsFiltered;
+    // true once the row limit has been reached
+    private boolean done;
+    // true if rows not matching the filter were left out by the source already
+    private boolean filteredBySource;
+
+    private MappingDump(Writer writer, PropertyMapping[] inCols, ExtensionMapping mapping, @Nullable Integer rowLimit,
+      @Nullable DOI doi, DataFile dataFile) throws GeneratorException {
+      this.writer = writer;
+      this.mapping = mapping;
+      this.dataFile = dataFile;
+      this.rowLimit = rowLimit;
+      idSuffix = StringUtils.trimToEmpty(mapping.getIdSuffix());
+      filter = mapping.getFilter();
+      // single comparisons need a parameter to be applied, even if their comparator does not use it
+      if (filter != null && filter.isActive() && (filter.isGroup() || filter.getParam() != null)) {
+        try {
+          predicate = filter.compile();
+        } catch (IllegalArgumentException e) {
+          throw new GeneratorException("Invalid filter for mapping " + mapping.getExtension().getTitle() + ": "
+                                       + e.getMessage(), e);
+        }
+      } else {
+        predicate = null;
+      }
+      idColumn = mapping.getIdColumn();
+      // resolve translations, default values and datasetID once, instead of for every row
+      plan = new RowPlan(inCols, mapping.isDoiUsedForDatasetId(), doi);
+      // get maximum column index to check incoming rows for correctness
+      int max = mapping.getIdColumn() == null ? -1 : mapping.getIdColumn();
+      for (PropertyMapping pm : mapping.getFields()) {
+        if (pm.getIndex() != null && max < pm.getIndex()) {
+          max = pm.getIndex();
+        }
+      }
+      maxColumnIndex = max;
+      for (PropertyMapping pm : inCols) {
+        if (pm != null && pm.getIndex() != null) {
+          columns.add(pm.getIndex());
+        }
+      }
+      if (idColumn != null && idColumn >= 0) {
+        columns.add(idColumn);
+      }
+      if (predicate != null) {
+        columns.addAll(predicate.getColumns());
+      }
+    }
+
+    /**
+     * Counts a row that could not be read, meaning the record is incomplete and not written.
+     */
+    private void rowError() {
+      recordsWithError++;
+      dataFile.recordsSkipped.incrementAndGet();
+    }
+
+    /**
+     * Writes a single row, unless it does not match the filter.
+     *
+     * @param in row read from the source, which may be modified
+     * @param line line number of the row in the source
+     *
+     * @throws IOException if the row could not be written
+     */
+    private void write(String[] in, int line) throws IOException {
+      if (in.length <= maxColumnIndex) {
+        writePublicationLogMessage("Line with fewer columns than mapped. SourceBase:"
+          + mapping.getSource().getName()
+          + " Line #" + line + " has " + in.length + " Columns: " + printLine(in));
+        // input row is smaller than the highest mapped column. Resize array by adding nulls
+        String[] in2 = new String[maxColumnIndex + 1];
+        System.arraycopy(in, 0, in2, 0, in.length);
+        in = in2;
+        linesWithWrongColumnNumber++;
+      }
+
+      // filter this record?
+      boolean alreadyTranslated = false;
+      if (predicate != null) {
+        if (filter.getFilterTime() == RecordFilter.FilterTime.AfterTranslation) {
+          plan.translate(in);
+          alreadyTranslated = true;
+        }
+        boolean matchesFilter = predicate.matches(in);
+        if (!matchesFilter) {
+          writePublicationLogMessage("Line did not match the filter criteria and was skipped. SourceBase:"
+            + mapping.getSource().getName() + " Line #" + line + ": " + printLine(in));
+          recordsFiltered++;
+          return;
+        }
+      }
+
+      // add id column - either an existing column or the line number
+      String id = null;
+      if (idColumn != null) {
+        if (idColumn.equals(ExtensionMapping.IDGEN_LINE_NUMBER)) {
+          id = line + idSuffix;
+        } else if (idColumn.equals(ExtensionMapping.IDGEN_UUID)) {
+          id = UUID.randomUUID().toString();
+        } else if (idColumn >= 0) {
+          id = (Strings.isNullOrEmpty(in[idColumn])) ? idSuffix : in[idColumn] + idSuffix;
+        }
+      }
+      plan.setId(id);
+
+      // go through all archive fields
+      if (!alreadyTranslated) {
+        plan.translate(in);
+      }
+      if (plan.write(writer)) {
+        if (dataFile.checks != null) {
+          dataFile.checks.check(plan, mapping.getSource().getName(), line);
+        }
+        int records = dataFile.records.incrementAndGet();
+        // don't exceed row limit (e.g. only want to write X number of rows used to preview first X rows of file)
+        if (rowLimit != null && records >= rowLimit) {
+          done = true;
+        }
+      }
+    }
+
+    /**
+     * Reports the rows skipped while writing the mapping.
+     */
+    private void summarize() {
+      // common message part used in constructing all reporting messages below
+      String mp = " for mapping " + mapping.getExtension().getTitle() + " in source " + mapping.getSource().getName();
+
+      // add lines incomplete message
+      if (recordsWithError > 0) {
+        addMessage(Level.WARN, String.valueOf(recordsWithError) + " records were skipped due to errors" + mp);
+      } else {
+        writePublicationLogMessage("No lines were skipped due to errors" + mp);
+      }
+
+      // add wrong lines user message
+      if (linesWithWrongColumnNumber > 0) {
+        addMessage(Level.WARN,
+          String.valueOf(linesWithWrongColumnNumber) + " lines with fewer columns than mapped" + mp);
+      } else {
+        writePublicationLogMessage("No lines with fewer columns than mapped" + mp);
+      }
+
+      // add filter message
+      if (filteredBySource) {
+        addMessage(Level.INFO, "Lines not matching the filter criteria were left out by the source database"
+          + (recordsFiltered > 0 ? ", " + recordsFiltered + " more lines were skipped" : "") + mp);
+      } else if (recordsFiltered > 0) {
+        addMessage(Level.INFO, String.valueOf(recordsFiltered)
+          + " lines did not match the filter criteria and were skipped " + mp);
+      } else {
+        writePublicationLogMessage("All lines match the filter criteria" + mp);
       }
     }
+  }
 
-    int recordsWithError = 0;
-    int linesWithWrongColumnNumber = 0;
-    int recordsFiltered = 0;
+  /**
+   * A filter can be left to the source if it is applied before translation, and is the same for all dumps reading
+   * the source. Ids generated from line numbers would change if the source left out rows, so no filter is left to the
+   * source then.
+   *
+   * @param dumps mapping dumps reading the same source
+   *
+   * @return filter the source can apply, or null if none
+   */
+  @Nullable
+  private RecordFilter pushableFilter(List<MappingDump> dumps) {
+    RecordFilter pushable = null;
+    for (MappingDump dump : dumps) {
+      RecordFilter filter = dump.filter;
+      if (dump.predicate == null || filter.getFilterTime() == RecordFilter.FilterTime.AfterTranslation) {
+        return null;
+      }
+      if (ExtensionMapping.IDGEN_LINE_NUMBER.equals(dump.idColumn)) {
+        writePublicationLogMessage("Filter " + filter + " is applied to all lines of source "
+          + dump.mapping.getSource().getName() + ", since ids are generated from line numbers");
+        return null;
+      }
+      if (pushable != null && !pushable.equals(filter)) {
+        return null;
+      }
+      pushable = filter;
+    }
+    return pushable;
+  }
+
+  /**
+   * Reads a source once, writing each row to every mapping dump reading from it. Every dump gets its own copy of the
+   * row, since filtering and translating modify it.
+   *
+   * @param source source all dumps read from
+   * @param dumps mapping dumps, in the order rows are handed to them
+   * @throws GeneratorException if there was an error writing data file for any of the mappings
+   * @throws InterruptedException if the thread was interrupted
+   */
+  private void scan(Source source, List<MappingDump> dumps) throws GeneratorException, InterruptedException {
     ClosableReportingIterator<String[]> iter = null;
     int line = 0;
     try {
-      // get the source iterator
-      iter = sourceManager.rowIterator(mapping.getSource());
+      // get the source iterator, reading only the columns used by any of the dumps
+      Set<Integer> columns = new HashSet<Integer>();
+      for (MappingDump dump : dumps) {
+        columns.addAll(dump.columns);
+      }
+      RecordFilter filter = pushableFilter(dumps);
+      iter = sourceManager.rowIterator(source, columns, filter);
+      if (filter != null) {
+        boolean filtered = iter instanceof FilteredRowIterator && ((FilteredRowIterator) iter).isFiltered();
+        for (MappingDump dump : dumps) {
+          dump.filteredBySource = filtered;
+        }
+        writePublicationLogMessage(filtered
+          ? "Filter " + filter + " is applied by source " + source.getName() + ", line numbers count matching lines"
+          : "Filter " + filter + " cannot be applied by source " + source.getName() + ", reading all lines");
+      }
 
-      while (iter.hasNext()) {
+      int active = dumps.size();
+      while (active > 0 && iter.hasNext()) {
         line++;
         if (line % 1000 == 0) {
           checkForInterruption(line);
@@ -1076,66 +2162,21 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
         // Exception on reading row was encountered, meaning record is incomplete and not written
         if (iter.hasRowError()) {
           writePublicationLogMessage("Error reading line #" + line + "\n" + iter.getErrorMessage());
-          recordsWithError++;
-          currRecordsSkipped++;
-        } else {
-
-          if (in.length <= maxColumnIndex) {
-            writePublicationLogMessage("Line with fewer columns than mapped. SourceBase:"
-              + mapping.getSource().getName()
-              + " Line #" + line + " has " + in.length + " Columns: " + printLine(in));
-            // input row is smaller than the highest mapped column. Resize array by adding nulls
-            String[] in2 = new String[maxColumnIndex + 1];
-            System.arraycopy(in, 0, in2, 0, in.length);
-            in = in2;
-            linesWithWrongColumnNumber++;
-          }
-
-          String[] record = new String[dataFileRowSize];
-
-          // filter this record?
-          boolean alreadyTranslated = false;
-          if (filter != null && filter.getColumn() != null && filter.getComparator() != null
-            && filter.getParam() != null) {
-            boolean matchesFilter;
-            if (filter.getFilterTime() == RecordFilter.FilterTime.AfterTranslation) {
-              applyTranslations(inCols, in, record, mapping.isDoiUsedForDatasetId(), doi);
-              matchesFilter = filter.matches(in);
-              alreadyTranslated = true;
-            } else {
-              matchesFilter = filter.matches(in);
+          for (MappingDump dump : dumps) {
+            if (!dump.done) {
+              dump.rowError();
             }
-            if (!matchesFilter) {
-              writePublicationLogMessage("Line did not match the filter criteria and was skipped. SourceBase:"
-                + mapping.getSource().getName() + " Line #" + line + ": " + printLine(in));
-              recordsFiltered++;
-              continue;
-            }
-          }
-
-          // add id column - either an existing column or the line number
-          if (mapping.getIdColumn() == null) {
-            record[ID_COLUMN_INDEX] = null;
-          } else if (mapping.getIdColumn().equals(ExtensionMapping.IDGEN_LINE_NUMBER)) {
-            record[ID_COLUMN_INDEX] = line + idSuffix;
-          } else if (mapping.getIdColumn().equals(ExtensionMapping.IDGEN_UUID)) {
-            record[ID_COLUMN_INDEX] = UUID.randomUUID().toString();
-          } else if (mapping.getIdColumn() >= 0) {
-            record[ID_COLUMN_INDEX] = (Strings.isNullOrEmpty(in[mapping.getIdColumn()])) ? idSuffix
-              : in[mapping.getIdColumn()] + idSuffix;
-          }
-
-          // go through all archive fields
-          if (!alreadyTranslated) {
-            applyTranslations(inCols, in, record, mapping.isDoiUsedForDatasetId(), doi);
           }
-          String newRow = tabRow(record);
-          if (newRow != null) {
-            writer.write(newRow);
-            currRecords++;
-            // don't exceed row limit (e.g. only want to write X number of rows used to preview first X rows of file)
-            if (rowLimit != null && currRecords >= rowLimit) {
-              break;
+        } else {
+          active = 0;
+          for (int i = 0; i < dumps.size(); i++) {
+            MappingDump dump = dumps.get(i);
+            if (!dump.done) {
+              // the last dump can have the row itself
+              dump.write(i < dumps.size() - 1 ? in.clone() : in, line);
+            }
+            if (!dump.done) {
+              active++;
             }
           }
         }
@@ -1149,8 +2190,12 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       log.error("Fatal DwC-A Generator Error encountered", e);
       // set last error report!
       setState(e);
-      throw new GeneratorException("Error writing data file for mapping " + mapping.getExtension().getTitle()
-        + " in source " + mapping.getSource().getName() + ", line " + line, e);
+      List<String> titles = new ArrayList<String>();
+      for (MappingDump dump : dumps) {
+        titles.add(dump.mapping.getExtension().getTitle());
+      }
+      throw new GeneratorException("Error writing data file for mapping " + StringUtils.join(titles, ", ")
+        + " in source " + source.getName() + ", line " + line, e);
     } finally {
       if (iter != null) {
         // Exception on advancing cursor encountered?
@@ -1161,29 +2206,8 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
       }
     }
 
-    // common message part used in constructing all reporting messages below
-    String mp = " for mapping " + mapping.getExtension().getTitle() + " in source " + mapping.getSource().getName();
-
-    // add lines incomplete message
-    if (recordsWithError > 0) {
-      addMessage(Level.WARN, String.valueOf(recordsWithError) + " records were skipped due to errors" + mp);
-    } else {
-      writePublicationLogMessage("No lines were skipped due to errors" + mp);
-    }
-
-    // add wrong lines user message
-    if (linesWithWrongColumnNumber > 0) {
-      addMessage(Level.WARN, String.valueOf(linesWithWrongColumnNumber) + " lines with fewer columns than mapped" + mp);
-    } else {
-      writePublicationLogMessage("No lines with fewer columns than mapped" + mp);
-    }
-
-    // add filter message
-    if (recordsFiltered > 0) {
-      addMessage(Level.INFO, String.valueOf(recordsFiltered)
-        + " lines did not match the filter criteria and were skipped " + mp);
-    } else {
-      writePublicationLogMessage("All lines match the filter criteria" + mp);
+    for (MappingDump dump : dumps) {
+      dump.summarize();
     }
   }
 
@@ -1205,6 +2229,9 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
    */
   private void setState(STATE s) {
     state = s;
+    if (checkpoint != null) {
+      checkpoint.stage(s.name());
+    }
     report();
   }
 
@@ -1224,46 +2251,6 @@ public class GenerateDwca extends ReportingTask implements Callable<Integer> {
     return StringUtils.join(columns, '\t') + "\n";
   }
 
-  /**
-   * Apply translations or default values to row, for all mapped properties.
-   * </br>
-   * The method starts by iterating through all mapped properties, checking each one if it has been translated or a
-   * default value provided. The original value in the row is then replaced with the translated or default value.
-   * A record array representing the values to be written to the data file is also updated.
-   *
-   * @param inCols values array, of columns in row that have been mapped
-   * @param in values array, of all columns in row
-   */
-  private void applyTranslations(PropertyMapping[] inCols, String[] in, String[] record, boolean doiUsedForDatasetId,
-    DOI doi) {
-    for (int i = 1; i < inCols.length; i++) {
-      PropertyMapping pm = inCols[i];
-      String val = null;
-      if (pm != null) {
-        if (pm.getIndex() != null) {
-          val = in[pm.getIndex()];
-          // translate value?
-          if (pm.getTranslation() != null && pm.getTranslation().containsKey(val)) {
-            val = pm.getTranslation().get(val);
-            // update value in original record
-            in[pm.getIndex()] = val;
-          }
-        }
-        // use default value for null values
-        if (val == null) {
-          val = pm.getDefaultValue();
-        }
-        // use DOI for datasetID property?
-        if (pm.getTerm().qualifiedName().equalsIgnoreCase(Constants.DWC_DATASET_ID) && doiUsedForDatasetId
-            && doi != null) {
-          val = doi.toString();
-        }
-      }
-      // add value to data file record
-      record[i] = val;
-    }
-  }
-
   /**
    * Print a line representation of a string array used for logging.
    * 
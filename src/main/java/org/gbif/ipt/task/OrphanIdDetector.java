@@ -0,0 +1,216 @@
+package org.gbif.ipt.task;
+
+import java.io.BufferedReader;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.HashSet;
+import java.util.Set;
+
+import com.google.common.base.Strings;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+/**
+ * Detects extension records whose core identifier does not match the identifier of any core record, so that they
+ * would be dropped when the archive is harvested. Identifiers are compared exactly, the same way harvesting does.
+ * Extension records with an empty core identifier are orphans too.
+ * </br>
+ * All core identifiers are added first, then {@link #checkExtensions(Listener)} is called, followed by adding all
+ * extension core identifiers. Core identifiers are kept in memory until their estimated size exceeds the memory
+ * budget. From then on, core and extension identifiers are spilled to partition files by hash, and the partitions are
+ * checked one at a time when finishing, so that memory use stays bounded however large the core is.
+ * </br>
+ * Instances are not thread safe.
+ */
+class OrphanIdDetector implements Closeable {
+
+  /**
+   * Gets notified of every orphaned extension record found.
+   */
+  interface Listener {
+
+    /**
+     * @param extension index of the extension, as passed when adding its core identifiers
+     * @param coreId core identifier of the extension record, possibly empty
+     */
+    void orphan(int extension, String coreId);
+  }
+
+  private static final int PARTITIONS = 64;
+  // rough heap cost of a single identifier held in a HashSet, not counting its characters
+  private static final int ENTRY_OVERHEAD_BYTES = 80;
+  private static final char SEPARATOR = '\t';
+
+  private final long memoryBudget;
+  private final File spillDir;
+  private Set<String> coreIds = new HashSet<String>();
+  private long memoryUsed;
+  private Writer[] corePartitions;
+  private Writer[] extensionPartitions;
+  private Listener listener;
+  private int orphans;
+
+  /**
+   * @param memoryBudget maximum number of bytes used to keep core identifiers in memory
+   * @param spillDir directory to create for partition files, only if the memory budget gets exceeded. It is deleted
+   * when the detector is closed.
+   */
+  OrphanIdDetector(long memoryBudget, File spillDir) {
+    this.memoryBudget = memoryBudget;
+    this.spillDir = spillDir;
+  }
+
+  /**
+   * Adds the identifier of the next core record.
+   *
+   * @param id core record identifier, ignored if empty
+   *
+   * @throws IOException if the identifier could not be spilled to its partition file
+   * @throws IllegalStateException if extensions are being checked already
+   */
+  void addCoreId(String id) throws IOException {
+    if (listener != null) {
+      throw new IllegalStateException("Core identifiers must be added before checking extensions");
+    }
+    if (Strings.isNullOrEmpty(id)) {
+      return;
+    }
+    if (corePartitions != null) {
+      corePartitions[partition(id)].write(id + '\n');
+      return;
+    }
+    if (coreIds.add(id)) {
+      memoryUsed += ENTRY_OVERHEAD_BYTES + 2L * id.length();
+      if (memoryUsed > memoryBudget) {
+        startSpilling();
+      }
+    }
+  }
+
+  /**
+   * Starts checking extensions, once all core identifiers have been added.
+   *
+   * @param listener notified of every orphaned extension record found
+   */
+  void checkExtensions(Listener listener) {
+    this.listener = listener;
+  }
+
+  /**
+   * Adds the core identifier of the next extension record. Orphans are reported straight away while all core
+   * identifiers fit in memory, otherwise only when finishing.
+   *
+   * @param extension index of the extension the record belongs to
+   * @param coreId core identifier of the extension record
+   *
+   * @throws IOException if the identifier could not be spilled to its partition file
+   * @throws IllegalStateException if extensions are not being checked yet
+   */
+  void addExtensionId(int extension, String coreId) throws IOException {
+    if (listener == null) {
+      throw new IllegalStateException("Extensions must be checked after adding all core identifiers");
+    }
+    if (Strings.isNullOrEmpty(coreId)) {
+      orphan(extension, Strings.nullToEmpty(coreId));
+    } else if (corePartitions == null) {
+      if (!coreIds.contains(coreId)) {
+        orphan(extension, coreId);
+      }
+    } else {
+      extensionPartitions[partition(coreId)].write(String.valueOf(extension) + SEPARATOR + coreId + '\n');
+    }
+  }
+
+  /**
+   * Checks the partition files, if any, for orphaned extension records.
+   *
+   * @return total number of orphaned extension records found
+   *
+   * @throws IOException if the partition files could not be read
+   * @throws InterruptedException if the thread was interrupted while checking partitions
+   */
+  int finish() throws IOException, InterruptedException {
+    if (corePartitions == null) {
+      return orphans;
+    }
+    for (int i = 0; i < PARTITIONS; i++) {
+      corePartitions[i].close();
+      extensionPartitions[i].close();
+    }
+    for (int i = 0; i < PARTITIONS; i++) {
+      if (Thread.interrupted()) {
+        throw new InterruptedException("Interrupted while checking partitions for orphaned extension records");
+      }
+      Set<String> partitionIds = new HashSet<String>();
+      BufferedReader reader = org.gbif.utils.file.FileUtils.getUtf8Reader(partitionFile("core", i));
+      try {
+        String id;
+        while ((id = reader.readLine()) != null) {
+          partitionIds.add(id);
+        }
+      } finally {
+        reader.close();
+      }
+      reader = org.gbif.utils.file.FileUtils.getUtf8Reader(partitionFile("extension", i));
+      try {
+        String line;
+        while ((line = reader.readLine()) != null) {
+          int sep = line.indexOf(SEPARATOR);
+          String coreId = line.substring(sep + 1);
+          if (!partitionIds.contains(coreId)) {
+            orphan(Integer.parseInt(line.substring(0, sep)), coreId);
+          }
+        }
+      } finally {
+        reader.close();
+      }
+    }
+    return orphans;
+  }
+
+  /**
+   * Closes and deletes all partition files.
+   */
+  public void close() {
+    if (corePartitions != null) {
+      for (int i = 0; i < PARTITIONS; i++) {
+        IOUtils.closeQuietly(corePartitions[i]);
+        IOUtils.closeQuietly(extensionPartitions[i]);
+      }
+      FileUtils.deleteQuietly(spillDir);
+    }
+    coreIds = null;
+  }
+
+  private void orphan(int extension, String coreId) {
+    orphans++;
+    listener.orphan(extension, coreId);
+  }
+
+  /**
+   * Moves all core identifiers held in memory into the partition files.
+   */
+  private void startSpilling() throws IOException {
+    FileUtils.forceMkdir(spillDir);
+    corePartitions = new Writer[PARTITIONS];
+    extensionPartitions = new Writer[PARTITIONS];
+    for (int i = 0; i < PARTITIONS; i++) {
+      corePartitions[i] = org.gbif.utils.file.FileUtils.startNewUtf8File(partitionFile("core", i));
+      extensionPartitions[i] = org.gbif.utils.file.FileUtils.startNewUtf8File(partitionFile("extension", i));
+    }
+    for (String id : coreIds) {
+      corePartitions[partition(id)].write(id + '\n');
+    }
+    coreIds = null;
+  }
+
+  private static int partition(String id) {
+    return (id.hashCode() & Integer.MAX_VALUE) % PARTITIONS;
+  }
+
+  private File partitionFile(String prefix, int partition) {
+    return new File(spillDir, prefix + "-" + partition + ".txt");
+  }
+}
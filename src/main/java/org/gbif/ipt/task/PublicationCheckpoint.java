@@ -0,0 +1,332 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.math.BigDecimal;
+import java.util.HashSet;
+import java.util.Properties;
+import java.util.Set;
+import javax.annotation.Nullable;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Checkpoint of a publication in progress, stored in its own directory inside the resource's directory. The DwC-A is
+ * generated in the checkpoint directory, and a manifest records the version being published, the last stage reached
+ * and every data file completed so far, keyed by what it was generated from. Each data file records either the
+ * fingerprint of its sources' contents, if it was known, or else the version it was generated for.
+ * </br>
+ * When the publication gets interrupted, for example by a restart, completed data files are left behind. Starting the
+ * next publication sets them aside, and each one can then be resumed instead of being generated again. The checkpoint
+ * is deleted once the archive has been generated, or the publication was cancelled.
+ */
+public class PublicationCheckpoint {
+
+  /**
+   * Stage recorded when a publication failed, which is not resumed automatically.
+   */
+  public static final String FAILED_STAGE = "FAILED";
+  private static final Logger LOG = Logger.getLogger(PublicationCheckpoint.class);
+  private static final String MANIFEST_FILENAME = "checkpoint.properties";
+  private static final String DWCA_DIR = "dwca";
+  private static final String COMPLETED_DIR = "completed";
+  private static final String VERSION_KEY = "publication.version";
+  private static final String STAGE_KEY = "publication.stage";
+  private static final String FILE_SUFFIX = ".file";
+  private static final String RECORDS_SUFFIX = ".records";
+  private static final String FINGERPRINT_SUFFIX = ".fingerprint";
+  private static final String DATAFILE_VERSION_SUFFIX = ".version";
+
+  private final File dir;
+  private final Properties manifest;
+  // keys of the data files of the publication in progress
+  private final Set<String> keys = new HashSet<String>();
+
+  private PublicationCheckpoint(File dir, Properties manifest) {
+    this.dir = dir;
+    this.manifest = manifest;
+  }
+
+  /**
+   * Loads the checkpoint stored in a directory. A missing or unreadable manifest is treated as empty, so that all data
+   * files simply get generated again.
+   *
+   * @param dir checkpoint directory
+   *
+   * @return checkpoint loaded, never null
+   */
+  public static PublicationCheckpoint load(File dir) {
+    Properties props = new Properties();
+    File file = new File(dir, MANIFEST_FILENAME);
+    if (file.exists()) {
+      InputStream in = null;
+      try {
+        in = FileUtils.openInputStream(file);
+        props.load(in);
+      } catch (IOException e) {
+        LOG.warn("Cannot read publication checkpoint " + file.getAbsolutePath() + ": " + e.getMessage());
+        props.clear();
+      } finally {
+        IOUtils.closeQuietly(in);
+      }
+    }
+    return new PublicationCheckpoint(dir, props);
+  }
+
+  /**
+   * @return true if a publication recorded this checkpoint, and it was neither completed nor cancelled
+   */
+  public boolean exists() {
+    return getStage() != null;
+  }
+
+  /**
+   * @return true if the publication recording this checkpoint got interrupted before failing, and can be resumed
+   */
+  public boolean isInterrupted() {
+    return exists() && !FAILED_STAGE.equals(getStage());
+  }
+
+  /**
+   * @return version being published, or null if unknown
+   */
+  @Nullable
+  public BigDecimal getVersion() {
+    String version = StringUtils.trimToNull(manifest.getProperty(VERSION_KEY));
+    try {
+      return version == null ? null : new BigDecimal(version);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * @return last stage reached, or null if there is no checkpoint
+   */
+  @Nullable
+  public String getStage() {
+    return StringUtils.trimToNull(manifest.getProperty(STAGE_KEY));
+  }
+
+  /**
+   * @return number of data files completed
+   */
+  public synchronized int getCompletedDataFiles() {
+    return dataFileKeys().size();
+  }
+
+  /**
+   * @param key key of a data file
+   *
+   * @return number of records in the completed data file having this key, or -1 if there is none
+   */
+  synchronized int getRecords(String key) {
+    try {
+      return Integer.parseInt(manifest.getProperty(key + RECORDS_SUFFIX));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * @param key key of a data file
+   *
+   * @return fingerprint of the sources of the completed data file having this key, or null if none was recorded
+   */
+  @Nullable
+  synchronized String getFingerprint(String key) {
+    return StringUtils.trimToNull(manifest.getProperty(key + FINGERPRINT_SUFFIX));
+  }
+
+  /**
+   * @param key key of a data file
+   *
+   * @return version the completed data file having this key was generated for, or null if unknown
+   */
+  @Nullable
+  synchronized BigDecimal getVersion(String key) {
+    String version = StringUtils.trimToNull(manifest.getProperty(key + DATAFILE_VERSION_SUFFIX));
+    try {
+      return version == null ? null : new BigDecimal(version);
+    } catch (NumberFormatException e) {
+      return null;
+    }
+  }
+
+  /**
+   * Starts a publication: completed data files left behind by the previous one are set aside to be resumed, and
+   * everything else is deleted.
+   *
+   * @param version version being published
+   *
+   * @return empty directory to generate the DwC-A in
+   *
+   * @throws IOException if the checkpoint directory could not be prepared
+   */
+  synchronized File start(BigDecimal version) throws IOException {
+    File dwcaDir = new File(dir, DWCA_DIR);
+    File completedDir = new File(dir, COMPLETED_DIR);
+    FileUtils.forceMkdir(completedDir);
+    Set<String> completed = new HashSet<String>();
+    for (String key : dataFileKeys()) {
+      File file = new File(dwcaDir, manifest.getProperty(key + FILE_SUFFIX));
+      File aside = completedFile(key);
+      if (file.exists()) {
+        FileUtils.deleteQuietly(aside);
+        FileUtils.moveFile(file, aside);
+      }
+      if (aside.exists()) {
+        completed.add(aside.getName());
+      } else {
+        remove(key);
+      }
+    }
+    File[] files = completedDir.listFiles();
+    if (files != null) {
+      for (File file : files) {
+        if (!completed.contains(file.getName())) {
+          FileUtils.deleteQuietly(file);
+        }
+      }
+    }
+    FileUtils.deleteQuietly(dwcaDir);
+    FileUtils.forceMkdir(dwcaDir);
+    manifest.setProperty(VERSION_KEY, version.toPlainString());
+    stage("STARTED");
+    return dwcaDir;
+  }
+
+  /**
+   * Records the stage reached.
+   *
+   * @param stage stage reached
+   */
+  synchronized void stage(String stage) {
+    manifest.setProperty(STAGE_KEY, stage);
+    save();
+  }
+
+  /**
+   * Resumes a data file completed by the previous publication, moving it into the DwC-A directory.
+   *
+   * @param key key of the data file
+   * @param target data file to replace
+   *
+   * @return true if the data file was resumed, false if the previous publication did not complete it
+   *
+   * @throws IOException if the data file could not be moved
+   */
+  synchronized boolean resume(String key, File target) throws IOException {
+    keys.add(key);
+    File aside = completedFile(key);
+    if (getRecords(key) < 0 || !aside.exists()) {
+      return false;
+    }
+    FileUtils.deleteQuietly(target);
+    FileUtils.moveFile(aside, target);
+    manifest.setProperty(key + FILE_SUFFIX, target.getName());
+    save();
+    return true;
+  }
+
+  /**
+   * Records a completed data file, with the fingerprint of its sources if known, or else the version being published.
+   *
+   * @param key key of the data file
+   * @param fingerprint fingerprint of the contents of the sources of the data file, or null if unknown
+   * @param file data file, inside the DwC-A directory
+   * @param records number of records in the data file
+   */
+  synchronized void completed(String key, @Nullable String fingerprint, File file, int records) {
+    keys.add(key);
+    manifest.setProperty(key + FILE_SUFFIX, file.getName());
+    manifest.setProperty(key + RECORDS_SUFFIX, String.valueOf(records));
+    manifest.remove(key + FINGERPRINT_SUFFIX);
+    manifest.remove(key + DATAFILE_VERSION_SUFFIX);
+    if (fingerprint != null) {
+      manifest.setProperty(key + FINGERPRINT_SUFFIX, fingerprint);
+    } else if (manifest.getProperty(VERSION_KEY) != null) {
+      manifest.setProperty(key + DATAFILE_VERSION_SUFFIX, manifest.getProperty(VERSION_KEY));
+    }
+    save();
+  }
+
+  /**
+   * Deletes the completed data files of the previous publication that are not part of this one, once all data files
+   * have been resumed or generated.
+   */
+  synchronized void discardNotResumed() {
+    for (String key : dataFileKeys()) {
+      if (!keys.contains(key)) {
+        remove(key);
+      }
+    }
+    FileUtils.deleteQuietly(new File(dir, COMPLETED_DIR));
+    save();
+  }
+
+  /**
+   * Records that the publication failed, keeping its completed data files for the next one.
+   */
+  synchronized void failed() {
+    stage(FAILED_STAGE);
+  }
+
+  /**
+   * Deletes the checkpoint together with its directory.
+   */
+  public synchronized void delete() {
+    manifest.clear();
+    FileUtils.deleteQuietly(dir);
+  }
+
+  private Set<String> dataFileKeys() {
+    Set<String> keys = new HashSet<String>();
+    for (String name : manifest.stringPropertyNames()) {
+      if (name.endsWith(FILE_SUFFIX)) {
+        keys.add(name.substring(0, name.length() - FILE_SUFFIX.length()));
+      }
+    }
+    return keys;
+  }
+
+  private void remove(String key) {
+    manifest.remove(key + FILE_SUFFIX);
+    manifest.remove(key + RECORDS_SUFFIX);
+    manifest.remove(key + FINGERPRINT_SUFFIX);
+    manifest.remove(key + DATAFILE_VERSION_SUFFIX);
+    FileUtils.deleteQuietly(completedFile(key));
+  }
+
+  private File completedFile(String key) {
+    return new File(new File(dir, COMPLETED_DIR), key);
+  }
+
+  /**
+   * Writes the manifest. Failing to write it is only logged, since it just means less can be resumed.
+   */
+  private void save() {
+    File file = new File(dir, MANIFEST_FILENAME);
+    File tmp = new File(dir, MANIFEST_FILENAME + ".tmp");
+    try {
+      OutputStream out = FileUtils.openOutputStream(tmp);
+      try {
+        manifest.store(out, "Publication checkpoint");
+      } finally {
+        out.close();
+      }
+      // replace the manifest in one go, so that an interruption never leaves it half written
+      if (!tmp.renameTo(file)) {
+        FileUtils.deleteQuietly(file);
+        FileUtils.moveFile(tmp, file);
+      }
+    } catch (IOException e) {
+      LOG.warn("Cannot write publication checkpoint " + file.getAbsolutePath() + ": " + e.getMessage());
+    }
+  }
+}
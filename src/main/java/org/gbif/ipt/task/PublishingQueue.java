@@ -0,0 +1,341 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.google.common.collect.ImmutableSet;
+import org.apache.log4j.Logger;
+
+/**
+ * Queue of DwC-A generation jobs waiting for a publishing thread.
+ * </br>
+ * Instead of running jobs in the order they were submitted, the next job started is the one with the highest priority,
+ * then the one whose user has the fewest jobs running, then the one submitted first. A job is only started while
+ * fewer than the maximum number of jobs are running against each database host and disk it reads from, so that a
+ * few large resources sharing a database cannot occupy all publishing threads.
+ */
+public class PublishingQueue {
+
+  private static final Logger LOG = Logger.getLogger(PublishingQueue.class);
+  private static final String DATABASE_PREFIX = "database:";
+  private static final String DISK_PREFIX = "disk:";
+
+  /**
+   * Priorities of publishing jobs, highest first.
+   */
+  public enum Priority {
+    /**
+     * Publication of a single resource, started by a user.
+     */
+    MANUAL,
+    /**
+     * Publication of all resources, started by an administrator.
+     */
+    BULK,
+    /**
+     * Auto-publication.
+     */
+    SCHEDULED
+  }
+
+  /**
+   * A job waiting in, or started from, the queue.
+   */
+  public static class Job {
+
+    private final String shortname;
+    private final String user;
+    private final Priority priority;
+    private final Set<String> hosts;
+    private final FutureTask<?> task;
+    private final long seq;
+    private final Date queued = new Date();
+    private volatile Date started;
+
+    private Job(String shortname, String user, Priority priority, Set<String> hosts, FutureTask<?> task, long seq) {
+      this.shortname = shortname;
+      this.user = user;
+      this.priority = priority;
+      this.hosts = ImmutableSet.copyOf(hosts);
+      this.task = task;
+      this.seq = seq;
+    }
+
+    public String getShortname() {
+      return shortname;
+    }
+
+    /**
+     * @return user the job is accounted to, an empty string if none
+     */
+    public String getUser() {
+      return user;
+    }
+
+    public Priority getPriority() {
+      return priority;
+    }
+
+    /**
+     * @return database hosts and disks the job reads from
+     */
+    public Set<String> getHosts() {
+      return hosts;
+    }
+
+    public Date getQueued() {
+      return queued;
+    }
+
+    /**
+     * @return date the job was started, null while it is waiting
+     */
+    public Date getStarted() {
+      return started;
+    }
+
+    /**
+     * @return time in seconds the job waited, or has been waiting so far, in the queue
+     */
+    public long getWaitSeconds() {
+      long end = started == null ? System.currentTimeMillis() : started.getTime();
+      return (end - queued.getTime()) / 1000;
+    }
+  }
+
+  private final Executor executor;
+  private final int maxRunning;
+  private final int maxPerDatabase;
+  private final int maxPerDisk;
+  // pending jobs, in order of submission
+  private final List<Job> pending = new ArrayList<Job>();
+  private final List<Job> running = new ArrayList<Job>();
+  private final Map<String, Integer> runningPerHost = new HashMap<String, Integer>();
+  private final Map<String, Integer> runningPerUser = new HashMap<String, Integer>();
+  private long seq;
+
+  /**
+   * @param executor       executor running the jobs
+   * @param maxRunning     maximum number of jobs running at the same time
+   * @param maxPerDatabase maximum number of jobs running at the same time against a database host, unlimited if less
+   *                       than 1
+   * @param maxPerDisk     maximum number of jobs running at the same time against a disk, unlimited if less than 1
+   */
+  public PublishingQueue(Executor executor, int maxRunning, int maxPerDatabase, int maxPerDisk) {
+    this.executor = executor;
+    this.maxRunning = Math.max(1, maxRunning);
+    this.maxPerDatabase = maxPerDatabase;
+    this.maxPerDisk = maxPerDisk;
+  }
+
+  /**
+   * @return key of a database host, to be passed to {@link #submit(String, String, Priority, Set, FutureTask)}
+   */
+  public static String databaseKey(String host) {
+    return DATABASE_PREFIX + (host == null ? "" : host.trim().toLowerCase());
+  }
+
+  /**
+   * @return key of the disk holding a directory, to be passed to {@link #submit(String, String, Priority, Set,
+   * FutureTask)}
+   */
+  public static String diskKey(File dir) {
+    return DISK_PREFIX + dir.getAbsolutePath();
+  }
+
+  /**
+   * Adds a job to the queue, and starts it right away if it is allowed to run.
+   *
+   * @param shortname shortname of the resource published
+   * @param user      user the job is accounted to for fairness, null if none
+   * @param priority  job priority
+   * @param hosts     keys of the database hosts and disks the job reads from
+   * @param task      job
+   */
+  public synchronized void submit(String shortname, String user, Priority priority, Set<String> hosts,
+    FutureTask<?> task) {
+    Job job = new Job(shortname, user == null ? "" : user, priority, hosts, task, seq++);
+    pending.add(job);
+    LOG.debug("Queued publication of resource " + shortname + " with priority " + priority + ", " + pending.size()
+              + " job(s) waiting");
+    dispatch();
+  }
+
+  /**
+   * Removes the waiting job of a resource from the queue, e.g. because it got cancelled.
+   *
+   * @return true if a waiting job was removed
+   */
+  public synchronized boolean remove(String shortname) {
+    for (Iterator<Job> iter = pending.iterator(); iter.hasNext(); ) {
+      if (iter.next().shortname.equals(shortname)) {
+        iter.remove();
+        notifyAll();
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * @return jobs waiting, in the order they are going to be considered for starting
+   */
+  public synchronized List<Job> getPending() {
+    List<Job> ordered = new ArrayList<Job>(pending);
+    Collections.sort(ordered, new Comparator<Job>() {
+      public int compare(Job a, Job b) {
+        return PublishingQueue.this.compare(a, b);
+      }
+    });
+    return ordered;
+  }
+
+  /**
+   * @return jobs running, in order of starting
+   */
+  public synchronized List<Job> getRunning() {
+    return new ArrayList<Job>(running);
+  }
+
+  /**
+   * Waits until none of the given resources has a job waiting or running.
+   *
+   * @param shortnames resource shortnames
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public synchronized void awaitCompletion(Collection<String> shortnames) throws InterruptedException {
+    while (contains(pending, shortnames) || contains(running, shortnames)) {
+      wait();
+    }
+  }
+
+  private static boolean contains(List<Job> jobs, Collection<String> shortnames) {
+    for (Job job : jobs) {
+      if (shortnames.contains(job.shortname)) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  /**
+   * Orders jobs by priority, number of jobs running for their user and submission.
+   */
+  private int compare(Job a, Job b) {
+    int cmp = a.priority.compareTo(b.priority);
+    if (cmp == 0) {
+      cmp = count(runningPerUser, a.user) - count(runningPerUser, b.user);
+    }
+    if (cmp == 0) {
+      cmp = a.seq < b.seq ? -1 : (a.seq == b.seq ? 0 : 1);
+    }
+    return cmp;
+  }
+
+  private static int count(Map<String, Integer> counts, String key) {
+    Integer count = counts.get(key);
+    return count == null ? 0 : count;
+  }
+
+  private static void add(Map<String, Integer> counts, String key, int delta) {
+    int count = count(counts, key) + delta;
+    if (count > 0) {
+      counts.put(key, count);
+    } else {
+      counts.remove(key);
+    }
+  }
+
+  /**
+   * @return true if starting the job does not exceed the limit of any database host or disk it reads from
+   */
+  private boolean isAllowed(Job job) {
+    for (String host : job.hosts) {
+      int max = host.startsWith(DATABASE_PREFIX) ? maxPerDatabase : (host.startsWith(DISK_PREFIX) ? maxPerDisk : 0);
+      if (max > 0 && count(runningPerHost, host) >= max) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  /**
+   * Starts the best jobs allowed to run, as long as publishing threads are available.
+   */
+  private void dispatch() {
+    while (running.size() < maxRunning) {
+      Job next = null;
+      for (Iterator<Job> iter = pending.iterator(); iter.hasNext(); ) {
+        Job job = iter.next();
+        if (job.task.isDone()) {
+          // cancelled while waiting
+          iter.remove();
+          notifyAll();
+        } else if (isAllowed(job) && (next == null || compare(job, next) < 0)) {
+          next = job;
+        }
+      }
+      if (next == null) {
+        return;
+      }
+      start(next);
+    }
+  }
+
+  private void start(final Job job) {
+    pending.remove(job);
+    running.add(job);
+    for (String host : job.hosts) {
+      add(runningPerHost, host, 1);
+    }
+    add(runningPerUser, job.user, 1);
+    job.started = new Date();
+    LOG.debug("Starting publication of resource " + job.shortname + " after waiting " + job.getWaitSeconds() + "s");
+    try {
+      executor.execute(new Runnable() {
+        public void run() {
+          try {
+            job.task.run();
+          } finally {
+            finished(job);
+          }
+        }
+      });
+    } catch (RuntimeException e) {
+      // rejected, e.g. because the executor is shut down
+      release(job);
+      job.task.cancel(false);
+      throw e;
+    }
+  }
+
+  private synchronized void finished(Job job) {
+    if (release(job)) {
+      dispatch();
+    }
+  }
+
+  private boolean release(Job job) {
+    if (!running.remove(job)) {
+      return false;
+    }
+    for (String host : job.hosts) {
+      add(runningPerHost, host, -1);
+    }
+    add(runningPerUser, job.user, -1);
+    notifyAll();
+    return true;
+  }
+}
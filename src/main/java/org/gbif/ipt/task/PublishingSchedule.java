@@ -0,0 +1,215 @@
+package org.gbif.ipt.task;
+
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import javax.annotation.Nullable;
+
+/**
+ * The dates resources are due to be auto-published next, ordered by date. A single resource is scheduled at most
+ * once, scheduling it again replaces its previous date.
+ * </br>
+ * Threads can wait for the next resource to become due, without polling: they are woken up when it is due, or when
+ * the schedule changes. The schedule is safe to use from multiple threads.
+ */
+public class PublishingSchedule {
+
+  /**
+   * Time after which a failed auto-publication is retried.
+   */
+  public static final long RETRY_DELAY_MS = 10000;
+  // dates are wall clock time, so waiting is limited in case the clock gets adjusted
+  private static final long MAX_WAIT_MS = 60000;
+
+  private static class Entry implements Comparable<Entry> {
+
+    private final String shortname;
+    private final long due;
+    // breaks ties between resources due at the same time, in order of scheduling
+    private final long seq;
+
+    private Entry(String shortname, long due, long seq) {
+      this.shortname = shortname;
+      this.due = due;
+      this.seq = seq;
+    }
+
+    public int compareTo(Entry other) {
+      if (due != other.due) {
+        return due < other.due ? -1 : 1;
+      }
+      return seq < other.seq ? -1 : (seq == other.seq ? 0 : 1);
+    }
+  }
+
+  private final ReentrantLock lock = new ReentrantLock();
+  private final Condition changed = lock.newCondition();
+  private final TreeSet<Entry> queue = new TreeSet<Entry>();
+  private final Map<String, Entry> entries = new HashMap<String, Entry>();
+  private long seq;
+  private long changes;
+
+  /**
+   * Schedules a resource to be published at a date, replacing the date it was scheduled for so far.
+   *
+   * @param shortname resource shortname
+   * @param due date the resource is due to be published, or null to remove it from the schedule
+   */
+  public void schedule(String shortname, @Nullable Date due) {
+    lock.lock();
+    try {
+      Entry previous = entries.remove(shortname);
+      if (previous != null) {
+        queue.remove(previous);
+      }
+      if (due != null) {
+        Entry entry = new Entry(shortname, due.getTime(), seq++);
+        entries.put(shortname, entry);
+        queue.add(entry);
+      }
+      changes++;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Removes a resource from the schedule.
+   *
+   * @param shortname resource shortname
+   */
+  public void unschedule(String shortname) {
+    schedule(shortname, null);
+  }
+
+  /**
+   * Schedules a resource whose publication failed to be tried again after the retry delay.
+   *
+   * @param shortname resource shortname
+   */
+  public void retry(String shortname) {
+    schedule(shortname, new Date(System.currentTimeMillis() + RETRY_DELAY_MS));
+  }
+
+  /**
+   * Removes all resources from the schedule.
+   */
+  public void clear() {
+    lock.lock();
+    try {
+      entries.clear();
+      queue.clear();
+      changes++;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return the date a resource is scheduled to be published, or null if it is not scheduled
+   */
+  @Nullable
+  public Date getDue(String shortname) {
+    lock.lock();
+    try {
+      Entry entry = entries.get(shortname);
+      return entry == null ? null : new Date(entry.due);
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return number of resources scheduled
+   */
+  public int size() {
+    lock.lock();
+    try {
+      return entries.size();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Wakes up all threads waiting for the schedule, e.g. because a publication finished.
+   */
+  public void signal() {
+    lock.lock();
+    try {
+      changes++;
+      changed.signalAll();
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * @return counter increased by every change and signal, to be passed to {@link #awaitChange(long, long)}
+   */
+  public long getChanges() {
+    lock.lock();
+    try {
+      return changes;
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits for the schedule to change or be signalled, unless it has already since the counter was read.
+   *
+   * @param since counter returned by {@link #getChanges()}
+   * @param timeoutMs maximum time to wait
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public void awaitChange(long since, long timeoutMs) throws InterruptedException {
+    long deadline = System.currentTimeMillis() + timeoutMs;
+    lock.lockInterruptibly();
+    try {
+      long wait = timeoutMs;
+      while (changes == since && wait > 0) {
+        changed.await(wait, TimeUnit.MILLISECONDS);
+        wait = deadline - System.currentTimeMillis();
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+
+  /**
+   * Waits until the earliest scheduled resource is due, and removes it from the schedule.
+   *
+   * @return shortname of the resource due
+   *
+   * @throws InterruptedException if interrupted while waiting
+   */
+  public String takeDue() throws InterruptedException {
+    lock.lockInterruptibly();
+    try {
+      while (true) {
+        if (queue.isEmpty()) {
+          changed.await();
+        } else {
+          Entry first = queue.first();
+          long wait = first.due - System.currentTimeMillis();
+          if (wait <= 0) {
+            queue.remove(first);
+            entries.remove(first.shortname);
+            return first.shortname;
+          }
+          changed.await(Math.min(wait, MAX_WAIT_MS), TimeUnit.MILLISECONDS);
+        }
+      }
+    } finally {
+      lock.unlock();
+    }
+  }
+}
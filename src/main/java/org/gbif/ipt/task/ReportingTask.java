@@ -44,12 +44,12 @@ public abstract class ReportingTask {
   }
 
   /**
-   * Logs message, and writes it to publication log file.
+   * Logs message, and writes it to publication log file. Safe to call from worker threads of the task.
    *
    * @param lvl Log level
    * @param msg message
    */
-  protected void addMessage(Level lvl, String msg) {
+  protected synchronized void addMessage(Level lvl, String msg) {
     if (Level.ERROR.equals(lvl)) {
       log.error(msg);
     } else if (Level.WARN.equals(lvl)) {
@@ -74,7 +74,7 @@ public abstract class ReportingTask {
    * Reports back the state of the task to the reporting handler configured.
    * Call this method at least once a second inside your task if possible, so users keep updated.
    */
-  public StatusReport report() {
+  public synchronized StatusReport report() {
     Exception e = currentException();
     if (e != null) {
       lastReport = new StatusReport(e, currentState(), messages);
@@ -0,0 +1,196 @@
+package org.gbif.ipt.task;
+
+import org.gbif.api.model.common.DOI;
+import org.gbif.ipt.config.Constants;
+import org.gbif.ipt.model.PropertyMapping;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Map;
+import javax.annotation.Nullable;
+
+/**
+ * Compiled plan turning the source rows of a single extension mapping into data file lines. Everything that only
+ * depends on the mapping (source column indexes, translations, default values, the datasetID column) is resolved
+ * once when the plan is built, so that applying it to a row does not allocate.
+ * </br>
+ * A plan keeps the values of the row currently being written and a reusable character buffer, and therefore must
+ * only be used by one thread at a time.
+ */
+class RowPlan {
+
+  private static final int NO_INDEX = -1;
+  private static final char COLUMN_SEPARATOR = '\t';
+  private static final char LINE_SEPARATOR = '\n';
+
+  // per output column (index 0 is the id column, and is never populated by the plan)
+  private final int[] sourceIndexes;
+  private final Map<String, String>[] translations;
+  private final String[] defaultValues;
+  // value that replaces any other value, e.g. the DOI used for the datasetID
+  private final String[] constants;
+  private final String[] values;
+  private char[] buffer = new char[1024];
+
+  /**
+   * @param inCols index ordered list of all output columns apart from id column
+   * @param doiUsedForDatasetId true if the resource DOI should be used for datasetID
+   * @param doi resource DOI
+   */
+  @SuppressWarnings("unchecked")
+  RowPlan(PropertyMapping[] inCols, boolean doiUsedForDatasetId, @Nullable DOI doi) {
+    int columns = inCols.length;
+    sourceIndexes = new int[columns];
+    translations = new Map[columns];
+    defaultValues = new String[columns];
+    constants = new String[columns];
+    values = new String[columns];
+    for (int i = 0; i < columns; i++) {
+      sourceIndexes[i] = NO_INDEX;
+      PropertyMapping pm = inCols[i];
+      if (i > 0 && pm != null) {
+        if (pm.getIndex() != null) {
+          sourceIndexes[i] = pm.getIndex();
+          if (pm.getTranslation() != null && !pm.getTranslation().isEmpty()) {
+            translations[i] = pm.getTranslation();
+          }
+        }
+        defaultValues[i] = pm.getDefaultValue();
+        if (doiUsedForDatasetId && doi != null
+            && pm.getTerm().qualifiedName().equalsIgnoreCase(Constants.DWC_DATASET_ID)) {
+          constants[i] = doi.toString();
+        }
+      }
+    }
+  }
+
+  /**
+   * Apply translations or default values to row, for all mapped properties. The original value in the row is
+   * replaced with the translated value, so that filters applied after translation see it.
+   *
+   * @param in values array, of all columns in row
+   */
+  void translate(String[] in) {
+    for (int i = 1; i < values.length; i++) {
+      String val = null;
+      int idx = sourceIndexes[i];
+      if (idx != NO_INDEX) {
+        val = in[idx];
+        // translate value?
+        if (translations[i] != null && translations[i].containsKey(val)) {
+          val = translations[i].get(val);
+          // update value in original record
+          in[idx] = val;
+        }
+      }
+      // use default value for null values
+      if (val == null) {
+        val = defaultValues[i];
+      }
+      // use DOI for datasetID property?
+      if (constants[i] != null) {
+        val = constants[i];
+      }
+      values[i] = val;
+    }
+  }
+
+  /**
+   * @param id value of the id column of the row currently being written
+   */
+  void setId(@Nullable String id) {
+    values[0] = id;
+  }
+
+  /**
+   * @param column output column, index 0 being the id column
+   *
+   * @return value of the column as written for the current row: trimmed, with tab, newline and carriage return
+   * characters replaced with a space, or null if the column is written empty
+   */
+  @Nullable
+  String getWrittenValue(int column) {
+    String val = values[column];
+    if (val == null) {
+      return null;
+    }
+    val = val.trim();
+    if (val.isEmpty()) {
+      return null;
+    }
+    if (val.indexOf('\t') < 0 && val.indexOf('\n') < 0 && val.indexOf('\r') < 0) {
+      return val;
+    }
+    return val.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+  }
+
+  /**
+   * Writes the current row as a single tab delimited line. Tab, newline and carriage return characters inside values
+   * are replaced with spaces, and values are trimmed.
+   *
+   * @param writer data file writer
+   *
+   * @return true if the row was written, false if all its values were null in which case no line is written at all
+   *
+   * @throws IOException if the line could not be written
+   */
+  boolean write(Writer writer) throws IOException {
+    int len = 0;
+    boolean empty = true;
+    for (int i = 0; i < values.length; i++) {
+      if (i > 0) {
+        buffer = ensureCapacity(buffer, len + 1);
+        buffer[len++] = COLUMN_SEPARATOR;
+      }
+      String val = values[i];
+      if (val != null) {
+        empty = false;
+        len = appendEscaped(val, len);
+      }
+    }
+    if (empty) {
+      // dont create a row at all!
+      return false;
+    }
+    buffer = ensureCapacity(buffer, len + 1);
+    buffer[len++] = LINE_SEPARATOR;
+    writer.write(buffer, 0, len);
+    return true;
+  }
+
+  /**
+   * Appends the trimmed value to the buffer, replacing tab, newline and carriage return characters with a space.
+   * This is equivalent to replacing them first and trimming afterwards, since all of them are trimmed as whitespace.
+   *
+   * @return new length of buffer content
+   */
+  private int appendEscaped(String val, int len) {
+    int start = 0;
+    int end = val.length();
+    while (start < end && val.charAt(start) <= ' ') {
+      start++;
+    }
+    while (end > start && val.charAt(end - 1) <= ' ') {
+      end--;
+    }
+    int size = end - start;
+    buffer = ensureCapacity(buffer, len + size);
+    val.getChars(start, end, buffer, len);
+    for (int i = len; i < len + size; i++) {
+      char c = buffer[i];
+      if (c == '\t' || c == '\n' || c == '\r') {
+        buffer[i] = ' ';
+      }
+    }
+    return len + size;
+  }
+
+  private static char[] ensureCapacity(char[] buf, int capacity) {
+    if (buf.length >= capacity) {
+      return buf;
+    }
+    char[] larger = new char[Math.max(capacity, buf.length * 2)];
+    System.arraycopy(buf, 0, larger, 0, buf.length);
+    return larger;
+  }
+}
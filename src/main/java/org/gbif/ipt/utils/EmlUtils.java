@@ -16,6 +16,9 @@ import java.io.InputStream;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Locale;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
 
 import com.google.common.base.Strings;
 import freemarker.template.TemplateException;
@@ -29,6 +32,8 @@ import org.xml.sax.SAXException;
 public class EmlUtils {
 
   protected static final Logger LOG = Logger.getLogger(EmlUtils.class);
+  // guards switching the JVM default locale while reading and writing EML documents
+  private static final ReadWriteLock DEFAULT_LOCALE_LOCK = new ReentrantReadWriteLock();
 
   /*
    * Empty constructor.
@@ -94,13 +99,46 @@ public class EmlUtils {
    * formats.
    */
   public static void writeWithLocale(File emlFile, Resource resource, Locale locale) {
+    writeWithLocale(emlFile, resource, resource.getEml(), locale);
+  }
+
+  /**
+   * Writes the EML file using a specific locale to interpret correctly: decimal separators, commas and currency
+   * formats. The EML is written next to the file first, replacing it once complete and synced to disk so that it is
+   * never left half written.
+   *
+   * @param emlFile EML file to write to
+   * @param resource resource the EML belongs to
+   * @param eml EML to write, as it was when the resource was saved
+   * @param locale Locale to use when writing the EML file
+   */
+  public static void writeWithLocale(File emlFile, Resource resource, Eml eml, Locale locale) {
+    write(emlFile, resource, toXmlWithLocale(resource, eml, locale));
+  }
+
+  /**
+   * Serializes an EML document using a specific locale to interpret correctly: decimal separators, commas and currency
+   * formats.
+   *
+   * @param resource resource the EML belongs to
+   * @param eml EML to serialize
+   * @param locale Locale to use when serializing the EML
+   *
+   * @return EML document
+   */
+  public static String toXmlWithLocale(Resource resource, Eml eml, Locale locale) {
+    File tmp = null;
+    Lock lock = lockDefaultLocale(locale);
     Locale currentLocale = Locale.getDefault();
+    boolean switched = !currentLocale.equals(locale);
     try {
-      synchronized (currentLocale) {
+      if (switched) {
         Locale.setDefault(locale);
-        EmlWriter.writeEmlFile(emlFile, resource.getEml());
-        Locale.setDefault(currentLocale);
       }
+      // the EML writer only writes files, so the document is read back right away
+      tmp = File.createTempFile("eml-", ".xml");
+      EmlWriter.writeEmlFile(tmp, eml);
+      return org.apache.commons.io.FileUtils.readFileToString(tmp, FileUtils.UTF8);
     } catch (IOException e) {
       LOG.error(e);
       throw new InvalidConfigException(TYPE.CONFIG_WRITE, "IO exception when writing eml for " + resource);
@@ -109,7 +147,34 @@ public class EmlUtils {
       throw new InvalidConfigException(TYPE.EML,
         "EML template exception when writing eml for " + resource + ": " + e.getMessage());
     } finally {
-      Locale.setDefault(currentLocale);
+      if (switched) {
+        Locale.setDefault(currentLocale);
+      }
+      lock.unlock();
+      org.apache.commons.io.FileUtils.deleteQuietly(tmp);
+    }
+  }
+
+  /**
+   * Writes a serialized EML document next to the EML file first, replacing the file once complete and synced to disk
+   * so that it is never left half written.
+   *
+   * @param emlFile EML file to write to
+   * @param resource resource the EML belongs to
+   * @param xml EML document, see {@link #toXmlWithLocale(Resource, Eml, Locale)}
+   */
+  public static void write(File emlFile, Resource resource, String xml) {
+    File tmp = new File(emlFile.getParentFile(), emlFile.getName() + ".tmp");
+    try {
+      org.apache.commons.io.FileUtils.writeStringToFile(tmp, xml, FileUtils.UTF8);
+      FileUtils.sync(tmp);
+      FileUtils.replaceFile(tmp, emlFile);
+    } catch (IOException e) {
+      LOG.error(e);
+      throw new InvalidConfigException(TYPE.CONFIG_WRITE, "IO exception when writing eml for " + resource);
+    } finally {
+      // left over only if writing failed
+      org.apache.commons.io.FileUtils.deleteQuietly(tmp);
     }
   }
 
@@ -123,14 +188,15 @@ public class EmlUtils {
    */
   public static Eml loadWithLocale(File emlFile, Locale locale) {
     Eml eml = null;
+    Lock lock = lockDefaultLocale(locale);
     Locale currentLocale = Locale.getDefault();
+    boolean switched = !currentLocale.equals(locale);
     try {
       InputStream in = new FileInputStream(emlFile);
-      synchronized (currentLocale) {
+      if (switched) {
         Locale.setDefault(locale);
-        eml = EmlFactory.build(in);
-        Locale.setDefault(currentLocale);
       }
+      eml = EmlFactory.build(in);
     } catch (FileNotFoundException e) {
       eml = new Eml();
     } catch (IOException e) {
@@ -141,8 +207,30 @@ public class EmlUtils {
     } catch (Exception e) {
       eml = new Eml();
     } finally {
-      Locale.setDefault(currentLocale);
+      if (switched) {
+        Locale.setDefault(currentLocale);
+      }
+      lock.unlock();
     }
     return eml;
   }
+
+  /**
+   * Locks the JVM default locale before using a specific locale. EML documents using the default locale already are
+   * read and written by several threads at the same time, while switching the default locale waits for all of them.
+   *
+   * @param locale locale to use
+   *
+   * @return lock held, to release once done
+   */
+  private static Lock lockDefaultLocale(Locale locale) {
+    Lock lock = DEFAULT_LOCALE_LOCK.readLock();
+    lock.lock();
+    if (!Locale.getDefault().equals(locale)) {
+      lock.unlock();
+      lock = DEFAULT_LOCALE_LOCK.writeLock();
+      lock.lock();
+    }
+    return lock;
+  }
 }
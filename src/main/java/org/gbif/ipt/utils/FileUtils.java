@@ -74,6 +74,40 @@ public class FileUtils {
     return reader;
   }
 
+  /**
+   * Replaces a file with its new version written next to it. The file is renamed in one go where the platform allows
+   * renaming onto an existing file, so that it is never left half written. The new version must have been synced to
+   * disk before, see {@link #sync(File)}, or a crash may still leave the renamed file empty.
+   *
+   * @param tmp new version of the file, which is gone once it replaced the file
+   * @param file file to replace
+   *
+   * @throws IOException if the file could not be replaced
+   */
+  public static void replaceFile(File tmp, File file) throws IOException {
+    if (!tmp.renameTo(file)) {
+      // renaming onto an existing file fails on Windows
+      org.apache.commons.io.FileUtils.deleteQuietly(file);
+      org.apache.commons.io.FileUtils.moveFile(tmp, file);
+    }
+  }
+
+  /**
+   * Forces the content of a file written completely and closed onto the disk.
+   *
+   * @param file file to sync
+   *
+   * @throws IOException if the file could not be synced
+   */
+  public static void sync(File file) throws IOException {
+    FileOutputStream out = new FileOutputStream(file, true);
+    try {
+      out.getFD().sync();
+    } finally {
+      out.close();
+    }
+  }
+
   public static Writer startNewUtf8File(File file) throws IOException {
     try {
       org.apache.commons.io.FileUtils.touch(file);
@@ -0,0 +1,324 @@
+package org.gbif.ipt.utils;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import javax.annotation.Nullable;
+
+import com.google.common.base.Charsets;
+import org.apache.commons.io.IOUtils;
+import org.apache.log4j.Logger;
+
+/**
+ * Sorts large text files line by line using several threads and a bounded amount of memory.
+ * </br>
+ * Lines are read in chunks sized to the memory budget, and each chunk is sorted and written to a run file by a worker
+ * thread while the next chunk is being read. The runs are then merged into the sorted file. The sort is stable, so
+ * the output is exactly the same as sorting all lines at once with {@link java.util.Collections#sort(List,
+ * Comparator)}: header lines first, followed by the sorted lines, each terminated by a newline character.
+ * </br>
+ * Comparing lines can be sped up with a {@link PrefixKey}, a primitive key of the start of the sort column.
+ */
+public class ParallelFileSorter {
+
+  /**
+   * A primitive key of a line, consistent with the line comparator: if the keys of two lines are both not 0 and
+   * differ, comparing them unsigned gives the same result as comparing the lines. Lines with equal keys, or with a
+   * key of 0, are compared using the line comparator.
+   */
+  public interface PrefixKey {
+
+    long key(String line);
+  }
+
+  private static final Logger LOG = Logger.getLogger(ParallelFileSorter.class);
+  private static final int CHARS_PER_KEY = 4;
+  // rough heap cost of a line held in memory, not counting its characters
+  private static final int LINE_OVERHEAD_BYTES = 80;
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final int threads;
+  private final long memoryBudget;
+  private final boolean compressRuns;
+
+  /**
+   * @param threads maximum number of threads sorting chunks at the same time
+   * @param memoryBudget maximum number of bytes used for lines held in memory
+   * @param compressRuns true if run files should be compressed, trading CPU for disk space and IO
+   */
+  public ParallelFileSorter(int threads, long memoryBudget, boolean compressRuns) {
+    this.threads = Math.max(1, threads);
+    this.memoryBudget = Math.max(1, memoryBudget);
+    this.compressRuns = compressRuns;
+  }
+
+  /**
+   * Key of the first column of a line, compared ignoring case the same way {@link String#compareToIgnoreCase(String)}
+   * does, made of its first 4 characters. Lines whose first column is empty, is enclosed by quotes or starts with
+   * whitespace have a key of 0.
+   *
+   * @param columnDelimiter column delimiter
+   * @param enclosedBy character columns may be enclosed by, or null
+   *
+   * @return key of the first column
+   */
+  public static PrefixKey ignoreCaseKey(final String columnDelimiter, @Nullable final Character enclosedBy) {
+    return new PrefixKey() {
+      public long key(String line) {
+        int end = line.indexOf(columnDelimiter);
+        if (end < 0) {
+          end = line.length();
+        }
+        if (end == 0 || (enclosedBy != null && line.charAt(0) == enclosedBy)) {
+          return 0;
+        }
+        long key = 0;
+        for (int i = 0; i < CHARS_PER_KEY; i++) {
+          char c = 0;
+          if (i < end) {
+            c = line.charAt(i);
+            if (c <= ' ') {
+              // columns might be trimmed before being compared
+              return 0;
+            }
+          }
+          key = (key << 16) | Character.toLowerCase(Character.toUpperCase(c));
+        }
+        return key;
+      }
+    };
+  }
+
+  /**
+   * A line held in memory or at the head of a run, with its key.
+   */
+  private static class Entry {
+
+    private final long key;
+    private final String line;
+    // index of the run the line was read from, when merging
+    private int run;
+
+    private Entry(long key, String line) {
+      this.key = key;
+      this.line = line;
+    }
+  }
+
+  /**
+   * Sorts a file.
+   *
+   * @param input file to sort
+   * @param sorted sorted file to write, its directory being used for run files
+   * @param encoding encoding of both files
+   * @param ignoreHeaderLines number of header lines, written first without being sorted
+   * @param lineComparator comparator of lines
+   * @param prefixKey key of lines consistent with the comparator, or null if lines are only compared by comparator
+   *
+   * @throws IOException if the files could not be read or written
+   * @throws InterruptedException if the thread was interrupted while sorting
+   */
+  public void sort(File input, File sorted, String encoding, int ignoreHeaderLines,
+    final Comparator<String> lineComparator, @Nullable final PrefixKey prefixKey)
+    throws IOException, InterruptedException {
+    long time = System.currentTimeMillis();
+    final Comparator<Entry> comparator = new Comparator<Entry>() {
+      public int compare(Entry a, Entry b) {
+        if (a.key != b.key && a.key != 0 && b.key != 0) {
+          return (a.key ^ Long.MIN_VALUE) < (b.key ^ Long.MIN_VALUE) ? -1 : 1;
+        }
+        return lineComparator.compare(a.line, b.line);
+      }
+    };
+    // while the next chunk is read, up to one chunk per thread is sorted
+    long chunkBudget = Math.max(1, memoryBudget / (threads + 1));
+    final Semaphore sorting = new Semaphore(threads);
+    File runDir = new File(sorted.getParentFile(), sorted.getName() + "-runs");
+    ExecutorService workers = Executors.newFixedThreadPool(threads);
+    List<String> headerLines = new ArrayList<String>();
+    List<Future<File>> runs = new ArrayList<Future<File>>();
+    BufferedReader reader =
+      new BufferedReader(new InputStreamReader(new FileInputStream(input), encoding), BUFFER_SIZE);
+    try {
+      List<Entry> chunk = new ArrayList<Entry>();
+      long chunkSize = 0;
+      String line;
+      while ((line = reader.readLine()) != null) {
+        if (headerLines.size() < ignoreHeaderLines) {
+          headerLines.add(line);
+          continue;
+        }
+        chunk.add(new Entry(prefixKey == null ? 0 : prefixKey.key(line), line));
+        chunkSize += LINE_OVERHEAD_BYTES + 2L * line.length();
+        if (chunkSize >= chunkBudget) {
+          if (Thread.interrupted()) {
+            throw new InterruptedException("Interrupted while sorting " + input.getName());
+          }
+          if (runs.isEmpty()) {
+            org.apache.commons.io.FileUtils.forceMkdir(runDir);
+          }
+          sorting.acquire();
+          runs.add(workers.submit(new RunWriter(chunk, new File(runDir, "run-" + runs.size()), comparator, sorting)));
+          chunk = new ArrayList<Entry>();
+          chunkSize = 0;
+        }
+      }
+      reader.close();
+
+      Writer writer =
+        new BufferedWriter(new OutputStreamWriter(new FileOutputStream(sorted), encoding), BUFFER_SIZE);
+      try {
+        for (String header : headerLines) {
+          writer.write(header);
+          writer.write('\n');
+        }
+        if (runs.isEmpty()) {
+          // everything fits in memory
+          Entry[] entries = chunk.toArray(new Entry[chunk.size()]);
+          Arrays.sort(entries, comparator);
+          for (Entry entry : entries) {
+            writer.write(entry.line);
+            writer.write('\n');
+          }
+        } else {
+          if (!chunk.isEmpty()) {
+            sorting.acquire();
+            runs.add(workers.submit(new RunWriter(chunk, new File(runDir, "run-" + runs.size()), comparator,
+              sorting)));
+          }
+          chunk = null;
+          List<File> runFiles = new ArrayList<File>();
+          for (Future<File> run : runs) {
+            runFiles.add(run.get());
+          }
+          merge(runFiles, writer, comparator, prefixKey);
+        }
+      } finally {
+        writer.close();
+      }
+      LOG.debug("Sorted " + input.getName() + " using " + Math.max(1, runs.size()) + " run(s) and " + threads
+                + " thread(s) in " + (System.currentTimeMillis() - time) + " ms");
+    } catch (ExecutionException e) {
+      if (e.getCause() instanceof IOException) {
+        throw (IOException) e.getCause();
+      }
+      throw new IOException("Sorting " + input.getName() + " failed", e.getCause());
+    } finally {
+      IOUtils.closeQuietly(reader);
+      workers.shutdownNow();
+      org.apache.commons.io.FileUtils.deleteQuietly(runDir);
+    }
+  }
+
+  /**
+   * Merges sorted runs. Of equal lines, the one from the earlier run is written first, so that merging is stable.
+   */
+  private void merge(List<File> runFiles, Writer writer, final Comparator<Entry> comparator,
+    @Nullable PrefixKey prefixKey) throws IOException, InterruptedException {
+    PriorityQueue<Entry> heads = new PriorityQueue<Entry>(runFiles.size(), new Comparator<Entry>() {
+      public int compare(Entry a, Entry b) {
+        int cmp = comparator.compare(a, b);
+        return cmp == 0 ? a.run - b.run : cmp;
+      }
+    });
+    BufferedReader[] readers = new BufferedReader[runFiles.size()];
+    try {
+      for (int i = 0; i < readers.length; i++) {
+        readers[i] = new BufferedReader(new InputStreamReader(openRun(runFiles.get(i)), Charsets.UTF_8), BUFFER_SIZE);
+        next(readers, i, heads, prefixKey);
+      }
+      long lines = 0;
+      while (!heads.isEmpty()) {
+        if (++lines % 100000 == 0 && Thread.interrupted()) {
+          throw new InterruptedException("Interrupted while merging sorted runs");
+        }
+        Entry head = heads.poll();
+        writer.write(head.line);
+        writer.write('\n');
+        next(readers, head.run, heads, prefixKey);
+      }
+    } finally {
+      for (BufferedReader reader : readers) {
+        IOUtils.closeQuietly(reader);
+      }
+    }
+  }
+
+  private static void next(BufferedReader[] readers, int run, PriorityQueue<Entry> heads,
+    @Nullable PrefixKey prefixKey) throws IOException {
+    String line = readers[run].readLine();
+    if (line != null) {
+      Entry entry = new Entry(prefixKey == null ? 0 : prefixKey.key(line), line);
+      entry.run = run;
+      heads.add(entry);
+    }
+  }
+
+  private InputStream openRun(File run) throws IOException {
+    InputStream in = new FileInputStream(run);
+    return compressRuns ? new GZIPInputStream(in, BUFFER_SIZE) : in;
+  }
+
+  /**
+   * Sorts a chunk of lines, and writes them to a run file.
+   */
+  private class RunWriter implements Callable<File> {
+
+    private final List<Entry> chunk;
+    private final File run;
+    private final Comparator<Entry> comparator;
+    private final Semaphore sorting;
+
+    private RunWriter(List<Entry> chunk, File run, Comparator<Entry> comparator, Semaphore sorting) {
+      this.chunk = chunk;
+      this.run = run;
+      this.comparator = comparator;
+      this.sorting = sorting;
+    }
+
+    public File call() throws IOException {
+      try {
+        Entry[] entries = chunk.toArray(new Entry[chunk.size()]);
+        chunk.clear();
+        Arrays.sort(entries, comparator);
+        OutputStream out = new FileOutputStream(run);
+        if (compressRuns) {
+          out = new GZIPOutputStream(out, BUFFER_SIZE);
+        }
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, Charsets.UTF_8), BUFFER_SIZE);
+        try {
+          for (Entry entry : entries) {
+            writer.write(entry.line);
+            writer.write('\n');
+          }
+        } finally {
+          writer.close();
+        }
+        return run;
+      } finally {
+        sorting.release();
+      }
+    }
+  }
+}
@@ -69,6 +69,14 @@
 		<@s.text name="admin.home.manageLogs"/>
 	  </td>
 	</tr>
+	<tr>
+	  <td>
+		<a href="${baseURL}/admin/publishing.do"><img src="${baseURL}/images/icons/settings.png" /></a>
+	  </td>
+	  <td colspan="2">
+		<@s.text name="admin.home.publishingQueue"/>
+	  </td>
+	</tr>
 </table>
 </div>
 </div>
@@ -0,0 +1,60 @@
+<#escape x as x?html>
+<#include "/WEB-INF/pages/inc/header.ftl">
+	<title><@s.text name="admin.home.publishingQueue"/></title>
+ <#assign currentMenu = "admin"/>
+<#include "/WEB-INF/pages/inc/menu.ftl">
+<div class="grid_24">
+<h1><@s.text name="admin.home.publishingQueue"/></h1>
+
+<h3 class="subTitle"><@s.text name="admin.publishing.running"/></h3>
+<#if running?has_content>
+<table class="simple">
+	<tr>
+		<th><@s.text name="admin.publishing.resource"/></th>
+		<th><@s.text name="admin.publishing.user"/></th>
+		<th><@s.text name="admin.publishing.priority"/></th>
+		<th><@s.text name="admin.publishing.started"/></th>
+		<th><@s.text name="admin.publishing.waited"/></th>
+	</tr>
+	<#list running as job>
+	<tr>
+		<td><a href="${baseURL}/manage/resource.do?r=${job.shortname}">${job.shortname}</a></td>
+		<td>${job.user}</td>
+		<td><@s.text name="admin.publishing.priority.${job.priority}"/></td>
+		<td>${job.started?datetime?string.medium}</td>
+		<td>${job.waitSeconds?c}s</td>
+	</tr>
+	</#list>
+</table>
+<#else>
+<p><@s.text name="admin.publishing.running.none"/></p>
+</#if>
+
+<h3 class="subTitle"><@s.text name="admin.publishing.pending"/></h3>
+<#if pending?has_content>
+<table class="simple">
+	<tr>
+		<th><@s.text name="admin.publishing.position"/></th>
+		<th><@s.text name="admin.publishing.resource"/></th>
+		<th><@s.text name="admin.publishing.user"/></th>
+		<th><@s.text name="admin.publishing.priority"/></th>
+		<th><@s.text name="admin.publishing.queued"/></th>
+		<th><@s.text name="admin.publishing.waiting"/></th>
+	</tr>
+	<#list pending as job>
+	<tr>
+		<td>${job_index + 1}</td>
+		<td><a href="${baseURL}/manage/resource.do?r=${job.shortname}">${job.shortname}</a></td>
+		<td>${job.user}</td>
+		<td><@s.text name="admin.publishing.priority.${job.priority}"/></td>
+		<td>${job.queued?datetime?string.medium}</td>
+		<td>${job.waitSeconds?c}s</td>
+	</tr>
+	</#list>
+</table>
+<#else>
+<p><@s.text name="admin.publishing.pending.none"/></p>
+</#if>
+</div>
+<#include "/WEB-INF/pages/inc/footer.ftl">
+</#escape>
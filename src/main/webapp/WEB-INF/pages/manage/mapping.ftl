@@ -14,7 +14,8 @@ $(document).ready(function(){
 		}
 	}
 	function showHideFilter(){
-		if($('#filterComp option:selected').val()=="Equals" || $('#filterComp option:selected').val()=="NotEquals"){
+		var comp = $('#filterComp option:selected').val();
+		if(comp!="" && comp!="IsNULL" && comp!="IsNotNULL"){
 			$('#filterParam').show();
 		}else{
 			$('#filterParam').hide();
@@ -367,7 +368,7 @@ $(document).ready(function(){
 
                             <img class="infoImg" src="${baseURL}/images/info.gif" />
                             <div class="info">
-                              <@s.text name='manage.mapping.info'/>
+                              <@s.text name='manage.mapping.info'/><br /><br /><@s.text name='manage.mapping.filter.params'/>
                             </div>
 
                             <div class="title" id="filter">
@@ -380,6 +381,9 @@ $(document).ready(function(){
                             </div>
 
                             <div class="body">
+                                <#if mapping.filter.group>
+                                <div><@s.text name='manage.mapping.filter.group'><@s.param>${mapping.filter}</@s.param></@s.text></div>
+                                </#if>
                                 <div>
                                     <select id="filterName" name="mapping.filter.column">
                                         <option value="" <#if !mapping.filter.column??> selected="selected"</#if>></option>
@@ -108,6 +108,18 @@ $(document).ready(function(){
               </@label>
             </div>
             </#if>
+              <div class="fullcolumn">
+                <@input name="sqlSource.changeDetectionSql" help="i18n"/>
+              </div>
+              <div class="halfcolumn">
+                <@input name="sqlSource.fetchSize" help="i18n"/>
+              </div>
+              <div class="halfcolumn">
+                <@input name="sqlSource.keyColumn" help="i18n"/>
+              </div>
+              <div class="halfcolumn">
+                <@input name="sqlSource.keyChunkSize" help="i18n"/>
+              </div>
               <div class="halfcolumn">
                 <@encoding/>
               </div>
@@ -3,9 +3,13 @@ package org.gbif.ipt.config;
 import org.gbif.ipt.config.JdbcSupport.JdbcInfo;
 import org.gbif.ipt.config.JdbcSupport.LIMIT_TYPE;
 
+import java.util.Arrays;
+
 import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class JdbcInfoTest {
 
@@ -70,4 +74,57 @@ public class JdbcInfoTest {
         10));
   }
 
+  @Test
+  public void testProjection() {
+    JdbcSupport support = new JdbcSupport();
+    JdbcInfo info = support.new JdbcInfo("pgsql", "PostgreSQL", "org.postgresql.Driver",
+      "jdbc:postgresql://{host}/{database}", LIMIT_TYPE.LIMIT);
+    String select = info.selectList(Arrays.asList("id", "scientific\"Name"), "\"");
+    assertEquals("\"id\", \"scientific\"\"Name\"", select);
+    assertEquals("SELECT " + select + " FROM (select * from specimen) ipt_projection",
+      info.addProjection("select * from specimen;", select));
+    assertEquals("SELECT " + select + ", id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE id > ? ORDER BY "
+                 + "id LIMIT 10", info.addKeyPage("select * from specimen", "id", true, 10, select, null));
+    assertEquals("SELECT ipt_keyset.*, id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE (\"genus\" IS NOT "
+                 + "NULL) AND id IS NOT NULL ORDER BY id LIMIT 10",
+      info.addKeyPage("select * from specimen", "id", false, 10, null, "\"genus\" IS NOT NULL"));
+    assertEquals("SELECT ipt_keyset.*, id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE id IS NULL",
+      info.addNullKey("select * from specimen", "id", null, null));
+    assertEquals("SELECT * FROM (select * from specimen) ipt_projection WHERE \"genus\" IS NOT NULL",
+      info.addProjection("select * from specimen", null, "\"genus\" IS NOT NULL"));
+    assertTrue(info.isProjectionSupported());
+
+    info = support.new JdbcInfo("mysql", "MySQL", "com.mysql.jdbc.Driver", "jdbc:mysql://{host}/{database}",
+      LIMIT_TYPE.LIMIT);
+    assertFalse(info.isProjectionSupported());
+  }
+
+  @Test
+  public void testKeyPage() {
+    JdbcSupport support = new JdbcSupport();
+    JdbcInfo info = support.new JdbcInfo("pgsql", "PostgreSQL", "org.postgresql.Driver",
+      "jdbc:postgresql://{host}/{database}", LIMIT_TYPE.LIMIT);
+    assertEquals("SELECT ipt_keyset.*, id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE id IS NOT NULL "
+                 + "ORDER BY id LIMIT 10", info.addKeyPage("select * from specimen;", "id", false, 10, null, null));
+    assertEquals("SELECT ipt_keyset.*, id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE id > ? ORDER BY "
+                 + "id LIMIT 10", info.addKeyPage("select * from specimen", "id", true, 10, null, null));
+    assertEquals("SELECT ipt_keyset.*, id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE id IS NULL",
+      info.addNullKey("select * from specimen", "id", null, null));
+  }
+
+  @Test
+  public void testKeyPageLimits() {
+    JdbcSupport support = new JdbcSupport();
+    JdbcInfo info = support.new JdbcInfo("mssql", "Microsoft SQL Server", "net.sourceforge.jtds.jdbc.Driver",
+      "jdbc:jtds:sqlserver://{host}/{database}", LIMIT_TYPE.TOP);
+    assertEquals("SELECT TOP 10 ipt_keyset.*, id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE id > ? "
+                 + "ORDER BY id", info.addKeyPage("select * from specimen", "id", true, 10, null, null));
+
+    info = support.new JdbcInfo("oracle", "Oracle", "oracle.jdbc.driver.OracleDriver",
+      "jdbc:oracle:thin:@{host}:{database}", LIMIT_TYPE.ROWNUM);
+    assertEquals("SELECT * FROM (SELECT ipt_keyset.*, id AS ipt_key FROM (select * from specimen) ipt_keyset WHERE id "
+                 + "> ? ORDER BY id) WHERE rownum <= 10",
+      info.addKeyPage("select * from specimen", "id", true, 10, null, null));
+  }
+
 }
@@ -26,6 +26,7 @@ public class MockAppConfig {
 
 
     when(appConfig.getMaxThreads()).thenReturn(3);
+    when(appConfig.getValidationMemory()).thenReturn(128L * 1024 * 1024);
 
     // TODO Configure the other properties.
 
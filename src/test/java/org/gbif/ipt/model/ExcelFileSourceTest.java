@@ -0,0 +1,182 @@
+package org.gbif.ipt.model;
+
+import org.gbif.utils.file.ClosableReportingIterator;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.commons.io.IOUtils;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ExcelFileSourceTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Writes a workbook with a second sheet, an empty row, a missing cell and formulas with cached results.
+   */
+  private File write(Workbook book, String fileName) throws IOException {
+    book.createSheet("occurrences");
+    book.createSheet("other");
+    Sheet sheet = book.getSheetAt(0);
+
+    Row row = sheet.createRow(0);
+    row.createCell(0).setCellValue("id");
+    row.createCell(1).setCellValue("scientificName");
+    row.createCell(2).setCellValue("individualCount");
+    row.createCell(3).setCellValue("verified");
+    row.createCell(4).setCellValue("total");
+
+    row = sheet.createRow(1);
+    row.createCell(0).setCellValue(1);
+    row.createCell(1).setCellValue("Puma concolor");
+    row.createCell(2).setCellValue(2);
+    row.createCell(3).setCellValue(true);
+    row.createCell(4).setCellFormula("C2*10");
+
+    sheet.createRow(2);
+
+    row = sheet.createRow(3);
+    row.createCell(0).setCellValue(3);
+    row.createCell(1).setCellValue("Panthera onca");
+    row.createCell(3).setCellValue(false);
+    row.createCell(4).setCellFormula("CONCATENATE(B4,\"!\")");
+
+    // cache formula results, as excel does when saving
+    book.getCreationHelper().createFormulaEvaluator().evaluateAll();
+
+    File file = folder.newFile(fileName);
+    FileOutputStream out = new FileOutputStream(file);
+    try {
+      book.write(out);
+    } finally {
+      out.close();
+    }
+    return file;
+  }
+
+  private void assertSource(File file) throws IOException {
+    ExcelFileSource src = new ExcelFileSource();
+    src.setName("test");
+    src.setFile(file);
+    src.analyze();
+    assertTrue(src.isReadable());
+    assertEquals(4, src.getRows());
+    assertEquals(5, src.getColumns());
+
+    Map<Integer, String> sheets = src.sheets();
+    assertEquals(2, sheets.size());
+    assertEquals("occurrences", sheets.get(0));
+    assertEquals("other", sheets.get(1));
+
+    src.setIgnoreHeaderLines(1);
+    List<String> columns = src.columns();
+    assertEquals(5, columns.size());
+    assertEquals("scientificName", columns.get(1));
+
+    ClosableReportingIterator<String[]> iter = src.rowIterator();
+    try {
+      assertTrue(iter.hasNext());
+      assertArrayEquals(new String[] {"1", "Puma concolor", "2", "TRUE", "20"}, iter.next());
+      assertTrue(iter.hasNext());
+      assertArrayEquals(new String[] {"", "", "", "", ""}, iter.next());
+      assertTrue(iter.hasNext());
+      assertArrayEquals(new String[] {"3", "Panthera onca", "", "FALSE", "Panthera onca!"}, iter.next());
+      assertFalse(iter.hasNext());
+      assertNull(iter.getErrorMessage());
+    } finally {
+      iter.close();
+    }
+  }
+
+  @Test
+  public void testXls() throws IOException {
+    assertSource(write(new HSSFWorkbook(), "test.xls"));
+  }
+
+  @Test
+  public void testXlsx() throws IOException {
+    assertSource(write(new XSSFWorkbook(), "test.xlsx"));
+  }
+
+  /**
+   * A sheet that cannot be read to its end must fail, not end the rows quietly.
+   */
+  @Test
+  public void testUnreadableSheet() throws IOException {
+    File file = write(new XSSFWorkbook(), "test.xlsx");
+    File broken = folder.newFile("broken.xlsx");
+    ZipFile zip = new ZipFile(file);
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(broken));
+    try {
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      while (entries.hasMoreElements()) {
+        ZipEntry entry = entries.nextElement();
+        byte[] content = IOUtils.toByteArray(zip.getInputStream(entry));
+        if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+          // cut the sheet within its third row
+          String xml = new String(content, "UTF-8");
+          content = xml.substring(0, xml.indexOf("<row r=\"3\"") + 10).getBytes("UTF-8");
+        }
+        out.putNextEntry(new ZipEntry(entry.getName()));
+        out.write(content);
+        out.closeEntry();
+      }
+    } finally {
+      out.close();
+      zip.close();
+    }
+
+    ExcelFileSource src = new ExcelFileSource();
+    src.setName("broken");
+    src.setFile(broken);
+    src.setColumns(5);
+    src.setIgnoreHeaderLines(1);
+    ClosableReportingIterator<String[]> iter = src.rowIterator();
+    try {
+      assertTrue(iter.hasNext());
+      assertEquals("Puma concolor", iter.next()[1]);
+      iter.hasNext();
+      fail("Read error not thrown");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("broken"));
+    } finally {
+      iter.close();
+    }
+  }
+
+  @Test
+  public void testEmptySheet() throws IOException {
+    File file = write(new XSSFWorkbook(), "empty.xlsx");
+    ExcelFileSource src = new ExcelFileSource();
+    src.setName("empty");
+    src.setFile(file);
+    src.setSheetIdx(1);
+    src.analyze();
+    assertFalse(src.isReadable());
+    assertEquals(0, src.getRows());
+    assertTrue(src.columns().isEmpty());
+  }
+}
@@ -15,8 +15,12 @@ package org.gbif.ipt.model;
 
 import org.gbif.ipt.model.RecordFilter.Comparator;
 
+import java.util.Arrays;
+
+import com.google.common.collect.ImmutableSet;
 import org.junit.Test;
 
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 
@@ -80,4 +84,73 @@ public class RecordFilterTest {
     assertFalse(f.matches(new String[] {"1", "a", "3"}));
   }
 
+  private RecordFilter filter(int column, Comparator comparator, String param) {
+    RecordFilter f = new RecordFilter();
+    f.setColumn(column);
+    f.setComparator(comparator);
+    f.setParam(param);
+    return f;
+  }
+
+  @Test
+  public void testIn() {
+    RecordFilter f = filter(1, Comparator.In, "PreservedSpecimen| FossilSpecimen |");
+
+    assertFalse(f.matches(new String[] {}));
+    assertFalse(f.matches(new String[] {"1", null}));
+    assertFalse(f.matches(new String[] {"1", "HumanObservation"}));
+    assertTrue(f.matches(new String[] {"1", "PreservedSpecimen"}));
+    assertTrue(f.matches(new String[] {"1", " FossilSpecimen\t"}));
+  }
+
+  @Test
+  public void testStartsWithAndMatches() {
+    RecordFilter f = filter(0, Comparator.StartsWith, "Puma");
+    assertTrue(f.matches(new String[] {"  Puma concolor"}));
+    assertFalse(f.matches(new String[] {"Pum"}));
+    assertFalse(f.matches(new String[] {"Felis puma"}));
+
+    f = filter(0, Comparator.Matches, "[A-Z][a-z]+ [a-z]+");
+    assertTrue(f.matches(new String[] {" Puma concolor "}));
+    assertFalse(f.matches(new String[] {"Puma concolor L."}));
+    assertFalse(f.matches(new String[] {null}));
+  }
+
+  @Test
+  public void testNumberRangeGroup() {
+    RecordFilter f = new RecordFilter();
+    f.setFilters(Arrays.asList(filter(2, Comparator.GreaterOrEquals, "1900"),
+      filter(2, Comparator.LessOrEquals, "1999.5")));
+    assertTrue(f.isGroup());
+    assertEquals(RecordFilter.Operator.AND, f.getOperator());
+
+    assertTrue(f.matches(new String[] {"1", "a", "1900"}));
+    assertTrue(f.matches(new String[] {"1", "a", " 1999.5 "}));
+    assertFalse(f.matches(new String[] {"1", "a", "2000"}));
+    assertFalse(f.matches(new String[] {"1", "a", "unknown"}));
+    assertFalse(f.matches(new String[] {"1", "a", null}));
+  }
+
+  @Test
+  public void testOrGroup() {
+    RecordFilter f = new RecordFilter();
+    f.setOperator(RecordFilter.Operator.OR);
+    f.setFilters(Arrays.asList(filter(0, Comparator.Equals, "a"), filter(3, Comparator.IsNotNULL, null),
+      new RecordFilter()));
+
+    RecordPredicate predicate = f.compile();
+    assertEquals(ImmutableSet.of(0, 3), predicate.getColumns());
+    assertTrue(predicate.matches(new String[] {"a"}));
+    assertTrue(predicate.matches(new String[] {"b", null, null, "c"}));
+    assertFalse(predicate.matches(new String[] {"b", null, null, " "}));
+
+    // a group without complete filters matches all records
+    assertTrue(new RecordFilter().compile().isAll());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testInvalidNumber() {
+    filter(0, Comparator.GreaterOrEquals, "many").compile();
+  }
+
 }
@@ -0,0 +1,62 @@
+package org.gbif.ipt.model;
+
+import java.io.File;
+import java.io.IOException;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class SourceProfileTest {
+
+  private TextFileSource source() throws IOException {
+    TextFileSource src = new TextFileSource();
+    src.setName("test");
+    src.setFile(File.createTempFile("profile", ".txt"));
+    return src;
+  }
+
+  @Test
+  public void testAdd() throws IOException {
+    SourceProfile profile = new SourceProfile(source());
+    profile.add(new String[] {"1", "Puma concolor"});
+    profile.add(new String[] {"2", ""});
+    profile.add(new String[] {"3"});
+
+    assertEquals(3, profile.getRows());
+    assertEquals(3, profile.getSample().size());
+    assertEquals(0, profile.getNulls(0));
+    assertEquals(2, profile.getNulls(1));
+    assertEquals(3, profile.getNulls(2));
+    assertEquals(13, profile.getColumnProfile(1).getMaxWidth());
+    assertEquals(2, profile.distinctValues(1, 0).size());
+    assertEquals(2, profile.distinctValues(0, 2).size());
+    assertTrue(profile.distinctValues(2, 10).isEmpty());
+  }
+
+  @Test
+  public void testDistinctValuesBounded() throws IOException {
+    SourceProfile profile = new SourceProfile(source());
+    for (int i = 0; i <= SourceProfile.MAX_DISTINCT_VALUES; i++) {
+      profile.add(new String[] {String.valueOf(i)});
+    }
+    assertFalse(profile.getColumnProfile(0).isComplete());
+    assertEquals(10, profile.distinctValues(0, 10).size());
+    assertEquals(SourceProfile.SAMPLE_ROWS, profile.getSample().size());
+    // cannot answer without knowing all values
+    assertNull(profile.distinctValues(0, 0));
+    assertNull(profile.distinctValues(0, SourceProfile.MAX_DISTINCT_VALUES + 1));
+  }
+
+  @Test
+  public void testIsCurrent() throws IOException {
+    TextFileSource src = source();
+    SourceProfile profile = new SourceProfile(src);
+    assertTrue(profile.isCurrent(src));
+    src.setIgnoreHeaderLines(1);
+    assertFalse(profile.isCurrent(src));
+  }
+}
@@ -0,0 +1,119 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.model.Resource;
+import org.gbif.metadata.eml.Eml;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.google.common.base.Function;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class EmlCacheTest {
+
+  private final AtomicInteger loads = new AtomicInteger();
+  // loads an EML titled like the resource was, as if read from its eml.xml file
+  private final Function<Resource, Eml> loader = new Function<Resource, Eml>() {
+    public Eml apply(Resource resource) {
+      loads.incrementAndGet();
+      Eml eml = new Eml();
+      eml.setTitle("Saved " + resource.getShortname());
+      resource.setEml(eml);
+      return eml;
+    }
+  };
+
+  private static Resource resource(String shortname) {
+    Resource r = new Resource();
+    r.setShortname(shortname);
+    r.setTitle("Title " + shortname);
+    r.getEml().setLogoUrl("http://ipt.gbif.org/" + shortname + ".png");
+    return r;
+  }
+
+  @Test
+  public void testLeastRecentlyUsedReleased() {
+    EmlCache cache = new EmlCache(2, loader);
+    Resource ants = resource("ants");
+    Resource bees = resource("bees");
+    Resource wasps = resource("wasps");
+    cache.add(ants);
+    cache.add(bees);
+    ants.getEml();
+    cache.add(wasps);
+
+    // bees were used least recently
+    assertEquals(2, cache.size());
+    assertTrue(ants.isEmlLoaded());
+    assertFalse(bees.isEmlLoaded());
+    assertTrue(wasps.isEmlLoaded());
+    // listings use the summary
+    assertEquals("Title bees", bees.getTitle());
+    assertEquals("http://ipt.gbif.org/bees.png", bees.getLogoUrl());
+    assertFalse(bees.isEmlLoaded());
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  public void testDeferredLoaded() {
+    EmlCache cache = new EmlCache(1, loader);
+    Resource ants = resource("ants");
+    cache.add(ants);
+    Resource bees = new Resource();
+    bees.setShortname("bees");
+    cache.addDeferred(bees, "Title bees", null);
+    assertEquals(1, cache.size());
+    assertEquals("Title bees", bees.getTitle());
+    assertEquals(0, loads.get());
+
+    // only loading an EML holds it, releasing the one used least recently
+    assertEquals("Saved bees", bees.getEml().getTitle());
+    assertEquals(1, loads.get());
+    assertEquals(1, cache.size());
+    assertFalse(ants.isEmlLoaded());
+    assertTrue(bees.isEmlLoaded());
+  }
+
+  @Test
+  public void testReleasedInUse() {
+    EmlCache cache = new EmlCache(1, loader);
+    Resource ants = resource("ants");
+    cache.add(ants);
+    Eml inUse = ants.getEml();
+    cache.add(resource("bees"));
+    assertFalse(ants.isEmlLoaded());
+
+    // as long as the EML released is in use, changes made to it are kept
+    inUse.setTitle("Changed");
+    assertSame(inUse, ants.getEml());
+    assertEquals("Changed", ants.getTitle());
+    assertEquals(0, loads.get());
+  }
+
+  @Test
+  public void testReload() throws Exception {
+    EmlCache cache = new EmlCache(1, loader);
+    Resource ants = resource("ants");
+    cache.add(ants);
+    // replaced by an EML not used anywhere else
+    ants.setEml(new Eml());
+    cache.add(resource("bees"));
+    assertFalse(ants.isEmlLoaded());
+
+    // once garbage collected, the EML is loaded again
+    for (int i = 0; i < 3; i++) {
+      System.gc();
+      Thread.sleep(10);
+    }
+    Eml reloaded = ants.getEml();
+    assertEquals(1, loads.get());
+    assertEquals("Saved ants", reloaded.getTitle());
+    assertTrue(ants.isEmlLoaded());
+    assertSame(reloaded, ants.getEml());
+    assertEquals(1, loads.get());
+  }
+}
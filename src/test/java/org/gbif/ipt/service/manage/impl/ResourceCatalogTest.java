@@ -0,0 +1,107 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.model.Organisation;
+import org.gbif.ipt.model.Resource;
+import org.gbif.ipt.model.User;
+import org.gbif.ipt.model.voc.PublicationStatus;
+
+import java.util.Date;
+import java.util.List;
+import java.util.UUID;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceCatalogTest {
+
+  private static Resource resource(String shortname, PublicationStatus status, long modified) {
+    Resource r = new Resource();
+    r.setShortname(shortname);
+    r.setStatus(status);
+    r.setModified(new Date(modified));
+    return r;
+  }
+
+  private static User user(String email) {
+    User u = new User();
+    u.setEmail(email);
+    return u;
+  }
+
+  @Test
+  public void testIndexes() {
+    ResourceCatalog catalog = new ResourceCatalog();
+    Resource bees = resource("bees", PublicationStatus.PUBLIC, 2000);
+    Resource ants = resource("Ants", PublicationStatus.PRIVATE, 3000);
+    Resource wasps = resource("wasps", PublicationStatus.REGISTERED, 1000);
+    User creator = user("creator@gbif.org");
+    User manager = user("manager@gbif.org");
+    bees.setCreator(creator);
+    ants.setCreator(creator);
+    ants.addManager(manager);
+    wasps.addManager(manager);
+    Organisation organisation = new Organisation();
+    organisation.setKey(UUID.randomUUID().toString());
+    wasps.setOrganisation(organisation);
+    catalog.add(bees);
+    catalog.add(ants);
+    catalog.add(wasps);
+
+    assertSame(ants, catalog.get("ANTS"));
+    assertTrue(catalog.contains("Bees"));
+    assertEquals(3, catalog.list().size());
+    assertSame(ants, catalog.list().get(0));
+    assertEquals(1, catalog.list(PublicationStatus.PUBLIC).size());
+    assertTrue(catalog.list(PublicationStatus.DELETED).isEmpty());
+    assertEquals(2, catalog.listByUser(creator).size());
+    List<Resource> managed = catalog.listByUser(manager);
+    assertEquals(2, managed.size());
+    assertSame(ants, managed.get(0));
+    assertSame(wasps, managed.get(1));
+    assertEquals(1, catalog.list(organisation).size());
+    // private resources are left out, most recently modified first
+    List<Resource> latest = catalog.latest();
+    assertEquals(2, latest.size());
+    assertSame(bees, latest.get(0));
+    assertSame(wasps, latest.get(1));
+
+    // lists are shared until something changes
+    assertSame(catalog.list(), catalog.list());
+    List<Resource> all = catalog.list();
+    // changes to the fields resources are listed by show up right away
+    ants.setStatus(PublicationStatus.PUBLIC);
+    assertSame(all, catalog.list());
+    assertEquals(3, catalog.latest().size());
+    assertSame(ants, catalog.latest().get(0));
+    assertEquals(2, catalog.list(PublicationStatus.PUBLIC).size());
+    wasps.setModified(new Date(4000));
+    assertSame(wasps, catalog.latest().get(0));
+    bees.addManager(manager);
+    assertEquals(3, catalog.listByUser(manager).size());
+    wasps.removeManager(manager);
+    assertEquals(2, catalog.listByUser(manager).size());
+    assertTrue(catalog.listPublishedPublicVersions().isEmpty());
+    wasps.setKey(UUID.randomUUID());
+    assertSame(wasps, catalog.listPublishedPublicVersions().get(0));
+
+    catalog.remove("BEES");
+    assertNull(catalog.get("bees"));
+    assertFalse(catalog.listByUser(creator).contains(bees));
+    assertEquals(2, catalog.list().size());
+    // removed resources are not listed again when they change
+    bees.setStatus(PublicationStatus.REGISTERED);
+    assertEquals(1, catalog.list(PublicationStatus.REGISTERED).size());
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testImmutable() {
+    ResourceCatalog catalog = new ResourceCatalog();
+    catalog.add(resource("bees", PublicationStatus.PUBLIC, 0));
+    catalog.list().clear();
+  }
+}
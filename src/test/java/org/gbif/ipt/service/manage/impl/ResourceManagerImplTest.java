@@ -14,6 +14,7 @@
 package org.gbif.ipt.service.manage.impl;
 
 import org.gbif.api.model.common.DOI;
+import org.gbif.dwc.terms.DwcTerm;
 import org.gbif.dwca.io.Archive;
 import org.gbif.dwca.io.ArchiveFactory;
 import org.gbif.dwca.io.UnsupportedArchiveException;
@@ -30,6 +31,7 @@ import org.gbif.ipt.model.Extension;
 import org.gbif.ipt.model.ExtensionMapping;
 import org.gbif.ipt.model.Ipt;
 import org.gbif.ipt.model.Organisation;
+import org.gbif.ipt.model.PropertyMapping;
 import org.gbif.ipt.model.Resource;
 import org.gbif.ipt.model.SqlSource;
 import org.gbif.ipt.model.TextFileSource;
@@ -63,7 +65,10 @@ import org.gbif.ipt.service.manage.SourceManager;
 import org.gbif.ipt.service.registry.RegistryManager;
 import org.gbif.ipt.struts2.SimpleTextProvider;
 import org.gbif.ipt.task.Eml2Rtf;
+import org.gbif.ipt.task.GenerateDwca;
 import org.gbif.ipt.task.GenerateDwcaFactory;
+import org.gbif.ipt.task.PublishingQueue;
+import org.gbif.ipt.task.ReportHandler;
 import org.gbif.ipt.utils.DOIUtils;
 import org.gbif.ipt.utils.ResourceUtils;
 import org.gbif.metadata.eml.Eml;
@@ -80,7 +85,9 @@ import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeSet;
 import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.Future;
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.parsers.SAXParserFactory;
@@ -97,6 +104,8 @@ import org.apache.http.impl.client.DefaultHttpClient;
 import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Matchers;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 import org.xml.sax.SAXException;
 
 import static org.junit.Assert.assertEquals;
@@ -1171,6 +1180,53 @@ public class ResourceManagerImplTest {
     assertTrue(resourceManager.hasMaxProcessFailures(resource));
   }
 
+  /**
+   * An auto-publication that gets cancelled is scheduled again, as it never finishes.
+   */
+  @Test
+  public void testCancelAutoPublication() throws Exception {
+    Resource resource = getNonRegisteredMetadataOnlyResource();
+    ResourceManagerImpl resourceManager = getResourceManagerImpl();
+    resourceManager.save(resource);
+
+    // map some data, so that publishing generates a DwC-A
+    Extension core = mock(Extension.class);
+    when(core.isCore()).thenReturn(true);
+    when(core.getRowType()).thenReturn(Constants.DWC_ROWTYPE_OCCURRENCE);
+    ExtensionMapping mapping = new ExtensionMapping();
+    mapping.setExtension(core);
+    PropertyMapping field = new PropertyMapping();
+    field.setTerm(DwcTerm.scientificName);
+    mapping.setFields(new TreeSet<PropertyMapping>(Lists.newArrayList(field)));
+    resource.addMapping(mapping);
+    assertTrue(resource.hasMappedData());
+
+    // DwC-A generation runs until cancelled
+    final CountDownLatch started = new CountDownLatch(1);
+    GenerateDwca worker = mock(GenerateDwca.class);
+    when(worker.call()).thenAnswer(new Answer<Integer>() {
+      public Integer answer(InvocationOnMock invocation) throws InterruptedException {
+        started.countDown();
+        new CountDownLatch(1).await();
+        return 0;
+      }
+    });
+    when(mockDwcaFactory.create(any(Resource.class), any(ReportHandler.class))).thenReturn(worker);
+
+    // the monitor takes the resource off the schedule once due, and publishes it
+    Date due = new Date(System.currentTimeMillis() - 1000);
+    resource.setNextPublished(due);
+    resourceManager.getPublishingSchedule().unschedule(RESOURCE_SHORTNAME);
+    assertTrue(resourceManager
+      .publish(resource, BigDecimal.valueOf(3.1), null, PublishingQueue.Priority.SCHEDULED));
+    started.await();
+    assertNull(resourceManager.getPublishingSchedule().getDue(RESOURCE_SHORTNAME));
+
+    assertTrue(resourceManager.cancelPublishing(RESOURCE_SHORTNAME, baseAction));
+    assertFalse(resourceManager.isLocked(RESOURCE_SHORTNAME));
+    assertEquals(due, resourceManager.getPublishingSchedule().getDue(RESOURCE_SHORTNAME));
+  }
+
   @Test(expected = PublicationException.class)
   public void testPublishNonRegisteredMetadataOnlyResourceFailure()
     throws ParserConfigurationException, SAXException, IOException, AlreadyExistingException, ImportException,
@@ -0,0 +1,69 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.io.File;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ResourceSnapshotTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File write(String name, String content, long modified) throws Exception {
+    File file = new File(folder.getRoot(), name);
+    Files.write(content, file, Charsets.UTF_8);
+    assertTrue(file.setLastModified(modified));
+    return file;
+  }
+
+  @Test
+  public void testRoundTrip() throws Exception {
+    long modified = (System.currentTimeMillis() / 1000 - 60) * 1000;
+    File cfg = write("resource.xml", "<resource/>", modified);
+    File eml = write("eml.xml", "<eml/>", modified);
+    File missingEml = new File(folder.getRoot(), "missing.xml");
+    ResourceSnapshot snapshot = new ResourceSnapshot();
+    snapshot.put("bees", new ResourceSnapshot.Entry(cfg, eml).loaded("<resource>\u00e9</resource>", "Bees", null));
+    snapshot.put("ants", new ResourceSnapshot.Entry(cfg, missingEml).loaded("<resource/>", null, "http://logo"));
+    // changed too recently to be told apart from a later change
+    File recent = write("recent.xml", "<resource/>", System.currentTimeMillis());
+    snapshot.put("wasps", new ResourceSnapshot.Entry(recent, eml).loaded("<resource/>", null, null));
+    assertEquals(2, snapshot.size());
+
+    File file = new File(folder.getRoot(), "resources.snapshot");
+    snapshot.write(file);
+    ResourceSnapshot read = ResourceSnapshot.read(file);
+    assertEquals(2, read.size());
+    ResourceSnapshot.Entry bees = read.get("bees");
+    assertEquals("<resource>\u00e9</resource>", bees.getXml());
+    assertEquals("Bees", bees.getTitle());
+    assertNull(bees.getLogoUrl());
+    assertTrue(bees.isCurrent(cfg, eml));
+    assertEquals("http://logo", read.get("ants").getLogoUrl());
+    assertTrue(read.get("ants").isCurrent(cfg, missingEml));
+    assertNull(read.get("wasps"));
+
+    // any change to the files is noticed
+    Files.write("<eml>changed</eml>", eml, Charsets.UTF_8);
+    assertTrue(eml.setLastModified(modified));
+    assertFalse(bees.isCurrent(cfg, eml));
+    assertTrue(cfg.setLastModified(modified + 1000));
+    assertFalse(read.get("ants").isCurrent(cfg, missingEml));
+  }
+
+  @Test
+  public void testUnreadable() throws Exception {
+    File file = write("resources.snapshot", "not a snapshot", System.currentTimeMillis());
+    assertEquals(0, ResourceSnapshot.read(file).size());
+    assertEquals(0, ResourceSnapshot.read(new File(folder.getRoot(), "missing.snapshot")).size());
+  }
+}
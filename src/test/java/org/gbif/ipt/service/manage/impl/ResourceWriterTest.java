@@ -0,0 +1,92 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ResourceWriterTest {
+
+  private final List<String> written = new CopyOnWriteArrayList<String>();
+
+  private Runnable write(final String content) {
+    return new Runnable() {
+      public void run() {
+        written.add(content);
+      }
+    };
+  }
+
+  @Test
+  public void testImmediate() {
+    ResourceWriter writer = new ResourceWriter(0);
+    writer.write("bees", "eml.xml", write("first"));
+    writer.write("bees", "eml.xml", write("second"));
+    assertEquals(2, written.size());
+    assertFalse(writer.isPending("bees", "eml.xml"));
+  }
+
+  @Test
+  public void testCoalesced() throws Exception {
+    ResourceWriter writer = new ResourceWriter(100);
+    writer.write("bees", "eml.xml", write("first"));
+    writer.write("Bees", "eml.xml", write("second"));
+    writer.write("bees", "resource.xml", write("config"));
+    assertTrue(writer.isPending("bees", "eml.xml"));
+    assertTrue(written.isEmpty());
+
+    // only the last save of each file gets written
+    for (int i = 0; i < 50 && written.size() < 2; i++) {
+      Thread.sleep(20);
+    }
+    Thread.sleep(100);
+    assertEquals(2, written.size());
+    assertTrue(written.contains("second"));
+    assertTrue(written.contains("config"));
+    assertFalse(writer.isPending("bees", "eml.xml"));
+  }
+
+  @Test
+  public void testFlushAndDiscard() {
+    ResourceWriter writer = new ResourceWriter(60000);
+    writer.write("bees", "eml.xml", write("bees"));
+    writer.write("ants", "eml.xml", write("ants"));
+    writer.write("wasps", "eml.xml", write("wasps"));
+
+    writer.flush("BEES");
+    assertEquals(1, written.size());
+    assertEquals("bees", written.get(0));
+    writer.discard("ants");
+    assertFalse(writer.isPending("ants", "eml.xml"));
+
+    // writes still pending are done when stopped, later ones immediately
+    writer.shutdown();
+    assertEquals(2, written.size());
+    assertEquals("wasps", written.get(1));
+    writer.write("ants", "eml.xml", write("stopped"));
+    assertEquals("stopped", written.get(2));
+  }
+
+  @Test
+  public void testFailedFlushKept() {
+    ResourceWriter writer = new ResourceWriter(60000);
+    writer.write("bees", "eml.xml", new Runnable() {
+      public void run() {
+        throw new IllegalStateException("disk full");
+      }
+    });
+    try {
+      writer.flush("bees");
+      fail("Failed write not thrown");
+    } catch (IllegalStateException e) {
+      // expected
+    }
+    // tried again later
+    assertTrue(writer.isPending("bees", "eml.xml"));
+  }
+}
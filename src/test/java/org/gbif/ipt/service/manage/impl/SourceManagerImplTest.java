@@ -2,6 +2,7 @@ package org.gbif.ipt.service.manage.impl;
 
 import org.gbif.ipt.config.AppConfig;
 import org.gbif.ipt.config.DataDir;
+import org.gbif.ipt.config.JdbcSupport;
 import org.gbif.ipt.model.FileSource;
 import org.gbif.ipt.model.Resource;
 import org.gbif.ipt.model.Source;
@@ -10,28 +11,97 @@ import org.gbif.ipt.model.TextFileSource;
 import org.gbif.ipt.service.AlreadyExistingException;
 import org.gbif.ipt.service.ImportException;
 import org.gbif.ipt.service.InvalidFilenameException;
+import org.gbif.utils.file.ClosableReportingIterator;
 import org.gbif.utils.file.FileUtils;
 
 import java.io.File;
 import java.io.IOException;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.DriverManager;
+import java.sql.DriverPropertyInfo;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.SQLFeatureNotSupportedException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
 
+import com.google.common.collect.ImmutableSet;
 import org.junit.Before;
 import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyBoolean;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
 public class SourceManagerImplTest {
 
+  /**
+   * Connects to jdbc:mock: URLs, handing out the connection set by a test.
+   */
+  public static class MockDriver implements Driver {
+
+    private static Connection connection;
+
+    static {
+      try {
+        DriverManager.registerDriver(new MockDriver());
+      } catch (SQLException e) {
+        throw new IllegalStateException(e);
+      }
+    }
+
+    public Connection connect(String url, Properties info) {
+      return acceptsURL(url) ? connection : null;
+    }
+
+    public boolean acceptsURL(String url) {
+      return url.startsWith("jdbc:mock:");
+    }
+
+    public DriverPropertyInfo[] getPropertyInfo(String url, Properties info) {
+      return new DriverPropertyInfo[0];
+    }
+
+    public int getMajorVersion() {
+      return 1;
+    }
+
+    public int getMinorVersion() {
+      return 0;
+    }
+
+    public boolean jdbcCompliant() {
+      return false;
+    }
+
+    public java.util.logging.Logger getParentLogger() throws SQLFeatureNotSupportedException {
+      throw new SQLFeatureNotSupportedException();
+    }
+  }
+
   private SourceManagerImpl manager;
   private Resource resource;
   private TextFileSource src1;
   private SqlSource src2;
+  private File profileFile;
 
   @Before
   public void setup() throws IOException {
@@ -40,6 +110,8 @@ public class SourceManagerImplTest {
     DataDir mockDataDir = mock(DataDir.class);
     when(mockDataDir.sourceFile(any(Resource.class), any(FileSource.class))).thenReturn(ddFile);
     when(mockDataDir.sourceLogFile(anyString(), anyString())).thenReturn(logFile);
+    profileFile = File.createTempFile("distribution", "profile");
+    when(mockDataDir.sourceProfileFile(anyString(), anyString())).thenReturn(profileFile);
     // create instance of SourceManager, using mocked AppConfig and DataDir
     manager = new SourceManagerImpl(mock(AppConfig.class), mockDataDir);
     // create test Resource
@@ -120,6 +192,24 @@ public class SourceManagerImplTest {
     assertEquals("\t", ((TextFileSource) fileSource).getFieldsTerminatedBy());
   }
 
+  @Test
+  public void testProfile() throws Exception {
+    File srcFile = FileUtils.getClasspathFile("data/distribution.txt");
+    TextFileSource src = (TextFileSource) manager.add(resource, srcFile, srcFile.getName());
+    assertTrue(profileFile.length() > 0);
+
+    List<String[]> peek = manager.peek(src, 5);
+    assertEquals(5, peek.size());
+    assertEquals(3, manager.columns(src).size());
+    Set<String> values = manager.inspectColumn(src, 0, 1000, 10000);
+    assertFalse(values.isEmpty());
+
+    // reading the source file again gives the same answers
+    assertTrue(profileFile.delete());
+    assertEquals(values, manager.inspectColumn(src, 0, 1000, 10000));
+    assertArrayEquals(peek.get(0), manager.peek(src, 1).get(0));
+  }
+
   @Test
   public void testAnalyzeEmptyFile() throws ImportException, IOException, InvalidFilenameException {
     // analyze individual source file absolutely no data inside at all
@@ -142,6 +232,90 @@ public class SourceManagerImplTest {
     assertEquals("\t", ((TextFileSource) fileSource).getFieldsTerminatedBy());
   }
 
+  /**
+   * A database rejecting the wrapped sql, like SQL Server rejects ORDER BY in a derived table, gets the sql unchanged.
+   */
+  private SqlSource orderedSource(String keyColumn) throws Exception {
+    ResultSetMetaData meta = mock(ResultSetMetaData.class);
+    when(meta.getColumnCount()).thenReturn(2);
+    when(meta.getColumnLabel(1)).thenReturn("id");
+    when(meta.getColumnLabel(2)).thenReturn("scientificName");
+    when(meta.getColumnType(anyInt())).thenReturn(Types.VARCHAR);
+    final ResultSetMetaData rowsMeta = meta;
+    final String[][] rows = {{"1", "Puma concolor"}, {"2", "Panthera onca"}};
+    Statement stmt = mock(Statement.class);
+    when(stmt.executeQuery(anyString())).thenAnswer(new Answer<ResultSet>() {
+      public ResultSet answer(InvocationOnMock invocation) throws SQLException {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.getMetaData()).thenReturn(rowsMeta);
+        final int[] row = {-1};
+        when(rs.next()).thenAnswer(new Answer<Boolean>() {
+          public Boolean answer(InvocationOnMock invocation) {
+            return ++row[0] < rows.length;
+          }
+        });
+        when(rs.getString(anyInt())).thenAnswer(new Answer<String>() {
+          public String answer(InvocationOnMock invocation) {
+            return rows[row[0]][(Integer) invocation.getArguments()[0] - 1];
+          }
+        });
+        return rs;
+      }
+    });
+    PreparedStatement wrapped = mock(PreparedStatement.class);
+    when(wrapped.executeQuery())
+      .thenThrow(new SQLException("The ORDER BY clause is invalid in views, inline functions, derived tables"));
+    DatabaseMetaData dbMeta = mock(DatabaseMetaData.class);
+    when(dbMeta.getIdentifierQuoteString()).thenReturn("\"");
+    Connection con = mock(Connection.class);
+    when(con.createStatement(anyInt(), anyInt())).thenReturn(stmt);
+    when(con.prepareStatement(anyString(), anyInt(), anyInt())).thenReturn(wrapped);
+    when(con.getMetaData()).thenReturn(dbMeta);
+    MockDriver.connection = con;
+
+    JdbcSupport.JdbcInfo rdbms = mock(JdbcSupport.JdbcInfo.class);
+    when(rdbms.getDriver()).thenReturn(MockDriver.class.getName());
+    when(rdbms.isProjectionSupported()).thenReturn(true);
+    when(rdbms.selectList(anyListOf(String.class), anyString())).thenCallRealMethod();
+    when(rdbms.addProjection(anyString(), anyString(), anyString())).thenCallRealMethod();
+    when(rdbms.addKeyPage(anyString(), anyString(), anyBoolean(), anyInt(), anyString(), anyString()))
+      .thenCallRealMethod();
+    SqlSource source = mock(SqlSource.class);
+    when(source.getName()).thenReturn("specimen");
+    when(source.getSql()).thenReturn("SELECT id, scientificName FROM specimen ORDER BY id");
+    when(source.getSqlLimited(1)).thenReturn("SELECT TOP 1 id, scientificName FROM specimen ORDER BY id");
+    when(source.getHost()).thenReturn("localhost");
+    when(source.getJdbcUrl()).thenReturn("jdbc:mock:specimen");
+    when(source.getJdbcDriver()).thenReturn(MockDriver.class.getName());
+    when(source.getKeyColumn()).thenReturn(keyColumn);
+    when(source.getRdbms()).thenReturn(rdbms);
+    return source;
+  }
+
+  private void assertReadUnwrapped(SqlSource source) throws Exception {
+    ClosableReportingIterator<String[]> iter = manager.rowIterator(source, ImmutableSet.of(1));
+    try {
+      assertTrue(iter.hasNext());
+      String[] row = iter.next();
+      assertNull(row[0]);
+      assertEquals("Puma concolor", row[1]);
+      assertEquals("Panthera onca", iter.next()[1]);
+      assertFalse(iter.hasNext());
+    } finally {
+      iter.close();
+    }
+  }
+
+  @Test
+  public void testProjectionRejected() throws Exception {
+    assertReadUnwrapped(orderedSource(null));
+  }
+
+  @Test
+  public void testKeyPagesRejected() throws Exception {
+    assertReadUnwrapped(orderedSource("id"));
+  }
+
   @Test
   public void testAcceptableFileName() {
     // accepted names
@@ -0,0 +1,101 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SqlConnectionPoolTest {
+
+  private final List<Connection> opened = new ArrayList<Connection>();
+  private final SqlConnectionPool.ConnectionFactory factory = new SqlConnectionPool.ConnectionFactory() {
+    public Connection connect() throws SQLException {
+      Connection con = mock(Connection.class);
+      when(con.isValid(anyInt())).thenReturn(true);
+      when(con.getAutoCommit()).thenReturn(true);
+      opened.add(con);
+      return con;
+    }
+  };
+
+  @Before
+  public void setup() {
+    opened.clear();
+  }
+
+  @Test
+  public void testReuse() throws Exception {
+    SqlConnectionPool pool = new SqlConnectionPool("test", factory, 2, 60000, 100);
+    Connection con = pool.borrow();
+    con.close();
+    assertTrue(con.isClosed());
+    // closing twice must not return it twice
+    con.close();
+
+    pool.borrow();
+    pool.borrow();
+    assertEquals(2, opened.size());
+    verify(opened.get(0), never()).close();
+  }
+
+  @Test
+  public void testBounded() throws Exception {
+    SqlConnectionPool pool = new SqlConnectionPool("test", factory, 1, 60000, 100);
+    Connection con = pool.borrow();
+    try {
+      pool.borrow();
+      fail("Pool must not hand out more connections than its maximum size");
+    } catch (SQLException e) {
+      // expected
+    }
+    con.close();
+    pool.borrow();
+    assertEquals(1, opened.size());
+  }
+
+  @Test
+  public void testInvalidConnectionReplaced() throws Exception {
+    SqlConnectionPool pool = new SqlConnectionPool("test", factory, 1, 60000, 100);
+    pool.borrow().close();
+    when(opened.get(0).isValid(anyInt())).thenReturn(false);
+    pool.borrow();
+    assertEquals(2, opened.size());
+    verify(opened.get(0)).close();
+  }
+
+  @Test
+  public void testEvictIdleAndClose() throws Exception {
+    SqlConnectionPool pool = new SqlConnectionPool("test", factory, 2, 0, 100);
+    pool.borrow().close();
+    Thread.sleep(5);
+    pool.evictIdle();
+    verify(opened.get(0)).close();
+    assertTrue(pool.isEmpty());
+
+    Connection con = pool.borrow();
+    assertFalse(pool.isEmpty());
+    pool.close();
+    // connections in use get closed once returned
+    con.close();
+    verify(opened.get(1)).close();
+    try {
+      pool.borrow();
+      fail("Closed pool must not hand out connections");
+    } catch (SQLException e) {
+      // expected
+    }
+  }
+}
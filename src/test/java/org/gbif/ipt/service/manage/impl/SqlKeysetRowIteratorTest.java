@@ -0,0 +1,162 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.config.JdbcSupport;
+import org.gbif.ipt.model.SqlSource;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.invocation.InvocationOnMock;
+import org.mockito.stubbing.Answer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class SqlKeysetRowIteratorTest {
+
+  private SqlSource source;
+  private SqlConnectionPool pool;
+  private Connection con;
+
+  @Before
+  public void setup() throws Exception {
+    JdbcSupport.JdbcInfo rdbms = mock(JdbcSupport.JdbcInfo.class);
+    when(rdbms.addKeyPage(anyString(), anyString(), eq(false), anyInt(), any(String.class), any(String.class)))
+      .thenReturn("first");
+    when(rdbms.addKeyPage(anyString(), anyString(), eq(true), anyInt(), any(String.class), any(String.class)))
+      .thenReturn("after");
+    when(rdbms.addNullKey(anyString(), anyString(), any(String.class), any(String.class))).thenReturn("nulls");
+    source = mock(SqlSource.class);
+    when(source.getName()).thenReturn("specimen");
+    when(source.getSql()).thenReturn("select name, id from specimen");
+    when(source.getKeyColumn()).thenReturn("id");
+    when(source.getKeyChunkSize()).thenReturn(2);
+    when(source.getRdbms()).thenReturn(rdbms);
+    con = mock(Connection.class);
+    pool = mock(SqlConnectionPool.class);
+    when(pool.borrow()).thenReturn(con);
+  }
+
+  /**
+   * @param rows rows of a name and a key column, the key selected again as last column
+   */
+  private PreparedStatement statement(String sql, final String[]... rows) throws Exception {
+    ResultSetMetaData meta = mock(ResultSetMetaData.class);
+    when(meta.getColumnCount()).thenReturn(3);
+    when(meta.getColumnType(anyInt())).thenReturn(Types.VARCHAR);
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getMetaData()).thenReturn(meta);
+    final int[] row = {-1};
+    when(rs.next()).thenAnswer(new Answer<Boolean>() {
+      public Boolean answer(InvocationOnMock invocation) {
+        return ++row[0] < rows.length;
+      }
+    });
+    Answer<String> value = new Answer<String>() {
+      public String answer(InvocationOnMock invocation) {
+        int column = (Integer) invocation.getArguments()[0];
+        return rows[row[0]][Math.min(column, 2) - 1];
+      }
+    };
+    when(rs.getString(anyInt())).thenAnswer(value);
+    when(rs.getObject(anyInt())).thenAnswer(value);
+    PreparedStatement stmt = mock(PreparedStatement.class);
+    when(stmt.executeQuery()).thenReturn(rs);
+    when(con.prepareStatement(eq(sql), anyInt(), anyInt())).thenReturn(stmt);
+    return stmt;
+  }
+
+  private static List<String> names(SqlKeysetRowIterator iter) {
+    List<String> names = new ArrayList<String>();
+    while (iter.hasNext()) {
+      names.add(iter.next()[0]);
+    }
+    return names;
+  }
+
+  @Test
+  public void testPages() throws Exception {
+    // one row more than a page is selected
+    statement("first", new String[] {"a", "1"}, new String[] {"b", "5"}, new String[] {"c", "9"});
+    PreparedStatement after = statement("after", new String[] {"c", "9"});
+    statement("nulls", new String[] {"d", null});
+
+    SqlKeysetRowIterator iter = new SqlKeysetRowIterator(source, pool, null, null);
+    List<String> names = names(iter);
+    assertEquals(4, names.size());
+    assertEquals("abcd", names.get(0) + names.get(1) + names.get(2) + names.get(3));
+    // the next page starts after the last key of the page before
+    verify(after).setObject(1, "5");
+    iter.close();
+    verify(con, timeout(1000)).close();
+  }
+
+  @Test
+  public void testFailedPage() throws Exception {
+    statement("first", new String[] {"a", "1"}, new String[] {"b", "2"}, new String[] {"c", "3"});
+    PreparedStatement after = mock(PreparedStatement.class);
+    when(after.executeQuery()).thenThrow(new SQLException("Connection reset"));
+    when(con.prepareStatement(eq("after"), anyInt(), anyInt())).thenReturn(after);
+
+    SqlKeysetRowIterator iter = new SqlKeysetRowIterator(source, pool, null, null);
+    assertEquals("a", iter.next()[0]);
+    assertEquals("b", iter.next()[0]);
+    try {
+      iter.hasNext();
+      fail("A page failing must not look like the end of the rows");
+    } catch (IllegalStateException e) {
+      assertTrue(e.getMessage().contains("Connection reset"));
+    }
+    assertEquals("Connection reset", iter.getErrorMessage());
+    assertFalse(iter.hasNext());
+    verify(con, timeout(1000)).close();
+  }
+
+  @Test
+  public void testCloseWhileReading() throws Exception {
+    PreparedStatement first = statement("first", new String[] {"a", "1"});
+    final ResultSet rs = first.executeQuery();
+    final CountDownLatch read = new CountDownLatch(1);
+    when(first.executeQuery()).thenAnswer(new Answer<ResultSet>() {
+      public ResultSet answer(InvocationOnMock invocation) throws InterruptedException {
+        read.await();
+        return rs;
+      }
+    });
+
+    SqlKeysetRowIterator iter = new SqlKeysetRowIterator(source, pool, null, null);
+    iter.close();
+    assertFalse(iter.hasNext());
+    // the connection is still used by the page read ahead
+    verify(con, never()).close();
+    read.countDown();
+    verify(con, timeout(1000)).close();
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testKeyNotUnique() throws Exception {
+    // rows sharing the last key of a page would be skipped by the next page
+    statement("first", new String[] {"a", "1"}, new String[] {"b", "2"}, new String[] {"c", "2"});
+    names(new SqlKeysetRowIterator(source, pool, null, null));
+  }
+}
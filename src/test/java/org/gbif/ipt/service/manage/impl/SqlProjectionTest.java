@@ -0,0 +1,181 @@
+package org.gbif.ipt.service.manage.impl;
+
+import org.gbif.ipt.config.JdbcSupport;
+import org.gbif.ipt.model.RecordFilter;
+import org.gbif.ipt.model.SqlSource;
+
+import java.math.BigDecimal;
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.Matchers.anyInt;
+import static org.mockito.Matchers.anyListOf;
+import static org.mockito.Matchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SqlProjectionTest {
+
+  private static final List<String> COLUMNS = Arrays.asList("id", "basis", "year");
+  private static final List<Integer> TYPES = Arrays.asList(Types.INTEGER, Types.VARCHAR, Types.INTEGER);
+
+  private SqlSource source() {
+    JdbcSupport.JdbcInfo rdbms = mock(JdbcSupport.JdbcInfo.class);
+    when(rdbms.selectList(anyListOf(String.class), anyString())).thenCallRealMethod();
+    SqlSource source = mock(SqlSource.class);
+    when(source.getName()).thenReturn("specimen");
+    when(source.getSqlLimited(1)).thenReturn("select * from specimen limit 1");
+    when(source.getRdbms()).thenReturn(rdbms);
+    return source;
+  }
+
+  private Connection connection(List<String> labels) throws Exception {
+    ResultSetMetaData meta = mock(ResultSetMetaData.class);
+    when(meta.getColumnCount()).thenReturn(labels.size());
+    for (int i = 0; i < labels.size(); i++) {
+      when(meta.getColumnLabel(i + 1)).thenReturn(labels.get(i));
+    }
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getMetaData()).thenReturn(meta);
+    Statement stmt = mock(Statement.class);
+    when(stmt.executeQuery(anyString())).thenReturn(rs);
+    DatabaseMetaData dbMeta = mock(DatabaseMetaData.class);
+    when(dbMeta.getIdentifierQuoteString()).thenReturn("\"");
+    Connection con = mock(Connection.class);
+    when(con.createStatement(anyInt(), anyInt())).thenReturn(stmt);
+    when(con.getMetaData()).thenReturn(dbMeta);
+    return con;
+  }
+
+  private SqlValueReader strings(int columns) throws Exception {
+    ResultSetMetaData meta = mock(ResultSetMetaData.class);
+    when(meta.getColumnCount()).thenReturn(columns);
+    for (int i = 1; i <= columns; i++) {
+      when(meta.getColumnType(i)).thenReturn(Types.VARCHAR);
+    }
+    return new SqlValueReader(meta);
+  }
+
+  @Test
+  public void testPushDown() throws Exception {
+    Connection con = connection(Arrays.asList("id", "genus", "scientificName", "country"));
+    // columns beyond the last one are ignored
+    SqlProjection projection = SqlProjection.of(source(), con, ImmutableSet.of(2, 0, 9), null, true);
+    assertEquals(4, projection.getWidth());
+    assertEquals("\"id\", \"scientificName\"", projection.getSelectList());
+
+    // the wrapped sql only returns the projected columns
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getString(1)).thenReturn("1");
+    when(rs.getString(2)).thenReturn("Puma concolor");
+    String[] row = new String[projection.getWidth()];
+    projection.read(rs, strings(2), row);
+    assertArrayEquals(new String[] {"1", null, "Puma concolor", null}, row);
+  }
+
+  @Test
+  public void testNoPushDown() throws Exception {
+    // labels are ambiguous, so all columns are selected
+    Connection con = connection(Arrays.asList("id", "name", "NAME"));
+    SqlProjection projection = SqlProjection.of(source(), con, ImmutableSet.of(2), null, true);
+    assertNull(projection.getSelectList());
+
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getString(1)).thenReturn("1");
+    when(rs.getString(3)).thenReturn("Puma concolor");
+    String[] row = new String[projection.getWidth()];
+    projection.read(rs, strings(3), row);
+    assertArrayEquals(new String[] {null, null, "Puma concolor"}, row);
+
+    // not pushed down if the database does not allow it
+    con = connection(Arrays.asList("id", "name"));
+    assertNull(SqlProjection.of(source(), con, ImmutableSet.of(1), null, false).getSelectList());
+  }
+
+  private RecordFilter filter(int column, RecordFilter.Comparator comparator, String param) {
+    RecordFilter filter = new RecordFilter();
+    filter.setColumn(column);
+    filter.setComparator(comparator);
+    filter.setParam(param);
+    filter.setFilterTime(RecordFilter.FilterTime.BeforeTranslation);
+    return filter;
+  }
+
+  private RecordFilter group(RecordFilter.Operator operator, RecordFilter... filters) {
+    RecordFilter group = new RecordFilter();
+    group.setOperator(operator);
+    group.setFilters(Arrays.asList(filters));
+    return group;
+  }
+
+  private String condition(RecordFilter filter, List<Object> params) {
+    return SqlProjection.condition(filter, COLUMNS, TYPES, params);
+  }
+
+  @Test
+  public void testCondition() {
+    List<Object> params = new ArrayList<Object>();
+    assertEquals("basis LIKE ? ESCAPE '!'", condition(filter(1, RecordFilter.Comparator.Equals, "10%_!"), params));
+    assertEquals(Collections.<Object>singletonList("%10!%!_!!%"), params);
+
+    params.clear();
+    assertEquals("year IS NOT NULL", condition(filter(2, RecordFilter.Comparator.IsNotNULL, ""), params));
+    assertEquals("year IS NULL", condition(filter(2, RecordFilter.Comparator.IsNULL, ""), params));
+    assertTrue(params.isEmpty());
+
+    // numbers rounding to the bound match too
+    assertEquals("year >= ?", condition(filter(2, RecordFilter.Comparator.GreaterOrEquals, "1900"), params));
+    assertTrue(((BigDecimal) params.get(0)).compareTo(new BigDecimal(1900)) < 0);
+
+    // cannot be expressed the same way for all databases
+    assertNull(condition(filter(1, RecordFilter.Comparator.IsNULL, ""), params));
+    assertNull(condition(filter(2, RecordFilter.Comparator.Equals, "1"), params));
+    assertNull(condition(filter(1, RecordFilter.Comparator.NotEquals, "a"), params));
+    assertNull(condition(filter(1, RecordFilter.Comparator.Matches, "a.*"), params));
+    assertNull(condition(filter(1, RecordFilter.Comparator.GreaterOrEquals, "1"), params));
+  }
+
+  @Test
+  public void testGroupCondition() {
+    List<Object> params = new ArrayList<Object>();
+    RecordFilter and = group(RecordFilter.Operator.AND, filter(2, RecordFilter.Comparator.IsNotNULL, ""),
+      filter(1, RecordFilter.Comparator.Matches, "Preserved.*"),
+      filter(1, RecordFilter.Comparator.In, "PreservedSpecimen|FossilSpecimen"));
+    // the regular expression is left out, as all conditions have to match anyway
+    assertEquals("(year IS NOT NULL) AND (basis LIKE ? ESCAPE '!' OR basis LIKE ? ESCAPE '!')",
+      condition(and, params));
+    assertEquals(2, params.size());
+
+    params.clear();
+    RecordFilter or = group(RecordFilter.Operator.OR, filter(2, RecordFilter.Comparator.IsNotNULL, ""),
+      filter(1, RecordFilter.Comparator.Matches, "Preserved.*"));
+    assertNull(condition(or, params));
+    assertTrue(params.isEmpty());
+  }
+
+  @Test
+  public void testFilterPushDown() throws Exception {
+    Connection con = connection(Arrays.asList("id", "basisOfRecord"));
+    SqlProjection projection =
+      SqlProjection.of(source(), con, null, filter(1, RecordFilter.Comparator.IsNotNULL, ""), true);
+    // all columns are selected, keeping their indexes
+    assertNull(projection.getSelectList());
+    assertTrue(projection.isFiltered());
+    assertEquals("\"basisOfRecord\" IS NOT NULL", projection.getCondition());
+  }
+}
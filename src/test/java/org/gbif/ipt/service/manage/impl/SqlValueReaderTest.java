@@ -0,0 +1,105 @@
+package org.gbif.ipt.service.manage.impl;
+
+import java.math.BigDecimal;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.Calendar;
+import java.util.GregorianCalendar;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class SqlValueReaderTest {
+
+  @Test
+  public void testRead() throws Exception {
+    ResultSetMetaData meta = mock(ResultSetMetaData.class);
+    when(meta.getColumnCount()).thenReturn(6);
+    when(meta.getColumnType(1)).thenReturn(Types.VARCHAR);
+    when(meta.getColumnType(2)).thenReturn(Types.INTEGER);
+    when(meta.getColumnType(3)).thenReturn(Types.DECIMAL);
+    when(meta.getColumnType(4)).thenReturn(Types.DOUBLE);
+    when(meta.getColumnType(5)).thenReturn(Types.DATE);
+    when(meta.getColumnType(6)).thenReturn(Types.TIMESTAMP);
+
+    Calendar cal = new GregorianCalendar(2015, Calendar.JUNE, 1, 10, 15, 30);
+    Timestamp ts = new Timestamp(cal.getTimeInMillis());
+
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getString(1)).thenReturn("Puma concolor");
+    when(rs.getLong(2)).thenReturn(12L);
+    when(rs.getBigDecimal(3)).thenReturn(new BigDecimal("1E-7"));
+    when(rs.getDouble(4)).thenReturn(1.0E10);
+    when(rs.getDate(5)).thenReturn(new java.sql.Date(cal.getTimeInMillis()));
+    when(rs.getTimestamp(6)).thenReturn(ts);
+
+    SqlValueReader reader = new SqlValueReader(meta);
+    assertEquals(6, reader.getColumnCount());
+    assertEquals("Puma concolor", reader.read(rs, 0));
+    assertEquals("12", reader.read(rs, 1));
+    assertEquals("0.0000001", reader.read(rs, 2));
+    assertEquals("10000000000", reader.read(rs, 3));
+    assertEquals("2015-06-01", reader.read(rs, 4));
+    assertEquals("2015-06-01T10:15:30", reader.read(rs, 5));
+
+    ts.setNanos(250000000);
+    assertEquals("2015-06-01T10:15:30.250", reader.read(rs, 5));
+  }
+
+  @Test
+  public void testReadAsBefore() throws Exception {
+    ResultSetMetaData meta = mock(ResultSetMetaData.class);
+    when(meta.getColumnCount()).thenReturn(5);
+    when(meta.getColumnType(1)).thenReturn(Types.BOOLEAN);
+    when(meta.getColumnType(2)).thenReturn(Types.REAL);
+    when(meta.getColumnType(3)).thenReturn(Types.BIGINT);
+    when(meta.getColumnType(4)).thenReturn(Types.TIMESTAMP);
+    when(meta.getColumnTypeName(4)).thenReturn("timestamptz");
+    when(meta.getColumnType(5)).thenReturn(Types.TIMESTAMP);
+    when(meta.getColumnTypeName(5)).thenReturn("TIMESTAMP WITH TIME ZONE");
+
+    ResultSet rs = mock(ResultSet.class);
+    // PostgreSQL booleans are written as t and f by the driver
+    when(rs.getString(1)).thenReturn("t");
+    when(rs.getBoolean(1)).thenReturn(true);
+    when(rs.getFloat(2)).thenReturn(0.1f);
+    when(rs.getDouble(2)).thenReturn((double) 0.1f);
+    // MySQL BIGINT UNSIGNED
+    when(rs.getBigDecimal(3)).thenReturn(new BigDecimal("18446744073709551615"));
+    when(rs.getLong(3)).thenReturn(-1L);
+    when(rs.getString(4)).thenReturn("2015-06-01 10:15:30+02");
+    when(rs.getString(5)).thenReturn("2015-06-01 10:15:30.0 -05:00");
+
+    SqlValueReader reader = new SqlValueReader(meta);
+    assertEquals("t", reader.read(rs, 0));
+    assertEquals("0.1", reader.read(rs, 1));
+    assertEquals("18446744073709551615", reader.read(rs, 2));
+    assertEquals("2015-06-01 10:15:30+02", reader.read(rs, 3));
+    assertEquals("2015-06-01 10:15:30.0 -05:00", reader.read(rs, 4));
+
+    when(rs.getFloat(2)).thenReturn(1.0E10f);
+    assertEquals("10000000000", reader.read(rs, 1));
+  }
+
+  @Test
+  public void testReadNull() throws Exception {
+    ResultSetMetaData meta = mock(ResultSetMetaData.class);
+    when(meta.getColumnCount()).thenReturn(2);
+    when(meta.getColumnType(1)).thenReturn(Types.BIGINT);
+    when(meta.getColumnType(2)).thenReturn(Types.TIMESTAMP);
+
+    ResultSet rs = mock(ResultSet.class);
+    when(rs.getBigDecimal(1)).thenReturn(null);
+    when(rs.wasNull()).thenReturn(true);
+
+    SqlValueReader reader = new SqlValueReader(meta);
+    assertNull(reader.read(rs, 0));
+    assertNull(reader.read(rs, 1));
+  }
+}
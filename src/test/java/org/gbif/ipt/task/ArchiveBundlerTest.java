@@ -0,0 +1,90 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Enumeration;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.ByteStreams;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class ArchiveBundlerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File file(String name, String content) throws IOException {
+    File file = new File(folder.getRoot(), name);
+    Files.write(content, file, Charsets.UTF_8);
+    return file;
+  }
+
+  @Test
+  public void testFinish() throws Exception {
+    File target = new File(folder.newFolder("dwca"), "dwca-1.0.zip");
+    Files.write("old archive", target, Charsets.UTF_8);
+    ArchiveBundler bundler = new ArchiveBundler(target, 1);
+    bundler.add(file("occurrence.txt", "id\tbasisOfRecord\n1\tPreservedSpecimen\n"));
+    bundler.add(file("eml.xml", "<eml/>"));
+    File part = new File(target.getParentFile(), "dwca-1.0.zip.part");
+    // the previous archive is only replaced once the new one is complete
+    assertTrue(part.exists());
+    assertEquals("old archive", Files.toString(target, Charsets.UTF_8));
+
+    assertEquals(target, bundler.finish());
+    assertFalse(part.exists());
+    ZipFile zip = new ZipFile(target);
+    try {
+      // entries come in the order files were added
+      Enumeration<? extends ZipEntry> entries = zip.entries();
+      ZipEntry entry = entries.nextElement();
+      assertEquals("occurrence.txt", entry.getName());
+      assertEquals("id\tbasisOfRecord\n1\tPreservedSpecimen\n",
+        new String(ByteStreams.toByteArray(zip.getInputStream(entry)), Charsets.UTF_8));
+      assertEquals("eml.xml", entries.nextElement().getName());
+      assertFalse(entries.hasMoreElements());
+    } finally {
+      zip.close();
+    }
+  }
+
+  @Test
+  public void testAbort() throws Exception {
+    File target = new File(folder.newFolder("dwca"), "dwca-1.0.zip");
+    Files.write("old archive", target, Charsets.UTF_8);
+    ArchiveBundler bundler = new ArchiveBundler(target, -1);
+    bundler.add(file("occurrence.txt", "id\n1\n"));
+    bundler.abort();
+    // the incomplete zip is deleted, the previous archive left untouched
+    assertFalse(new File(target.getParentFile(), "dwca-1.0.zip.part").exists());
+    assertEquals("old archive", Files.toString(target, Charsets.UTF_8));
+  }
+
+  @Test
+  public void testFailedFile() throws Exception {
+    File target = new File(folder.newFolder("dwca"), "dwca-1.0.zip");
+    ArchiveBundler bundler = new ArchiveBundler(target, -1);
+    bundler.add(file("occurrence.txt", "id\n1\n"));
+    bundler.add(new File(folder.getRoot(), "missing.txt"));
+    try {
+      bundler.finish();
+      fail("A file that cannot be compressed must fail the archive");
+    } catch (IOException e) {
+      // expected
+    }
+    assertFalse(target.exists());
+    // the publication aborts the bundler once it failed
+    bundler.abort();
+    assertFalse(new File(target.getParentFile(), "dwca-1.0.zip.part").exists());
+  }
+}
@@ -0,0 +1,67 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.math.BigDecimal;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class DataFileFingerprintsTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  @Test
+  public void testSaveAndLoad() throws Exception {
+    File file = new File(folder.getRoot(), "dwca-fingerprints.properties");
+    DataFileFingerprints fingerprints = DataFileFingerprints.empty();
+    fingerprints.add("abc", "occurrence.txt", 12);
+    fingerprints.save(file, new BigDecimal("3.1"));
+
+    DataFileFingerprints loaded = DataFileFingerprints.load(file);
+    assertEquals(new BigDecimal("3.1"), loaded.getVersion());
+    assertEquals("occurrence.txt", loaded.getFileName("abc"));
+    assertEquals(12, loaded.getRecords("abc"));
+    assertNull(loaded.getFileName("def"));
+    assertEquals(-1, loaded.getRecords("def"));
+  }
+
+  @Test
+  public void testLoadMissing() {
+    DataFileFingerprints loaded = DataFileFingerprints.load(new File(folder.getRoot(), "missing.properties"));
+    assertNull(loaded.getVersion());
+    assertNull(loaded.getFileName("abc"));
+  }
+
+  @Test
+  public void testExtract() throws Exception {
+    File zip = folder.newFile("dwca-3.1.zip");
+    ZipOutputStream out = new ZipOutputStream(new FileOutputStream(zip));
+    out.putNextEntry(new ZipEntry("occurrence.txt"));
+    out.write("id\tbasisOfRecord\n1\tPreservedSpecimen\n".getBytes(Charsets.UTF_8));
+    out.closeEntry();
+    out.close();
+
+    DataFileFingerprints fingerprints = DataFileFingerprints.empty();
+    fingerprints.add("abc", "occurrence.txt", 1);
+    fingerprints.add("def", "measurementorfact.txt", 1);
+
+    File target = new File(folder.getRoot(), "occurrence2.txt");
+    assertTrue(fingerprints.extract("abc", zip, target));
+    assertEquals("id\tbasisOfRecord\n1\tPreservedSpecimen\n", Files.toString(target, Charsets.UTF_8));
+    // not in archive, or unknown fingerprint
+    assertFalse(fingerprints.extract("def", zip, new File(folder.getRoot(), "mof.txt")));
+    assertFalse(fingerprints.extract("xyz", zip, new File(folder.getRoot(), "xyz.txt")));
+  }
+}
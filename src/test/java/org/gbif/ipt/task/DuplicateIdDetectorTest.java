@@ -0,0 +1,76 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DuplicateIdDetectorTest {
+
+  private static final String[] IDS = {"FISHES:1", "fishes:2", "", "fishes:1", "Fishes:1", null, "fishes:3", "FISHES:2",
+    ""};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<String> found = new ArrayList<String>();
+
+  private final DuplicateIdDetector.Listener listener = new DuplicateIdDetector.Listener() {
+    public void duplicate(String id) {
+      found.add(id);
+    }
+  };
+
+  private int detect(long memoryBudget, File spillDir) throws Exception {
+    DuplicateIdDetector detector = new DuplicateIdDetector(memoryBudget, spillDir, listener);
+    try {
+      for (String id : IDS) {
+        detector.add(id);
+      }
+      return detector.finish();
+    } finally {
+      detector.close();
+    }
+  }
+
+  @Test
+  public void testInMemory() throws Exception {
+    File spillDir = new File(folder.getRoot(), "ids");
+    assertEquals(3, detect(1024 * 1024, spillDir));
+    assertEquals(3, found.size());
+    assertTrue(found.contains("fishes:1"));
+    assertTrue(found.contains("Fishes:1"));
+    assertTrue(found.contains("FISHES:2"));
+    assertFalse(spillDir.exists());
+  }
+
+  @Test
+  public void testSpilled() throws Exception {
+    File spillDir = new File(folder.getRoot(), "ids");
+    // budget exceeded by the first id already
+    assertEquals(3, detect(1, spillDir));
+    assertEquals(3, found.size());
+    // spilled partitions get deleted when closing
+    assertFalse(spillDir.exists());
+
+    // same counts, but only the later occurrences get reported
+    Collections.sort(found);
+    assertEquals("FISHES:2", found.get(0));
+    assertEquals("Fishes:1", found.get(1));
+    assertEquals("fishes:1", found.get(2));
+  }
+
+  @Test
+  public void testFoldMatchesEqualsIgnoreCase() {
+    assertEquals(DuplicateIdDetector.fold("ABC:1"), DuplicateIdDetector.fold("abc:1"));
+    assertFalse(DuplicateIdDetector.fold("ABC:1").equals(DuplicateIdDetector.fold("ABC:2")));
+  }
+}
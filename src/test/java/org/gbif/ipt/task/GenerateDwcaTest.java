@@ -31,8 +31,11 @@ import org.gbif.ipt.mock.MockAppConfig;
 import org.gbif.ipt.mock.MockDataDir;
 import org.gbif.ipt.mock.MockRegistryManager;
 import org.gbif.ipt.model.Extension;
+import org.gbif.ipt.model.ExtensionMapping;
 import org.gbif.ipt.model.FileSource;
+import org.gbif.ipt.model.RecordFilter;
 import org.gbif.ipt.model.Resource;
+import org.gbif.ipt.model.Source;
 import org.gbif.ipt.model.User;
 import org.gbif.ipt.model.converter.ConceptTermConverter;
 import org.gbif.ipt.model.converter.ExtensionRowTypeConverter;
@@ -83,12 +86,17 @@ import org.junit.Test;
 import org.xml.sax.SAXException;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
 import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anySetOf;
 import static org.mockito.Matchers.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.spy;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 public class GenerateDwcaTest {
@@ -229,6 +237,90 @@ public class GenerateDwcaTest {
     assertTrue(foundWarning);
   }
 
+  /**
+   * Confirm the data file written by worker threads is identical to the one written sequentially.
+   */
+  @Test
+  public void testGenerateCoreFromSingleSourceFileInParallel() throws Exception {
+    File resourceXML = FileUtils.getClasspathFile("resources/res1/resource.xml");
+    File occurrence = FileUtils.getClasspathFile("resources/res1/occurrence.txt");
+    Resource resource = getResource(resourceXML, occurrence);
+
+    when(mockAppConfig.getPublicationThreads()).thenReturn(2);
+    try {
+      generateDwca = new GenerateDwca(resource, mockHandler, mockDataDir, mockSourceManager, mockAppConfig,
+        mockVocabulariesManager);
+      int recordCount = generateDwca.call();
+      assertEquals(2, recordCount);
+    } finally {
+      when(mockAppConfig.getPublicationThreads()).thenReturn(1);
+    }
+
+    File versionedDwca = new File(resourceDir, VERSIONED_ARCHIVE_FILENAME);
+    assertTrue(versionedDwca.exists());
+    File dir = FileUtils.createTempDir();
+    CompressionUtil.decompressFile(dir, versionedDwca, true);
+
+    // no segment files must end up in the archive
+    assertFalse(new File(dir, "segments").exists());
+
+    Archive archive = ArchiveFactory.openArchive(dir);
+    assertEquals(4, archive.getCore().getFieldsSorted().size());
+    CSVReader reader = archive.getCore().getCSVReader();
+    String[] row = reader.next();
+    assertEquals("1", row[0]);
+    assertEquals("puma concolor", row[3]);
+    row = reader.next();
+    assertEquals("2", row[0]);
+    assertEquals("pumm:concolor", row[3]);
+    assertFalse(reader.hasNext());
+    reader.close();
+  }
+
+  /**
+   * Confirm a source mapped twice is only read once, and that each mapping still applies its own id suffix.
+   */
+  @Test
+  public void testGenerateCoreFromSharedSource() throws Exception {
+    File resourceXML = FileUtils.getClasspathFile("resources/res1/resource.xml");
+    File occurrence = FileUtils.getClasspathFile("resources/res1/occurrence.txt");
+    Resource resource = getResource(resourceXML, occurrence);
+
+    // map the same source a second time, with an id suffix keeping ids unique
+    ExtensionMapping first = resource.getMappings().get(0);
+    ExtensionMapping second = new ExtensionMapping();
+    second.setExtension(first.getExtension());
+    second.setSource(first.getSource());
+    second.setFields(first.getFields());
+    second.setIdColumn(first.getIdColumn());
+    second.setIdSuffix("-copy");
+    resource.addMapping(second);
+
+    SourceManager sourceManager = spy(mockSourceManager);
+    generateDwca = new GenerateDwca(resource, mockHandler, mockDataDir, sourceManager, mockAppConfig,
+      mockVocabulariesManager);
+    int recordCount = generateDwca.call();
+    assertEquals(4, recordCount);
+    verify(sourceManager, times(1)).rowIterator(any(Source.class), anySetOf(Integer.class), any(RecordFilter.class));
+
+    File versionedDwca = new File(resourceDir, VERSIONED_ARCHIVE_FILENAME);
+    File dir = FileUtils.createTempDir();
+    CompressionUtil.decompressFile(dir, versionedDwca, true);
+    assertFalse(new File(dir, "segments").exists());
+
+    // records of the first mapping come first
+    Archive archive = ArchiveFactory.openArchive(dir);
+    CSVReader reader = archive.getCore().getCSVReader();
+    assertEquals("1", reader.next()[0]);
+    assertEquals("2", reader.next()[0]);
+    String[] row = reader.next();
+    assertEquals("1-copy", row[0]);
+    assertEquals("puma concolor", row[3]);
+    assertEquals("2-copy", reader.next()[0]);
+    assertFalse(reader.hasNext());
+    reader.close();
+  }
+
   /**
    * Confirm resource DOI used for datasetID, when setting "doi used for DatasetID" has been turned on in the extension
    * mapping.
@@ -404,6 +496,65 @@ public class GenerateDwcaTest {
     generateDwca.call();
   }
 
+  /**
+   * Confirm validating data files while they are written accepts a valid core.
+   */
+  @Test
+  public void testValidateCoreInline() throws Exception {
+    File resourceXML = FileUtils.getClasspathFile("resources/res1/resource_doi_dataset_id.xml");
+    File occurrence = FileUtils.getClasspathFile("resources/res1/occurrence_doi_dataset_id.txt");
+    Resource resource = getResource(resourceXML, occurrence);
+
+    when(mockAppConfig.isValidationInline()).thenReturn(true);
+    try {
+      generateDwca = new GenerateDwca(resource, mockHandler, mockDataDir, mockSourceManager, mockAppConfig,
+        mockVocabulariesManager);
+      assertEquals(2, (int) generateDwca.call());
+    } finally {
+      when(mockAppConfig.isValidationInline()).thenReturn(false);
+    }
+  }
+
+  /**
+   * Confirm validating data files while they are written finds IDs that are non unique when compared with case
+   * insensitivity, the same as validating the written core data file does.
+   */
+  @Test(expected = GeneratorException.class)
+  public void testValidateCoreInlineNonUniqueIdsCase() throws Exception {
+    File resourceXML = FileUtils.getClasspathFile("resources/res1/resource.xml");
+    File occurrence = FileUtils.getClasspathFile("resources/res1/occurrence_non_unique_ids_case.txt");
+    Resource resource = getResource(resourceXML, occurrence);
+
+    when(mockAppConfig.isValidationInline()).thenReturn(true);
+    try {
+      generateDwca = new GenerateDwca(resource, mockHandler, mockDataDir, mockSourceManager, mockAppConfig,
+        mock(VocabulariesManager.class));
+      generateDwca.call();
+    } finally {
+      when(mockAppConfig.isValidationInline()).thenReturn(false);
+    }
+  }
+
+  /**
+   * Confirm validating data files while they are written finds basisOfRecord not matching the Darwin Core Type
+   * Vocabulary.
+   */
+  @Test(expected = GeneratorException.class)
+  public void testValidateCoreInlineNonMatchingBasisOfRecord() throws Exception {
+    File resourceXML = FileUtils.getClasspathFile("resources/res1/resource_doi_dataset_id.xml");
+    File occurrence = FileUtils.getClasspathFile("resources/res1/occurrence_non_matching_bor.txt");
+    Resource resource = getResource(resourceXML, occurrence);
+
+    when(mockAppConfig.isValidationInline()).thenReturn(true);
+    try {
+      generateDwca = new GenerateDwca(resource, mockHandler, mockDataDir, mockSourceManager, mockAppConfig,
+        mockVocabulariesManager);
+      generateDwca.call();
+    } finally {
+      when(mockAppConfig.isValidationInline()).thenReturn(false);
+    }
+  }
+
   /**
    * Generates a test Resource.
    * </br>
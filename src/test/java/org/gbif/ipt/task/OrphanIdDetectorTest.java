@@ -0,0 +1,79 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+
+public class OrphanIdDetectorTest {
+
+  private static final String[] CORE_IDS = {"FISHES:1", "fishes:2", "", null, "fishes:3"};
+  private static final String[][] EXTENSION_IDS = {{"FISHES:1", "fishes:1", "FISHES:1"}, {"fishes:3", "", "fishes:4"}};
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final List<String> found = new ArrayList<String>();
+
+  private final OrphanIdDetector.Listener listener = new OrphanIdDetector.Listener() {
+    public void orphan(int extension, String coreId) {
+      found.add(extension + ":" + coreId);
+    }
+  };
+
+  private int detect(long memoryBudget, File spillDir) throws Exception {
+    OrphanIdDetector detector = new OrphanIdDetector(memoryBudget, spillDir);
+    try {
+      for (String id : CORE_IDS) {
+        detector.addCoreId(id);
+      }
+      detector.checkExtensions(listener);
+      for (int i = 0; i < EXTENSION_IDS.length; i++) {
+        for (String coreId : EXTENSION_IDS[i]) {
+          detector.addExtensionId(i, coreId);
+        }
+      }
+      return detector.finish();
+    } finally {
+      detector.close();
+    }
+  }
+
+  @Test
+  public void testInMemory() throws Exception {
+    File spillDir = new File(folder.getRoot(), "coreids");
+    assertEquals(3, detect(1024 * 1024, spillDir));
+    // core ids are compared exactly, empty ones are always orphaned
+    Collections.sort(found);
+    assertEquals("0:fishes:1", found.get(0));
+    assertEquals("1:", found.get(1));
+    assertEquals("1:fishes:4", found.get(2));
+    assertFalse(spillDir.exists());
+  }
+
+  @Test
+  public void testSpilled() throws Exception {
+    File spillDir = new File(folder.getRoot(), "coreids");
+    // budget exceeded by the first id already
+    assertEquals(3, detect(1, spillDir));
+    Collections.sort(found);
+    assertEquals("0:fishes:1", found.get(0));
+    assertEquals("1:", found.get(1));
+    assertEquals("1:fishes:4", found.get(2));
+    // spilled partitions get deleted when closing
+    assertFalse(spillDir.exists());
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testCoreIdsFirst() throws Exception {
+    OrphanIdDetector detector = new OrphanIdDetector(1024, new File(folder.getRoot(), "coreids"));
+    detector.addExtensionId(0, "fishes:1");
+  }
+}
@@ -0,0 +1,86 @@
+package org.gbif.ipt.task;
+
+import java.io.File;
+import java.math.BigDecimal;
+
+import com.google.common.base.Charsets;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PublicationCheckpointTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private File write(File dir, String name, String content) throws Exception {
+    File file = new File(dir, name);
+    Files.write(content, file, Charsets.UTF_8);
+    return file;
+  }
+
+  @Test
+  public void testResumeInterrupted() throws Exception {
+    File dir = new File(folder.getRoot(), "checkpoint");
+    PublicationCheckpoint checkpoint = PublicationCheckpoint.load(dir);
+    assertFalse(checkpoint.exists());
+
+    // first publication gets interrupted while writing the 2nd data file
+    File dwca = checkpoint.start(new BigDecimal("1.1"));
+    checkpoint.stage("DATAFILES");
+    checkpoint.completed("core", "a1b2", write(dwca, "occurrence.txt", "id\n1\n2\n"), 2);
+    checkpoint.completed("gone", null, write(dwca, "image.txt", "id\n1\n"), 1);
+    write(dwca, "measurementorfact.txt", "id\n1");
+
+    checkpoint = PublicationCheckpoint.load(dir);
+    assertTrue(checkpoint.isInterrupted());
+    assertEquals(new BigDecimal("1.1"), checkpoint.getVersion());
+    assertEquals("DATAFILES", checkpoint.getStage());
+    assertEquals(2, checkpoint.getCompletedDataFiles());
+
+    // next publication resumes the completed core, under whatever name it gets this time
+    dwca = checkpoint.start(new BigDecimal("1.1"));
+    assertEquals(0, dwca.list().length);
+    File core = new File(dwca, "occurrence.txt");
+    assertEquals(2, checkpoint.getRecords("core"));
+    assertEquals("a1b2", checkpoint.getFingerprint("core"));
+    assertTrue(checkpoint.resume("core", core));
+    assertEquals("id\n1\n2\n", Files.toString(core, Charsets.UTF_8));
+    assertFalse(checkpoint.resume("measurements", new File(dwca, "measurementorfact.txt")));
+    checkpoint.completed("measurements", null, write(dwca, "measurementorfact.txt", "id\n1\n"), 1);
+    // the image extension is not published anymore
+    checkpoint.discardNotResumed();
+    assertEquals(2, checkpoint.getCompletedDataFiles());
+    assertEquals(-1, checkpoint.getRecords("gone"));
+    assertFalse(new File(dir, "completed").exists());
+
+    checkpoint.delete();
+    assertFalse(dir.exists());
+    assertFalse(PublicationCheckpoint.load(dir).exists());
+  }
+
+  @Test
+  public void testFailed() throws Exception {
+    File dir = new File(folder.getRoot(), "checkpoint");
+    PublicationCheckpoint checkpoint = PublicationCheckpoint.load(dir);
+    File dwca = checkpoint.start(new BigDecimal("2.0"));
+    checkpoint.completed("core", null, write(dwca, "taxon.txt", "id\n1\n"), 1);
+    checkpoint.failed();
+
+    // failed publications are not resumed by themselves, but keep their completed data files for the next one
+    checkpoint = PublicationCheckpoint.load(dir);
+    assertTrue(checkpoint.exists());
+    assertFalse(checkpoint.isInterrupted());
+    dwca = checkpoint.start(new BigDecimal("2.1"));
+    // without a fingerprint, the version the data file was generated for is kept
+    assertNull(checkpoint.getFingerprint("core"));
+    assertEquals(new BigDecimal("2.0"), checkpoint.getVersion("core"));
+    assertTrue(checkpoint.resume("core", new File(dwca, "taxon.txt")));
+  }
+}
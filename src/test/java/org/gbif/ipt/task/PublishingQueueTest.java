@@ -0,0 +1,124 @@
+package org.gbif.ipt.task;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.FutureTask;
+
+import com.google.common.collect.ImmutableSet;
+import org.junit.Before;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class PublishingQueueTest {
+
+  /**
+   * Executor keeping the jobs started, so that the test decides when they finish.
+   */
+  private static class ManualExecutor implements Executor {
+
+    private final List<Runnable> started = new ArrayList<Runnable>();
+
+    public void execute(Runnable command) {
+      started.add(command);
+    }
+
+    void finish(int idx) {
+      started.remove(idx).run();
+    }
+  }
+
+  private static final Set<String> NO_HOSTS = Collections.emptySet();
+  private ManualExecutor executor;
+
+  @Before
+  public void setup() {
+    executor = new ManualExecutor();
+  }
+
+  private FutureTask<Integer> task() {
+    return new FutureTask<Integer>(new Callable<Integer>() {
+      public Integer call() {
+        return 0;
+      }
+    });
+  }
+
+  private List<String> shortnames(List<PublishingQueue.Job> jobs) {
+    List<String> names = new ArrayList<String>();
+    for (PublishingQueue.Job job : jobs) {
+      names.add(job.getShortname());
+    }
+    return names;
+  }
+
+  @Test
+  public void testPriority() {
+    PublishingQueue queue = new PublishingQueue(executor, 1, 0, 0);
+    queue.submit("first", "a", PublishingQueue.Priority.SCHEDULED, NO_HOSTS, task());
+    queue.submit("scheduled", "a", PublishingQueue.Priority.SCHEDULED, NO_HOSTS, task());
+    queue.submit("bulk", "a", PublishingQueue.Priority.BULK, NO_HOSTS, task());
+    queue.submit("manual", "a", PublishingQueue.Priority.MANUAL, NO_HOSTS, task());
+
+    assertEquals(ImmutableSet.of("first"), ImmutableSet.copyOf(shortnames(queue.getRunning())));
+    assertEquals(Arrays.asList("manual", "bulk", "scheduled"), shortnames(queue.getPending()));
+
+    executor.finish(0);
+    assertEquals("manual", queue.getRunning().get(0).getShortname());
+    executor.finish(0);
+    assertEquals("bulk", queue.getRunning().get(0).getShortname());
+  }
+
+  @Test
+  public void testFairness() {
+    PublishingQueue queue = new PublishingQueue(executor, 2, 0, 0);
+    queue.submit("a1", "a", PublishingQueue.Priority.MANUAL, NO_HOSTS, task());
+    queue.submit("a2", "a", PublishingQueue.Priority.MANUAL, NO_HOSTS, task());
+    queue.submit("a3", "a", PublishingQueue.Priority.MANUAL, NO_HOSTS, task());
+    queue.submit("b1", "b", PublishingQueue.Priority.MANUAL, NO_HOSTS, task());
+
+    // user b has no job running, so goes first
+    executor.finish(0);
+    assertEquals(ImmutableSet.of("a2", "b1"), ImmutableSet.copyOf(shortnames(queue.getRunning())));
+    assertEquals(Collections.singletonList("a3"), shortnames(queue.getPending()));
+  }
+
+  @Test
+  public void testHostLimit() {
+    PublishingQueue queue = new PublishingQueue(executor, 3, 1, 0);
+    Set<String> db1 = ImmutableSet.of(PublishingQueue.databaseKey("db1.example.org"));
+    Set<String> db2 = ImmutableSet.of(PublishingQueue.databaseKey("DB2.example.org"));
+    queue.submit("big1", "a", PublishingQueue.Priority.MANUAL, db1, task());
+    queue.submit("big2", "a", PublishingQueue.Priority.MANUAL, db1, task());
+    queue.submit("other", "a", PublishingQueue.Priority.SCHEDULED, db2, task());
+    queue.submit("metadata", "a", PublishingQueue.Priority.SCHEDULED, NO_HOSTS, task());
+
+    // only one job per database host, even though threads are available
+    assertEquals(ImmutableSet.of("big1", "other", "metadata"), ImmutableSet.copyOf(shortnames(queue.getRunning())));
+    assertEquals(Collections.singletonList("big2"), shortnames(queue.getPending()));
+
+    executor.finish(0);
+    assertEquals(ImmutableSet.of("big2", "other", "metadata"), ImmutableSet.copyOf(shortnames(queue.getRunning())));
+  }
+
+  @Test
+  public void testCancelledWhileWaiting() throws InterruptedException {
+    PublishingQueue queue = new PublishingQueue(executor, 1, 0, 0);
+    queue.submit("first", "a", PublishingQueue.Priority.MANUAL, NO_HOSTS, task());
+    FutureTask<Integer> cancelled = task();
+    queue.submit("cancelled", "a", PublishingQueue.Priority.MANUAL, NO_HOSTS, cancelled);
+    cancelled.cancel(true);
+
+    executor.finish(0);
+    assertTrue(queue.getRunning().isEmpty());
+    assertTrue(queue.getPending().isEmpty());
+    // returns right away, since nothing is left
+    queue.awaitCompletion(ImmutableSet.of("first", "cancelled"));
+  }
+}
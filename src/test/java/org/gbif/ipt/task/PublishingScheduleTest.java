@@ -0,0 +1,82 @@
+package org.gbif.ipt.task;
+
+import java.util.Date;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class PublishingScheduleTest {
+
+  @Test
+  public void testTakeDueInOrder() throws InterruptedException {
+    PublishingSchedule schedule = new PublishingSchedule();
+    long now = System.currentTimeMillis();
+    schedule.schedule("res2", new Date(now - 1000));
+    schedule.schedule("res1", new Date(now - 2000));
+    schedule.schedule("res3", new Date(now - 1000));
+    assertEquals(3, schedule.size());
+
+    assertEquals("res1", schedule.takeDue());
+    assertEquals("res2", schedule.takeDue());
+    assertEquals("res3", schedule.takeDue());
+    assertEquals(0, schedule.size());
+  }
+
+  @Test
+  public void testReschedule() throws InterruptedException {
+    PublishingSchedule schedule = new PublishingSchedule();
+    long now = System.currentTimeMillis();
+    schedule.schedule("res1", new Date(now - 2000));
+    schedule.schedule("res2", new Date(now - 1000));
+    // replaces the previous date
+    schedule.schedule("res1", new Date(now + 100000));
+    assertEquals(2, schedule.size());
+    assertEquals(now + 100000, schedule.getDue("res1").getTime());
+    assertEquals("res2", schedule.takeDue());
+
+    schedule.unschedule("res1");
+    assertNull(schedule.getDue("res1"));
+    assertEquals(0, schedule.size());
+  }
+
+  @Test
+  public void testRetry() {
+    PublishingSchedule schedule = new PublishingSchedule();
+    long now = System.currentTimeMillis();
+    schedule.retry("res1");
+    assertTrue(schedule.getDue("res1").getTime() >= now + PublishingSchedule.RETRY_DELAY_MS);
+  }
+
+  @Test(timeout = 10000)
+  public void testTakeDueWokenUp() throws InterruptedException {
+    final PublishingSchedule schedule = new PublishingSchedule();
+    schedule.schedule("later", new Date(System.currentTimeMillis() + 100000));
+    Thread scheduler = new Thread(new Runnable() {
+      public void run() {
+        try {
+          Thread.sleep(200);
+        } catch (InterruptedException e) {
+          return;
+        }
+        schedule.schedule("now", new Date());
+      }
+    });
+    scheduler.start();
+    // waits for the resource scheduled meanwhile, not for the one scheduled first
+    assertEquals("now", schedule.takeDue());
+    scheduler.join();
+  }
+
+  @Test(timeout = 10000)
+  public void testAwaitChange() throws InterruptedException {
+    PublishingSchedule schedule = new PublishingSchedule();
+    long since = schedule.getChanges();
+    schedule.signal();
+    // returns immediately, as the schedule was signalled already
+    schedule.awaitChange(since, 100000);
+    assertEquals(since + 1, schedule.getChanges());
+  }
+}
@@ -0,0 +1,79 @@
+package org.gbif.ipt.task;
+
+import org.gbif.api.model.common.DOI;
+import org.gbif.dwc.terms.DwcTerm;
+import org.gbif.ipt.model.PropertyMapping;
+
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class RowPlanTest {
+
+  private PropertyMapping mapping(DwcTerm term, Integer index, String defaultValue) {
+    PropertyMapping pm = new PropertyMapping();
+    pm.setTerm(term);
+    pm.setIndex(index);
+    pm.setDefaultValue(defaultValue);
+    return pm;
+  }
+
+  @Test
+  public void testWriteEscapesAndTrims() throws Exception {
+    PropertyMapping[] inCols =
+      new PropertyMapping[] {null, mapping(DwcTerm.scientificName, 0, null), mapping(DwcTerm.locality, 1, null)};
+    RowPlan plan = new RowPlan(inCols, false, null);
+    plan.setId("1");
+    plan.translate(new String[] {" Puma\tconcolor \n", "a\r\nb"});
+
+    StringWriter writer = new StringWriter();
+    assertTrue(plan.write(writer));
+    assertEquals("1\tPuma concolor\ta  b\n", writer.toString());
+
+    // values are validated as written
+    assertEquals("1", plan.getWrittenValue(0));
+    assertEquals("Puma concolor", plan.getWrittenValue(1));
+    assertEquals("a  b", plan.getWrittenValue(2));
+  }
+
+  @Test
+  public void testTranslationsDefaultsAndDoi() throws Exception {
+    PropertyMapping bor = mapping(DwcTerm.basisOfRecord, 0, null);
+    Map<String, String> translation = new HashMap<String, String>();
+    translation.put("ps", "PreservedSpecimen");
+    bor.setTranslation(translation);
+    PropertyMapping[] inCols =
+      new PropertyMapping[] {null, mapping(DwcTerm.datasetID, 1, null), bor, mapping(DwcTerm.country, null, "DK")};
+    RowPlan plan = new RowPlan(inCols, true, new DOI("10.5072/gc8gqc"));
+
+    String[] in = new String[] {"ps", "ds"};
+    plan.setId(null);
+    plan.translate(in);
+    // translated value also replaces the original value, for filters applied after translation
+    assertEquals("PreservedSpecimen", in[0]);
+
+    StringWriter writer = new StringWriter();
+    assertTrue(plan.write(writer));
+    assertEquals("\tdoi:10.5072/gc8gqc\tPreservedSpecimen\tDK\n", writer.toString());
+  }
+
+  @Test
+  public void testEmptyRowNotWritten() throws Exception {
+    PropertyMapping[] inCols = new PropertyMapping[] {null, mapping(DwcTerm.scientificName, 0, null)};
+    RowPlan plan = new RowPlan(inCols, false, null);
+    plan.setId(null);
+    plan.translate(new String[] {null});
+
+    StringWriter writer = new StringWriter();
+    assertFalse(plan.write(writer));
+    assertEquals("", writer.toString());
+    assertNull(plan.getWrittenValue(0));
+  }
+}
@@ -0,0 +1,113 @@
+package org.gbif.ipt.utils;
+
+import org.gbif.utils.text.LineComparator;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import com.google.common.base.Charsets;
+import com.google.common.collect.Ordering;
+import com.google.common.io.Files;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ParallelFileSorterTest {
+
+  private static final Comparator<String> IGNORE_CASE_COMPARATOR = Ordering.from(new Comparator<String>() {
+    public int compare(String o1, String o2) {
+      return o1.compareToIgnoreCase(o2);
+    }
+  }).nullsFirst();
+  private static final LineComparator LINE_COMPARATOR = new LineComparator(0, "\t", '"', IGNORE_CASE_COMPARATOR);
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  /**
+   * Writes a core data file with ids differing in case only, duplicate ids, empty ids and short ids, so that the
+   * order of equal lines matters.
+   */
+  private File core(int lines) throws Exception {
+    Random random = new Random(7);
+    StringBuilder sb = new StringBuilder("id\tscientificName\n");
+    for (int i = 0; i < lines; i++) {
+      String id;
+      switch (random.nextInt(5)) {
+        case 0:
+          id = "";
+          break;
+        case 1:
+          id = "FISHES:" + random.nextInt(lines);
+          break;
+        case 2:
+          id = "fishes:" + random.nextInt(lines);
+          break;
+        case 3:
+          id = String.valueOf((char) ('a' + random.nextInt(3)));
+          break;
+        default:
+          id = "Ab" + random.nextInt(100);
+      }
+      sb.append(id).append('\t').append("name ").append(i).append('\n');
+    }
+    File core = folder.newFile("core.txt");
+    Files.write(sb, core, Charsets.UTF_8);
+    return core;
+  }
+
+  @Test
+  public void testSameAsSortingInJava() throws Exception {
+    File core = core(5000);
+    File expected = new File(folder.getRoot(), "expected.txt");
+    new org.gbif.utils.file.FileUtils().sortInJava(core, expected, "UTF-8", LINE_COMPARATOR, 1);
+
+    // a small budget makes many runs, merged from several threads
+    File sorted = new File(folder.getRoot(), "sorted.txt");
+    new ParallelFileSorter(3, 16 * 1024, true)
+      .sort(core, sorted, "UTF-8", 1, LINE_COMPARATOR, ParallelFileSorter.ignoreCaseKey("\t", '"'));
+    assertArrayEquals(Files.toByteArray(expected), Files.toByteArray(sorted));
+    // run files get deleted
+    assertFalse(new File(folder.getRoot(), "sorted.txt-runs").exists());
+
+    // in memory, and without keys
+    File inMemory = new File(folder.getRoot(), "inMemory.txt");
+    new ParallelFileSorter(1, 64 * 1024 * 1024, false).sort(core, inMemory, "UTF-8", 1, LINE_COMPARATOR, null);
+    assertArrayEquals(Files.toByteArray(expected), Files.toByteArray(inMemory));
+  }
+
+  @Test
+  public void testIgnoreCaseKey() {
+    ParallelFileSorter.PrefixKey key = ParallelFileSorter.ignoreCaseKey("\t", '"');
+    assertEquals(key.key("FISHES:1\tx"), key.key("fishes:2\ty"));
+    assertTrue(key.key("ab\tx") < key.key("abc\tx"));
+    assertTrue(key.key("a") < key.key("B"));
+    // compared using the line comparator
+    assertEquals(0, key.key("\tx"));
+    assertEquals(0, key.key("\"a\"\tx"));
+    assertEquals(0, key.key(" a\tx"));
+
+    List<String> lines = new ArrayList<String>();
+    lines.add("b\t1");
+    lines.add("B\t2");
+    lines.add("a_\t3");
+    lines.add("A[\t4");
+    for (String a : lines) {
+      for (String b : lines) {
+        long ka = key.key(a);
+        long kb = key.key(b);
+        if (ka != kb) {
+          assertEquals(Long.signum(LINE_COMPARATOR.compare(a, b)), ka < kb ? -1 : 1);
+        }
+      }
+    }
+  }
+}
@@ -3,6 +3,7 @@
  */
 package peformance;
 
+import org.gbif.ipt.utils.ParallelFileSorter;
 import org.gbif.utils.file.FileUtils;
 import org.gbif.utils.text.LineComparator;
 
@@ -11,9 +12,13 @@ import java.io.File;
 import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.OutputStreamWriter;
+import java.util.Arrays;
 import java.util.Comparator;
 import java.util.UUID;
 
+import com.google.common.collect.Ordering;
+import com.google.common.io.Files;
+
 
 /**
  * This is just a utility class to test performance of sorting files of IDs.
@@ -25,9 +30,10 @@ public class SortTest {
       File in = new File("/tmp/unsorted.txt");
       File out = new File("/tmp/sorted.txt");
       File out2 = new File("/tmp/sorted2.txt");
+      File out3 = new File("/tmp/sorted3.txt");
 
       BufferedWriter writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(in), "UTF-8"));
-      int numLines = 1000;
+      int numLines = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
       System.out.println("Writing " + numLines + " random UUID lines to sort");
       for (int i = 0; i < numLines; i++) {
         writer.write(numLines - i + " " + UUID.randomUUID() + "\n");
@@ -41,11 +47,27 @@ public class SortTest {
       System.out.println("Sorted " + numLines + " in " + (System.currentTimeMillis() - time) / 1000 + " secs");
 
       System.out.println("Sorting " + numLines + " in vanilla Java");
-      Comparator<String> lineComparator = new LineComparator(0, "\t");
+      // compares the ID column ignoring case, the same as sorting a core data file does
+      Comparator<String> lineComparator = new LineComparator(0, "\t", '"', Ordering.from(new Comparator<String>() {
+        public int compare(String o1, String o2) {
+          return o1.compareToIgnoreCase(o2);
+        }
+      }).nullsFirst());
       time = System.currentTimeMillis();
       utils.sortInJava(in, out2, "UTF-8", lineComparator, 1);
       System.out.println("Sorted " + numLines + " in " + (System.currentTimeMillis() - time) / 1000 + " secs");
 
+      int threads = Runtime.getRuntime().availableProcessors();
+      System.out.println("Sorting " + numLines + " in parallel using " + threads + " threads");
+      time = System.currentTimeMillis();
+      new ParallelFileSorter(threads, 128L * 1024 * 1024, false)
+        .sort(in, out3, "UTF-8", 1, lineComparator, ParallelFileSorter.ignoreCaseKey("\t", '"'));
+      System.out.println("Sorted " + numLines + " in " + (System.currentTimeMillis() - time) / 1000 + " secs");
+      System.out
+        .println("Identical to vanilla Java: " + Arrays.equals(Files.toByteArray(out2), Files.toByteArray(out3)));
+
+    } catch (InterruptedException e) {
+      e.printStackTrace();
     } catch (IOException e) {
       e.printStackTrace();
     }